@@ -10,6 +10,12 @@ const WebSocketContext = createContext<WebSocketContextType | undefined>(undefin
 
 const WS_URL = import.meta.env.VITE_WS_URL || 'http://localhost:8080/api/v1/ws-scalehub';
 
+// Server batches measurements per broadcast window: each frame body is a JSON array
+const parseFrame = (body: string): ScaleRealtimeData[] => {
+  const parsed = JSON.parse(body);
+  return Array.isArray(parsed) ? parsed : [parsed];
+};
+
 interface WebSocketProviderProps {
   children: React.ReactNode;
 }
@@ -69,11 +75,10 @@ export const WebSocketProvider: React.FC<WebSocketProviderProps> = ({ children }
 
     const subscription = client.subscribe(destination, (message) => {
       try {
-        const data: ScaleRealtimeData = JSON.parse(message.body);
-        console.log('[WebSocket] Received scale data:', data);
+        const batch = parseFrame(message.body);
         setScaleData((prev) => {
           const updated = new Map(prev);
-          updated.set(data.scaleId, data);
+          batch.forEach((data) => updated.set(data.scaleId, data));
           return updated;
         });
       } catch (error) {
@@ -104,11 +109,10 @@ export const WebSocketProvider: React.FC<WebSocketProviderProps> = ({ children }
 
       const subscription = client.subscribe(destination, (message) => {
         try {
-          const data: ScaleRealtimeData = JSON.parse(message.body);
-          console.log(`[WebSocket] Received data for scale ${data.scaleId}:`, data);
+          const batch = parseFrame(message.body);
           setScaleData((prev) => {
             const updated = new Map(prev);
-            updated.set(data.scaleId, data);
+            batch.forEach((data) => updated.set(data.scaleId, data));
             return updated;
           });
         } catch (error) {
@@ -1,6 +1,7 @@
 package org.facenet.config;
 
 import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementEventPool;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -8,6 +9,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Configuration for the Active In-Memory Queue
@@ -33,6 +35,15 @@ public class ActiveQueueConfig {
         return new ArrayBlockingQueue<>(properties.getQueueCapacity());
     }
 
+    /**
+     * Pool tái sử dụng MeasurementEvent
+     * Engine lấy event từ pool, event quay về pool khi consumer cuối cùng release()
+     */
+    @Bean
+    public MeasurementEventPool measurementEventPool() {
+        return new MeasurementEventPool(properties.getEventPoolSize());
+    }
+
     /**
      * Thread pool cho Core Processing Workers
      * Worker threads: 4-8 theo design spec
@@ -53,12 +64,43 @@ public class ActiveQueueConfig {
 
     /**
      * Thread pool cho Batch Persistence
-     * Single thread for batch processing to maintain order
+     * 1 thread cho mỗi persistence writer (persistence.batch.writers), mỗi writer giữ thứ tự của các cân
+     * được phân vùng cho nó
      */
     @Bean(name = "batchPersistenceExecutor")
-    public ExecutorService batchPersistenceExecutor() {
-        return Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r, "batch-persistence");
+    public ExecutorService batchPersistenceExecutor(PersistenceProperties persistenceProperties) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, persistenceProperties.getBatch().getWriters()), r -> {
+            Thread t = new Thread(r, "batch-persistence-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Thread pool gửi SSE (GET /scales/stream)
+     * Mỗi connection có hàng đợi gửi riêng, được drain trên pool này nên 1 client chậm không chặn
+     * thread flush của SseMeasurementBroadcaster
+     */
+    @Bean(name = "sseSendExecutor")
+    public ExecutorService sseSendExecutor(BroadcastProperties broadcastProperties) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, broadcastProperties.getSseSendThreads()), r -> {
+            Thread t = new Thread(r, "sse-send-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Thread pool tính lại rollup ngày khi backfill (ReportService.backfillDailyData)
+     * persistence.ingest-rollup.backfill-parallelism ngày chạy song song, mỗi ngày 1 câu INSERT ... SELECT
+     */
+    @Bean(name = "dailyBackfillExecutor")
+    public ExecutorService dailyBackfillExecutor(PersistenceProperties persistenceProperties) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, persistenceProperties.getIngestRollup().getBackfillParallelism()), r -> {
+            Thread t = new Thread(r, "daily-backfill-" + threadIndex.incrementAndGet());
             t.setDaemon(true);
             return t;
         });
@@ -0,0 +1,38 @@
+package org.facenet.config;
+
+import lombok.RequiredArgsConstructor;
+import org.facenet.service.scale.broadcast.binary.BinaryMeasurementCodec;
+import org.facenet.service.scale.broadcast.binary.BinaryMeasurementHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+/**
+ * WebSocket thuần (không SockJS, không STOMP) cho kiosk và client máy
+ *
+ * - Endpoint: /ws-binary, subprotocol "scalehub.bin.v1" (xem BinaryMeasurementCodec)
+ * - Xác thực bằng lệnh AUTH <jwt> sau khi kết nối (xem BinaryMeasurementHandler)
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class BinaryWebSocketConfig implements WebSocketConfigurer {
+
+    private final BinaryMeasurementHandler binaryMeasurementHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(BinaryMeasurementCodec.SUBPROTOCOL);
+
+        registry.addHandler(binaryMeasurementHandler, "/ws-binary")
+                .setHandshakeHandler(handshakeHandler)
+                .setAllowedOriginPatterns(
+                        "http://localhost:*",
+                        "http://127.0.0.1:*",
+                        "http://localhost:5173"
+                );
+    }
+}
@@ -0,0 +1,111 @@
+package org.facenet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for WebSocket realtime broadcasting
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "websocket.broadcast")
+public class BroadcastProperties {
+
+    /**
+     * Aggregation window - events gathered in this window are sent as one frame per topic (in milliseconds)
+     * Default: 100ms
+     */
+    private long windowMs = 100;
+
+    /**
+     * Maximum number of events waiting for the next window, newer events are dropped when full
+     * Default: 50000
+     */
+    private int maxPendingEvents = 50000;
+
+    /**
+     * Maximum number of events in one JSON array frame, larger windows are split into several frames
+     * Default: 500
+     */
+    private int maxFrameEvents = 500;
+
+    /**
+     * Maximum size of one JSON array frame (in bytes), kept below websocket.broker.send-buffer-size-limit
+     * so a single frame cannot get a session closed
+     * Default: 131072 (128KB)
+     */
+    private int maxFrameBytes = 131072;
+
+    /**
+     * Dispatch tick for tuned subscriptions (x-max-rate / x-fields / x-delta) - conflated values are sent at most once per tick (in milliseconds)
+     * Default: 50ms
+     */
+    private long subscriptionTickMs = 50;
+
+    /**
+     * Maximum number of tuned subscriptions one WebSocket session may hold
+     * Default: 64
+     */
+    private int maxTunedSubscriptionsPerSession = 64;
+
+    /**
+     * Interval between snapshot frames on /topic/location/{locationId} (in milliseconds)
+     * Default: 1000ms
+     */
+    private long locationSnapshotMs = 1000;
+
+    /**
+     * Interval between reloads of the location -> scale hierarchy used by location topics (in milliseconds)
+     * Default: 60000ms
+     */
+    private long locationIndexRefreshMs = 60000;
+
+    /**
+     * Time a /ws-binary client has to send its AUTH command before the connection is closed (in milliseconds)
+     * Default: 5000ms
+     */
+    private long binaryAuthTimeoutMs = 5000;
+
+    /**
+     * Number of recent measurements kept for SSE Last-Event-ID resume
+     * Default: 10000
+     */
+    private int sseReplayCapacity = 10000;
+
+    /**
+     * Lifetime of one SSE connection before the client has to reconnect (in milliseconds)
+     * Default: 30 minutes
+     */
+    private long sseTimeoutMs = 30 * 60 * 1000L;
+
+    /**
+     * Interval of keep-alive comments on idle SSE connections (in milliseconds)
+     * Default: 15000ms
+     */
+    private long sseKeepAliveMs = 15000;
+
+    /**
+     * Maximum number of concurrent SSE connections
+     * Default: 500
+     */
+    private int sseMaxConnections = 500;
+
+    /**
+     * Number of threads sending SSE events (each connection is drained by at most one thread at a time)
+     * Default: 4
+     */
+    private int sseSendThreads = 4;
+
+    /**
+     * Maximum number of SSE events queued for one connection; a connection that overflows is closed
+     * Default: 64
+     */
+    private int sseSendQueueCapacity = 64;
+
+    /**
+     * Maximum time a single SSE write may block before the connection is closed (in milliseconds)
+     * Default: 10000ms
+     */
+    private long sseSendTimeoutMs = 10000;
+}
@@ -22,6 +22,11 @@ public class DeviceEngineProperties {
      */
     private int queueCapacity = 100000;
 
+    /**
+     * Maximum number of idle MeasurementEvent objects kept for reuse
+     */
+    private int eventPoolSize = 10000;
+
     /**
      * Default polling interval in milliseconds
      */
@@ -0,0 +1,47 @@
+package org.facenet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for Core Processor event tracing
+ * Mặc định hot path KHÔNG ghi log - chỉ bật khi cần debug
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "core.trace")
+public class EventTraceProperties {
+
+    /**
+     * Sampling interval for INFO trace lines across all scales (in milliseconds)
+     * Default: 0 (sampling disabled)
+     */
+    private long sampleIntervalMs = 0;
+
+    /**
+     * Maximum number of trace lines written per second (sampled + per-scale debug)
+     * Default: 50
+     */
+    private int maxLinesPerSecond = 50;
+
+    /**
+     * Binary ring-buffer trace configuration
+     */
+    private Ring ring = new Ring();
+
+    @Data
+    public static class Ring {
+        /**
+         * Record every event into the in-memory ring buffer
+         * Default: false
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of records kept in the ring buffer
+         * Default: 8192
+         */
+        private int capacity = 8192;
+    }
+}
@@ -17,24 +17,178 @@ public class PersistenceProperties {
      */
     private Batch batch = new Batch();
 
+    /**
+     * scale_current_states upsert configuration
+     */
+    private CurrentState currentState = new CurrentState();
+
+    /**
+     * Local write-ahead journal configuration
+     */
+    private Journal journal = new Journal();
+
     /**
      * Dead letter configuration
      */
     private DeadLetter deadLetter = new DeadLetter();
 
+    /**
+     * weighing_logs range partition management (PostgreSQL only)
+     */
+    private Partition partition = new Partition();
+
+    /**
+     * Typed value columns (value_1..value_5 double precision + valid_mask) of weighing_logs
+     */
+    private Values values = new Values();
+
+    /**
+     * 1-minute / 1-hour rollup tiers of weighing_logs (PostgreSQL only)
+     */
+    private Rollup rollup = new Rollup();
+
+    /**
+     * Per-scale daily rollups maintained at ingest time (PostgreSQL only)
+     */
+    private IngestRollup ingestRollup = new IngestRollup();
+
+    /**
+     * Columnar file archive of expired weighing_logs partitions
+     */
+    private Archive archive = new Archive();
+
     @Data
     public static class Batch {
         /**
          * Number of events to accumulate before persisting
+         * (initial size per writer when adaptive sizing is enabled)
          * Default: 50
          */
         private int size = 50;
 
+        /**
+         * Number of parallel persistence writers; events are partitioned by scaleId
+         * so each scale is always written by the same writer (per-scale order is kept)
+         * Default: 4
+         */
+        private int writers = 4;
+
+        /**
+         * Adaptive batch sizing: grow the batch while commit latency stays under target-commit-ms,
+         * halve it when the database is slower than that
+         * Default: true
+         */
+        private boolean adaptive = true;
+
+        /**
+         * Lower bound of the adaptive batch size
+         * Default: 10
+         */
+        private int minSize = 10;
+
+        /**
+         * Upper bound of the adaptive batch size
+         * Default: 2000
+         */
+        private int maxSize = 2000;
+
+        /**
+         * Commit latency target for adaptive sizing (in milliseconds)
+         * Default: 200ms
+         */
+        private long targetCommitMs = 200;
+
         /**
          * Maximum time to wait before persisting a batch (in milliseconds)
          * Default: 500ms
          */
         private long timeoutMs = 500;
+
+        /**
+         * How weighing_logs rows are written: INSERT (JDBC batch) or COPY (PostgreSQL COPY BINARY,
+         * falls back to INSERT on other databases)
+         * Default: INSERT
+         */
+        private WriteMode mode = WriteMode.INSERT;
+    }
+
+    public enum WriteMode {
+        INSERT,
+        COPY
+    }
+
+    @Data
+    public static class CurrentState {
+        /**
+         * Interval for reloading the in-memory set of active scale IDs (in milliseconds)
+         * Default: 60000ms
+         */
+        private long scaleCacheRefreshMs = 60000;
+
+        /**
+         * Minimum interval between reloads triggered by an unknown scale ID (in milliseconds)
+         * Default: 5000ms
+         */
+        private long missRefreshIntervalMs = 5000;
+    }
+
+    @Data
+    public static class Journal {
+        /**
+         * Write every measurement to the local journal before persisting it; persistence then consumes
+         * the journal from its checkpoint (at-least-once across restarts and database outages)
+         * Default: false
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory holding journal segments and the checkpoint file
+         * Default: journal
+         */
+        private String directory = "journal";
+
+        /**
+         * Size of one memory-mapped segment file (in bytes)
+         * Default: 64MB
+         */
+        private int segmentSizeBytes = 64 * 1024 * 1024;
+
+        /**
+         * Interval between background fsyncs of the active segment (in milliseconds, 0 = fsync every record)
+         * Default: 50ms
+         */
+        private long fsyncIntervalMs = 50;
+
+        /**
+         * Interval between checkpoint writes (in milliseconds)
+         * Default: 1000ms
+         */
+        private long checkpointIntervalMs = 1000;
+
+        /**
+         * Maximum number of records read from the journal per pass
+         * Default: 1000
+         */
+        private int readBatchSize = 1000;
+
+        /**
+         * Stop reading the journal while this many events are queued in the persistence writers
+         * (a backlog stays on disk instead of in memory)
+         * Default: 50000
+         */
+        private int maxInFlight = 50000;
+
+        /**
+         * Sleep between reads when the consumer has caught up with the journal (in milliseconds)
+         * Default: 10ms
+         */
+        private long idlePollMs = 10;
+
+        /**
+         * Backoff ceiling when the database is unreachable and a batch is retried (in milliseconds)
+         * Default: 30000ms
+         */
+        private long maxRetryBackoffMs = 30000;
     }
 
     @Data
@@ -44,5 +198,215 @@ public class PersistenceProperties {
          * Default: dead-letters
          */
         private String directory = "dead-letters";
+
+        /**
+         * Roll the active NDJSON segment once it reaches this size (in bytes)
+         * Default: 16MB
+         */
+        private long maxSegmentBytes = 16L * 1024 * 1024;
+
+        /**
+         * Total size cap of sealed segments; oldest segments are deleted beyond it (in bytes)
+         * Default: 1GB
+         */
+        private long maxTotalBytes = 1024L * 1024 * 1024;
+
+        /**
+         * Gzip segments when they are sealed
+         * Default: true
+         */
+        private boolean compress = true;
+
+        /**
+         * Replay sealed segments automatically once the database is reachable
+         * Default: true
+         */
+        private boolean autoReplay = true;
+
+        /**
+         * Interval between automatic replay attempts (in milliseconds)
+         * Default: 60000ms
+         */
+        private long replayIntervalMs = 60000;
+
+        /**
+         * Number of dead letters re-inserted per bulk statement
+         * Default: 500
+         */
+        private int replayBatchSize = 500;
+    }
+
+    @Data
+    public static class Partition {
+        /**
+         * Create/convert weighing_logs as a range-partitioned table and maintain its partitions
+         * Default: true
+         */
+        private boolean enabled = true;
+
+        /**
+         * Range of one partition: DAILY or MONTHLY (UTC boundaries)
+         * Default: DAILY
+         */
+        private PartitionInterval interval = PartitionInterval.DAILY;
+
+        /**
+         * Number of future partitions created ahead of the current one
+         * Default: 7
+         */
+        private int premake = 7;
+
+        /**
+         * Partitions whose whole range is older than this many days are removed (0 = keep forever)
+         * Default: 0
+         */
+        private int retentionDays = 0;
+
+        /**
+         * What happens to expired partitions: DROP or DETACH (kept as standalone tables)
+         * Default: DROP
+         */
+        private RetentionAction retentionAction = RetentionAction.DROP;
+
+        /**
+         * Interval between partition maintenance runs (in milliseconds)
+         * Default: 3600000ms (1 hour)
+         */
+        private long maintenanceIntervalMs = 3600000;
+    }
+
+    public enum PartitionInterval {
+        DAILY,
+        MONTHLY
+    }
+
+    public enum RetentionAction {
+        DROP,
+        DETACH
+    }
+
+    @Data
+    public static class Values {
+        /**
+         * Which value columns weighing_logs rows are written with:
+         * LEGACY (jsonb data_1..5 only), DUAL (jsonb + typed columns, migration period)
+         * or TYPED (typed columns; data_x only keeps non-numeric values). Reports read the typed columns in TYPED mode
+         * Default: DUAL
+         */
+        private ValueStorageMode mode = ValueStorageMode.DUAL;
+
+        /**
+         * Fill typed columns of rows written before dual-write (valid_mask IS NULL) in the background
+         * Default: true
+         */
+        private boolean backfillEnabled = true;
+
+        /**
+         * created_at range updated by one backfill step (in minutes)
+         * Default: 60
+         */
+        private int backfillWindowMinutes = 60;
+
+        /**
+         * Delay between backfill steps (in milliseconds)
+         * Default: 1000ms
+         */
+        private long backfillIntervalMs = 1000;
+    }
+
+    public enum ValueStorageMode {
+        LEGACY,
+        DUAL,
+        TYPED
+    }
+
+    @Data
+    public static class Rollup {
+        /**
+         * Maintain weighing_logs_1m / weighing_logs_1h and let reports read them
+         * Default: true
+         */
+        private boolean enabled = true;
+
+        /**
+         * Interval between rollup runs (in milliseconds)
+         * Default: 60000ms
+         */
+        private long intervalMs = 60000;
+
+        /**
+         * A minute is rolled up only after this delay, so late raw rows are included (in seconds)
+         * Default: 120
+         */
+        private int lagSeconds = 120;
+
+        /**
+         * Maximum time range rolled up per tier in one run (catch-up step, in minutes, at least 1;
+         * the hour tier still advances one full hour per run)
+         * Kept small so one run stays short on the shared scheduler thread; a backlog catches up over several runs
+         * Default: 60
+         */
+        private int maxRangeMinutes = 60;
+
+        /**
+         * 1-minute rollups older than this many days are deleted (0 = keep forever)
+         * Default: 90
+         */
+        private int minuteRetentionDays = 90;
+
+        /**
+         * 1-hour rollups older than this many days are deleted (0 = keep forever)
+         * Default: 0
+         */
+        private int hourRetentionDays = 0;
+    }
+
+    @Data
+    public static class IngestRollup {
+        /**
+         * Accumulate persisted events into scale_daily_rollups and serve WEEK/MONTH/YEAR
+         * reports from them (the nightly daily aggregation scan is skipped)
+         * Default: true
+         */
+        private boolean enabled = true;
+
+        /**
+         * Interval between upserts of the in-memory accumulators (in milliseconds)
+         * Default: 5000ms
+         */
+        private long flushIntervalMs = 5000;
+
+        /**
+         * Days recomputed concurrently by ReportService.backfillDailyData (one statement per day)
+         * Default: 4
+         */
+        private int backfillParallelism = 4;
+    }
+
+    @Data
+    public static class Archive {
+        /**
+         * Export expired partitions to the archive before they are dropped/detached and let reports read archived ranges
+         * Default: false
+         */
+        private boolean enabled = false;
+
+        /**
+         * Archive root directory (one file per scale per month: {scaleId}/{yyyy-MM}.wla)
+         * Default: archive
+         */
+        private String directory = "archive";
+
+        /**
+         * Rows fetched per round trip while exporting a partition
+         * Default: 10000
+         */
+        private int fetchSize = 10000;
+
+        /**
+         * Maximum rows encoded into one block (bounds memory while exporting and reading)
+         * Default: 100000
+         */
+        private int maxRowsPerBlock = 100000;
     }
 }
@@ -0,0 +1,20 @@
+package org.facenet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for report generation
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "report")
+public class ReportProperties {
+
+    /**
+     * Rows fetched per round trip by the cursor of streamed reports (/reports/stream)
+     * Default: 1000
+     */
+    private int streamFetchSize = 1000;
+}
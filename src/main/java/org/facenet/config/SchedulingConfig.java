@@ -0,0 +1,43 @@
+package org.facenet.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Scheduler riêng cho các job @Scheduled
+ * STOMP broker đã đăng ký messageBrokerTaskScheduler (TaskScheduler duy nhất), nên nếu không có bean "taskScheduler"
+ * thì Boot không tạo scheduler mặc định và mọi job @Scheduled (broadcast flush, SSE, rollup, retention, replay ...)
+ * chạy chung thread MessageBroker-* với heartbeat của broker
+ *
+ * - taskScheduler: job bảo trì / DB (rollup, retention, partition, replay dead letter, báo cáo ngày ...)
+ * - realtimeTaskScheduler: các flush realtime chu kỳ ~50-100ms (broadcast STOMP/SSE/binary, tuned subscription,
+ *   location snapshot), khai báo bằng @Scheduled(scheduler = REALTIME_SCHEDULER) để không phải xếp hàng
+ *   sau job DB dài đang chiếm hết thread của taskScheduler
+ */
+@Configuration
+public class SchedulingConfig {
+
+    public static final String REALTIME_SCHEDULER = "realtimeTaskScheduler";
+
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${scheduler.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, poolSize));
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+
+    @Bean(name = REALTIME_SCHEDULER)
+    public ThreadPoolTaskScheduler realtimeTaskScheduler(@Value("${scheduler.realtime-pool-size:2}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, poolSize));
+        scheduler.setThreadNamePrefix("realtime-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+}
@@ -113,6 +113,9 @@ public class SecurityConfig {
 
                         // WebSocket (cho phép cả endpoint và SockJS paths)
                         .requestMatchers("/ws/**", "/ws-scalehub/**", "/api/v1/ws-scalehub/**").permitAll()
+
+                        // WebSocket binary (xác thực bằng lệnh AUTH sau khi kết nối)
+                        .requestMatchers("/ws-binary", "/api/v1/ws-binary").permitAll()
                         
                         // Test endpoints (development only)
                         .requestMatchers("/test/**", "/api/v1/test/**").permitAll()
@@ -0,0 +1,101 @@
+package org.facenet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the STOMP message broker behind /ws-scalehub
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "websocket.broker")
+public class WebSocketBrokerProperties {
+
+    /**
+     * Broker mode: SIMPLE (in-memory, single node) or RELAY (external STOMP broker, multi node)
+     * Default: SIMPLE
+     */
+    private Mode mode = Mode.SIMPLE;
+
+    /**
+     * Thread pool of clientInboundChannel (frames from clients: CONNECT, SUBSCRIBE, ...)
+     */
+    private ChannelPool inbound = new ChannelPool();
+
+    /**
+     * Thread pool of clientOutboundChannel (fan-out of MESSAGE frames to sessions)
+     */
+    private ChannelPool outbound = new ChannelPool();
+
+    /**
+     * Maximum time a send to one session may block before the session is closed (in milliseconds)
+     * Default: 10000ms
+     */
+    private int sendTimeLimitMs = 10000;
+
+    /**
+     * Maximum bytes buffered for one slow session before it is closed
+     * Default: 512KB
+     */
+    private int sendBufferSizeLimit = 512 * 1024;
+
+    /**
+     * Maximum size of an inbound STOMP message
+     * Default: 64KB
+     */
+    private int messageSizeLimit = 64 * 1024;
+
+    /**
+     * External broker settings (used when mode = RELAY)
+     */
+    private Relay relay = new Relay();
+
+    public enum Mode {
+        SIMPLE,
+        RELAY
+    }
+
+    @Data
+    public static class ChannelPool {
+        /**
+         * Core number of threads
+         * Default: 2 x available processors
+         */
+        private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * Maximum number of threads (only grows when the queue is full)
+         * Default: 2 x available processors
+         */
+        private int maxPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * Capacity of the task queue in front of the pool
+         * Default: 10000
+         */
+        private int queueCapacity = 10000;
+    }
+
+    @Data
+    public static class Relay {
+        private String host = "localhost";
+        private int port = 61613;
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+
+        /**
+         * Virtual host sent in the STOMP CONNECT "host" header (empty = broker default)
+         */
+        private String virtualHost;
+
+        /**
+         * Heartbeat intervals of the shared system connection (in milliseconds)
+         * Default: 10000ms
+         */
+        private long systemHeartbeatSendIntervalMs = 10000;
+        private long systemHeartbeatReceiveIntervalMs = 10000;
+    }
+}
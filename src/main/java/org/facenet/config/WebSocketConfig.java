@@ -1,10 +1,17 @@
 package org.facenet.config;
 
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.service.scale.broadcast.subscription.TunedSubscriptionInterceptor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * WebSocket configuration for real-time data streaming
@@ -13,19 +20,74 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
  * - Sử dụng STOMP protocol để broadcast dữ liệu cân
  * - Client subscribe vào /topic/scales (toàn bộ) hoặc /topic/scale/{scaleId} (riêng lẻ)
  * - Endpoint: /ws-scalehub với SockJS fallback
+ * - SUBSCRIBE /topic/scale/{scaleId} có thể kèm header x-max-rate, x-fields, x-delta
+ *   (xem TunedSubscriptionInterceptor)
+ * - Broker chọn theo websocket.broker.mode:
+ *   SIMPLE = in-memory broker trên 1 node, RELAY = relay sang broker STOMP ngoài (ActiveMQ/RabbitMQ)
+ *   để fan-out trên nhiều node
  */
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final TunedSubscriptionInterceptor tunedSubscriptionInterceptor;
+    private final WebSocketBrokerProperties brokerProperties;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Client sẽ subscribe vào các topic bắt đầu bằng /topic
-        config.enableSimpleBroker("/topic");
+        if (brokerProperties.getMode() == WebSocketBrokerProperties.Mode.RELAY) {
+            WebSocketBrokerProperties.Relay relay = brokerProperties.getRelay();
+            StompBrokerRelayRegistration registration = config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relay.getHost())
+                    .setRelayPort(relay.getPort())
+                    .setClientLogin(relay.getClientLogin())
+                    .setClientPasscode(relay.getClientPasscode())
+                    .setSystemLogin(relay.getSystemLogin())
+                    .setSystemPasscode(relay.getSystemPasscode())
+                    .setSystemHeartbeatSendInterval(relay.getSystemHeartbeatSendIntervalMs())
+                    .setSystemHeartbeatReceiveInterval(relay.getSystemHeartbeatReceiveIntervalMs());
+            if (StringUtils.hasText(relay.getVirtualHost())) {
+                registration.setVirtualHost(relay.getVirtualHost());
+            }
+            log.info("[BROADCAST] Using STOMP broker relay at {}:{}", relay.getHost(), relay.getPort());
+        } else {
+            config.enableSimpleBroker("/topic");
+        }
         // Prefix cho các tin nhắn từ client gửi lên server (nếu có)
         config.setApplicationDestinationPrefixes("/app");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        WebSocketBrokerProperties.ChannelPool pool = brokerProperties.getInbound();
+        registration.taskExecutor()
+                .corePoolSize(pool.getCorePoolSize())
+                .maxPoolSize(pool.getMaxPoolSize())
+                .queueCapacity(pool.getQueueCapacity());
+        // Xử lý subscription có tuỳ chọn (throttle / chọn field / delta)
+        registration.interceptors(tunedSubscriptionInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        WebSocketBrokerProperties.ChannelPool pool = brokerProperties.getOutbound();
+        registration.taskExecutor()
+                .corePoolSize(pool.getCorePoolSize())
+                .maxPoolSize(pool.getMaxPoolSize())
+                .queueCapacity(pool.getQueueCapacity());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Session chậm bị đóng khi vượt giới hạn thay vì làm phình bộ nhớ server
+        registration.setSendTimeLimit(brokerProperties.getSendTimeLimitMs())
+                .setSendBufferSizeLimit(brokerProperties.getSendBufferSizeLimit())
+                .setMessageSizeLimit(brokerProperties.getMessageSizeLimit());
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Endpoint tại root (backward compatible)
@@ -6,6 +6,7 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 
 /**
  * Test controller để test WebSocket broadcasting
@@ -33,9 +34,9 @@ public class TestController {
                 .data5("4")
                 .build();
 
-        // Broadcast qua WebSocket
-        messagingTemplate.convertAndSend("/topic/scales", testEvent);
-        messagingTemplate.convertAndSend("/topic/scale/" + scaleId, testEvent);
+        // Broadcast qua WebSocket (cùng định dạng frame theo lô với WebSocketBroadcastAggregator)
+        messagingTemplate.convertAndSend("/topic/scales", List.of(testEvent));
+        messagingTemplate.convertAndSend("/topic/scale/" + scaleId, List.of(testEvent));
 
         return String.format("✅ Broadcasted test message for scale %d with weight %s", scaleId, weight);
     }
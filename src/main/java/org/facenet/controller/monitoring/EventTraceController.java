@@ -0,0 +1,122 @@
+package org.facenet.controller.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.facenet.common.response.ApiResponse;
+import org.facenet.service.scale.core.trace.EventTraceRing;
+import org.facenet.service.scale.core.trace.EventTracer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller for runtime control of Core Processor event tracing
+ */
+@RestController
+@RequestMapping("/monitoring/trace")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class EventTraceController {
+
+    private final EventTracer eventTracer;
+
+    /**
+     * Get current trace configuration
+     */
+    @GetMapping
+    public ApiResponse<Map<String, Object>> getTraceStatus() {
+        Map<String, Object> status = new HashMap<>();
+        EventTraceRing ring = eventTracer.getRing();
+
+        status.put("debugScaleIds", eventTracer.getDebugScaleIds());
+        status.put("sampleIntervalMs", eventTracer.getSampleIntervalMs());
+        status.put("maxLinesPerSecond", eventTracer.getMaxLinesPerSecond());
+        status.put("ringEnabled", ring != null);
+        status.put("ringCapacity", ring != null ? ring.getCapacity() : 0);
+        status.put("ringRecordedCount", ring != null ? ring.getRecordedCount() : 0L);
+
+        return ApiResponse.success(status);
+    }
+
+    /**
+     * Enable per-event trace for one scale
+     */
+    @PutMapping("/scales/{scaleId}")
+    public ApiResponse<String> enableScaleDebug(@PathVariable("scaleId") Long scaleId) {
+        eventTracer.enableScaleDebug(scaleId);
+        return ApiResponse.success("Debug trace enabled for scale " + scaleId);
+    }
+
+    /**
+     * Disable per-event trace for one scale
+     */
+    @DeleteMapping("/scales/{scaleId}")
+    public ApiResponse<String> disableScaleDebug(@PathVariable("scaleId") Long scaleId) {
+        eventTracer.disableScaleDebug(scaleId);
+        return ApiResponse.success("Debug trace disabled for scale " + scaleId);
+    }
+
+    /**
+     * Update sampling interval (0 = disabled) and rate limit
+     */
+    @PutMapping("/sampling")
+    public ApiResponse<String> updateSampling(
+            @RequestParam("intervalMs") long intervalMs,
+            @RequestParam(value = "maxLinesPerSecond", required = false) Integer maxLinesPerSecond) {
+        eventTracer.setSampleIntervalMs(intervalMs);
+        if (maxLinesPerSecond != null) {
+            eventTracer.setMaxLinesPerSecond(maxLinesPerSecond);
+        }
+        return ApiResponse.success("Sampling updated");
+    }
+
+    /**
+     * Enable binary ring-buffer trace
+     */
+    @PutMapping("/ring")
+    public ApiResponse<String> enableRing(@RequestParam(value = "capacity", defaultValue = "8192") int capacity) {
+        eventTracer.enableRing(capacity);
+        return ApiResponse.success("Ring buffer enabled with capacity " + capacity);
+    }
+
+    /**
+     * Disable binary ring-buffer trace
+     */
+    @DeleteMapping("/ring")
+    public ApiResponse<String> disableRing() {
+        eventTracer.disableRing();
+        return ApiResponse.success("Ring buffer disabled");
+    }
+
+    /**
+     * Dump ring buffer as decoded JSON records
+     */
+    @GetMapping("/ring/dump")
+    public ApiResponse<List<Map<String, Object>>> dumpRing() {
+        EventTraceRing ring = eventTracer.getRing();
+        if (ring == null) {
+            return ApiResponse.error("Ring buffer is disabled");
+        }
+        return ApiResponse.success(EventTraceRing.decode(ring.snapshot()));
+    }
+
+    /**
+     * Dump ring buffer as raw binary records (fixed-size, see EventTraceRing layout)
+     */
+    @GetMapping("/ring/dump.bin")
+    public ResponseEntity<byte[]> dumpRingBinary() {
+        EventTraceRing ring = eventTracer.getRing();
+        if (ring == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"event-trace.bin\"")
+                .body(ring.snapshot());
+    }
+}
@@ -2,7 +2,10 @@ package org.facenet.controller.monitoring;
 
 import lombok.RequiredArgsConstructor;
 import org.facenet.common.response.ApiResponse;
+import org.facenet.service.scale.persistence.DeadLetterReplayService;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -17,6 +20,8 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PersistenceMonitoringController {
 
+    private final DeadLetterReplayService deadLetterReplayService;
+
     /**
      * Get persistence metrics
      */
@@ -50,4 +55,22 @@ public class PersistenceMonitoringController {
         
         return ApiResponse.success(health);
     }
+
+    /**
+     * Get dead-letter log status and progress of the last replay
+     */
+    @GetMapping("/dead-letters")
+    public ApiResponse<Map<String, Object>> getDeadLetterStatus() {
+        return ApiResponse.success(deadLetterReplayService.getStatus());
+    }
+
+    /**
+     * Trigger dead-letter replay in the background (no-op if a replay is already running)
+     */
+    @PostMapping("/dead-letters/replay")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Map<String, Object>> replayDeadLetters() {
+        deadLetterReplayService.replayAsync();
+        return ApiResponse.success(deadLetterReplayService.getStatus(), "Dead-letter replay triggered");
+    }
 }
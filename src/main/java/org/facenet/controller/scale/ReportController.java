@@ -9,9 +9,17 @@ import org.facenet.common.response.ApiResponse;
 import org.facenet.dto.scale.ReportRequestDto;
 import org.facenet.dto.scale.ReportResponseDto;
 import org.facenet.service.scale.report.ReportService;
+import org.facenet.service.scale.report.ReportStreamFormat;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
 
 /**
  * REST Controller for report and statistics endpoints
@@ -45,6 +53,32 @@ public class ReportController {
         }
     }
 
+    /**
+     * Stream report data points as NDJSON or CSV, written while the rows are read
+     */
+    @PostMapping("/stream")
+    @Operation(summary = "Stream report", description = "Stream report data points as NDJSON or CSV for large ranges")
+    public ResponseEntity<StreamingResponseBody> streamReport(
+            @Valid @RequestBody ReportRequestDto request,
+            @RequestParam(defaultValue = "NDJSON") ReportStreamFormat format) {
+
+        log.info("[REPORT-API] Streaming report ({}): {}", format, request);
+
+        StreamingResponseBody body = out -> {
+            try {
+                reportService.streamReport(request, format, out);
+            } catch (Exception e) {
+                log.error("[REPORT-API] Error streaming report: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("report." + format.extension()).build().toString())
+                .body(body);
+    }
+
     /**
      * Manually trigger daily aggregation (for testing/admin)
      */
@@ -64,4 +98,25 @@ public class ReportController {
                     .body(ApiResponse.error("Failed to aggregate data: " + e.getMessage()));
         }
     }
+
+    /**
+     * Recompute daily rollups over a date range (for backfill/admin)
+     */
+    @PostMapping("/aggregate-daily/backfill")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @Operation(summary = "Backfill daily aggregation", description = "Recompute daily rollups for every day in [from, to]")
+    public ResponseEntity<ApiResponse<Integer>> backfillDailyData(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        log.info("[REPORT-API] Backfilling daily aggregation: {} -> {}", from, to);
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success(reportService.backfillDailyData(from, to)));
+        } catch (Exception e) {
+            log.error("[REPORT-API] Error during daily backfill: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Failed to backfill data: " + e.getMessage()));
+        }
+    }
 }
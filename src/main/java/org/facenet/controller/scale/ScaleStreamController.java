@@ -0,0 +1,61 @@
+package org.facenet.controller.scale;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.facenet.service.scale.broadcast.location.LocationScaleIndex;
+import org.facenet.service.scale.broadcast.sse.SseMeasurementBroadcaster;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * REST Controller for Server-Sent Events measurement stream
+ */
+@RestController
+@RequestMapping("/scales/stream")
+@RequiredArgsConstructor
+@Tag(name = "Scale Stream", description = "Server-Sent Events stream of realtime measurements")
+public class ScaleStreamController {
+
+    private final SseMeasurementBroadcaster sseMeasurementBroadcaster;
+    private final LocationScaleIndex locationScaleIndex;
+
+    /**
+     * Stream measurements, optionally filtered by scale IDs and/or location subtree
+     * (the location subtree is re-resolved from LocationScaleIndex on every window, so scales moved
+     * between locations are picked up after the next index refresh without reconnecting)
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream realtime measurements (SSE)",
+            description = "Event 'measurements' carries a JSON array; reconnect with Last-Event-ID to resume from the replay buffer")
+    public SseEmitter stream(
+            @RequestParam(value = "scaleIds", required = false) List<Long> scaleIds,
+            @RequestParam(value = "locationId", required = false) Long locationId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return sseMeasurementBroadcaster.connect(buildFilter(scaleIds, locationId), lastEventId);
+    }
+
+    /**
+     * Bộ lọc scaleId: khớp danh sách scaleIds HOẶC thuộc cây con của locationId, null = không lọc
+     */
+    LongPredicate buildFilter(List<Long> scaleIds, Long locationId) {
+        Set<Long> ids = scaleIds != null && !scaleIds.isEmpty() ? new HashSet<>(scaleIds) : null;
+        if (locationId == null) {
+            return ids != null ? ids::contains : null;
+        }
+        LongPredicate underLocation = scaleId ->
+                Arrays.binarySearch(locationScaleIndex.scaleIdsUnder(locationId), scaleId) >= 0;
+        return ids != null ? underLocation.or(ids::contains) : underLocation;
+    }
+}
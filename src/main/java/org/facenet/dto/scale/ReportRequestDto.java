@@ -2,6 +2,7 @@ package org.facenet.dto.scale;
 
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,6 +32,7 @@ public class ReportRequestDto {
      * Data field to aggregate (data_1, data_2, data_3, data_4, data_5)
      */
     @NotNull(message = "Data field is required")
+    @Pattern(regexp = "data_[1-5]", message = "Data field must be one of data_1 .. data_5")
     private String dataField;
 
     /**
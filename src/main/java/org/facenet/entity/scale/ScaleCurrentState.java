@@ -45,6 +45,27 @@ public class ScaleCurrentState extends Auditable {
     @Column(name = "data_5", columnDefinition = "jsonb")
     private String data5;
 
+    /**
+     * Giá trị số của data_1..data_5 (NULL nếu slot không phải số), bit i của valid_mask = 1 nếu value_(i+1) hợp lệ
+     */
+    @Column(name = "value_1")
+    private Double value1;
+
+    @Column(name = "value_2")
+    private Double value2;
+
+    @Column(name = "value_3")
+    private Double value3;
+
+    @Column(name = "value_4")
+    private Double value4;
+
+    @Column(name = "value_5")
+    private Double value5;
+
+    @Column(name = "valid_mask")
+    private Short validMask;
+
     @Column(name = "status", length = 20)
     private String status;
 
@@ -17,9 +17,7 @@ import java.util.Map;
  * Note: Does not extend Auditable because createdAt is part of the primary key
  */
 @Entity
-@Table(name = "weighing_logs", indexes = {
-    @Index(name = "idx_logs_scale_time", columnList = "scale_id, created_at")
-})
+@Table(name = "weighing_logs")
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -59,6 +57,27 @@ public class WeighingLog {
     @Column(name = "data_5", columnDefinition = "jsonb")
     private String data5;
 
+    /**
+     * Giá trị số của data_1..data_5 (NULL nếu slot không phải số), bit i của valid_mask = 1 nếu value_(i+1) hợp lệ
+     */
+    @Column(name = "value_1")
+    private Double value1;
+
+    @Column(name = "value_2")
+    private Double value2;
+
+    @Column(name = "value_3")
+    private Double value3;
+
+    @Column(name = "value_4")
+    private Double value4;
+
+    @Column(name = "value_5")
+    private Double value5;
+
+    @Column(name = "valid_mask")
+    private Short validMask;
+
     // Audit fields (manually managed since this entity doesn't extend Auditable)
     @Column(name = "updated_at")
     private OffsetDateTime updatedAt;
@@ -1,45 +1,460 @@
 package org.facenet.event;
 
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Event chứa dữ liệu đo từ cân - "Bao thư" chạy xuyên suốt từ Engine -> Queue -> Core
- * Theo thiết kế Module 3, tất cả dữ liệu thô được giữ dạng String để giữ nguyên những gì Engine "thấy"
+ *
+ * Dạng lưu trữ compact (không tạo String/ZonedDateTime cho mỗi lần poll):
+ * - scaleId: long nguyên thủy
+ * - epochNanos: thời điểm đọc dạng epoch nanoseconds
+ * - values[5] + validMask: giá trị số của data_1 -> data_5, bit i = 1 nếu slot i có giá trị số
+ * - status: enum MeasurementStatus
+ *
+ * Các getter cũ (getData1(), getLastTime(), getStatus(), ...) vẫn giữ nguyên và trả về
+ * view String được tạo lazy (chỉ khi consumer cũ thực sự gọi), nên JSON gửi qua WebSocket
+ * và dữ liệu persistence giữ nguyên format như trước.
+ * Slot không phải số (string, boolean, mảng thanh ghi) vẫn giữ nguyên String gốc từ Engine.
+ *
+ * Vòng đời (khi lấy từ MeasurementEventPool):
+ * - acquire() trả về event với refCount = 1 (thuộc về người tạo - Engine)
+ * - Mỗi consumer giữ event lâu hơn lời gọi hiện tại phải retain() trước và release() khi xong
+ * - Khi refCount về 0, event được reset và trả lại pool - KHÔNG được dùng event sau release()
+ * Event tạo bằng builder/new (không từ pool) chỉ đếm tham chiếu, không bị tái sử dụng.
  */
-@Data
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
+@JsonPropertyOrder({"scaleId", "lastTime", "data1", "data2", "data3", "data4", "data5", "status"})
 public class MeasurementEvent {
 
+    public static final int DATA_SLOTS = 5;
+
+    private static final AtomicIntegerFieldUpdater<MeasurementEvent> REF_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(MeasurementEvent.class, "refCount");
+
+    private long scaleId;
+    private long epochNanos;
+    private ZoneId zone = ZoneId.systemDefault();
+    private final double[] values = new double[DATA_SLOTS];
+    private int validMask;
+    private int integralMask;
+    private MeasurementStatus status = MeasurementStatus.UNKNOWN;
+
+    /**
+     * String gốc (slot không phải số / set qua API cũ) hoặc view đã format (cache lazy)
+     */
+    private final String[] dataText = new String[DATA_SLOTS];
+    private String statusText;
+    private ZonedDateTime lastTimeView;
+
+    /**
+     * Offset của record trong MeasurementJournal (-1 nếu event không đi qua journal)
+     */
+    private long journalOffset = -1L;
+
+    /**
+     * created_at (epoch microseconds) được gán ở lần ghi weighing_logs đầu tiên, -1 nếu chưa gán
+     * Giữ nguyên khi retry và khi ghi dead letter để (scale_id, created_at) không đổi
+     */
+    private long createdAtMicros = -1L;
+
+    private volatile int refCount = 1;
+    private MeasurementEventPool pool;
+
+    public MeasurementEvent() {
+    }
+
+    MeasurementEvent(MeasurementEventPool pool) {
+        this.pool = pool;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Thời điểm hiện tại dạng epoch nanoseconds (độ chính xác millisecond, không tạo object)
+     */
+    public static long currentEpochNanos() {
+        return System.currentTimeMillis() * 1_000_000L;
+    }
+
+    // ==================== Reference counting ====================
+
+    /**
+     * Tăng số tham chiếu - gọi trước khi giữ event vượt quá lời gọi hiện tại
+     */
+    public MeasurementEvent retain() {
+        int previous = REF_COUNT.getAndIncrement(this);
+        if (previous <= 0) {
+            REF_COUNT.getAndDecrement(this);
+            throw new IllegalStateException("retain() on released MeasurementEvent for scale " + scaleId);
+        }
+        return this;
+    }
+
+    /**
+     * Giảm số tham chiếu, trả event về pool khi không còn ai giữ
+     *
+     * @return true nếu đây là lần release cuối cùng
+     */
+    public boolean release() {
+        int remaining = REF_COUNT.decrementAndGet(this);
+        if (remaining > 0) {
+            return false;
+        }
+        if (remaining < 0) {
+            REF_COUNT.incrementAndGet(this);
+            throw new IllegalStateException("release() on already released MeasurementEvent for scale " + scaleId);
+        }
+        if (pool != null) {
+            pool.recycle(this);
+        }
+        return true;
+    }
+
+    public int refCount() {
+        return refCount;
+    }
+
+    /**
+     * Đưa event về trạng thái ban đầu (refCount = 1) để tái sử dụng
+     */
+    void reset() {
+        scaleId = 0L;
+        epochNanos = 0L;
+        zone = ZoneId.systemDefault();
+        validMask = 0;
+        integralMask = 0;
+        status = MeasurementStatus.UNKNOWN;
+        statusText = null;
+        lastTimeView = null;
+        Arrays.fill(dataText, null);
+        journalOffset = -1L;
+        createdAtMicros = -1L;
+        refCount = 1;
+    }
+
+    // ==================== Compact accessors ====================
+
+    public long scaleIdAsLong() {
+        return scaleId;
+    }
+
+    public long epochNanos() {
+        return epochNanos;
+    }
+
+    /**
+     * Giá trị số của slot (0-4), NaN nếu slot không có giá trị số
+     */
+    public double value(int slot) {
+        return (validMask & (1 << slot)) != 0 ? values[slot] : Double.NaN;
+    }
+
+    public boolean isValid(int slot) {
+        return (validMask & (1 << slot)) != 0;
+    }
+
+    public int validMask() {
+        return validMask;
+    }
+
+    /**
+     * Slot có phải số nguyên không (format view không có phần thập phân)
+     */
+    public boolean isIntegral(int slot) {
+        return (integralMask & (1 << slot)) != 0;
+    }
+
+    public MeasurementStatus measurementStatus() {
+        return status;
+    }
+
+    public void setEpochNanos(long epochNanos) {
+        this.epochNanos = epochNanos;
+        this.lastTimeView = null;
+    }
+
+    /**
+     * Ghi giá trị số vào slot (không tạo String)
+     * NaN/Infinity được coi là không có giá trị
+     */
+    public void setValue(int slot, double value, boolean integral) {
+        int bit = 1 << slot;
+        values[slot] = value;
+        dataText[slot] = null;
+        if (!Double.isFinite(value)) {
+            validMask &= ~bit;
+        } else {
+            validMask |= bit;
+        }
+        if (integral) {
+            integralMask |= bit;
+        } else {
+            integralMask &= ~bit;
+        }
+    }
+
     /**
-     * ID của cân (scale_id)
+     * Ghi giá trị dạng String gốc vào slot (giữ nguyên format), đồng thời parse giá trị số nếu có thể
      */
-    private Long scaleId;
+    public void setData(int slot, String raw) {
+        int bit = 1 << slot;
+        double parsed = parseOrNaN(raw);
+        values[slot] = parsed;
+        dataText[slot] = raw;
+        integralMask &= ~bit;
+        if (!Double.isFinite(parsed)) {
+            validMask &= ~bit;
+        } else {
+            validMask |= bit;
+        }
+    }
 
     /**
-     * Thời điểm đọc được từ thiết bị (không phải thời điểm insert DB)
+     * View String của slot (0-4): String gốc nếu có, ngược lại format từ giá trị số
      */
-    private ZonedDateTime lastTime;
+    public String getData(int slot) {
+        String text = dataText[slot];
+        if (text == null && (validMask & (1 << slot)) != 0) {
+            text = formatValue(values[slot], (integralMask & (1 << slot)) != 0);
+            dataText[slot] = text;
+        }
+        return text;
+    }
 
     /**
-     * 5 trường dữ liệu thô đọc được từ thiết bị
-     * Luôn để String để giữ nguyên format gốc từ Engine (có thể là "0001", "1.0", v.v.)
-     * Việc convert sang Double/Integer sẽ làm ở Core Processing
+     * String của slot nếu đã có sẵn (String gốc hoặc view đã format), null nếu chưa có - không format
      */
-    private String data1;
-    private String data2;
-    private String data3;
-    private String data4;
-    private String data5;
+    public String cachedData(int slot) {
+        return dataText[slot];
+    }
+
+    public long journalOffset() {
+        return journalOffset;
+    }
+
+    public void setJournalOffset(long journalOffset) {
+        this.journalOffset = journalOffset;
+    }
+
+    public long createdAtMicros() {
+        return createdAtMicros;
+    }
+
+    public void setCreatedAtMicros(long createdAtMicros) {
+        this.createdAtMicros = createdAtMicros;
+    }
+
+    /**
+     * Copy toàn bộ giá trị (compact + view String đã có) từ event khác, không đổi refCount/pool
+     * Dùng cho các store giữ giá trị mới nhất mà không retain event gốc
+     */
+    public void copyFrom(MeasurementEvent other) {
+        scaleId = other.scaleId;
+        epochNanos = other.epochNanos;
+        zone = other.zone;
+        System.arraycopy(other.values, 0, values, 0, DATA_SLOTS);
+        System.arraycopy(other.dataText, 0, dataText, 0, DATA_SLOTS);
+        validMask = other.validMask;
+        integralMask = other.integralMask;
+        status = other.status;
+        statusText = other.statusText;
+        lastTimeView = other.lastTimeView;
+    }
+
+    public void setMeasurementStatus(MeasurementStatus status) {
+        this.status = status != null ? status : MeasurementStatus.UNKNOWN;
+        this.statusText = null;
+    }
+
+    // ==================== Legacy String views ====================
+
+    public Long getScaleId() {
+        return scaleId;
+    }
+
+    public void setScaleId(Long scaleId) {
+        this.scaleId = scaleId != null ? scaleId : 0L;
+    }
+
+    /**
+     * View ZonedDateTime của epochNanos, null nếu chưa được set
+     */
+    public ZonedDateTime getLastTime() {
+        ZonedDateTime view = lastTimeView;
+        if (view == null && epochNanos != 0L) {
+            view = ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), zone);
+            lastTimeView = view;
+        }
+        return view;
+    }
+
+    public void setLastTime(ZonedDateTime lastTime) {
+        if (lastTime == null) {
+            setEpochNanos(0L);
+            return;
+        }
+        this.epochNanos = lastTime.toEpochSecond() * 1_000_000_000L + lastTime.getNano();
+        this.zone = lastTime.getZone();
+        this.lastTimeView = lastTime;
+    }
+
+    public String getData1() {
+        return getData(0);
+    }
+
+    public void setData1(String data1) {
+        setData(0, data1);
+    }
+
+    public String getData2() {
+        return getData(1);
+    }
+
+    public void setData2(String data2) {
+        setData(1, data2);
+    }
+
+    public String getData3() {
+        return getData(2);
+    }
+
+    public void setData3(String data3) {
+        setData(2, data3);
+    }
+
+    public String getData4() {
+        return getData(3);
+    }
+
+    public void setData4(String data4) {
+        setData(3, data4);
+    }
+
+    public String getData5() {
+        return getData(4);
+    }
+
+    public void setData5(String data5) {
+        setData(4, data5);
+    }
+
+    public String getStatus() {
+        return statusText != null ? statusText : status.name();
+    }
+
+    /**
+     * Giữ nguyên String gốc nếu không trùng khớp chính xác tên enum (vd: "online")
+     */
+    public void setStatus(String status) {
+        this.status = MeasurementStatus.parse(status);
+        this.statusText = this.status.name().equals(status) ? null : status;
+    }
+
+    @Override
+    public String toString() {
+        return "MeasurementEvent(scaleId=" + scaleId
+                + ", lastTime=" + getLastTime()
+                + ", data1=" + getData1()
+                + ", data2=" + getData2()
+                + ", data3=" + getData3()
+                + ", data4=" + getData4()
+                + ", data5=" + getData5()
+                + ", status=" + getStatus() + ")";
+    }
+
+    /**
+     * Format giống ModbusDataConverter: số nguyên không có phần thập phân, số thực 2 chữ số
+     */
+    static String formatValue(double value, boolean integral) {
+        if (integral) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static double parseOrNaN(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(raw);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
 
     /**
-     * Trạng thái thiết bị tại thời điểm đọc (online, offline, error, etc.)
+     * Builder tương thích với Lombok builder cũ, bổ sung các setter compact
      */
-    private String status;
+    public static class Builder {
+        private final MeasurementEvent event = new MeasurementEvent();
+
+        public Builder scaleId(Long scaleId) {
+            event.setScaleId(scaleId);
+            return this;
+        }
+
+        public Builder lastTime(ZonedDateTime lastTime) {
+            event.setLastTime(lastTime);
+            return this;
+        }
+
+        public Builder epochNanos(long epochNanos) {
+            event.setEpochNanos(epochNanos);
+            return this;
+        }
+
+        public Builder data1(String data1) {
+            event.setData(0, data1);
+            return this;
+        }
+
+        public Builder data2(String data2) {
+            event.setData(1, data2);
+            return this;
+        }
+
+        public Builder data3(String data3) {
+            event.setData(2, data3);
+            return this;
+        }
+
+        public Builder data4(String data4) {
+            event.setData(3, data4);
+            return this;
+        }
+
+        public Builder data5(String data5) {
+            event.setData(4, data5);
+            return this;
+        }
+
+        public Builder value(int slot, double value, boolean integral) {
+            event.setValue(slot, value, integral);
+            return this;
+        }
+
+        public Builder status(String status) {
+            event.setStatus(status);
+            return this;
+        }
+
+        public Builder status(MeasurementStatus status) {
+            event.setMeasurementStatus(status);
+            return this;
+        }
+
+        public MeasurementEvent build() {
+            return event;
+        }
+    }
 }
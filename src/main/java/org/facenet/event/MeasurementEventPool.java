@@ -0,0 +1,64 @@
+package org.facenet.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool tái sử dụng MeasurementEvent giữa Engine -> Queue -> Core -> Broadcast/Persistence
+ *
+ * - acquire(): lấy event rỗng (refCount = 1), tạo mới nếu pool đang trống
+ * - Event tự quay về pool khi release() lần cuối (xem MeasurementEvent)
+ * - Pool có giới hạn: khi đầy, event thừa bị bỏ cho GC thu hồi
+ *
+ * Dùng ArrayBlockingQueue (mảng cố định) để offer/poll không cấp phát node mới.
+ */
+public class MeasurementEventPool {
+
+    private final ArrayBlockingQueue<MeasurementEvent> freeList;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+
+    public MeasurementEventPool(int capacity) {
+        this.freeList = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * Lấy 1 event rỗng từ pool (refCount = 1)
+     */
+    public MeasurementEvent acquire() {
+        MeasurementEvent event = freeList.poll();
+        if (event != null) {
+            reused.incrementAndGet();
+            return event;
+        }
+        created.incrementAndGet();
+        return new MeasurementEvent(this);
+    }
+
+    /**
+     * Được gọi từ MeasurementEvent.release() khi refCount về 0
+     */
+    void recycle(MeasurementEvent event) {
+        event.reset();
+        if (freeList.offer(event)) {
+            recycled.incrementAndGet();
+        }
+    }
+
+    public int getAvailable() {
+        return freeList.size();
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public long getRecycledCount() {
+        return recycled.get();
+    }
+}
@@ -0,0 +1,40 @@
+package org.facenet.event;
+
+/**
+ * Trạng thái thiết bị tại thời điểm đọc - dạng enum thay cho String trong MeasurementEvent
+ */
+public enum MeasurementStatus {
+    UNKNOWN,
+    ONLINE,
+    OFFLINE,
+    ERROR,
+    TEST;
+
+    private static final MeasurementStatus[] VALUES = values();
+
+    /**
+     * Parse status String (không phân biệt hoa thường), trả về UNKNOWN nếu không khớp
+     */
+    public static MeasurementStatus parse(String status) {
+        if (status == null) {
+            return UNKNOWN;
+        }
+        for (MeasurementStatus value : VALUES) {
+            if (value.name().equalsIgnoreCase(status)) {
+                return value;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Lấy status từ mã ordinal (dùng cho các định dạng nhị phân)
+     */
+    public static MeasurementStatus fromCode(int code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : UNKNOWN;
+    }
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+}
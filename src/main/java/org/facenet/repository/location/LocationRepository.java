@@ -30,4 +30,10 @@ public interface LocationRepository extends JpaRepository<Location, Long> {
      */
     @Query("SELECT l FROM Location l LEFT JOIN FETCH l.children WHERE l.id = :id")
     Optional<Location> findByIdWithChildren(Long id);
+
+    /**
+     * Lightweight hierarchy projection: [id, parentId] for every location
+     */
+    @Query("SELECT l.id, p.id FROM Location l LEFT JOIN l.parent p")
+    List<Object[]> findAllIdAndParentId();
 }
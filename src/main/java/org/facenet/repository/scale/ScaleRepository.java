@@ -37,4 +37,16 @@ public interface ScaleRepository extends JpaRepository<Scale, Long> {
            "LEFT JOIN FETCH s.config " +
            "WHERE s.isActive = true")
     List<Scale> findAllActiveWithConfig();
+
+    /**
+     * Lightweight projection: [scaleId, locationId] for active scales assigned to a location
+     */
+    @Query("SELECT s.id, s.location.id FROM Scale s WHERE s.isActive = true AND s.location IS NOT NULL")
+    List<Object[]> findActiveIdAndLocationId();
+
+    /**
+     * Lightweight projection: ids of all active scales
+     */
+    @Query("SELECT s.id FROM Scale s WHERE s.isActive = true")
+    List<Long> findActiveIds();
 }
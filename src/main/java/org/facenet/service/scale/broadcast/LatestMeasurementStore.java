@@ -0,0 +1,82 @@
+package org.facenet.service.scale.broadcast;
+
+import org.facenet.event.MeasurementEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store in-memory giá trị đo mới nhất của mỗi cân
+ *
+ * - Copy giá trị từ event (không retain) vào 1 slot cố định cho mỗi cân -> không tạo object mới mỗi event
+ * - JSON của slot được encode lazy và cache đến lần cập nhật tiếp theo, nên snapshot
+ *   định kỳ chỉ serialize lại các cân có thay đổi
+ */
+@Component
+public class LatestMeasurementStore implements MeasurementListener {
+
+    private final MeasurementFrameEncoder frameEncoder;
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    public LatestMeasurementStore(MeasurementFrameEncoder frameEncoder) {
+        this.frameEncoder = frameEncoder;
+    }
+
+    @Override
+    public void onMeasurement(MeasurementEvent event) {
+        slots.computeIfAbsent(event.scaleIdAsLong(), id -> new Slot()).update(event);
+    }
+
+    /**
+     * JSON bytes của giá trị mới nhất (cùng format với từng phần tử trên /topic/scales), null nếu chưa có dữ liệu
+     */
+    public byte[] getEncoded(long scaleId) {
+        Slot slot = slots.get(scaleId);
+        return slot != null ? slot.encoded(frameEncoder) : null;
+    }
+
+    /**
+     * JSON bytes giá trị mới nhất của mọi cân đã có dữ liệu
+     */
+    public List<byte[]> getAllEncoded() {
+        List<byte[]> encoded = new ArrayList<>(slots.size());
+        for (Slot slot : slots.values()) {
+            encoded.add(slot.encoded(frameEncoder));
+        }
+        return encoded;
+    }
+
+    /**
+     * Bản copy (không thuộc pool) của giá trị mới nhất, null nếu chưa có dữ liệu
+     */
+    public MeasurementEvent getLatest(long scaleId) {
+        Slot slot = slots.get(scaleId);
+        return slot != null ? slot.copy() : null;
+    }
+
+    private static final class Slot {
+        private final MeasurementEvent latest = new MeasurementEvent();
+        private byte[] encoded;
+
+        synchronized void update(MeasurementEvent event) {
+            latest.copyFrom(event);
+            encoded = null;
+        }
+
+        synchronized byte[] encoded(MeasurementFrameEncoder frameEncoder) {
+            if (encoded == null) {
+                encoded = frameEncoder.encode(latest);
+            }
+            return encoded;
+        }
+
+        synchronized MeasurementEvent copy() {
+            MeasurementEvent copy = new MeasurementEvent();
+            copy.copyFrom(latest);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.facenet.service.scale.broadcast;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoder JSON cho frame realtime - serialize MỖI event đúng 1 lần
+ *
+ * - encode(): event -> byte[] JSON (dùng chung ObjectMapper với STOMP converter nên format giữ nguyên)
+ * - composeArray(): ghép các byte[] đã encode thành 1 JSON array mà không serialize lại
+ * - composeArrays(): như composeArray nhưng tách thành nhiều array theo giới hạn số event / số byte mỗi frame
+ * - toMessage(): bọc byte[] thành Message STOMP; broker chỉ chia sẻ payload cho từng subscriber
+ */
+@Component
+public class MeasurementFrameEncoder {
+
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    private final ObjectMapper objectMapper;
+
+    public MeasurementFrameEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Serialize 1 event thành JSON bytes
+     */
+    public byte[] encode(MeasurementEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode measurement for scale " + event.getScaleId(), e);
+        }
+    }
+
+    /**
+     * Ghép các JSON object đã encode thành 1 JSON array
+     */
+    public byte[] composeArray(List<byte[]> encodedEvents) {
+        if (encodedEvents.isEmpty()) {
+            return EMPTY_ARRAY;
+        }
+        int length = 1 + encodedEvents.size();
+        for (byte[] encoded : encodedEvents) {
+            length += encoded.length;
+        }
+
+        byte[] frame = new byte[length];
+        int position = 0;
+        frame[position++] = '[';
+        for (int i = 0; i < encodedEvents.size(); i++) {
+            if (i > 0) {
+                frame[position++] = ',';
+            }
+            byte[] encoded = encodedEvents.get(i);
+            System.arraycopy(encoded, 0, frame, position, encoded.length);
+            position += encoded.length;
+        }
+        frame[position] = ']';
+        return frame;
+    }
+
+    /**
+     * Ghép các JSON object đã encode thành các JSON array, mỗi array tối đa maxEvents phần tử và maxBytes byte
+     * (1 event lớn hơn maxBytes vẫn được gửi riêng trong 1 array)
+     */
+    public List<byte[]> composeArrays(List<byte[]> encodedEvents, int maxEvents, int maxBytes) {
+        List<byte[]> frames = new ArrayList<>();
+        int start = 0;
+        int length = 1;
+        for (int i = 0; i < encodedEvents.size(); i++) {
+            // mỗi phần tử kèm 1 byte ',' hoặc ']' (length đã tính '[')
+            int added = encodedEvents.get(i).length + 1;
+            if (i > start && (i - start >= maxEvents || length + added > maxBytes)) {
+                frames.add(composeArray(encodedEvents.subList(start, i)));
+                start = i;
+                length = 1;
+            }
+            length += added;
+        }
+        if (start < encodedEvents.size()) {
+            frames.add(composeArray(encodedEvents.subList(start, encodedEvents.size())));
+        }
+        return frames;
+    }
+
+    /**
+     * Bọc payload JSON đã encode thành Message để gửi qua SimpMessagingTemplate.send()
+     * (bỏ qua bước message conversion - không serialize lại)
+     */
+    public Message<byte[]> toMessage(byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
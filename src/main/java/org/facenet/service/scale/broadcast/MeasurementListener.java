@@ -0,0 +1,16 @@
+package org.facenet.service.scale.broadcast;
+
+import org.facenet.event.MeasurementEvent;
+
+/**
+ * Listener nhận measurement từ Core Processor (fan-out realtime)
+ *
+ * Quy ước:
+ * - Được gọi trên Core worker thread cho MỖI event - KHÔNG được block
+ * - Event có thể đến từ MeasurementEventPool: nếu cần giữ event sau khi hàm return
+ *   thì phải retain() và release() khi xong
+ */
+public interface MeasurementListener {
+
+    void onMeasurement(MeasurementEvent event);
+}
@@ -0,0 +1,119 @@
+package org.facenet.service.scale.broadcast;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.broadcast.location.LocationTopicPublisher;
+import org.facenet.service.scale.broadcast.subscription.TunedSubscription;
+import org.facenet.service.scale.broadcast.subscription.TunedSubscriptionRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Snapshot-on-subscribe: gửi ngay giá trị mới nhất từ LatestMeasurementStore khi client SUBSCRIBE
+ *
+ * - /topic/scales, /topic/scale/{id}, /topic/location/{id}: 1 frame JSON array (cùng format với luồng realtime)
+ *   gửi thẳng tới đúng session + subscription qua clientOutboundChannel (subscriber khác không bị ảnh hưởng)
+ * - Subscription có tuỳ chọn (x-fields / x-delta / x-max-rate): nạp giá trị mới nhất vào TunedSubscription,
+ *   frame đầu tiên được dispatcher gửi ở tick kế tiếp theo đúng tuỳ chọn
+ * Client không cần gọi REST /scales/current-states sau khi kết nối (không truy vấn DB).
+ * Frame snapshot có thể đến sau 1 frame realtime mới hơn: client so sánh lastTime nếu cần.
+ */
+@Slf4j
+@Component
+public class SnapshotOnSubscribeListener {
+
+    private static final Pattern SCALE_TOPIC = Pattern.compile("^/topic/scale/(\\d+)$");
+    private static final Pattern LOCATION_TOPIC = Pattern.compile("^/topic/location/(\\d+)$");
+
+    private final LatestMeasurementStore latestMeasurementStore;
+    private final LocationTopicPublisher locationTopicPublisher;
+    private final TunedSubscriptionRegistry tunedSubscriptionRegistry;
+    private final MeasurementFrameEncoder frameEncoder;
+    private final MessageChannel clientOutboundChannel;
+
+    public SnapshotOnSubscribeListener(LatestMeasurementStore latestMeasurementStore,
+                                       LocationTopicPublisher locationTopicPublisher,
+                                       TunedSubscriptionRegistry tunedSubscriptionRegistry,
+                                       MeasurementFrameEncoder frameEncoder,
+                                       @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.latestMeasurementStore = latestMeasurementStore;
+        this.locationTopicPublisher = locationTopicPublisher;
+        this.tunedSubscriptionRegistry = tunedSubscriptionRegistry;
+        this.frameEncoder = frameEncoder;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (destination == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+
+        try {
+            byte[] snapshot = buildSnapshot(destination, sessionId, subscriptionId);
+            if (snapshot != null) {
+                sendToSubscription(sessionId, subscriptionId, destination, snapshot);
+            }
+        } catch (Exception e) {
+            log.error("[BROADCAST] Error sending snapshot for {} to session {}: {}",
+                    destination, sessionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Snapshot cho destination, null nếu không có dữ liệu hoặc destination không hỗ trợ
+     */
+    private byte[] buildSnapshot(String destination, String sessionId, String subscriptionId) {
+        if (destination.equals("/topic/scales")) {
+            List<byte[]> all = latestMeasurementStore.getAllEncoded();
+            return all.isEmpty() ? null : frameEncoder.composeArray(all);
+        }
+
+        Matcher scaleMatcher = SCALE_TOPIC.matcher(destination);
+        if (scaleMatcher.matches()) {
+            long scaleId = Long.parseLong(scaleMatcher.group(1));
+            TunedSubscription tuned = tunedSubscriptionRegistry.get(sessionId, subscriptionId);
+            if (tuned != null) {
+                MeasurementEvent latest = latestMeasurementStore.getLatest(scaleId);
+                if (latest != null) {
+                    tuned.update(latest);
+                }
+                return null;
+            }
+            byte[] encoded = latestMeasurementStore.getEncoded(scaleId);
+            return encoded != null ? frameEncoder.composeArray(List.of(encoded)) : null;
+        }
+
+        Matcher locationMatcher = LOCATION_TOPIC.matcher(destination);
+        if (locationMatcher.matches()) {
+            return locationTopicPublisher.buildSnapshot(Long.parseLong(locationMatcher.group(1)));
+        }
+        return null;
+    }
+
+    private void sendToSubscription(String sessionId, String subscriptionId, String destination, byte[] payload) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+    }
+}
@@ -0,0 +1,110 @@
+package org.facenet.service.scale.broadcast;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.BroadcastProperties;
+import org.facenet.config.SchedulingConfig;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcast Aggregator - gom event theo cửa sổ thời gian rồi đẩy WebSocket theo lô
+ *
+ * Thay vì 2 lần convertAndSend cho MỖI event, mỗi cửa sổ (mặc định 100ms) chỉ gửi:
+ * 1. /topic/scales - frame JSON array chứa toàn bộ event trong cửa sổ
+ * 2. /topic/scale/{scaleId} - frame JSON array cho mỗi cân có dữ liệu trong cửa sổ
+ * Cửa sổ lớn được tách thành nhiều frame (max-frame-events / max-frame-bytes) để không vượt
+ * send-buffer-size-limit của broker.
+ *
+ * Serialize-once: mỗi event chỉ được encode JSON 1 lần, các frame của cả 2 loại topic được ghép
+ * từ cùng các byte[] đó; broker chỉ chia sẻ payload đã encode cho từng subscriber.
+ */
+@Slf4j
+@Component
+public class WebSocketBroadcastAggregator implements MeasurementListener {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeasurementFrameEncoder frameEncoder;
+    private final BroadcastProperties broadcastProperties;
+    private final BlockingQueue<MeasurementEvent> pending;
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    public WebSocketBroadcastAggregator(SimpMessagingTemplate messagingTemplate,
+                                        MeasurementFrameEncoder frameEncoder,
+                                        BroadcastProperties broadcastProperties) {
+        this.messagingTemplate = messagingTemplate;
+        this.frameEncoder = frameEncoder;
+        this.broadcastProperties = broadcastProperties;
+        this.pending = new ArrayBlockingQueue<>(broadcastProperties.getMaxPendingEvents());
+    }
+
+    @Override
+    public void onMeasurement(MeasurementEvent event) {
+        event.retain();
+        if (!pending.offer(event)) {
+            event.release();
+            long dropped = droppedEvents.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                log.warn("[BROADCAST] Pending window full, dropped {} events so far", dropped);
+            }
+        }
+    }
+
+    /**
+     * Gửi toàn bộ event trong cửa sổ hiện tại
+     */
+    @Scheduled(fixedDelayString = "${websocket.broadcast.window-ms:100}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<MeasurementEvent> window = new ArrayList<>(pending.size());
+        pending.drainTo(window);
+
+        try {
+            // Encode mỗi event đúng 1 lần
+            List<byte[]> encoded = new ArrayList<>(window.size());
+            Map<Long, List<byte[]>> byScale = new LinkedHashMap<>();
+            for (MeasurementEvent event : window) {
+                byte[] bytes = frameEncoder.encode(event);
+                encoded.add(bytes);
+                byScale.computeIfAbsent(event.getScaleId(), id -> new ArrayList<>(1)).add(bytes);
+            }
+
+            // Topic toàn cục: cả cửa sổ (tách frame khi vượt giới hạn)
+            send("/topic/scales", encoded);
+
+            // Topic riêng lẻ: frame cho mỗi cân, dùng lại bytes đã encode
+            byScale.forEach((scaleId, scaleEvents) -> send("/topic/scale/" + scaleId, scaleEvents));
+        } catch (Exception e) {
+            log.error("[BROADCAST] Error broadcasting {} events: {}", window.size(), e.getMessage());
+        } finally {
+            window.forEach(MeasurementEvent::release);
+        }
+    }
+
+    private void send(String destination, List<byte[]> encoded) {
+        for (byte[] frame : frameEncoder.composeArrays(encoded,
+                broadcastProperties.getMaxFrameEvents(), broadcastProperties.getMaxFrameBytes())) {
+            messagingTemplate.send(destination, frameEncoder.toMessage(frame));
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedEvents.get();
+    }
+}
@@ -0,0 +1,73 @@
+package org.facenet.service.scale.broadcast.binary;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Trạng thái 1 kết nối /ws-binary: xác thực và danh sách cân đăng ký
+ */
+public class BinaryClientSession {
+
+    private final WebSocketSession session;
+    private final long connectedAtMillis = System.currentTimeMillis();
+
+    private volatile String username;
+    private volatile boolean subscribedToAll;
+    private volatile Set<Long> scaleIds = Set.of();
+
+    public BinaryClientSession(WebSocketSession session) {
+        this.session = session;
+    }
+
+    public void send(byte[] frame) throws IOException {
+        session.sendMessage(new BinaryMessage(frame));
+    }
+
+    /**
+     * Chỉ nhận dữ liệu khi đã xác thực và đã SUB
+     */
+    public boolean isReceiving() {
+        return username != null && (subscribedToAll || !scaleIds.isEmpty());
+    }
+
+    public boolean isAuthenticated() {
+        return username != null;
+    }
+
+    public void authenticate(String username) {
+        this.username = username;
+    }
+
+    public void subscribeAll() {
+        this.subscribedToAll = true;
+        this.scaleIds = Set.of();
+    }
+
+    public void subscribe(Set<Long> scaleIds) {
+        this.subscribedToAll = false;
+        this.scaleIds = Set.copyOf(scaleIds);
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isSubscribedToAll() {
+        return subscribedToAll;
+    }
+
+    public Set<Long> getScaleIds() {
+        return scaleIds;
+    }
+
+    public long getConnectedAtMillis() {
+        return connectedAtMillis;
+    }
+}
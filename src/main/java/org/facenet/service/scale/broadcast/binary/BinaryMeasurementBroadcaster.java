@@ -0,0 +1,104 @@
+package org.facenet.service.scale.broadcast.binary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.BroadcastProperties;
+import org.facenet.config.SchedulingConfig;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.broadcast.MeasurementListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcaster cho endpoint /ws-binary
+ *
+ * - onMeasurement(): encode ngay record 59 bytes vào buffer của cửa sổ hiện tại (không retain event),
+ *   bỏ qua hoàn toàn khi không có client binary nào
+ * - flush(): mỗi cửa sổ (websocket.broadcast.window-ms) gửi frame chung cho các client SUB *,
+ *   client đăng ký danh sách cân nhận frame đã lọc
+ */
+@Slf4j
+@Component
+public class BinaryMeasurementBroadcaster implements MeasurementListener {
+
+    private final BinaryMeasurementHandler handler;
+    private final int maxPendingRecords;
+
+    private ByteBuffer pending = ByteBuffer.allocate(BinaryMeasurementCodec.RECORD_SIZE * 1024);
+    private int pendingCount;
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    public BinaryMeasurementBroadcaster(BinaryMeasurementHandler handler, BroadcastProperties broadcastProperties) {
+        this.handler = handler;
+        this.maxPendingRecords = broadcastProperties.getMaxPendingEvents();
+    }
+
+    @Override
+    public void onMeasurement(MeasurementEvent event) {
+        if (!handler.hasSessions()) {
+            return;
+        }
+        synchronized (this) {
+            if (pendingCount >= maxPendingRecords) {
+                droppedRecords.incrementAndGet();
+                return;
+            }
+            if (pending.remaining() < BinaryMeasurementCodec.RECORD_SIZE) {
+                ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            BinaryMeasurementCodec.writeRecord(pending, event);
+            pendingCount++;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.broadcast.window-ms:100}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void flush() {
+        byte[] records;
+        int count;
+        synchronized (this) {
+            if (pendingCount == 0) {
+                return;
+            }
+            records = Arrays.copyOf(pending.array(), pending.position());
+            count = pendingCount;
+            pending.clear();
+            pendingCount = 0;
+        }
+
+        List<byte[]> allFrames = null;
+        for (BinaryClientSession client : handler.getSessions()) {
+            if (!client.isReceiving()) {
+                continue;
+            }
+            List<byte[]> frames;
+            if (client.isSubscribedToAll()) {
+                // Frame chung được encode 1 lần cho mọi client SUB *
+                if (allFrames == null) {
+                    allFrames = BinaryMeasurementCodec.toFrames(records, count, null);
+                }
+                frames = allFrames;
+            } else {
+                frames = BinaryMeasurementCodec.toFrames(records, count, client.getScaleIds()::contains);
+            }
+            try {
+                for (byte[] frame : frames) {
+                    client.send(frame);
+                }
+            } catch (Exception e) {
+                log.debug("[BROADCAST] Error sending binary frame to session {}: {}",
+                        client.getSession().getId(), e.getMessage());
+            }
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedRecords.get();
+    }
+}
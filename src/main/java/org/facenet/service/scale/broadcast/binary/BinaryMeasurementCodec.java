@@ -0,0 +1,134 @@
+package org.facenet.service.scale.broadcast.binary;
+
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementStatus;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Subprotocol nhị phân "scalehub.bin.v1" cho endpoint /ws-binary
+ *
+ * Mỗi WebSocket binary message là 1 frame (big endian):
+ * - Header (4): version (1) | type (1) | recordCount (2, unsigned)
+ * - Record (59) x recordCount:
+ *   scaleId (8) | epochMillis (8) | status (1) | validMask (1) | integralMask (1) | data1..data5 (5 x float64)
+ * Bit i của validMask = 1 nếu data(i+1) có giá trị số (ngược lại value = NaN);
+ * bit i của integralMask = 1 nếu giá trị là số nguyên. Slot không phải số (string/boolean) không được truyền.
+ */
+public final class BinaryMeasurementCodec {
+
+    public static final String SUBPROTOCOL = "scalehub.bin.v1";
+
+    public static final byte VERSION = 1;
+    public static final byte TYPE_MEASUREMENTS = 1;
+
+    public static final int HEADER_SIZE = 4;
+    public static final int RECORD_SIZE = 8 + 8 + 1 + 1 + 1 + MeasurementEvent.DATA_SLOTS * 8;
+    public static final int MAX_RECORDS_PER_FRAME = 0xFFFF;
+
+    private BinaryMeasurementCodec() {
+    }
+
+    /**
+     * Ghi 1 record vào buffer tại vị trí hiện tại
+     */
+    public static void writeRecord(ByteBuffer buffer, MeasurementEvent event) {
+        buffer.putLong(event.scaleIdAsLong());
+        buffer.putLong(event.epochNanos() / 1_000_000L);
+        buffer.put(event.measurementStatus().code());
+        int integralMask = 0;
+        for (int i = 0; i < MeasurementEvent.DATA_SLOTS; i++) {
+            if (event.isIntegral(i)) {
+                integralMask |= 1 << i;
+            }
+        }
+        buffer.put((byte) event.validMask());
+        buffer.put((byte) integralMask);
+        for (int i = 0; i < MeasurementEvent.DATA_SLOTS; i++) {
+            buffer.putDouble(event.value(i));
+        }
+    }
+
+    /**
+     * scaleId của record thứ index trong mảng record liên tiếp
+     */
+    public static long scaleIdAt(byte[] records, int index) {
+        return ByteBuffer.wrap(records, index * RECORD_SIZE, 8).getLong();
+    }
+
+    /**
+     * Đóng gói các record (đã encode liên tiếp) thành 1 hoặc nhiều frame, lọc theo scaleId nếu có filter
+     *
+     * @param filter null = lấy toàn bộ record
+     */
+    public static List<byte[]> toFrames(byte[] records, int recordCount, LongPredicate filter) {
+        List<byte[]> frames = new ArrayList<>(1);
+        if (filter == null) {
+            for (int first = 0; first < recordCount; first += MAX_RECORDS_PER_FRAME) {
+                int count = Math.min(MAX_RECORDS_PER_FRAME, recordCount - first);
+                ByteBuffer frame = newFrame(count);
+                frame.put(records, first * RECORD_SIZE, count * RECORD_SIZE);
+                frames.add(frame.array());
+            }
+            return frames;
+        }
+
+        int[] selected = new int[recordCount];
+        int selectedCount = 0;
+        for (int i = 0; i < recordCount; i++) {
+            if (filter.test(scaleIdAt(records, i))) {
+                selected[selectedCount++] = i;
+            }
+        }
+        for (int first = 0; first < selectedCount; first += MAX_RECORDS_PER_FRAME) {
+            int count = Math.min(MAX_RECORDS_PER_FRAME, selectedCount - first);
+            ByteBuffer frame = newFrame(count);
+            for (int i = first; i < first + count; i++) {
+                frame.put(records, selected[i] * RECORD_SIZE, RECORD_SIZE);
+            }
+            frames.add(frame.array());
+        }
+        return frames;
+    }
+
+    /**
+     * Decode 1 frame thành danh sách event (không thuộc pool) - dùng cho client Java, test và benchmark
+     */
+    public static List<MeasurementEvent> decode(byte[] frame) {
+        ByteBuffer in = ByteBuffer.wrap(frame);
+        byte version = in.get();
+        byte type = in.get();
+        if (version != VERSION || type != TYPE_MEASUREMENTS) {
+            throw new IllegalArgumentException("Unsupported frame version/type: " + version + "/" + type);
+        }
+        int count = in.getShort() & 0xFFFF;
+        List<MeasurementEvent> events = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            MeasurementEvent event = new MeasurementEvent();
+            event.setScaleId(in.getLong());
+            event.setEpochNanos(in.getLong() * 1_000_000L);
+            event.setMeasurementStatus(MeasurementStatus.fromCode(in.get()));
+            int validMask = in.get() & 0xFF;
+            int integralMask = in.get() & 0xFF;
+            for (int i = 0; i < MeasurementEvent.DATA_SLOTS; i++) {
+                double value = in.getDouble();
+                if ((validMask & (1 << i)) != 0) {
+                    event.setValue(i, value, (integralMask & (1 << i)) != 0);
+                }
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static ByteBuffer newFrame(int recordCount) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + recordCount * RECORD_SIZE);
+        frame.put(VERSION);
+        frame.put(TYPE_MEASUREMENTS);
+        frame.putShort((short) recordCount);
+        return frame;
+    }
+}
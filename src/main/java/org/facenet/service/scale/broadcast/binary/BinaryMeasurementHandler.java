@@ -0,0 +1,155 @@
+package org.facenet.service.scale.broadcast.binary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.BroadcastProperties;
+import org.facenet.config.WebSocketBrokerProperties;
+import org.facenet.security.jwt.JwtTokenProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handler cho endpoint WebSocket thuần /ws-binary (không SockJS, không STOMP)
+ *
+ * Handshake dạng text sau khi kết nối:
+ * 1. Client gửi "AUTH <jwt>" -> server trả "OK <username>" hoặc "ERR ..." rồi đóng kết nối
+ * 2. Client gửi "SUB *" (toàn bộ cân) hoặc "SUB 1,2,3" -> server trả "OK SUB"
+ * Sau đó server đẩy dữ liệu dạng binary message theo BinaryMeasurementCodec.
+ * Kết nối không AUTH trong websocket.broadcast.binary-auth-timeout-ms bị đóng.
+ */
+@Slf4j
+@Component
+public class BinaryMeasurementHandler extends TextWebSocketHandler {
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final BroadcastProperties broadcastProperties;
+    private final WebSocketBrokerProperties brokerProperties;
+
+    private final Map<String, BinaryClientSession> sessions = new ConcurrentHashMap<>();
+
+    public BinaryMeasurementHandler(JwtTokenProvider jwtTokenProvider,
+                                    BroadcastProperties broadcastProperties,
+                                    WebSocketBrokerProperties brokerProperties) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.broadcastProperties = broadcastProperties;
+        this.brokerProperties = brokerProperties;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // Client chậm: bỏ frame cũ khi vượt buffer thay vì block broadcaster
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session,
+                brokerProperties.getSendTimeLimitMs(), brokerProperties.getSendBufferSizeLimit(),
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+        sessions.put(session.getId(), new BinaryClientSession(decorated));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        BinaryClientSession client = sessions.get(session.getId());
+        if (client == null) {
+            return;
+        }
+        String command = message.getPayload().trim();
+
+        if (command.startsWith("AUTH ")) {
+            String token = command.substring(5).trim();
+            if (!jwtTokenProvider.validateToken(token)) {
+                reject(client, "ERR unauthorized");
+                return;
+            }
+            client.authenticate(jwtTokenProvider.getUsernameFromToken(token));
+            reply(client, "OK " + client.getUsername());
+            return;
+        }
+
+        if (!client.isAuthenticated()) {
+            reject(client, "ERR authenticate first");
+            return;
+        }
+
+        if (command.startsWith("SUB ")) {
+            String target = command.substring(4).trim();
+            if (target.equals("*")) {
+                client.subscribeAll();
+            } else {
+                Set<Long> scaleIds = parseScaleIds(target);
+                if (scaleIds == null) {
+                    reply(client, "ERR invalid scale ids");
+                    return;
+                }
+                client.subscribe(scaleIds);
+            }
+            reply(client, "OK SUB");
+            return;
+        }
+
+        reply(client, "ERR unknown command");
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * Đóng các kết nối không xác thực đúng hạn
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void closeUnauthenticated() {
+        long deadline = System.currentTimeMillis() - broadcastProperties.getBinaryAuthTimeoutMs();
+        for (BinaryClientSession client : sessions.values()) {
+            if (!client.isAuthenticated() && client.getConnectedAtMillis() < deadline) {
+                reject(client, "ERR authentication timeout");
+            }
+        }
+    }
+
+    public Collection<BinaryClientSession> getSessions() {
+        return sessions.values();
+    }
+
+    public boolean hasSessions() {
+        return !sessions.isEmpty();
+    }
+
+    private void reply(BinaryClientSession client, String text) throws IOException {
+        client.getSession().sendMessage(new TextMessage(text));
+    }
+
+    private void reject(BinaryClientSession client, String reason) {
+        WebSocketSession session = client.getSession();
+        sessions.remove(session.getId());
+        try {
+            session.sendMessage(new TextMessage(reason));
+            session.close(CloseStatus.POLICY_VIOLATION);
+        } catch (IOException e) {
+            log.debug("[BROADCAST] Error closing binary session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private static Set<Long> parseScaleIds(String csv) {
+        Set<Long> scaleIds = new HashSet<>();
+        try {
+            for (String part : csv.split(",")) {
+                if (!part.isBlank()) {
+                    scaleIds.add(Long.parseLong(part.trim()));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return scaleIds.isEmpty() ? null : scaleIds;
+    }
+}
@@ -0,0 +1,108 @@
+package org.facenet.service.scale.broadcast.location;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.repository.location.LocationRepository;
+import org.facenet.repository.scale.ScaleRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index Location -> danh sách cân thuộc cây con (location đó + toàn bộ location con cháu)
+ *
+ * Hierarchy được load bằng 2 query projection nhẹ và reload định kỳ;
+ * danh sách cân của mỗi cây con được tính lazy và cache đến lần reload tiếp theo.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocationScaleIndex {
+
+    private static final long[] NO_SCALES = new long[0];
+
+    private final LocationRepository locationRepository;
+    private final ScaleRepository scaleRepository;
+
+    private volatile Hierarchy hierarchy;
+
+    /**
+     * Danh sách scaleId đang active thuộc cây con của location (đã sắp xếp tăng dần, dùng được với binarySearch)
+     */
+    public long[] scaleIdsUnder(long locationId) {
+        Hierarchy current = hierarchy;
+        if (current == null) {
+            current = load();
+        }
+        return current.subtreeScales.computeIfAbsent(locationId, current::collectSubtree);
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.broadcast.location-index-refresh-ms:60000}")
+    public void refresh() {
+        load();
+    }
+
+    private Hierarchy load() {
+        try {
+            Map<Long, List<Long>> children = new HashMap<>();
+            for (Object[] row : locationRepository.findAllIdAndParentId()) {
+                Long parentId = (Long) row[1];
+                if (parentId != null) {
+                    children.computeIfAbsent(parentId, id -> new ArrayList<>()).add((Long) row[0]);
+                }
+            }
+
+            Map<Long, List<Long>> scales = new HashMap<>();
+            for (Object[] row : scaleRepository.findActiveIdAndLocationId()) {
+                scales.computeIfAbsent((Long) row[1], id -> new ArrayList<>()).add((Long) row[0]);
+            }
+
+            Hierarchy loaded = new Hierarchy(children, scales);
+            hierarchy = loaded;
+            log.debug("[BROADCAST] Location index refreshed: {} parent locations, {} locations with scales",
+                    children.size(), scales.size());
+            return loaded;
+        } catch (Exception e) {
+            log.error("[BROADCAST] Failed to refresh location index: {}", e.getMessage());
+            Hierarchy current = hierarchy;
+            return current != null ? current : new Hierarchy(Collections.emptyMap(), Collections.emptyMap());
+        }
+    }
+
+    private static final class Hierarchy {
+        private final Map<Long, List<Long>> children;
+        private final Map<Long, List<Long>> scalesByLocation;
+        private final Map<Long, long[]> subtreeScales = new ConcurrentHashMap<>();
+
+        Hierarchy(Map<Long, List<Long>> children, Map<Long, List<Long>> scalesByLocation) {
+            this.children = children;
+            this.scalesByLocation = scalesByLocation;
+        }
+
+        long[] collectSubtree(long rootId) {
+            List<Long> result = new ArrayList<>();
+            Set<Long> visited = new HashSet<>();
+            Deque<Long> stack = new ArrayDeque<>();
+            stack.push(rootId);
+            while (!stack.isEmpty()) {
+                Long locationId = stack.pop();
+                if (!visited.add(locationId)) {
+                    continue; // phòng dữ liệu parent bị vòng
+                }
+                result.addAll(scalesByLocation.getOrDefault(locationId, Collections.emptyList()));
+                children.getOrDefault(locationId, Collections.emptyList()).forEach(stack::push);
+            }
+            return result.isEmpty() ? NO_SCALES : result.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.facenet.service.scale.broadcast.location;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.SchedulingConfig;
+import org.facenet.service.scale.broadcast.LatestMeasurementStore;
+import org.facenet.service.scale.broadcast.MeasurementFrameEncoder;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Publisher cho topic tổng hợp theo Location: /topic/location/{locationId}
+ *
+ * Mỗi chu kỳ (mặc định 1s) gửi 1 frame JSON array chứa giá trị mới nhất của mọi cân
+ * thuộc cây con của location (cùng format phần tử với /topic/scales).
+ * Chỉ các location đang có subscriber mới được build snapshot.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocationTopicPublisher {
+
+    public static final String LOCATION_TOPIC_PREFIX = "/topic/location/";
+
+    private static final Pattern LOCATION_TOPIC = Pattern.compile("^/topic/location/(\\d+)$");
+
+    private final LocationScaleIndex locationScaleIndex;
+    private final LatestMeasurementStore latestMeasurementStore;
+    private final MeasurementFrameEncoder frameEncoder;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // sessionId -> (subscriptionId -> locationId)
+    private final Map<String, Map<String, Long>> subscriptions = new ConcurrentHashMap<>();
+    // locationId -> số subscription đang mở
+    private final Map<Long, Integer> subscriberCounts = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            return;
+        }
+        Matcher matcher = LOCATION_TOPIC.matcher(destination);
+        if (!matcher.matches()) {
+            return;
+        }
+        Long locationId = Long.parseLong(matcher.group(1));
+        Long previous = subscriptions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), locationId);
+        if (previous != null) {
+            decrement(previous);
+        }
+        subscriberCounts.merge(locationId, 1, Integer::sum);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, Long> sessionSubscriptions = subscriptions.get(accessor.getSessionId());
+        if (sessionSubscriptions == null) {
+            return;
+        }
+        Long locationId = sessionSubscriptions.remove(accessor.getSubscriptionId());
+        if (locationId != null) {
+            decrement(locationId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, Long> sessionSubscriptions = subscriptions.remove(event.getSessionId());
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.values().forEach(this::decrement);
+        }
+    }
+
+    /**
+     * Gửi snapshot cho mọi location đang có subscriber
+     */
+    @Scheduled(fixedDelayString = "${websocket.broadcast.location-snapshot-ms:1000}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void publishSnapshots() {
+        for (Long locationId : subscriberCounts.keySet()) {
+            try {
+                byte[] frame = buildSnapshot(locationId);
+                if (frame != null) {
+                    messagingTemplate.send(LOCATION_TOPIC_PREFIX + locationId, frameEncoder.toMessage(frame));
+                }
+            } catch (Exception e) {
+                log.error("[BROADCAST] Error publishing snapshot for location {}: {}", locationId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * JSON array giá trị mới nhất của các cân thuộc cây con, null nếu chưa có cân nào có dữ liệu
+     */
+    public byte[] buildSnapshot(long locationId) {
+        long[] scaleIds = locationScaleIndex.scaleIdsUnder(locationId);
+        List<byte[]> entries = new ArrayList<>(scaleIds.length);
+        for (long scaleId : scaleIds) {
+            byte[] encoded = latestMeasurementStore.getEncoded(scaleId);
+            if (encoded != null) {
+                entries.add(encoded);
+            }
+        }
+        return entries.isEmpty() ? null : frameEncoder.composeArray(entries);
+    }
+
+    private void decrement(Long locationId) {
+        subscriberCounts.computeIfPresent(locationId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+}
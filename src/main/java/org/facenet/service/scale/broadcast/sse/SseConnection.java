@@ -0,0 +1,117 @@
+package org.facenet.service.scale.broadcast.sse;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongPredicate;
+
+/**
+ * 1 kết nối SSE: emitter, bộ lọc scaleId, id cuối cùng đã duyệt và hàng đợi gửi riêng
+ *
+ * - lastSentId chỉ dispatcher thread (flush) đọc/ghi
+ * - outbound: hàng đợi có giới hạn các event chờ gửi; chỉ 1 sender thread drain tại 1 thời điểm (draining)
+ * - sendStartedMillis != 0 khi sender đang nằm trong emitter.send() -> dispatcher phát hiện client treo
+ */
+public class SseConnection {
+
+    private final SseEmitter emitter;
+    private final LongPredicate filter;
+    private final BlockingQueue<SseEmitter.SseEventBuilder> outbound;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private long lastSentId;
+    private volatile long lastWriteMillis = System.currentTimeMillis();
+    private volatile long sendStartedMillis;
+
+    public SseConnection(SseEmitter emitter, LongPredicate filter, long lastSentId, int queueCapacity) {
+        this.emitter = emitter;
+        this.filter = filter;
+        this.lastSentId = lastSentId;
+        this.outbound = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    public boolean accepts(long scaleId) {
+        return filter == null || filter.test(scaleId);
+    }
+
+    public long getLastSentId() {
+        return lastSentId;
+    }
+
+    public void setLastSentId(long lastSentId) {
+        this.lastSentId = lastSentId;
+    }
+
+    public long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    /**
+     * Đưa event vào hàng đợi gửi
+     *
+     * @return false nếu hàng đợi đầy hoặc connection đã đóng
+     */
+    public boolean offer(SseEmitter.SseEventBuilder event) {
+        return !closed.get() && outbound.offer(event);
+    }
+
+    SseEmitter.SseEventBuilder poll() {
+        return closed.get() ? null : outbound.poll();
+    }
+
+    boolean hasPending() {
+        return !outbound.isEmpty();
+    }
+
+    /**
+     * @return true nếu caller giành được quyền drain (phải gọi finishDrain() khi xong)
+     */
+    boolean tryStartDrain() {
+        return draining.compareAndSet(false, true);
+    }
+
+    void finishDrain() {
+        draining.set(false);
+    }
+
+    void beginSend() {
+        sendStartedMillis = System.currentTimeMillis();
+    }
+
+    void endSend() {
+        long now = System.currentTimeMillis();
+        sendStartedMillis = 0;
+        lastWriteMillis = now;
+    }
+
+    /**
+     * Sender đang bị kẹt trong 1 lần send lâu hơn timeoutMs
+     */
+    public boolean isSendStalled(long now, long timeoutMs) {
+        long started = sendStartedMillis;
+        return started != 0 && now - started >= timeoutMs;
+    }
+
+    /**
+     * Đánh dấu đóng và bỏ các event còn chờ
+     *
+     * @return true nếu đây là lần đóng đầu tiên
+     */
+    boolean markClosed() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        outbound.clear();
+        return true;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+}
@@ -0,0 +1,279 @@
+package org.facenet.service.scale.broadcast.sse;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.BroadcastProperties;
+import org.facenet.config.SchedulingConfig;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.broadcast.MeasurementFrameEncoder;
+import org.facenet.service.scale.broadcast.MeasurementListener;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Fan-out Server-Sent Events cho measurement (GET /scales/stream)
+ *
+ * - onMeasurement(): retain + đưa vào hàng đợi (giống WebSocketBroadcastAggregator, không block Core)
+ * - flush(): mỗi cửa sổ encode JSON mỗi event 1 lần, ghi vào SseReplayBuffer (id tuần tự),
+ *   rồi tạo cho mỗi connection 1 SSE event "measurements" = JSON array các record khớp bộ lọc,
+ *   với id = id record mới nhất đã duyệt (dùng cho Last-Event-ID khi reconnect)
+ * - Gửi bất đồng bộ: event được đưa vào hàng đợi có giới hạn của connection (sse-send-queue-capacity)
+ *   và drain trên sseSendExecutor; connection bị đóng khi hàng đợi đầy hoặc 1 lần send bị kẹt quá
+ *   sse-send-timeout-ms. Client reconnect với Last-Event-ID để nhận lại phần còn trong replay buffer
+ * - Reconnect với Last-Event-ID: gửi lại các record còn trong replay buffer; nếu đã bị ghi đè,
+ *   gửi event "reset" trước để client biết có khoảng trống
+ */
+@Slf4j
+@Component
+public class SseMeasurementBroadcaster implements MeasurementListener {
+
+    public static final String EVENT_MEASUREMENTS = "measurements";
+    public static final String EVENT_RESET = "reset";
+
+    private static final long REJECT_RECONNECT_MS = 60_000L;
+
+    private final MeasurementFrameEncoder frameEncoder;
+    private final BroadcastProperties broadcastProperties;
+    private final SseReplayBuffer replayBuffer;
+    private final BlockingQueue<MeasurementEvent> pending;
+    private final List<SseConnection> connections = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong closedSlowConnections = new AtomicLong();
+    private final Executor sendExecutor;
+
+    public SseMeasurementBroadcaster(MeasurementFrameEncoder frameEncoder, BroadcastProperties broadcastProperties,
+                                     @Qualifier("sseSendExecutor") Executor sendExecutor) {
+        this.frameEncoder = frameEncoder;
+        this.broadcastProperties = broadcastProperties;
+        this.sendExecutor = sendExecutor;
+        this.replayBuffer = new SseReplayBuffer(broadcastProperties.getSseReplayCapacity());
+        this.pending = new ArrayBlockingQueue<>(broadcastProperties.getMaxPendingEvents());
+    }
+
+    @Override
+    public void onMeasurement(MeasurementEvent event) {
+        event.retain();
+        if (!pending.offer(event)) {
+            event.release();
+            droppedEvents.incrementAndGet();
+        }
+    }
+
+    /**
+     * Mở 1 connection mới
+     *
+     * @param filter      bộ lọc scaleId, được gọi lại ở mỗi cửa sổ (null = không lọc)
+     * @param lastEventId id client nhận cuối cùng (header Last-Event-ID), null = chỉ nhận dữ liệu mới
+     */
+    public SseEmitter connect(LongPredicate filter, Long lastEventId) {
+        if (connections.size() >= broadcastProperties.getSseMaxConnections()) {
+            return reject("Too many SSE connections");
+        }
+        return connect(new SseEmitter(broadcastProperties.getSseTimeoutMs()), filter, lastEventId);
+    }
+
+    SseEmitter connect(SseEmitter emitter, LongPredicate filter, Long lastEventId) {
+        long lastId = replayBuffer.getLastId();
+        // Last-Event-ID lớn hơn id hiện tại (server đã restart) -> chỉ nhận dữ liệu mới
+        long startAfter = lastEventId != null ? Math.min(lastEventId, lastId) : lastId;
+        SseConnection connection = new SseConnection(emitter, filter, startAfter,
+                broadcastProperties.getSseSendQueueCapacity());
+
+        emitter.onCompletion(() -> remove(connection));
+        emitter.onTimeout(() -> remove(connection));
+        emitter.onError(e -> remove(connection));
+        connections.add(connection);
+        return emitter;
+    }
+
+    /**
+     * Emitter gửi 1 event "error" rồi đóng, yêu cầu client chờ lâu hơn trước khi reconnect
+     */
+    private SseEmitter reject(String reason) {
+        SseEmitter rejected = new SseEmitter();
+        try {
+            rejected.send(SseEmitter.event().name("error").reconnectTime(REJECT_RECONNECT_MS).data(reason));
+        } catch (IOException e) {
+            log.debug("[BROADCAST] Error rejecting SSE connection: {}", e.getMessage());
+        }
+        rejected.complete();
+        return rejected;
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.broadcast.window-ms:100}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void flush() {
+        if (!pending.isEmpty()) {
+            List<MeasurementEvent> window = new ArrayList<>(pending.size());
+            pending.drainTo(window);
+            try {
+                for (MeasurementEvent event : window) {
+                    replayBuffer.append(event.scaleIdAsLong(), frameEncoder.encode(event));
+                }
+            } catch (Exception e) {
+                log.error("[BROADCAST] Error encoding {} SSE events: {}", window.size(), e.getMessage());
+            } finally {
+                window.forEach(MeasurementEvent::release);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (SseConnection connection : connections) {
+            if (connection.isSendStalled(now, broadcastProperties.getSseSendTimeoutMs())) {
+                closeSlow(connection, "send timeout");
+                continue;
+            }
+            try {
+                dispatch(connection, now);
+            } catch (Exception e) {
+                log.warn("[BROADCAST] Error preparing SSE events: {}", e.getMessage());
+                close(connection);
+            }
+        }
+    }
+
+    private void dispatch(SseConnection connection, long now) {
+        long lastSentId = connection.getLastSentId();
+        if (lastSentId + 1 < replayBuffer.getOldestId() && lastSentId < replayBuffer.getLastId()) {
+            // Record client cần đã bị ghi đè trong replay buffer
+            if (!enqueue(connection, SseEmitter.event().name(EVENT_RESET)
+                    .data(String.valueOf(replayBuffer.getOldestId())))) {
+                return;
+            }
+        }
+
+        List<SseReplayBuffer.Entry> entries = replayBuffer.since(lastSentId);
+        if (entries.isEmpty()) {
+            if (now - connection.getLastWriteMillis() >= broadcastProperties.getSseKeepAliveMs()
+                    && !connection.hasPending()) {
+                enqueue(connection, SseEmitter.event().comment("keep-alive"));
+            }
+            return;
+        }
+
+        List<byte[]> matching = new ArrayList<>();
+        for (SseReplayBuffer.Entry entry : entries) {
+            if (connection.accepts(entry.getScaleId())) {
+                matching.add(entry.getJson());
+            }
+        }
+        long newestId = entries.get(entries.size() - 1).getId();
+        connection.setLastSentId(newestId);
+        if (matching.isEmpty()) {
+            return;
+        }
+        enqueue(connection, SseEmitter.event()
+                .id(String.valueOf(newestId))
+                .name(EVENT_MEASUREMENTS)
+                .data(frameEncoder.composeArray(matching), MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Đưa event vào hàng đợi của connection và lên lịch drain; hàng đợi đầy -> đóng connection
+     *
+     * @return false nếu connection đã bị đóng
+     */
+    private boolean enqueue(SseConnection connection, SseEmitter.SseEventBuilder event) {
+        if (!connection.offer(event)) {
+            closeSlow(connection, "send queue full");
+            return false;
+        }
+        if (connection.tryStartDrain()) {
+            try {
+                sendExecutor.execute(() -> drain(connection));
+            } catch (RejectedExecutionException e) {
+                connection.finishDrain();
+                close(connection);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chạy trên sseSendExecutor: gửi lần lượt các event đang chờ của 1 connection
+     */
+    private void drain(SseConnection connection) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            while ((event = connection.poll()) != null) {
+                connection.beginSend();
+                try {
+                    connection.getEmitter().send(event);
+                } catch (Exception e) {
+                    log.debug("[BROADCAST] SSE send failed, closing connection: {}", e.getMessage());
+                    connection.finishDrain();
+                    close(connection);
+                    return;
+                } finally {
+                    connection.endSend();
+                }
+            }
+            connection.finishDrain();
+            // event mới được đưa vào sau poll() cuối nhưng trước finishDrain()
+            if (!connection.hasPending() || connection.isClosed() || !connection.tryStartDrain()) {
+                return;
+            }
+        }
+    }
+
+    private void closeSlow(SseConnection connection, String reason) {
+        if (!connection.isClosed()) {
+            closedSlowConnections.incrementAndGet();
+            log.warn("[BROADCAST] Closing slow SSE connection: {}", reason);
+        }
+        close(connection);
+    }
+
+    /**
+     * Bỏ connection khỏi fan-out và complete emitter trên sseSendExecutor
+     * (complete có thể bị chặn bởi 1 lần send đang treo, không được chặn thread flush)
+     */
+    private void close(SseConnection connection) {
+        if (!remove(connection)) {
+            return;
+        }
+        try {
+            sendExecutor.execute(() -> completeQuietly(connection.getEmitter()));
+        } catch (RejectedExecutionException e) {
+            completeQuietly(connection.getEmitter());
+        }
+    }
+
+    private boolean remove(SseConnection connection) {
+        connections.remove(connection);
+        return connection.markClosed();
+    }
+
+    private static void completeQuietly(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("[BROADCAST] Error completing SSE emitter: {}", e.getMessage());
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getClosedSlowConnectionCount() {
+        return closedSlowConnections.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedEvents.get();
+    }
+}
@@ -0,0 +1,83 @@
+package org.facenet.service.scale.broadcast.sse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring buffer các measurement đã encode JSON, đánh số tuần tự (id SSE) để resume theo Last-Event-ID
+ */
+public class SseReplayBuffer {
+
+    /**
+     * 1 measurement đã encode (bất biến, chia sẻ giữa mọi connection)
+     */
+    public static final class Entry {
+        private final long id;
+        private final long scaleId;
+        private final byte[] json;
+
+        Entry(long id, long scaleId, byte[] json) {
+            this.id = id;
+            this.scaleId = scaleId;
+            this.json = json;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getScaleId() {
+            return scaleId;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+    }
+
+    private final Entry[] entries;
+    private long lastId;
+
+    public SseReplayBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Replay capacity must be positive: " + capacity);
+        }
+        this.entries = new Entry[capacity];
+    }
+
+    public synchronized long append(long scaleId, byte[] json) {
+        long id = ++lastId;
+        entries[(int) (id % entries.length)] = new Entry(id, scaleId, json);
+        return id;
+    }
+
+    /**
+     * Các entry có id > afterId còn trong buffer (cũ -> mới)
+     */
+    public synchronized List<Entry> since(long afterId) {
+        long from = Math.max(afterId + 1, getOldestId());
+        if (from > lastId) {
+            return List.of();
+        }
+        List<Entry> result = new ArrayList<>((int) (lastId - from + 1));
+        for (long id = from; id <= lastId; id++) {
+            result.add(entries[(int) (id % entries.length)]);
+        }
+        return result;
+    }
+
+    /**
+     * id cũ nhất còn giữ (lastId + 1 nếu buffer rỗng)
+     */
+    public synchronized long getOldestId() {
+        return Math.max(1, lastId - entries.length + 1);
+    }
+
+    public synchronized long getLastId() {
+        return lastId;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+}
@@ -0,0 +1,140 @@
+package org.facenet.service.scale.broadcast.subscription;
+
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+
+/**
+ * Tuỳ chọn subscription do client gửi kèm trong STOMP SUBSCRIBE header
+ *
+ * - x-max-rate: số frame tối đa mỗi giây (vd: "2" = tối đa 1 frame / 500ms)
+ * - x-fields: danh sách field cần nhận, phân tách bằng dấu phẩy (data1..data5, status)
+ * - x-delta: "true" = chỉ gửi các field thay đổi so với frame trước
+ * - x-min-change: ngưỡng thay đổi tuyệt đối cho field số - giá trị lệch ít hơn ngưỡng so với giá trị đã gửi
+ *   được coi là không đổi (không gửi frame / không có trong delta); field không phải số: mọi thay đổi
+ */
+public class SubscriptionOptions {
+
+    public static final String HEADER_MAX_RATE = "x-max-rate";
+    public static final String HEADER_FIELDS = "x-fields";
+    public static final String HEADER_DELTA = "x-delta";
+    public static final String HEADER_MIN_CHANGE = "x-min-change";
+
+    /**
+     * Field index: 0-4 = data1..data5, 5 = status
+     */
+    public static final int FIELD_COUNT = 6;
+    public static final int STATUS_FIELD = 5;
+    public static final int ALL_FIELDS = (1 << FIELD_COUNT) - 1;
+
+    private final long minIntervalNanos;
+    private final int fieldMask;
+    private final boolean delta;
+    private final double minChange;
+
+    public SubscriptionOptions(long minIntervalNanos, int fieldMask, boolean delta) {
+        this(minIntervalNanos, fieldMask, delta, 0.0);
+    }
+
+    public SubscriptionOptions(long minIntervalNanos, int fieldMask, boolean delta, double minChange) {
+        this.minIntervalNanos = minIntervalNanos;
+        this.fieldMask = fieldMask;
+        this.delta = delta;
+        this.minChange = minChange;
+    }
+
+    /**
+     * Đọc tuỳ chọn từ header SUBSCRIBE
+     *
+     * @return null nếu client không gửi header tuỳ chọn nào (subscription thường)
+     * @throws IllegalArgumentException nếu giá trị header không hợp lệ
+     */
+    public static SubscriptionOptions fromHeaders(StompHeaderAccessor accessor) {
+        String maxRate = accessor.getFirstNativeHeader(HEADER_MAX_RATE);
+        String fields = accessor.getFirstNativeHeader(HEADER_FIELDS);
+        String delta = accessor.getFirstNativeHeader(HEADER_DELTA);
+        String minChange = accessor.getFirstNativeHeader(HEADER_MIN_CHANGE);
+        if (maxRate == null && fields == null && delta == null && minChange == null) {
+            return null;
+        }
+        return new SubscriptionOptions(parseMinInterval(maxRate), parseFieldMask(fields), Boolean.parseBoolean(delta),
+                parseMinChange(minChange));
+    }
+
+    static double parseMinChange(String minChange) {
+        if (minChange == null || minChange.isBlank()) {
+            return 0.0;
+        }
+        double threshold;
+        try {
+            threshold = Double.parseDouble(minChange.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + HEADER_MIN_CHANGE + ": " + minChange);
+        }
+        if (!(threshold >= 0) || Double.isInfinite(threshold)) {
+            throw new IllegalArgumentException(HEADER_MIN_CHANGE + " must be a non-negative number: " + minChange);
+        }
+        return threshold;
+    }
+
+    static long parseMinInterval(String maxRate) {
+        if (maxRate == null || maxRate.isBlank()) {
+            return 0L;
+        }
+        double rate;
+        try {
+            rate = Double.parseDouble(maxRate.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + HEADER_MAX_RATE + ": " + maxRate);
+        }
+        if (!(rate > 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException(HEADER_MAX_RATE + " must be a positive number: " + maxRate);
+        }
+        return (long) (1_000_000_000L / rate);
+    }
+
+    static int parseFieldMask(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL_FIELDS;
+        }
+        int mask = 0;
+        for (String field : fields.split(",")) {
+            mask |= 1 << fieldIndex(field.trim());
+        }
+        return mask;
+    }
+
+    private static int fieldIndex(String field) {
+        switch (field) {
+            case "data1": return 0;
+            case "data2": return 1;
+            case "data3": return 2;
+            case "data4": return 3;
+            case "data5": return 4;
+            case "status": return STATUS_FIELD;
+            default: throw new IllegalArgumentException("Unknown field in " + HEADER_FIELDS + ": " + field);
+        }
+    }
+
+    public static String fieldName(int index) {
+        return index == STATUS_FIELD ? "status" : "data" + (index + 1);
+    }
+
+    public long getMinIntervalNanos() {
+        return minIntervalNanos;
+    }
+
+    public int getFieldMask() {
+        return fieldMask;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    public double getMinChange() {
+        return minChange;
+    }
+
+    public boolean includes(int field) {
+        return (fieldMask & (1 << field)) != 0;
+    }
+}
@@ -0,0 +1,153 @@
+package org.facenet.service.scale.broadcast.subscription;
+
+import org.facenet.event.MeasurementEvent;
+
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Trạng thái 1 subscription có tuỳ chọn (throttle / chọn field / delta) của 1 client
+ *
+ * Conflation: chỉ giữ giá trị MỚI NHẤT chưa gửi (copy view, không giữ MeasurementEvent),
+ * nên bộ nhớ cho mỗi subscription cố định bất kể client chậm đến đâu.
+ * - theo thời gian: tối đa 1 frame mỗi x-max-rate
+ * - theo giá trị: với x-min-change, frame chỉ được gửi khi có field lệch >= ngưỡng so với giá trị đã gửi
+ */
+public class TunedSubscription {
+
+    private final String sessionId;
+    private final String subscriptionId;
+    private final long scaleId;
+    private final String destination;
+    private final SubscriptionOptions options;
+
+    // Giá trị mới nhất chưa gửi
+    private final String[] latest = new String[SubscriptionOptions.FIELD_COUNT];
+    private ZonedDateTime latestTime;
+    private boolean dirty;
+
+    // Giá trị đã gửi ở frame trước (dùng cho delta)
+    private final String[] lastSent = new String[SubscriptionOptions.FIELD_COUNT];
+    private boolean sentOnce;
+    private long lastSentNanos;
+
+    private long conflatedCount;
+    private long sentCount;
+
+    public TunedSubscription(String sessionId, String subscriptionId, long scaleId,
+                             String destination, SubscriptionOptions options) {
+        this.sessionId = sessionId;
+        this.subscriptionId = subscriptionId;
+        this.scaleId = scaleId;
+        this.destination = destination;
+        this.options = options;
+    }
+
+    /**
+     * Ghi đè giá trị mới nhất (gọi từ Core worker thread, không block)
+     */
+    public synchronized void update(MeasurementEvent event) {
+        if (dirty) {
+            conflatedCount++;
+        }
+        for (int field = 0; field < MeasurementEvent.DATA_SLOTS; field++) {
+            if (options.includes(field)) {
+                latest[field] = event.getData(field);
+            }
+        }
+        if (options.includes(SubscriptionOptions.STATUS_FIELD)) {
+            latest[SubscriptionOptions.STATUS_FIELD] = event.getStatus();
+        }
+        latestTime = event.getLastTime();
+        dirty = true;
+    }
+
+    /**
+     * Lấy frame cần gửi nếu có dữ liệu mới và đã qua khoảng thời gian tối thiểu
+     *
+     * @return payload (scaleId, lastTime + các field được chọn/thay đổi) hoặc null nếu chưa cần gửi
+     */
+    public synchronized Map<String, Object> poll(long nowNanos) {
+        if (!dirty || (sentOnce && nowNanos - lastSentNanos < options.getMinIntervalNanos())) {
+            return null;
+        }
+        dirty = false;
+
+        boolean thresholded = options.getMinChange() > 0;
+        boolean[] significant = new boolean[SubscriptionOptions.FIELD_COUNT];
+        boolean anySignificant = false;
+        for (int field = 0; field < SubscriptionOptions.FIELD_COUNT; field++) {
+            if (options.includes(field) && (!sentOnce || isSignificant(latest[field], lastSent[field]))) {
+                significant[field] = true;
+                anySignificant = true;
+            }
+        }
+        // Delta / x-min-change: không có field nào thay đổi (đủ ngưỡng) thì không gửi frame
+        if ((options.isDelta() || thresholded) && !anySignificant) {
+            return null;
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("scaleId", scaleId);
+        payload.put("lastTime", latestTime);
+        for (int field = 0; field < SubscriptionOptions.FIELD_COUNT; field++) {
+            if (!options.includes(field) || (options.isDelta() && !significant[field])) {
+                continue;
+            }
+            payload.put(SubscriptionOptions.fieldName(field), latest[field]);
+            lastSent[field] = latest[field];
+        }
+        sentOnce = true;
+        lastSentNanos = nowNanos;
+        sentCount++;
+        return payload;
+    }
+
+    /**
+     * Giá trị khác giá trị đã gửi; với x-min-change, 2 giá trị số chỉ khác khi lệch >= ngưỡng
+     */
+    private boolean isSignificant(String value, String sent) {
+        if (Objects.equals(value, sent)) {
+            return false;
+        }
+        double threshold = options.getMinChange();
+        if (threshold <= 0 || value == null || sent == null) {
+            return true;
+        }
+        try {
+            return Math.abs(Double.parseDouble(value) - Double.parseDouble(sent)) >= threshold;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public long getScaleId() {
+        return scaleId;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public SubscriptionOptions getOptions() {
+        return options;
+    }
+
+    public synchronized long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+}
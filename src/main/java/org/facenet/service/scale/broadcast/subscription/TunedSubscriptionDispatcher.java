@@ -0,0 +1,57 @@
+package org.facenet.service.scale.broadcast.subscription;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.SchedulingConfig;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.broadcast.MeasurementListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatcher cho các subscription có tuỳ chọn
+ *
+ * - onMeasurement(): chỉ copy giá trị mới nhất vào subscription liên quan (conflation, không block)
+ * - dispatch(): mỗi tick gửi tối đa 1 frame cho mỗi subscription, tuân theo x-max-rate / x-min-change;
+ *   frame là JSON array 1 phần tử, cùng dạng với frame của /topic/scale/{id} thường
+ * Client chậm chỉ nhận ít frame hơn, không làm phình outbound buffer của server.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TunedSubscriptionDispatcher implements MeasurementListener {
+
+    private final TunedSubscriptionRegistry registry;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Override
+    public void onMeasurement(MeasurementEvent event) {
+        List<TunedSubscription> subscriptions = registry.forScale(event.scaleIdAsLong());
+        for (TunedSubscription subscription : subscriptions) {
+            subscription.update(event);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.broadcast.subscription-tick-ms:50}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void dispatch() {
+        long now = System.nanoTime();
+        for (List<TunedSubscription> subscriptions : registry.all()) {
+            for (TunedSubscription subscription : subscriptions) {
+                Map<String, Object> payload = subscription.poll(now);
+                if (payload == null) {
+                    continue;
+                }
+                try {
+                    messagingTemplate.convertAndSend(subscription.getDestination(), List.of(payload));
+                } catch (Exception e) {
+                    log.error("[BROADCAST] Error sending tuned frame to {}: {}",
+                            subscription.getDestination(), e.getMessage());
+                }
+            }
+        }
+    }
+}
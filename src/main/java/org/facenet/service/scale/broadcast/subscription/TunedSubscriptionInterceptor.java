@@ -0,0 +1,98 @@
+package org.facenet.service.scale.broadcast.subscription;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Interceptor trên clientInboundChannel xử lý SUBSCRIBE có tuỳ chọn (x-max-rate / x-fields / x-delta / x-min-change)
+ *
+ * - SUBSCRIBE /topic/scale/{id} kèm tuỳ chọn: đăng ký TunedSubscription và đổi destination sang
+ *   topic riêng /topic/tuned/{sessionId}/{subscriptionId}, nên client không nhận luồng raw nữa
+ * - UNSUBSCRIBE / DISCONNECT: huỷ đăng ký
+ * - Client không được subscribe trực tiếp vào /topic/tuned/**
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TunedSubscriptionInterceptor implements ChannelInterceptor {
+
+    public static final String TUNED_DESTINATION_PREFIX = "/topic/tuned/";
+
+    private static final Pattern SCALE_TOPIC = Pattern.compile("^/topic/scale/(\\d+)$");
+
+    private final TunedSubscriptionRegistry registry;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.SUBSCRIBE) {
+            return handleSubscribe(message, accessor);
+        }
+        if (command == StompCommand.UNSUBSCRIBE) {
+            registry.unregister(accessor.getSessionId(), accessor.getSubscriptionId());
+        } else if (command == StompCommand.DISCONNECT) {
+            registry.unregisterSession(accessor.getSessionId());
+        }
+        return message;
+    }
+
+    private Message<?> handleSubscribe(Message<?> message, StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            return message;
+        }
+        if (destination.startsWith(TUNED_DESTINATION_PREFIX)) {
+            throw new MessagingException(message, "Direct subscription to " + TUNED_DESTINATION_PREFIX + "** is not allowed");
+        }
+
+        Matcher matcher = SCALE_TOPIC.matcher(destination);
+        if (!matcher.matches()) {
+            return message;
+        }
+
+        SubscriptionOptions options;
+        try {
+            options = SubscriptionOptions.fromHeaders(accessor);
+        } catch (IllegalArgumentException e) {
+            throw new MessagingException(message, e.getMessage());
+        }
+        if (options == null) {
+            return message;
+        }
+
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String privateDestination = TUNED_DESTINATION_PREFIX + sessionId + "/" + subscriptionId;
+        try {
+            registry.register(new TunedSubscription(sessionId, subscriptionId,
+                    Long.parseLong(matcher.group(1)), privateDestination, options));
+        } catch (IllegalStateException e) {
+            throw new MessagingException(message, e.getMessage());
+        }
+
+        log.debug("[BROADCAST] Tuned subscription {} of session {} on {} (minIntervalNs={}, fieldMask={}, delta={})",
+                subscriptionId, sessionId, destination,
+                options.getMinIntervalNanos(), options.getFieldMask(), options.isDelta());
+
+        StompHeaderAccessor rewritten = StompHeaderAccessor.wrap(message);
+        rewritten.setDestination(privateDestination);
+        return MessageBuilder.createMessage(message.getPayload(), rewritten.getMessageHeaders());
+    }
+}
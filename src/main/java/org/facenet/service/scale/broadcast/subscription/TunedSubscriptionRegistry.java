@@ -0,0 +1,84 @@
+package org.facenet.service.scale.broadcast.subscription;
+
+import lombok.RequiredArgsConstructor;
+import org.facenet.config.BroadcastProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry các subscription có tuỳ chọn, tra cứu theo scaleId (khi có event) và theo session (khi cleanup)
+ */
+@Component
+@RequiredArgsConstructor
+public class TunedSubscriptionRegistry {
+
+    private final BroadcastProperties broadcastProperties;
+
+    private final Map<Long, List<TunedSubscription>> byScale = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, TunedSubscription>> bySession = new ConcurrentHashMap<>();
+
+    /**
+     * @throws IllegalStateException nếu session vượt quá số subscription cho phép
+     */
+    public void register(TunedSubscription subscription) {
+        Map<String, TunedSubscription> sessionSubscriptions =
+                bySession.computeIfAbsent(subscription.getSessionId(), id -> new ConcurrentHashMap<>());
+        if (sessionSubscriptions.size() >= broadcastProperties.getMaxTunedSubscriptionsPerSession()) {
+            throw new IllegalStateException("Too many tuned subscriptions for session " + subscription.getSessionId());
+        }
+        TunedSubscription previous = sessionSubscriptions.put(subscription.getSubscriptionId(), subscription);
+        if (previous != null) {
+            removeFromScale(previous);
+        }
+        byScale.computeIfAbsent(subscription.getScaleId(), id -> new CopyOnWriteArrayList<>()).add(subscription);
+    }
+
+    public void unregister(String sessionId, String subscriptionId) {
+        Map<String, TunedSubscription> sessionSubscriptions = bySession.get(sessionId);
+        if (sessionSubscriptions == null) {
+            return;
+        }
+        TunedSubscription removed = sessionSubscriptions.remove(subscriptionId);
+        if (removed != null) {
+            removeFromScale(removed);
+        }
+    }
+
+    public void unregisterSession(String sessionId) {
+        Map<String, TunedSubscription> sessionSubscriptions = bySession.remove(sessionId);
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.values().forEach(this::removeFromScale);
+        }
+    }
+
+    public TunedSubscription get(String sessionId, String subscriptionId) {
+        Map<String, TunedSubscription> sessionSubscriptions = bySession.get(sessionId);
+        return sessionSubscriptions != null ? sessionSubscriptions.get(subscriptionId) : null;
+    }
+
+    public List<TunedSubscription> forScale(long scaleId) {
+        List<TunedSubscription> subscriptions = byScale.get(scaleId);
+        return subscriptions != null ? subscriptions : Collections.emptyList();
+    }
+
+    public Collection<List<TunedSubscription>> all() {
+        return byScale.values();
+    }
+
+    public int getSubscriptionCount() {
+        return bySession.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private void removeFromScale(TunedSubscription subscription) {
+        byScale.computeIfPresent(subscription.getScaleId(), (id, list) -> {
+            list.remove(subscription);
+            return list.isEmpty() ? null : list;
+        });
+    }
+}
@@ -4,11 +4,15 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.broadcast.MeasurementListener;
+import org.facenet.service.scale.core.trace.EventTracer;
 import org.facenet.service.scale.persistence.BatchPersistenceService;
+import org.facenet.service.scale.persistence.journal.JournalConsumer;
+import org.facenet.service.scale.persistence.journal.MeasurementJournal;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -21,9 +25,10 @@ import java.util.concurrent.TimeUnit;
  * - Chạy trên các worker threads riêng biệt (4-8 threads)
  * - KHÔNG block ứng dụng chính
  * 
- * Version 1 (V1): Chỉ ghi LOG để kiểm tra luồng dữ liệu
+ * Version 1 (V1): Trace event (mặc định không ghi log - xem EventTracer)
  * Version 2 (V2): Xử lý nghiệp vụ + Push WebSocket realtime
  * Version 3 (V3): Persistence - Lưu dữ liệu vào DB
+ *   (persistence.journal.enabled: ghi vào MeasurementJournal trước, JournalConsumer đưa vào persistence)
  */
 @Slf4j
 @Component
@@ -31,19 +36,28 @@ public class CoreProcessor {
     
     private final BlockingQueue<MeasurementEvent> activeQueue;
     private final ExecutorService coreProcessingExecutor;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final List<MeasurementListener> measurementListeners;
     private final BatchPersistenceService batchPersistenceService;
+    private final EventTracer eventTracer;
+    private final MeasurementJournal journal;
+    private final JournalConsumer journalConsumer;
     private volatile boolean running = false;
     
     public CoreProcessor(
             @Qualifier("measurementEventQueue") BlockingQueue<MeasurementEvent> activeQueue,
             @Qualifier("coreProcessingExecutor") ExecutorService coreProcessingExecutor,
-            SimpMessagingTemplate messagingTemplate,
-            BatchPersistenceService batchPersistenceService) {
+            List<MeasurementListener> measurementListeners,
+            BatchPersistenceService batchPersistenceService,
+            EventTracer eventTracer,
+            MeasurementJournal journal,
+            JournalConsumer journalConsumer) {
         this.activeQueue = activeQueue;
         this.coreProcessingExecutor = coreProcessingExecutor;
-        this.messagingTemplate = messagingTemplate;
+        this.measurementListeners = measurementListeners;
         this.batchPersistenceService = batchPersistenceService;
+        this.eventTracer = eventTracer;
+        this.journal = journal;
+        this.journalConsumer = journalConsumer;
     }
     
     /**
@@ -56,6 +70,9 @@ public class CoreProcessor {
         
         // Start batch persistence processing
         batchPersistenceService.startBatchProcessing();
+
+        // Replay journal từ checkpoint (nếu bật) rồi tiếp tục đọc record mới
+        journalConsumer.start();
         
         // Lấy số worker threads từ executor
         // Default: 4-8 workers theo design spec
@@ -80,14 +97,19 @@ public class CoreProcessor {
                 // Lấy dữ liệu từ Queue (BLOCKING - sẽ đợi nếu queue trống)
                 MeasurementEvent event = activeQueue.take();
                 
-                // V1: Ghi LOG ra console để kiểm tra
-                logMeasurementEvent(workerId, event);
-                
-                // V2: BROADCAST qua WebSocket
-                broadcastMeasurement(event);
-                
-                // V3: PERSISTENCE - Lưu vào DB
-                batchPersistenceService.addToBatch(event);
+                try {
+                    // V1: Trace (sampling / debug theo cân / ring buffer) - không log mặc định
+                    eventTracer.trace(workerId, event);
+                    
+                    // V2: BROADCAST qua WebSocket
+                    broadcastMeasurement(event);
+                    
+                    // V3: PERSISTENCE - Lưu vào DB (persistence tự retain() khi giữ event)
+                    persist(event);
+                } finally {
+                    // Trả tham chiếu của Engine - event về pool khi consumer cuối cùng release()
+                    event.release();
+                }
                 
             } catch (InterruptedException e) {
                 log.warn("[CORE-Worker-{}] Interrupted, stopping...", workerId);
@@ -103,44 +125,41 @@ public class CoreProcessor {
     }
     
     /**
-     * V2: Broadcast measurement qua WebSocket
+     * V2: Broadcast measurement tới các MeasurementListener (fan-out realtime)
      * 
-     * Đẩy dữ liệu tới 2 loại topic:
+     * WebSocketBroadcastAggregator gom event theo cửa sổ thời gian và đẩy theo lô tới:
      * 1. /topic/scales - Topic toàn cục cho tất cả các cân (màn hình tổng quát)
      * 2. /topic/scale/{scaleId} - Topic riêng lẻ cho từng cân (màn hình chi tiết)
      */
     private void broadcastMeasurement(MeasurementEvent event) {
-        try {
-            // Topic toàn cục: Tất cả các cân đẩy chung về đây
-            messagingTemplate.convertAndSend("/topic/scales", event);
-            
-            // Topic riêng lẻ: Chỉ đẩy dữ liệu của 1 cân cụ thể
-            messagingTemplate.convertAndSend("/topic/scale/" + event.getScaleId(), event);
-            
-            log.debug("[CORE] Broadcasted scale {} data to WebSocket", event.getScaleId());
-        } catch (Exception e) {
-            log.error("[CORE] Error broadcasting measurement for scale {}: {}", 
-                    event.getScaleId(), e.getMessage());
-            // Không throw để không ảnh hưởng luồng xử lý chính
+        for (MeasurementListener listener : measurementListeners) {
+            try {
+                listener.onMeasurement(event);
+            } catch (Exception e) {
+                log.error("[CORE] Error broadcasting measurement for scale {}: {}", 
+                        event.getScaleId(), e.getMessage());
+                // Không throw để không ảnh hưởng luồng xử lý chính
+            }
         }
     }
     
     /**
-     * V1: Log measurement event để kiểm tra luồng dữ liệu
+     * V3: Ghi journal trước (nếu bật) - event được coi là đã nhận khi đã nằm trong journal;
+     * ghi journal lỗi thì đưa thẳng vào persistence như khi không có journal
      */
-    private void logMeasurementEvent(int workerId, MeasurementEvent event) {
-        log.info("=====================================");
-        log.info("[CORE-Worker-{}] Received measurement from Scale ID: {}", workerId, event.getScaleId());
-        log.info("[CORE-Worker-{}] Last Time: {}", workerId, event.getLastTime());
-        log.info("[CORE-Worker-{}] Status: {}", workerId, event.getStatus());
-        log.info("[CORE-Worker-{}] D1: {}", workerId, event.getData1() != null ? event.getData1() : "N/A");
-        log.info("[CORE-Worker-{}] D2: {}", workerId, event.getData2() != null ? event.getData2() : "N/A");
-        log.info("[CORE-Worker-{}] D3: {}", workerId, event.getData3() != null ? event.getData3() : "N/A");
-        log.info("[CORE-Worker-{}] D4: {}", workerId, event.getData4() != null ? event.getData4() : "N/A");
-        log.info("[CORE-Worker-{}] D5: {}", workerId, event.getData5() != null ? event.getData5() : "N/A");
-        log.info("=====================================");
+    private void persist(MeasurementEvent event) {
+        if (journal.isOpen()) {
+            try {
+                journal.append(event);
+                return;
+            } catch (Exception e) {
+                log.error("[CORE] Journal append failed for scale {}, persisting directly: {}",
+                        event.getScaleId(), e.getMessage());
+            }
+        }
+        batchPersistenceService.addToBatch(event);
     }
-    
+
     /**
      * Dừng Core Processor khi ứng dụng shutdown
      */
@@ -149,7 +168,8 @@ public class CoreProcessor {
         log.info("[CORE] Stopping Core Processor...");
         running = false;
         
-        // Stop batch persistence
+        // Stop journal consumer (final checkpoint) and batch persistence
+        journalConsumer.stop();
         batchPersistenceService.stopBatchProcessing();
         
         try {
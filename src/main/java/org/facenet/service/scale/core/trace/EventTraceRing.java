@@ -0,0 +1,98 @@
+package org.facenet.service.scale.core.trace;
+
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementStatus;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary ring buffer lưu N event gần nhất đi qua Core Processor
+ *
+ * Mỗi record có kích thước cố định (RECORD_SIZE bytes), ghi đè record cũ nhất khi đầy.
+ * Layout (big endian):
+ * - seq (8) | scaleId (8) | epochNanos (8) | workerId (2) | status (1) | validMask (1) | value[0..4] (5 x 8)
+ * Ghi trực tiếp từ dạng compact của MeasurementEvent (không parse String)
+ */
+public class EventTraceRing {
+
+    public static final int RECORD_SIZE = 8 + 8 + 8 + 2 + 1 + 1 + 5 * 8;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private long sequence = 0;
+
+    public EventTraceRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ring capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocate(capacity * RECORD_SIZE);
+    }
+
+    /**
+     * Ghi 1 event vào ring (ghi đè record cũ nhất nếu đầy)
+     */
+    public synchronized void record(int workerId, MeasurementEvent event) {
+        int offset = (int) (sequence % capacity) * RECORD_SIZE;
+        buffer.putLong(offset, ++sequence);
+        buffer.putLong(offset + 8, event.scaleIdAsLong());
+        buffer.putLong(offset + 16, event.epochNanos());
+        buffer.putShort(offset + 24, (short) workerId);
+        buffer.put(offset + 26, event.measurementStatus().code());
+        buffer.put(offset + 27, (byte) event.validMask());
+        for (int i = 0; i < MeasurementEvent.DATA_SLOTS; i++) {
+            buffer.putDouble(offset + 28 + i * 8, event.value(i));
+        }
+    }
+
+    /**
+     * Copy toàn bộ record hiện có (cũ -> mới) ra mảng byte để dump
+     */
+    public synchronized byte[] snapshot() {
+        int count = (int) Math.min(sequence, capacity);
+        byte[] out = new byte[count * RECORD_SIZE];
+        long first = sequence - count;
+        for (int i = 0; i < count; i++) {
+            int offset = (int) ((first + i) % capacity) * RECORD_SIZE;
+            buffer.get(offset, out, i * RECORD_SIZE, RECORD_SIZE);
+        }
+        return out;
+    }
+
+    /**
+     * Decode dump binary thành danh sách record dạng Map (cho JSON response)
+     */
+    public static List<Map<String, Object>> decode(byte[] dump) {
+        ByteBuffer in = ByteBuffer.wrap(dump);
+        List<Map<String, Object>> records = new ArrayList<>(dump.length / RECORD_SIZE);
+        while (in.remaining() >= RECORD_SIZE) {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("seq", in.getLong());
+            record.put("scaleId", in.getLong());
+            long epochNanos = in.getLong();
+            record.put("lastTime", Instant.ofEpochSecond(0, epochNanos).toString());
+            record.put("workerId", (int) in.getShort());
+            record.put("status", MeasurementStatus.fromCode(in.get()).name());
+            int validMask = in.get() & 0xFF;
+            for (int i = 0; i < MeasurementEvent.DATA_SLOTS; i++) {
+                double value = in.getDouble();
+                record.put("data" + (i + 1), (validMask & (1 << i)) != 0 ? value : null);
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getRecordedCount() {
+        return sequence;
+    }
+}
@@ -0,0 +1,140 @@
+package org.facenet.service.scale.core.trace;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.EventTraceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event Tracer - thay thế việc ghi 9 dòng INFO cho mỗi event trong Core Processor
+ *
+ * - Mặc định: không ghi log gì trên hot path (chỉ vài phép so sánh)
+ * - Debug theo từng cân: bật/tắt runtime qua API, ghi 1 dòng log có cấu trúc cho mỗi event
+ * - Sampling: ghi 1 event mỗi sampleIntervalMs (toàn hệ thống)
+ * - Tất cả log trace bị giới hạn bởi maxLinesPerSecond
+ * - Ring buffer nhị phân (tùy chọn): lưu N event gần nhất, dump khi cần
+ */
+@Slf4j
+@Component
+public class EventTracer {
+
+    private final Set<Long> debugScaleIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastSampleNanos = new AtomicLong();
+    private final AtomicLong rateWindowStartNanos = new AtomicLong();
+    private final AtomicInteger rateWindowCount = new AtomicInteger();
+
+    private volatile long sampleIntervalNanos;
+    private volatile int maxLinesPerSecond;
+    private volatile EventTraceRing ring;
+
+    public EventTracer(EventTraceProperties properties) {
+        this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getSampleIntervalMs());
+        this.maxLinesPerSecond = properties.getMaxLinesPerSecond();
+        this.lastSampleNanos.set(System.nanoTime());
+        this.rateWindowStartNanos.set(System.nanoTime());
+        if (properties.getRing().isEnabled()) {
+            this.ring = new EventTraceRing(properties.getRing().getCapacity());
+        }
+    }
+
+    /**
+     * Hot path: gọi cho MỖI event - phải rẻ khi không bật trace nào
+     */
+    public void trace(int workerId, MeasurementEvent event) {
+        EventTraceRing currentRing = ring;
+        if (currentRing != null) {
+            currentRing.record(workerId, event);
+        }
+
+        if (!debugScaleIds.isEmpty() && debugScaleIds.contains(event.getScaleId())) {
+            logEvent("DEBUG-SCALE", workerId, event);
+        } else if (sampleIntervalNanos > 0 && shouldSample()) {
+            logEvent("SAMPLE", workerId, event);
+        }
+    }
+
+    /**
+     * Bật debug cho 1 cân (mọi event của cân sẽ được log, trong giới hạn rate limit)
+     */
+    public void enableScaleDebug(Long scaleId) {
+        debugScaleIds.add(scaleId);
+        log.info("[TRACE] Enabled debug trace for scale {}", scaleId);
+    }
+
+    public void disableScaleDebug(Long scaleId) {
+        debugScaleIds.remove(scaleId);
+        log.info("[TRACE] Disabled debug trace for scale {}", scaleId);
+    }
+
+    public Set<Long> getDebugScaleIds() {
+        return Set.copyOf(debugScaleIds);
+    }
+
+    public void setSampleIntervalMs(long sampleIntervalMs) {
+        this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, sampleIntervalMs));
+        log.info("[TRACE] Sample interval set to {}ms", sampleIntervalMs);
+    }
+
+    public long getSampleIntervalMs() {
+        return TimeUnit.NANOSECONDS.toMillis(sampleIntervalNanos);
+    }
+
+    public void setMaxLinesPerSecond(int maxLinesPerSecond) {
+        this.maxLinesPerSecond = Math.max(0, maxLinesPerSecond);
+    }
+
+    public int getMaxLinesPerSecond() {
+        return maxLinesPerSecond;
+    }
+
+    /**
+     * Bật ring buffer với capacity cho trước (tạo mới, bỏ dữ liệu cũ)
+     */
+    public void enableRing(int capacity) {
+        this.ring = new EventTraceRing(capacity);
+        log.info("[TRACE] Ring buffer enabled with capacity {}", capacity);
+    }
+
+    public void disableRing() {
+        this.ring = null;
+        log.info("[TRACE] Ring buffer disabled");
+    }
+
+    /**
+     * Ring buffer hiện tại, null nếu đang tắt
+     */
+    public EventTraceRing getRing() {
+        return ring;
+    }
+
+    private boolean shouldSample() {
+        long now = System.nanoTime();
+        long last = lastSampleNanos.get();
+        return now - last >= sampleIntervalNanos && lastSampleNanos.compareAndSet(last, now);
+    }
+
+    private boolean tryAcquireLine() {
+        long now = System.nanoTime();
+        long windowStart = rateWindowStartNanos.get();
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)
+                && rateWindowStartNanos.compareAndSet(windowStart, now)) {
+            rateWindowCount.set(0);
+        }
+        return rateWindowCount.incrementAndGet() <= maxLinesPerSecond;
+    }
+
+    private void logEvent(String reason, int workerId, MeasurementEvent event) {
+        if (!tryAcquireLine()) {
+            return;
+        }
+        log.info("[TRACE] reason={} worker={} scaleId={} lastTime={} status={} d1={} d2={} d3={} d4={} d5={}",
+                reason, workerId, event.getScaleId(), event.getLastTime(), event.getStatus(),
+                event.getData1(), event.getData2(), event.getData3(), event.getData4(), event.getData5());
+    }
+}
@@ -3,6 +3,7 @@ package org.facenet.service.scale.engine;
 import lombok.extern.slf4j.Slf4j;
 import org.facenet.entity.scale.ScaleConfig;
 import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementEventPool;
 
 import java.util.concurrent.BlockingQueue;
 
@@ -23,10 +24,12 @@ public class EngineFactory {
      * 
      * @param config Scale configuration từ DB
      * @param queue Active Queue để đẩy dữ liệu vào
+     * @param eventPool Pool để lấy MeasurementEvent tái sử dụng
      * @return ScaleEngine instance tương ứng
      * @throws IllegalArgumentException nếu protocol không được hỗ trợ
      */
-    public static ScaleEngine createEngine(ScaleConfig config, BlockingQueue<MeasurementEvent> queue) {
+    public static ScaleEngine createEngine(ScaleConfig config, BlockingQueue<MeasurementEvent> queue,
+                                           MeasurementEventPool eventPool) {
         String protocol = config.getProtocol().toUpperCase();
         
         log.debug("Creating engine for scale {} with protocol {}", config.getScaleId(), protocol);
@@ -35,12 +38,12 @@ public class EngineFactory {
             case "MODBUS_TCP":
             case "MODBUSTCP":
             case "TCP":
-                return new ModbusTcpEngine(config, queue);
+                return new ModbusTcpEngine(config, queue, eventPool);
                 
             case "MODBUS_RTU":
             case "MODBUSRTU":
             case "RTU":
-                return new ModbusRtuEngine(config, queue);
+                return new ModbusRtuEngine(config, queue, eventPool);
                 
             case "SERIAL":
                 // TODO: Implement SerialEngine cho giao thức Serial thuần
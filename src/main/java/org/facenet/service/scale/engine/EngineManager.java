@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.facenet.entity.scale.Scale;
 import org.facenet.entity.scale.ScaleConfig;
 import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementEventPool;
 import org.facenet.repository.scale.ScaleRepository;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
@@ -32,6 +33,7 @@ public class EngineManager {
     private final ScaleRepository scaleRepository;
     private final BlockingQueue<MeasurementEvent> queue;
     private final ExecutorService deviceEngineExecutor;
+    private final MeasurementEventPool eventPool;
     
     // Map lưu trữ các engine đang chạy: scaleId -> engine
     private final Map<Long, ScaleEngine> runningEngines = new ConcurrentHashMap<>();
@@ -39,10 +41,12 @@ public class EngineManager {
     public EngineManager(
             ScaleRepository scaleRepository,
             @Qualifier("measurementEventQueue") BlockingQueue<MeasurementEvent> queue,
-            @Qualifier("deviceEngineExecutor") ExecutorService deviceEngineExecutor) {
+            @Qualifier("deviceEngineExecutor") ExecutorService deviceEngineExecutor,
+            MeasurementEventPool eventPool) {
         this.scaleRepository = scaleRepository;
         this.queue = queue;
         this.deviceEngineExecutor = deviceEngineExecutor;
+        this.eventPool = eventPool;
     }
     
     /**
@@ -99,7 +103,7 @@ public class EngineManager {
         
         try {
             // Tạo engine tương ứng protocol
-            ScaleEngine engine = EngineFactory.createEngine(config, queue);
+            ScaleEngine engine = EngineFactory.createEngine(config, queue, eventPool);
             
             // Submit engine vào thread pool
             deviceEngineExecutor.submit(engine);
@@ -9,9 +9,10 @@ import com.intelligt.modbus.jlibmodbus.serial.SerialPort;
 import lombok.extern.slf4j.Slf4j;
 import org.facenet.entity.scale.ScaleConfig;
 import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementEventPool;
+import org.facenet.event.MeasurementStatus;
 import org.facenet.service.scale.engine.util.ModbusDataConverter;
 
-import java.time.ZonedDateTime;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
@@ -37,14 +38,16 @@ public class ModbusRtuEngine implements ScaleEngine {
     
     private final ScaleConfig config;
     private final BlockingQueue<MeasurementEvent> queue;
+    private final MeasurementEventPool eventPool;
     private volatile boolean stopped = false;
     private volatile boolean running = false;
     
     private ModbusMaster master;
     
-    public ModbusRtuEngine(ScaleConfig config, BlockingQueue<MeasurementEvent> queue) {
+    public ModbusRtuEngine(ScaleConfig config, BlockingQueue<MeasurementEvent> queue, MeasurementEventPool eventPool) {
         this.config = config;
         this.queue = queue;
+        this.eventPool = eventPool;
     }
     
     @Override
@@ -90,12 +93,11 @@ public class ModbusRtuEngine implements ScaleEngine {
                         log.info("[Engine {}] Connected to {}", config.getScaleId(), comPort);
                     }
                     
-                    // Tạo MeasurementEvent
-                    MeasurementEvent event = MeasurementEvent.builder()
-                            .scaleId(config.getScaleId())
-                            .lastTime(ZonedDateTime.now())
-                            .status("ONLINE")
-                            .build();
+                    // Lấy MeasurementEvent từ pool (dạng compact - không tạo ZonedDateTime/String)
+                    MeasurementEvent event = eventPool.acquire();
+                    event.setScaleId(config.getScaleId());
+                    event.setEpochNanos(MeasurementEvent.currentEpochNanos());
+                    event.setMeasurementStatus(MeasurementStatus.ONLINE);
                     
                     // Lấy Unit ID (Slave ID)
                     Integer unitId = getConnParam("unit_id");
@@ -104,11 +106,11 @@ public class ModbusRtuEngine implements ScaleEngine {
                     }
                     
                     // Đọc data_1 -> data_5
-                    event.setData1(readRegister(master, unitId, config.getData1()));
-                    event.setData2(readRegister(master, unitId, config.getData2()));
-                    event.setData3(readRegister(master, unitId, config.getData3()));
-                    event.setData4(readRegister(master, unitId, config.getData4()));
-                    event.setData5(readRegister(master, unitId, config.getData5()));
+                    readRegister(master, unitId, config.getData1(), event, 0);
+                    readRegister(master, unitId, config.getData2(), event, 1);
+                    readRegister(master, unitId, config.getData3(), event, 2);
+                    readRegister(master, unitId, config.getData4(), event, 3);
+                    readRegister(master, unitId, config.getData5(), event, 4);
                     
                     // Đẩy vào Queue
                     queue.put(event);
@@ -151,11 +153,13 @@ public class ModbusRtuEngine implements ScaleEngine {
     }
     
     /**
-     * Đọc thanh ghi Modbus và trả về dạng String
+     * Đọc thanh ghi Modbus và ghi vào slot tương ứng của event
+     * Kiểu số được ghi trực tiếp dạng double, slot không dùng/lỗi được để trống
      */
-    private String readRegister(ModbusMaster master, int unitId, Map<String, Object> dataConfig) {
+    private void readRegister(ModbusMaster master, int unitId, Map<String, Object> dataConfig,
+                              MeasurementEvent event, int slot) {
         if (dataConfig == null || !isDataSlotUsed(dataConfig)) {
-            return null;
+            return;
         }
         
         try {
@@ -172,7 +176,7 @@ public class ModbusRtuEngine implements ScaleEngine {
             
             if (startAddress == null || numRegisters == null) {
                 log.warn("[Engine {}] Invalid register config", config.getScaleId());
-                return null;
+                return;
             }
             
             // Đọc Holding Registers
@@ -181,12 +185,11 @@ public class ModbusRtuEngine implements ScaleEngine {
             // Lấy data_type từ config
             String dataType = getDataConfigParam(dataConfig, "data_type");
             
-            // Convert sang String với data_type tương ứng
-            return ModbusDataConverter.registersToString(registers, dataType);
+            // Ghi vào event với data_type tương ứng
+            ModbusDataConverter.writeToEvent(registers, dataType, event, slot);
             
         } catch (Exception e) {
             log.error("[Engine {}] Error reading register: {}", config.getScaleId(), e.getMessage());
-            return null;
         }
     }
     
@@ -1,6 +1,7 @@
 package org.facenet.service.scale.engine.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.facenet.event.MeasurementEvent;
 
 import java.util.Arrays;
 
@@ -95,6 +96,71 @@ public class ModbusDataConverter {
         }
     }
     
+    /**
+     * Ghi dữ liệu thanh ghi vào slot của MeasurementEvent THEO DATA_TYPE từ config
+     * 
+     * Kiểu số (integer, float, auto 1-2 thanh ghi) được ghi trực tiếp dạng double - KHÔNG tạo String.
+     * Kiểu không phải số (string, boolean, mảng thanh ghi) vẫn được ghi dạng String như registersToString.
+     * 
+     * @param registers Mảng thanh ghi đọc được từ Modbus
+     * @param dataType Kiểu dữ liệu từ config: "integer", "float", "string", "boolean"
+     * @param event Event cần ghi
+     * @param slot Slot dữ liệu (0-4 tương ứng data_1 -> data_5)
+     */
+    public static void writeToEvent(int[] registers, String dataType, MeasurementEvent event, int slot) {
+        if (registers == null || registers.length == 0) {
+            event.setData(slot, null);
+            return;
+        }
+        
+        String type = dataType != null ? dataType.toLowerCase() : "auto";
+        switch (type) {
+            case "integer":
+            case "int":
+                if (registers.length == 1) {
+                    event.setValue(slot, registers[0] & 0xFFFF, true);
+                    return;
+                } else if (registers.length == 2) {
+                    event.setValue(slot, (registers[0] << 16) | (registers[1] & 0xFFFF), true);
+                    return;
+                }
+                break;
+                
+            case "float":
+                if (registers.length == 2) {
+                    event.setValue(slot, registersToFloatBE(registers), false);
+                    return;
+                } else if (registers.length == 4) {
+                    long combined = ((long)registers[0] << 48) | 
+                                  ((long)registers[1] << 32) |
+                                  ((long)registers[2] << 16) | 
+                                  (registers[3] & 0xFFFF);
+                    event.setValue(slot, Double.longBitsToDouble(combined), false);
+                    return;
+                }
+                break;
+                
+            case "boolean":
+            case "bool":
+            case "string":
+            case "text":
+                event.setData(slot, registersToString(registers, dataType));
+                return;
+                
+            default:
+                break;
+        }
+        
+        // Auto-detect (giống registersToStringAuto)
+        if (registers.length == 1) {
+            event.setValue(slot, registers[0], true);
+        } else if (registers.length == 2) {
+            event.setValue(slot, registersToFloatBE(registers), false);
+        } else {
+            event.setData(slot, registersToStringAuto(registers));
+        }
+    }
+    
     /**
      * Chuyển đổi mảng thanh ghi Modbus sang String (Auto-detect - Backward compatible)
      * 
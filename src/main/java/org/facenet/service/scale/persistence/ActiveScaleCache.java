@@ -0,0 +1,84 @@
+package org.facenet.service.scale.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.repository.scale.ScaleRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Cache in-memory tập scaleId đang active - thay cho scaleRepository.findById khi kiểm tra cân tồn tại
+ * trên đường ghi scale_current_states
+ *
+ * - Load bằng 1 query projection nhẹ, reload định kỳ (persistence.current-state.scale-cache-refresh-ms)
+ * - Gặp scaleId chưa biết (cân vừa được tạo/kích hoạt): reload ngay, nhưng không quá 1 lần
+ *   mỗi miss-refresh-interval-ms để scaleId rác không biến thành 1 query mỗi event
+ */
+@Slf4j
+@Component
+public class ActiveScaleCache {
+
+    private final ScaleRepository scaleRepository;
+    private final PersistenceProperties persistenceProperties;
+
+    private volatile Set<Long> activeScaleIds;
+    private volatile long lastLoadNanos;
+
+    public ActiveScaleCache(ScaleRepository scaleRepository, PersistenceProperties persistenceProperties) {
+        this.scaleRepository = scaleRepository;
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    /**
+     * Cân có đang active không (chỉ chạm DB khi chưa load hoặc khi miss và đã quá khoảng reload tối thiểu)
+     */
+    public boolean isActive(long scaleId) {
+        Set<Long> ids = activeScaleIds;
+        if (ids == null) {
+            ids = load();
+        }
+        if (ids.contains(scaleId)) {
+            return true;
+        }
+        long minIntervalNanos = persistenceProperties.getCurrentState().getMissRefreshIntervalMs() * 1_000_000L;
+        if (System.nanoTime() - lastLoadNanos >= minIntervalNanos) {
+            ids = load();
+        }
+        return ids.contains(scaleId);
+    }
+
+    /**
+     * Bỏ cache hiện tại - lần kiểm tra tiếp theo sẽ load lại
+     */
+    public void invalidate() {
+        activeScaleIds = null;
+    }
+
+    @Scheduled(fixedDelayString = "${persistence.current-state.scale-cache-refresh-ms:60000}")
+    public void refresh() {
+        load();
+    }
+
+    public int size() {
+        Set<Long> ids = activeScaleIds;
+        return ids != null ? ids.size() : 0;
+    }
+
+    private synchronized Set<Long> load() {
+        try {
+            Set<Long> loaded = new HashSet<>(scaleRepository.findActiveIds());
+            activeScaleIds = loaded;
+            log.debug("[PERSISTENCE] Active scale cache refreshed: {} scales", loaded.size());
+            return loaded;
+        } catch (Exception e) {
+            log.error("[PERSISTENCE] Failed to refresh active scale cache: {}", e.getMessage());
+            Set<Long> current = activeScaleIds;
+            return current != null ? current : Set.of();
+        } finally {
+            lastLoadNanos = System.nanoTime();
+        }
+    }
+}
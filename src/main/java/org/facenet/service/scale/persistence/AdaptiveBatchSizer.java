@@ -0,0 +1,72 @@
+package org.facenet.service.scale.persistence;
+
+/**
+ * Điều chỉnh kích thước batch theo độ trễ commit (AIMD)
+ *
+ * - Batch đầy và commit nhanh hơn mục tiêu: tăng cộng dần (~12.5% mỗi lần) để gom nhiều dòng hơn mỗi round trip
+ * - Commit chậm hơn mục tiêu (DB đang quá tải): giảm một nửa ngay
+ * - Batch chưa đầy (không đủ tải): giữ nguyên - độ trễ của batch nhỏ không nói lên gì về batch lớn hơn
+ * Độ trễ được làm mượt bằng EWMA để 1 commit chậm đơn lẻ không làm dao động kích thước.
+ * Không thread-safe: mỗi persistence writer có sizer riêng.
+ */
+public class AdaptiveBatchSizer {
+
+    private static final double SMOOTHING = 0.3;
+
+    private final int minSize;
+    private final int maxSize;
+    private final double targetLatencyMs;
+    private final boolean enabled;
+
+    private int size;
+    private double smoothedLatencyMs = -1;
+
+    public AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, long targetLatencyMs, boolean enabled) {
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid batch size bounds: min=" + minSize + ", max=" + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatencyMs = targetLatencyMs;
+        this.enabled = enabled;
+        this.size = enabled ? clamp(initialSize) : Math.max(1, initialSize);
+    }
+
+    /**
+     * Kích thước batch tối đa cho lần drain tiếp theo
+     */
+    public int currentSize() {
+        return size;
+    }
+
+    /**
+     * Ghi nhận kết quả 1 batch
+     *
+     * @param batchSize số event thực tế trong batch
+     * @param latencyMs thời gian ghi + commit của batch
+     */
+    public void record(int batchSize, long latencyMs) {
+        if (!enabled) {
+            return;
+        }
+        smoothedLatencyMs = smoothedLatencyMs < 0
+                ? latencyMs
+                : SMOOTHING * latencyMs + (1 - SMOOTHING) * smoothedLatencyMs;
+
+        if (smoothedLatencyMs > targetLatencyMs) {
+            size = clamp(size / 2);
+            // Bắt đầu đo lại từ độ trễ hiện tại của batch nhỏ hơn
+            smoothedLatencyMs = -1;
+        } else if (batchSize >= size) {
+            size = clamp(size + Math.max(1, size / 8));
+        }
+    }
+
+    public double getSmoothedLatencyMs() {
+        return smoothedLatencyMs;
+    }
+
+    private int clamp(int value) {
+        return Math.max(minSize, Math.min(maxSize, value));
+    }
+}
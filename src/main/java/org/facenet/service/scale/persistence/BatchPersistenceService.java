@@ -6,117 +6,373 @@ import org.facenet.event.MeasurementEvent;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Batch Persistence Service
  * Accumulates measurement events and persists them in batches for better performance
+ *
+ * Pipeline gồm persistence.batch.writers writer song song:
+ * - Event được phân vùng theo scaleId (scaleId mod writers) nên mỗi cân luôn do cùng 1 writer ghi,
+ *   thứ tự theo cân được giữ nguyên
+ * - Mỗi writer có hàng đợi/batch riêng, chạy trên thread riêng và mượn connection riêng từ Hikari
+ *   cho mỗi transaction -> throughput không còn bị giới hạn bởi độ trễ của 1 connection
+ * - Kích thước batch của mỗi writer tự điều chỉnh theo độ trễ commit (AdaptiveBatchSizer)
+ *
+ * Mỗi batch:
+ * 1. weighing_logs: insert cả batch bằng JDBC batch trong 1 transaction (WeighingLogBatchWriter)
+ *    hoặc COPY BINARY khi persistence.batch.mode=COPY (WeighingLogCopyWriter)
+ * 2. scale_current_states: event mới nhất của mỗi cân trong batch được ghi bằng 1 bulk UPSERT
+ *    (ScaleCurrentStateUpsertWriter)
+ * 3. Các event đã ghi được cộng vào rollup giờ/ngày trong bộ nhớ (ScaleRollupAccumulator)
+ *
+ * Khi bật journal (persistence.journal.enabled), event đến từ JournalConsumer theo thứ tự offset:
+ * - DB không truy cập được: batch được giữ lại và thử lại với backoff thay vì dead letter
+ *   (dữ liệu vẫn an toàn trong journal)
+ * - Lỗi khác khi ghi weighing_logs: cả batch vào dead letter; nếu ghi dead letter cũng lỗi,
+ *   watermark của writer dừng trước batch để journal replay lại sau khi khởi động lại
+ * - Mỗi writer duy trì low watermark = offset journal nhỏ nhất mà writer chưa ghi xong;
+ *   checkpoint của journal = min các watermark (xem getCommittedJournalOffset)
  */
 @Slf4j
 @Service
 public class BatchPersistenceService {
 
-    private final PersistenceService persistenceService;
+    private final WeighingLogBatchWriter weighingLogBatchWriter;
+    private final WeighingLogCopyWriter weighingLogCopyWriter;
+    private final ScaleCurrentStateUpsertWriter currentStateUpsertWriter;
+    private final DeadLetterService deadLetterService;
+    private final ScaleRollupAccumulator rollupAccumulator;
     private final ExecutorService batchPersistenceExecutor;
     private final PersistenceProperties persistenceProperties;
-    private final BlockingQueue<MeasurementEvent> batchQueue = new LinkedBlockingQueue<>();
+    private static final long RETRY_INITIAL_BACKOFF_MS = 500;
+
+    /**
+     * Kết quả persistBatch khi batch bị bỏ dở
+     */
+    static final long ABORTED = -1L;
+
+    private final PartitionWriter[] writers;
+    private final boolean retryUnavailableDatabase;
     private volatile boolean running = true;
 
+    /**
+     * Mọi record journal có offset < dispatchedJournalOffset đã được đưa vào queue của các writer
+     */
+    private volatile long dispatchedJournalOffset = -1L;
+
     public BatchPersistenceService(
-            PersistenceService persistenceService,
+            WeighingLogBatchWriter weighingLogBatchWriter,
+            WeighingLogCopyWriter weighingLogCopyWriter,
+            ScaleCurrentStateUpsertWriter currentStateUpsertWriter,
+            DeadLetterService deadLetterService,
+            ScaleRollupAccumulator rollupAccumulator,
             @Qualifier("batchPersistenceExecutor") ExecutorService batchPersistenceExecutor,
             PersistenceProperties persistenceProperties) {
-        this.persistenceService = persistenceService;
+        this.weighingLogBatchWriter = weighingLogBatchWriter;
+        this.weighingLogCopyWriter = weighingLogCopyWriter;
+        this.currentStateUpsertWriter = currentStateUpsertWriter;
+        this.deadLetterService = deadLetterService;
+        this.rollupAccumulator = rollupAccumulator;
         this.batchPersistenceExecutor = batchPersistenceExecutor;
         this.persistenceProperties = persistenceProperties;
+
+        PersistenceProperties.Batch batchProperties = persistenceProperties.getBatch();
+        this.writers = new PartitionWriter[Math.max(1, batchProperties.getWriters())];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new PartitionWriter(i + 1, new AdaptiveBatchSizer(
+                    batchProperties.getSize(),
+                    batchProperties.getMinSize(),
+                    batchProperties.getMaxSize(),
+                    batchProperties.getTargetCommitMs(),
+                    batchProperties.isAdaptive()));
+        }
+        this.retryUnavailableDatabase = persistenceProperties.getJournal().isEnabled();
     }
 
     /**
-     * Add measurement event to batch queue
+     * Add measurement event to the batch queue of the writer owning its scale
+     * The event is retained until its batch has been persisted
      */
     public void addToBatch(MeasurementEvent event) {
+        event.retain();
         try {
-            batchQueue.put(event);
+            writerFor(event.scaleIdAsLong()).queue.put(event);
         } catch (InterruptedException e) {
+            event.release();
             log.warn("[BATCH] Interrupted while adding event to batch queue for scale {}", event.getScaleId());
             Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Start batch processing in background thread
+     * Start one background thread per persistence writer
      */
     public void startBatchProcessing() {
-        batchPersistenceExecutor.submit(this::processBatches);
-        log.info("[BATCH] Started batch persistence processing with batch-size={}, timeout={}ms", 
-                persistenceProperties.getBatch().getSize(), 
-                persistenceProperties.getBatch().getTimeoutMs());
+        for (PartitionWriter writer : writers) {
+            batchPersistenceExecutor.submit(() -> processBatches(writer));
+        }
+        PersistenceProperties.Batch batchProperties = persistenceProperties.getBatch();
+        log.info("[BATCH] Started {} persistence writers with batch-size={} (adaptive={}, {}-{}, target {}ms), timeout={}ms",
+                writers.length,
+                batchProperties.getSize(),
+                batchProperties.isAdaptive(),
+                batchProperties.getMinSize(),
+                batchProperties.getMaxSize(),
+                batchProperties.getTargetCommitMs(),
+                batchProperties.getTimeoutMs());
     }
 
     /**
-     * Process batches continuously
+     * Writer owning the partition of a scale - the same scale always maps to the same writer
      */
-    private void processBatches() {
-        log.info("[BATCH] Batch processing thread started");
+    PartitionWriter writerFor(long scaleId) {
+        return writers[(int) Math.floorMod(scaleId, (long) writers.length)];
+    }
+
+    int getWriterCount() {
+        return writers.length;
+    }
+
+    /**
+     * Process batches of one writer continuously
+     */
+    private void processBatches(PartitionWriter writer) {
+        log.info("[BATCH] Persistence writer {} started", writer.id);
 
         while (running) {
             try {
-                processBatch();
+                processBatch(writer);
             } catch (Exception e) {
-                log.error("[BATCH] Error in batch processing: {}", e.getMessage(), e);
+                log.error("[BATCH] Error in persistence writer {}: {}", writer.id, e.getMessage(), e);
             }
         }
 
-        log.info("[BATCH] Batch processing thread stopped");
+        log.info("[BATCH] Persistence writer {} stopped", writer.id);
     }
 
     /**
-     * Process one batch of events
+     * Process one batch of events of one writer
      */
-    private void processBatch() {
-        List<MeasurementEvent> batch = new java.util.ArrayList<>();
+    private void processBatch(PartitionWriter writer) {
+        List<MeasurementEvent> batch = new ArrayList<>();
 
         try {
             // Wait for first event
-            MeasurementEvent firstEvent = batchQueue.poll(
-                    persistenceProperties.getBatch().getTimeoutMs(), 
+            MeasurementEvent firstEvent = writer.queue.poll(
+                    persistenceProperties.getBatch().getTimeoutMs(),
                     TimeUnit.MILLISECONDS);
-            if (firstEvent != null) {
-                batch.add(firstEvent);
+            if (firstEvent == null) {
+                writer.advanceWatermark(dispatchedJournalOffset);
+                return;
+            }
+            batch.add(firstEvent);
 
-                // Drain remaining events up to batch size
-                batchQueue.drainTo(batch, persistenceProperties.getBatch().getSize() - 1);
+            // Drain remaining events up to the writer's current batch size
+            int maxBatchSize = writer.sizer.currentSize();
+            writer.queue.drainTo(batch, maxBatchSize - 1);
 
-                // Persist the batch
-                persistBatch(batch);
+            // Persist the batch and feed its commit latency back into the sizer
+            long commitMs;
+            try {
+                commitMs = persistBatch(batch);
+            } catch (RuntimeException e) {
+                // Batch không được ghi cũng không vào dead letter: giữ watermark để journal replay lại khi khởi động
+                writer.holdWatermark(firstJournalOffset(batch));
+                throw e;
+            }
+            if (commitMs == ABORTED) {
+                return;
+            }
+            writer.sizer.record(batch.size(), commitMs);
+            writer.advanceWatermark(dispatchedJournalOffset);
+            if (writer.sizer.currentSize() != maxBatchSize) {
+                log.debug("[BATCH] Writer {} batch size {} -> {} (commit latency ~{}ms)",
+                        writer.id, maxBatchSize, writer.sizer.currentSize(),
+                        Math.round(writer.sizer.getSmoothedLatencyMs()));
             }
         } catch (InterruptedException e) {
-            log.warn("[BATCH] Batch processing interrupted");
+            log.warn("[BATCH] Persistence writer {} interrupted", writer.id);
             Thread.currentThread().interrupt();
         }
     }
 
     /**
      * Persist a batch of events
+     *
+     * @return thời gian (ms) của các lần ghi DB thành công - không tính các lần thử lỗi và thời gian backoff,
+     *         để AdaptiveBatchSizer chỉ thấy độ trễ commit thật; ABORTED nếu batch bị bỏ dở
+     *         (dừng service khi DB đang không truy cập được, journal sẽ replay lại)
      */
-    private void persistBatch(List<MeasurementEvent> batch) {
+    long persistBatch(List<MeasurementEvent> batch) {
         long startTime = System.currentTimeMillis();
+        long[] commitNanos = new long[1];
 
-        for (MeasurementEvent event : batch) {
+        try {
+            // Historical logs: 1 JDBC batch, failed rows isolated by bisection and dead-lettered
+            Set<MeasurementEvent> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            BiConsumer<MeasurementEvent, Exception> onFailure = (event, e) -> {
+                log.error("[BATCH] Failed to insert weighing log for scale {}: {}", event.getScaleId(), e.getMessage());
+                deadLetterService.writeDeadLetter(event, e);
+                failed.add(event);
+            };
+            Integer inserted;
+            try {
+                inserted = withDatabaseRetry(batch, commitNanos, () ->
+                        persistenceProperties.getBatch().getMode() == PersistenceProperties.WriteMode.COPY
+                                ? weighingLogCopyWriter.write(batch, onFailure)
+                                : weighingLogBatchWriter.write(batch, onFailure));
+            } catch (RuntimeException e) {
+                // Lỗi không phải do DB không truy cập được: dead letter các event chưa được xử lý,
+                // nếu không watermark sẽ vượt qua batch và journal không bao giờ replay lại
+                log.error("[BATCH] Unexpected error persisting {} events, dead-lettering them: {}",
+                        batch.size(), e.getMessage(), e);
+                for (MeasurementEvent event : batch) {
+                    if (failed.add(event)) {
+                        deadLetterService.writeDeadLetter(event, e);
+                    }
+                }
+                inserted = 0;
+            }
+            if (inserted == null) {
+                return ABORTED;
+            }
+            if (inserted > 0) {
+                rollupAccumulator.add(batch, failed);
+            }
+
+            // Current state: latest event per scale only, written with one bulk upsert
+            Map<Long, MeasurementEvent> latestByScale = new LinkedHashMap<>();
+            for (MeasurementEvent event : batch) {
+                latestByScale.merge(event.scaleIdAsLong(), event,
+                        (current, candidate) -> candidate.epochNanos() >= current.epochNanos() ? candidate : current);
+            }
+            Integer states;
             try {
-                persistenceService.persistMeasurement(event);
+                states = withDatabaseRetry(null, commitNanos, () -> currentStateUpsertWriter.upsert(latestByScale.values()));
             } catch (Exception e) {
-                log.error("[BATCH] Failed to persist event for scale {}: {}", event.getScaleId(), e.getMessage());
-                // Continue with other events in batch
+                states = 0;
+                log.error("[BATCH] Failed to upsert current states for {} scales: {}", latestByScale.size(), e.getMessage());
             }
+            if (states == null) {
+                return ABORTED;
+            }
+
+            long duration = System.currentTimeMillis() - startTime;
+            long commitMs = commitNanos[0] / 1_000_000L;
+            log.debug("[BATCH] Persisted {}/{} events, {}/{} current states in {}ms (commit {}ms)",
+                    inserted, batch.size(), states, latestByScale.size(), duration, commitMs);
+            return commitMs;
+        } finally {
+            // Release events back to the pool once persisted (or dead-lettered)
+            batch.forEach(MeasurementEvent::release);
         }
+    }
 
-        long duration = System.currentTimeMillis() - startTime;
-        log.debug("[BATCH] Persisted {} events in {}ms", batch.size(), duration);
+    /**
+     * Chạy 1 bước ghi DB; khi DB không truy cập được:
+     * - có journal: thử lại với backoff tăng dần cho đến khi thành công (null nếu service dừng giữa chừng)
+     * - không có journal: dead letter các event của bước (nếu có) như trước
+     * Thời gian của lần chạy thành công được cộng vào commitNanos[0]
+     */
+    private Integer withDatabaseRetry(List<MeasurementEvent> deadLetterOnFailure, long[] commitNanos,
+                                      Supplier<Integer> step) {
+        long backoffMs = RETRY_INITIAL_BACKOFF_MS;
+        while (true) {
+            long attemptStart = System.nanoTime();
+            try {
+                Integer result = step.get();
+                commitNanos[0] += System.nanoTime() - attemptStart;
+                return result;
+            } catch (RuntimeException e) {
+                if (!WeighingLogBatchWriter.isDatabaseUnavailable(e)) {
+                    throw e;
+                }
+                if (!retryUnavailableDatabase) {
+                    if (deadLetterOnFailure == null) {
+                        throw e;
+                    }
+                    log.error("[BATCH] Database unavailable, dead-lettering {} events: {}",
+                            deadLetterOnFailure.size(), e.getMessage());
+                    deadLetterOnFailure.forEach(event -> deadLetterService.writeDeadLetter(event, e));
+                    return 0;
+                }
+                if (!running) {
+                    return null;
+                }
+                log.warn("[BATCH] Database unavailable ({}), retrying in {}ms", e.getMessage(), backoffMs);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                backoffMs = Math.min(backoffMs * 2, persistenceProperties.getJournal().getMaxRetryBackoffMs());
+            }
+        }
+    }
+
+    private static long firstJournalOffset(List<MeasurementEvent> batch) {
+        long first = -1L;
+        for (MeasurementEvent event : batch) {
+            long offset = event.journalOffset();
+            if (offset >= 0 && (first < 0 || offset < first)) {
+                first = offset;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Đánh dấu mọi record journal có offset < offset đã được đưa vào queue (gọi bởi JournalConsumer
+     * sau mỗi lượt đọc, sau khi các event đã addToBatch)
+     */
+    public void markJournalDispatched(long offset) {
+        dispatchedJournalOffset = offset;
+    }
+
+    /**
+     * Đặt lại watermark của mọi writer về vị trí bắt đầu đọc journal (trước khi JournalConsumer chạy)
+     */
+    public void resetJournalWatermarks(long offset) {
+        dispatchedJournalOffset = offset;
+        for (PartitionWriter writer : writers) {
+            writer.lowWatermark = offset;
+        }
+    }
+
+    /**
+     * Offset journal mà mọi record phía trước đã được ghi DB (hoặc dead letter) - dùng làm checkpoint
+     */
+    public long getCommittedJournalOffset() {
+        long committed = dispatchedJournalOffset;
+        for (PartitionWriter writer : writers) {
+            committed = Math.min(committed, writer.lowWatermark);
+        }
+        return committed;
+    }
+
+    /**
+     * Tổng số event đang chờ trong queue của các writer
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (PartitionWriter writer : writers) {
+            pending += writer.queue.size();
+        }
+        return pending;
     }
 
     /**
@@ -126,4 +382,61 @@ public class BatchPersistenceService {
         running = false;
         log.info("[BATCH] Stopping batch persistence processing");
     }
+
+    /**
+     * Hàng đợi + bộ điều chỉnh batch của 1 writer (chỉ thread của writer đó đọc queue và dùng sizer)
+     */
+    static final class PartitionWriter {
+        private final int id;
+        private final BlockingQueue<MeasurementEvent> queue = new LinkedBlockingQueue<>();
+        private final AdaptiveBatchSizer sizer;
+
+        /**
+         * Offset journal nhỏ nhất mà writer này có thể chưa ghi xong (chỉ thread của writer cập nhật)
+         */
+        private volatile long lowWatermark = -1L;
+
+        /**
+         * >= 0: 1 batch từ offset này bị lỗi mà không ghi được dead letter, watermark dừng tại đây đến khi khởi động lại
+         */
+        private long heldOffset = -1L;
+
+        PartitionWriter(int id, AdaptiveBatchSizer sizer) {
+            this.id = id;
+            this.sizer = sizer;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        int getQueueSize() {
+            return queue.size();
+        }
+
+        /**
+         * Gọi bởi thread của writer khi không còn batch dở dang
+         * dispatched phải được đọc TRƯỚC khi xem queue: event đến sau lần đọc đó luôn có offset >= dispatched
+         */
+        void advanceWatermark(long dispatched) {
+            if (heldOffset >= 0) {
+                return;
+            }
+            MeasurementEvent head = queue.peek();
+            if (head == null) {
+                lowWatermark = dispatched;
+            } else if (head.journalOffset() >= 0) {
+                lowWatermark = head.journalOffset();
+            }
+            // head không đi qua journal (ghi journal lỗi): giữ watermark cũ cho an toàn
+        }
+
+        void holdWatermark(long offset) {
+            if (offset >= 0 && heldOffset < 0) {
+                heldOffset = offset;
+                lowWatermark = Math.min(lowWatermark, offset);
+                log.error("[BATCH] Writer {} holds its journal watermark at {} until restart", id, offset);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package org.facenet.service.scale.persistence;
+
+import java.time.Instant;
+
+/**
+ * Nguồn created_at (microsecond, UTC) dùng chung cho journal, batch writer và dead letter
+ *
+ * - Giá trị tăng dần trong toàn tiến trình, không bao giờ lùi kể cả khi đồng hồ hệ thống lùi
+ *   -> mỗi event có khoá (scale_id, created_at) riêng dù được gán ở đâu
+ * - Event đi qua journal được gán khi append và created_at nằm trong record, nên replay sau crash
+ *   ghi lại đúng khoá cũ và INSERT ... ON CONFLICT DO NOTHING bỏ qua dòng đã ghi
+ */
+public final class CreatedAtClock {
+
+    private static long lastMicros;
+
+    private CreatedAtClock() {
+    }
+
+    /**
+     * created_at kế tiếp, lớn hơn mọi giá trị đã cấp trước đó
+     */
+    public static synchronized long nextMicros() {
+        Instant now = Instant.now();
+        long micros = Math.max(now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000, lastMicros + 1);
+        lastMicros = micros;
+        return micros;
+    }
+}
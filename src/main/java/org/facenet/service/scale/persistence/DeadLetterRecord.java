@@ -0,0 +1,45 @@
+package org.facenet.service.scale.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.facenet.event.MeasurementEvent;
+
+import java.time.OffsetDateTime;
+
+/**
+ * 1 dòng NDJSON của dead-letter log
+ *
+ * createdAt = created_at đã gán cho event ở lần ghi weighing_logs đầu tiên (gán mới nếu event chưa từng được ghi)
+ * và được dùng làm created_at khi replay:
+ * (scale_id, created_at) là khoá chính của weighing_logs nên replay lặp lại không tạo dòng trùng.
+ * Thời gian lưu dạng chuỗi ISO-8601 để file không phụ thuộc cấu hình ObjectMapper.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record DeadLetterRecord(
+        Long scaleId,
+        String createdAt,
+        String lastTime,
+        String data1,
+        String data2,
+        String data3,
+        String data4,
+        String data5,
+        String status,
+        String error,
+        String failedAt) {
+
+    /**
+     * Dựng lại MeasurementEvent (không thuộc pool) để ghi lại bằng cùng cách bind với writer
+     */
+    MeasurementEvent toEvent() {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(lastTime != null ? OffsetDateTime.parse(lastTime).toZonedDateTime() : null)
+                .data1(data1)
+                .data2(data2)
+                .data3(data3)
+                .data4(data4)
+                .data5(data5)
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,496 @@
+package org.facenet.service.scale.persistence;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.config.PersistenceProperties.ValueStorageMode;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Replay dead-letter log vào weighing_logs khi DB hoạt động trở lại
+ *
+ * - Chạy định kỳ (persistence.dead-letter.replay-interval-ms) khi auto-replay bật, hoặc kích hoạt qua API
+ * - Kiểm tra DB (SELECT 1) trước khi chạy; DB mất kết nối giữa chừng -> dừng, lần sau chạy tiếp
+ * - PostgreSQL: mỗi lô replay-batch-size record là 1 câu INSERT ... SELECT FROM unnest(mảng)
+ *   ON CONFLICT (scale_id, created_at) DO NOTHING -> 1 round trip/lô, replay lặp lại không tạo dòng trùng
+ *   và số dòng trùng được đếm chính xác
+ * - Lô lỗi do dữ liệu: ghi lại từng record, record vẫn lỗi được chuyển sang rejected-*.ndjson
+ * - Tiến độ (segment + số dòng đã xong) lưu trong file replay.progress để tiếp tục sau restart;
+ *   segment replay xong bị xoá
+ * - File dead letter cũ (dead-letter-scale-*.json, 1 file/event) được chuyển vào log trước khi replay
+ * - Dòng replay không đi qua accumulator của rollup ngày: các ngày UTC có dòng được insert được tính lại
+ *   từ weighing_logs (ScaleRollupAccumulator.recomputeDay) 1 lần sau mỗi lần replay; ngày chưa tính được
+ *   (DB lỗi) giữ lại cho lần replay sau
+ */
+@Slf4j
+@Service
+public class DeadLetterReplayService {
+
+    static final String PROGRESS_FILE = "replay.progress";
+    static final String LEGACY_PREFIX = "dead-letter-scale-";
+
+    static final String REPLAY_SQL = "INSERT INTO weighing_logs "
+            + "(scale_id, created_at, last_time, data_1, data_2, data_3, data_4, data_5, updated_at, created_by, updated_by, "
+            + TypedValueColumns.COLUMNS + ") "
+            + "SELECT u.scale_id, u.created_at::timestamptz, u.last_time::timestamptz, "
+            + "u.data_1::jsonb, u.data_2::jsonb, u.data_3::jsonb, u.data_4::jsonb, u.data_5::jsonb, now(), ?, ?, "
+            + "u.value_1, u.value_2, u.value_3, u.value_4, u.value_5, u.valid_mask "
+            + "FROM unnest(?::bigint[], ?::text[], ?::text[], ?::text[], ?::text[], ?::text[], ?::text[], ?::text[], "
+            + "?::float8[], ?::float8[], ?::float8[], ?::float8[], ?::float8[], ?::int2[]) "
+            + "AS u(scale_id, created_at, last_time, data_1, data_2, data_3, data_4, data_5, "
+            + "value_1, value_2, value_3, value_4, value_5, valid_mask) "
+            + "ON CONFLICT (scale_id, created_at) DO NOTHING";
+
+    private final DeadLetterService deadLetterService;
+    private final JdbcTemplate jdbcTemplate;
+    private final WeighingLogBatchWriter weighingLogBatchWriter;
+    private final ObjectMapper objectMapper;
+    private final PersistenceProperties persistenceProperties;
+    private final ScaleRollupAccumulator rollupAccumulator;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Progress progress = new Progress();
+    private final Set<LocalDate> replayedDays = new TreeSet<>();
+
+    public DeadLetterReplayService(DeadLetterService deadLetterService,
+                                   JdbcTemplate jdbcTemplate,
+                                   WeighingLogBatchWriter weighingLogBatchWriter,
+                                   ObjectMapper objectMapper,
+                                   PersistenceProperties persistenceProperties,
+                                   ScaleRollupAccumulator rollupAccumulator) {
+        this.deadLetterService = deadLetterService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.weighingLogBatchWriter = weighingLogBatchWriter;
+        this.objectMapper = objectMapper;
+        this.persistenceProperties = persistenceProperties;
+        this.rollupAccumulator = rollupAccumulator;
+    }
+
+    @Scheduled(fixedDelayString = "${persistence.dead-letter.replay-interval-ms:60000}")
+    public void scheduledReplay() {
+        if (persistenceProperties.getDeadLetter().isAutoReplay()) {
+            replay();
+        }
+    }
+
+    /**
+     * Kích hoạt replay trên thread async (API)
+     */
+    @Async
+    public void replayAsync() {
+        replay();
+    }
+
+    /**
+     * Replay toàn bộ segment đã đóng
+     *
+     * @return false nếu bỏ qua (đang chạy, không có dead letter hoặc DB chưa sẵn sàng)
+     */
+    public boolean replay() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            importLegacyFiles();
+            List<Path> segments = deadLetterService.sealAndListSegments();
+            if (segments.isEmpty()) {
+                recomputeReplayedDays();
+                return false;
+            }
+            if (!isDatabaseHealthy()) {
+                log.debug("[DEAD-LETTER] Database not reachable, {} segments waiting for replay", segments.size());
+                return false;
+            }
+
+            progress.start(segments.size());
+            log.info("[DEAD-LETTER] Replaying {} segments", segments.size());
+            for (Path segment : segments) {
+                if (!Files.exists(segment)) {
+                    // Đã bị xoá bởi giới hạn max-total-bytes sau khi lấy danh sách
+                    log.warn("[DEAD-LETTER] Segment {} dropped before replay", segment.getFileName());
+                    continue;
+                }
+                deadLetterService.setReplayingSegment(segment);
+                try {
+                    if (!replaySegment(segment)) {
+                        break;
+                    }
+                } finally {
+                    deadLetterService.setReplayingSegment(null);
+                }
+                progress.segmentDone();
+            }
+            recomputeReplayedDays();
+            log.info("[DEAD-LETTER] Replay finished: {}", progress.snapshot());
+            return true;
+        } catch (Exception e) {
+            progress.fail(e.getMessage());
+            log.error("[DEAD-LETTER] Replay failed: {}", e.getMessage(), e);
+            return false;
+        } finally {
+            progress.stop();
+            running.set(false);
+        }
+    }
+
+    /**
+     * @return false nếu DB không truy cập được giữa chừng (giữ tiến độ, dừng replay)
+     */
+    private boolean replaySegment(Path segment) throws IOException {
+        String name = segment.getFileName().toString();
+        long skipLines = readProgress(name);
+        progress.segment(name);
+
+        int batchSize = Math.max(1, persistenceProperties.getDeadLetter().getReplayBatchSize());
+        List<DeadLetterRecord> batch = new ArrayList<>(batchSize);
+        long lineNumber = 0;
+        try (BufferedReader reader = open(segment)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= skipLines || line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(objectMapper.readValue(line, DeadLetterRecord.class));
+                } catch (IOException e) {
+                    log.warn("[DEAD-LETTER] Skipping unreadable line {} of {}: {}", lineNumber, name, e.getMessage());
+                    continue;
+                }
+                if (batch.size() >= batchSize) {
+                    if (!flush(batch)) {
+                        return false;
+                    }
+                    writeProgress(name, lineNumber);
+                }
+            }
+            if (!flush(batch)) {
+                return false;
+            }
+        }
+
+        Files.delete(segment);
+        Files.deleteIfExists(deadLetterService.directory().resolve(PROGRESS_FILE));
+        log.info("[DEAD-LETTER] Replayed and removed segment {}", name);
+        return true;
+    }
+
+    /**
+     * Ghi 1 lô; false nếu DB không truy cập được (lô sẽ được replay lại từ tiến độ đã lưu)
+     */
+    boolean flush(List<DeadLetterRecord> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            int inserted = insert(batch);
+            progress.batchDone(batch.size(), inserted);
+            if (inserted > 0) {
+                batch.forEach(this::markReplayed);
+            }
+        } catch (RuntimeException e) {
+            if (WeighingLogBatchWriter.isDatabaseUnavailable(e)) {
+                progress.fail(e.getMessage());
+                log.warn("[DEAD-LETTER] Database unavailable during replay, will resume later: {}", e.getMessage());
+                return false;
+            }
+            log.warn("[DEAD-LETTER] Bulk replay of {} records failed ({}), retrying one by one", batch.size(), e.getMessage());
+            List<DeadLetterRecord> rejected = new ArrayList<>();
+            for (DeadLetterRecord record : batch) {
+                try {
+                    int inserted = insert(List.of(record));
+                    progress.batchDone(1, inserted);
+                    if (inserted > 0) {
+                        markReplayed(record);
+                    }
+                } catch (RuntimeException rowError) {
+                    if (WeighingLogBatchWriter.isDatabaseUnavailable(rowError)) {
+                        progress.fail(rowError.getMessage());
+                        return false;
+                    }
+                    rejected.add(withError(record, rowError.getMessage()));
+                }
+            }
+            progress.rejected(rejected.size());
+            deadLetterService.writeRejected(rejected);
+        }
+        batch.clear();
+        return true;
+    }
+
+    /**
+     * @return số dòng thực sự được insert (phần còn lại là trùng khoá đã có trong DB)
+     */
+    private int insert(List<DeadLetterRecord> records) {
+        ValueStorageMode mode = weighingLogBatchWriter.valueMode();
+        List<MeasurementEvent> events = records.stream().map(DeadLetterRecord::toEvent).toList();
+        if (!weighingLogBatchWriter.isPostgres()) {
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+            int inserted = 0;
+            for (int i = 0; i < records.size(); i++) {
+                MeasurementEvent event = events.get(i);
+                OffsetDateTime createdAt = OffsetDateTime.parse(records.get(i).createdAt());
+                try {
+                    inserted += jdbcTemplate.update(WeighingLogBatchWriter.INSERT_SQL, ps ->
+                            WeighingLogBatchWriter.bindRow(ps, event, createdAt, now, false, mode));
+                } catch (DuplicateKeyException e) {
+                    // Đã replay trước đó
+                }
+            }
+            return inserted;
+        }
+        boolean typed = TypedValueColumns.writesTyped(mode);
+        Integer inserted = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(REPLAY_SQL)) {
+                ps.setString(1, WeighingLogBatchWriter.SYSTEM_USER);
+                ps.setString(2, WeighingLogBatchWriter.SYSTEM_USER);
+                ps.setArray(3, connection.createArrayOf("int8",
+                        records.stream().map(DeadLetterRecord::scaleId).toArray()));
+                ps.setArray(4, connection.createArrayOf("text",
+                        records.stream().map(DeadLetterRecord::createdAt).toArray()));
+                ps.setArray(5, connection.createArrayOf("text",
+                        records.stream().map(DeadLetterRecord::lastTime).toArray()));
+                for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+                    int column = slot;
+                    ps.setArray(6 + slot, connection.createArrayOf("text", events.stream()
+                            .map(event -> TypedValueColumns.legacyData(event, column, mode)).toArray()));
+                    ps.setArray(11 + slot, connection.createArrayOf("float8", events.stream()
+                            .map(event -> typed ? TypedValueColumns.value(event, column) : null).toArray()));
+                }
+                ps.setArray(16, connection.createArrayOf("int2", events.stream()
+                        .map(event -> typed ? (Short) (short) event.validMask() : null).toArray()));
+                return ps.executeUpdate();
+            }
+        });
+        return inserted != null ? inserted : 0;
+    }
+
+    private void markReplayed(DeadLetterRecord record) {
+        replayedDays.add(OffsetDateTime.parse(record.createdAt()).withOffsetSameInstant(ZoneOffset.UTC).toLocalDate());
+    }
+
+    /**
+     * Tính lại rollup ngày cho các ngày vừa replay; dừng ở ngày lỗi và giữ phần còn lại cho lần sau
+     */
+    private void recomputeReplayedDays() {
+        if (replayedDays.isEmpty()) {
+            return;
+        }
+        if (!rollupAccumulator.ensureTables()) {
+            replayedDays.clear();
+            return;
+        }
+        Iterator<LocalDate> days = replayedDays.iterator();
+        while (days.hasNext()) {
+            LocalDate day = days.next();
+            try {
+                int rows = rollupAccumulator.recomputeDay(day);
+                if (rows < 0) {
+                    log.warn("[DEAD-LETTER] Daily rollup of {} not recomputed yet, will retry after the next replay", day);
+                    return;
+                }
+                log.info("[DEAD-LETTER] Recomputed daily rollups of {} after replay: {} scales", day, rows);
+                days.remove();
+            } catch (DataAccessException e) {
+                log.warn("[DEAD-LETTER] Cannot recompute daily rollups of {}: {}", day, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private boolean isDatabaseHealthy() {
+        try {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private BufferedReader open(Path segment) throws IOException {
+        InputStream in = Files.newInputStream(segment);
+        if (segment.getFileName().toString().endsWith(DeadLetterService.COMPRESSED_SUFFIX)) {
+            in = new GZIPInputStream(in);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private long readProgress(String segmentName) throws IOException {
+        Path file = deadLetterService.directory().resolve(PROGRESS_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        String[] parts = Files.readString(file).trim().split(" ");
+        return parts.length == 2 && parts[0].equals(segmentName) ? Long.parseLong(parts[1]) : 0;
+    }
+
+    private void writeProgress(String segmentName, long lineNumber) throws IOException {
+        Files.writeString(deadLetterService.directory().resolve(PROGRESS_FILE), segmentName + " " + lineNumber);
+    }
+
+    /**
+     * Chuyển file dead letter cũ (1 file JSON/event) vào log; created_at = last_time của event
+     */
+    private void importLegacyFiles() throws IOException {
+        List<Path> legacyFiles;
+        try (Stream<Path> files = Files.list(deadLetterService.directory())) {
+            legacyFiles = files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(LEGACY_PREFIX) && name.endsWith(".json");
+            }).sorted().toList();
+        }
+        for (Path file : legacyFiles) {
+            try {
+                JsonNode node = objectMapper.readTree(file.toFile());
+                String lastTime = ZonedDateTime.parse(node.path("lastTime").asText()).toOffsetDateTime().toString();
+                deadLetterService.append(new DeadLetterRecord(
+                        node.path("scaleId").asLong(),
+                        lastTime,
+                        lastTime,
+                        legacyData(node, "data1"),
+                        legacyData(node, "data2"),
+                        legacyData(node, "data3"),
+                        legacyData(node, "data4"),
+                        legacyData(node, "data5"),
+                        legacyData(node, "status"),
+                        legacyData(node, "error"),
+                        node.path("timestamp").asText(null)));
+                Files.delete(file);
+            } catch (Exception e) {
+                log.warn("[DEAD-LETTER] Cannot import legacy dead letter {}: {}", file.getFileName(), e.getMessage());
+            }
+        }
+        if (!legacyFiles.isEmpty()) {
+            log.info("[DEAD-LETTER] Imported {} legacy dead-letter files into the log", legacyFiles.size());
+        }
+    }
+
+    private static String legacyData(JsonNode node, String field) {
+        String value = node.path(field).asText(null);
+        return value == null || "null".equals(value) ? null : value;
+    }
+
+    private static DeadLetterRecord withError(DeadLetterRecord record, String error) {
+        return new DeadLetterRecord(record.scaleId(), record.createdAt(), record.lastTime(),
+                record.data1(), record.data2(), record.data3(), record.data4(), record.data5(),
+                record.status(), error, record.failedAt());
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = progress.snapshot();
+        try {
+            status.put("pendingSegments", deadLetterService.countSegments());
+        } catch (IOException e) {
+            status.put("pendingSegments", null);
+        }
+        return status;
+    }
+
+    /**
+     * Tiến độ lần replay gần nhất (đọc từ API trong khi replay đang chạy)
+     */
+    private static final class Progress {
+        private volatile boolean active;
+        private volatile int totalSegments;
+        private volatile int completedSegments;
+        private volatile String currentSegment;
+        private volatile long replayed;
+        private volatile long inserted;
+        private volatile long duplicates;
+        private volatile long rejected;
+        private volatile String lastError;
+        private volatile OffsetDateTime startedAt;
+        private volatile OffsetDateTime finishedAt;
+
+        void start(int segments) {
+            active = true;
+            totalSegments = segments;
+            completedSegments = 0;
+            currentSegment = null;
+            replayed = 0;
+            inserted = 0;
+            duplicates = 0;
+            rejected = 0;
+            lastError = null;
+            startedAt = OffsetDateTime.now();
+            finishedAt = null;
+        }
+
+        void segment(String name) {
+            currentSegment = name;
+        }
+
+        void batchDone(int records, int insertedRows) {
+            replayed += records;
+            inserted += insertedRows;
+            duplicates += records - insertedRows;
+        }
+
+        void rejected(int count) {
+            replayed += count;
+            rejected += count;
+        }
+
+        void segmentDone() {
+            completedSegments++;
+        }
+
+        void fail(String error) {
+            lastError = error;
+        }
+
+        void stop() {
+            if (active) {
+                active = false;
+                finishedAt = OffsetDateTime.now();
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("running", active);
+            snapshot.put("totalSegments", totalSegments);
+            snapshot.put("completedSegments", completedSegments);
+            snapshot.put("currentSegment", currentSegment);
+            snapshot.put("replayed", replayed);
+            snapshot.put("inserted", inserted);
+            snapshot.put("duplicates", duplicates);
+            snapshot.put("rejected", rejected);
+            snapshot.put("lastError", lastError);
+            snapshot.put("startedAt", startedAt);
+            snapshot.put("finishedAt", finishedAt);
+            return snapshot;
+        }
+    }
+}
@@ -1,79 +1,253 @@
 package org.facenet.service.scale.persistence;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.facenet.config.PersistenceProperties;
 import org.facenet.event.MeasurementEvent;
 import org.springframework.stereotype.Service;
 
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Dead Letter Service for handling persistence failures
- * Writes failed events to a dead letter file for later retry
+ * Writes failed events to a rolling dead-letter log for later replay (DeadLetterReplayService)
+ *
+ * - Mỗi event lỗi là 1 dòng NDJSON (DeadLetterRecord, serialize bằng ObjectMapper) ghi nối vào segment đang mở
+ * - Segment được đóng (seal) khi đạt max-segment-bytes hoặc khi replay bắt đầu; segment đã đóng được gzip
+ *   nếu persistence.dead-letter.compress=true
+ * - Tổng dung lượng segment đã đóng bị giới hạn bởi max-total-bytes: segment cũ nhất bị xoá khi vượt
+ *   (trừ segment đang được replay và segment mới nhất)
+ * - createdAt của record = created_at đã gán cho event ở lần ghi weighing_logs đầu tiên (nếu có), nên replay
+ *   dedup đúng với dòng có thể đã được ghi trước đó
+ * Tên file: dead-letters-{yyyyMMdd-HHmmss}-{seq}.ndjson[.gz], sắp xếp theo tên = theo thời gian
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class DeadLetterService {
 
+    static final String SEGMENT_PREFIX = "dead-letters-";
+    static final String SEGMENT_SUFFIX = ".ndjson";
+    static final String COMPRESSED_SUFFIX = ".ndjson.gz";
+    static final String REJECTED_PREFIX = "rejected-";
+
+    private static final DateTimeFormatter FILE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
     private final PersistenceProperties persistenceProperties;
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss");
+    private final ObjectMapper objectMapper;
+
+    private OutputStream activeStream;
+    private Path activePath;
+    private Path replayingSegment;
+    private long activeBytes;
+    private int segmentSequence;
+
+    public DeadLetterService(PersistenceProperties persistenceProperties, ObjectMapper objectMapper) {
+        this.persistenceProperties = persistenceProperties;
+        this.objectMapper = objectMapper;
+    }
 
     /**
-     * Write failed measurement event to dead letter file
+     * Write failed measurement event to the dead-letter log
      */
     public void writeDeadLetter(MeasurementEvent event, Exception exception) {
+        OffsetDateTime createdAt = event.createdAtMicros() >= 0
+                ? WeighingLogBatchWriter.createdAtOf(event.createdAtMicros())
+                : nextCreatedAt();
+        DeadLetterRecord record = new DeadLetterRecord(
+                event.getScaleId(),
+                createdAt.toString(),
+                event.getLastTime() != null ? event.getLastTime().toOffsetDateTime().toString() : null,
+                event.getData1(),
+                event.getData2(),
+                event.getData3(),
+                event.getData4(),
+                event.getData5(),
+                event.getStatus(),
+                exception.getMessage(),
+                OffsetDateTime.now().toString());
         try {
-            // Create dead letter directory if not exists
-            Path dirPath = Paths.get(persistenceProperties.getDeadLetter().getDirectory());
-            if (!Files.exists(dirPath)) {
-                Files.createDirectories(dirPath);
-            }
+            Path written = append(record);
+            log.warn("[DEAD-LETTER] Wrote failed event for scale {} to {}", event.getScaleId(), written);
+        } catch (IOException e) {
+            log.error("[DEAD-LETTER] Failed to write dead letter for scale {}: {}", event.getScaleId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi nối 1 record vào segment đang mở (dùng cả khi chuyển file dead letter cũ sang log)
+     *
+     * @return segment chứa record (segment đã đóng/gzip nếu lần ghi này làm segment đầy)
+     */
+    public synchronized Path append(DeadLetterRecord record) throws IOException {
+        byte[] line = objectMapper.writeValueAsBytes(record);
+        if (activeStream == null) {
+            openSegment();
+        }
+        activeStream.write(line);
+        activeStream.write('\n');
+        activeStream.flush();
+        activeBytes += line.length + 1;
 
-            // Create filename with timestamp
-            String timestamp = LocalDateTime.now().format(FORMATTER);
-            String filename = String.format("dead-letter-scale-%d-%s.json", event.getScaleId(), timestamp);
-            Path filePath = dirPath.resolve(filename);
-
-            // Write event as JSON
-            try (FileWriter writer = new FileWriter(filePath.toFile())) {
-                writer.write("{\n");
-                writer.write("  \"scaleId\": " + event.getScaleId() + ",\n");
-                writer.write("  \"lastTime\": \"" + event.getLastTime() + "\",\n");
-                writer.write("  \"data1\": \"" + escapeJson(event.getData1()) + "\",\n");
-                writer.write("  \"data2\": \"" + escapeJson(event.getData2()) + "\",\n");
-                writer.write("  \"data3\": \"" + escapeJson(event.getData3()) + "\",\n");
-                writer.write("  \"data4\": \"" + escapeJson(event.getData4()) + "\",\n");
-                writer.write("  \"data5\": \"" + escapeJson(event.getData5()) + "\",\n");
-                writer.write("  \"status\": \"" + escapeJson(event.getStatus()) + "\",\n");
-                writer.write("  \"error\": \"" + escapeJson(exception.getMessage()) + "\",\n");
-                writer.write("  \"timestamp\": \"" + LocalDateTime.now() + "\"\n");
-                writer.write("}\n");
+        if (activeBytes >= persistenceProperties.getDeadLetter().getMaxSegmentBytes()) {
+            return sealActiveSegment();
+        }
+        return activePath;
+    }
+
+    /**
+     * Đóng segment đang mở và trả về toàn bộ segment đã đóng (cũ -> mới) để replay
+     */
+    public synchronized List<Path> sealAndListSegments() throws IOException {
+        sealActiveSegment();
+        return listSealedSegments();
+    }
+
+    /**
+     * Đánh dấu segment đang được replay để giới hạn max-total-bytes không xoá nó giữa chừng (null = không có)
+     */
+    public synchronized void setReplayingSegment(Path segment) {
+        this.replayingSegment = segment;
+    }
+
+    /**
+     * Số segment đang chờ replay (kể cả segment đang mở), không đóng segment
+     */
+    public synchronized long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory())) {
+            return files.filter(DeadLetterService::isSegmentFile).count();
+        }
+    }
+
+    /**
+     * Ghi các record replay thất bại vì lỗi dữ liệu ra file rejected-*.ndjson (không được replay tự động)
+     */
+    public synchronized void writeRejected(List<DeadLetterRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        Path file = directory().resolve(REJECTED_PREFIX + LocalDateTime.now().format(FILE_FORMATTER) + SEGMENT_SUFFIX);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            for (DeadLetterRecord record : records) {
+                out.write(objectMapper.writeValueAsBytes(record));
+                out.write('\n');
             }
+        }
+        log.warn("[DEAD-LETTER] {} dead letters rejected during replay, kept in {}", records.size(), file);
+    }
 
-            log.warn("[DEAD-LETTER] Wrote failed event for scale {} to {}", event.getScaleId(), filePath);
+    Path directory() throws IOException {
+        Path dirPath = Paths.get(persistenceProperties.getDeadLetter().getDirectory());
+        Files.createDirectories(dirPath);
+        return dirPath;
+    }
 
-        } catch (IOException e) {
-            log.error("[DEAD-LETTER] Failed to write dead letter for scale {}: {}", event.getScaleId(), e.getMessage());
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(COMPRESSED_SUFFIX));
+    }
+
+    private List<Path> listSealedSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory())) {
+            return files.filter(DeadLetterService::isSegmentFile)
+                    .filter(path -> !path.equals(activePath))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        String name = SEGMENT_PREFIX + LocalDateTime.now().format(FILE_FORMATTER)
+                + String.format("-%06d", ++segmentSequence) + SEGMENT_SUFFIX;
+        activePath = directory().resolve(name);
+        activeStream = new BufferedOutputStream(Files.newOutputStream(activePath,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        activeBytes = Files.size(activePath);
+    }
+
+    /**
+     * @return segment vừa đóng (sau khi gzip nếu bật), null nếu không có segment đang mở
+     */
+    private Path sealActiveSegment() throws IOException {
+        if (activeStream == null) {
+            return null;
+        }
+        Path sealed = activePath;
+        activeStream.close();
+        activeStream = null;
+        activePath = null;
+        activeBytes = 0;
+
+        if (persistenceProperties.getDeadLetter().isCompress()) {
+            Path compressed = sealed.resolveSibling(sealed.getFileName().toString()
+                    .replace(SEGMENT_SUFFIX, COMPRESSED_SUFFIX));
+            try (InputStream in = Files.newInputStream(sealed);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                in.transferTo(out);
+            }
+            Files.delete(sealed);
+            sealed = compressed;
         }
+        log.info("[DEAD-LETTER] Sealed segment {}", sealed.getFileName());
+        enforceTotalSize();
+        return sealed;
     }
 
     /**
-     * Escape JSON string values
+     * Xoá segment cũ nhất khi tổng dung lượng vượt max-total-bytes
+     * Không xoá segment đang được replay và segment mới nhất
      */
-    private String escapeJson(String value) {
-        if (value == null) return "null";
-        return value.replace("\\", "\\\\")
-                   .replace("\"", "\\\"")
-                   .replace("\n", "\\n")
-                   .replace("\r", "\\r")
-                   .replace("\t", "\\t");
+    private void enforceTotalSize() throws IOException {
+        List<Path> segments = listSealedSegments();
+        long total = 0;
+        for (Path segment : segments) {
+            total += Files.size(segment);
+        }
+        long cap = persistenceProperties.getDeadLetter().getMaxTotalBytes();
+        if (total <= cap || segments.isEmpty()) {
+            return;
+        }
+        List<Path> deletable = new ArrayList<>(segments.subList(0, segments.size() - 1));
+        deletable.remove(replayingSegment);
+        while (total > cap && !deletable.isEmpty()) {
+            Path oldest = deletable.remove(0);
+            total -= Files.size(oldest);
+            Files.delete(oldest);
+            log.error("[DEAD-LETTER] Dead-letter log over {} bytes, dropped oldest segment {}", cap, oldest.getFileName());
+        }
+    }
+
+    /**
+     * created_at tăng dần theo microsecond cho event chưa từng được ghi: mỗi dead letter có khoá (scale_id, created_at) riêng
+     */
+    private OffsetDateTime nextCreatedAt() {
+        return WeighingLogBatchWriter.createdAtOf(CreatedAtClock.nextMicros());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (activeStream != null) {
+            try {
+                activeStream.close();
+            } catch (IOException e) {
+                log.warn("[DEAD-LETTER] Failed to close segment {}: {}", activePath, e.getMessage());
+            }
+            activeStream = null;
+        }
     }
-}
\ No newline at end of file
+}
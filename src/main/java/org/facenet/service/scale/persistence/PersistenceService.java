@@ -15,4 +15,11 @@ public interface PersistenceService {
      * @param event the measurement event to persist
      */
     void persistMeasurement(MeasurementEvent event);
-}
\ No newline at end of file
+
+    /**
+     * Update (or create) the current state of one scale from its latest measurement
+     *
+     * @param event the latest measurement event of the scale
+     */
+    void updateCurrentState(MeasurementEvent event);
+}
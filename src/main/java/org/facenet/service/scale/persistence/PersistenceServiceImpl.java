@@ -27,6 +27,7 @@ public class PersistenceServiceImpl implements PersistenceService {
     private final WeighingLogRepository weighingLogRepository;
     private final ScaleRepository scaleRepository;
     private final DeadLetterService deadLetterService;
+    private final ActiveScaleCache activeScaleCache;
 
     @Override
     @Transactional
@@ -50,15 +51,19 @@ public class PersistenceServiceImpl implements PersistenceService {
 
     /**
      * Update or insert current state for the scale
+     * Scale existence is checked against the in-memory ActiveScaleCache (no SELECT on scales)
      */
-    private void updateCurrentState(MeasurementEvent event) {
-        Scale scale = scaleRepository.findById(event.getScaleId())
-                .orElseThrow(() -> new IllegalArgumentException(
-                        "Scale not found with id: " + event.getScaleId()));
+    @Override
+    @Transactional
+    public void updateCurrentState(MeasurementEvent event) {
+        if (!activeScaleCache.isActive(event.scaleIdAsLong())) {
+            throw new IllegalArgumentException("Scale not found with id: " + event.getScaleId());
+        }
 
         ScaleCurrentState currentState = currentStateRepository.findById(event.getScaleId())
                 .orElseGet(() -> {
-                    // For new state, create with scale relationship
+                    // For new state, create with scale relationship (proxy reference, no SELECT)
+                    Scale scale = scaleRepository.getReferenceById(event.getScaleId());
                     ScaleCurrentState newState = new ScaleCurrentState();
                     newState.setScale(scale); // This sets the ID via @MapsId
                     return newState;
@@ -70,6 +75,12 @@ public class PersistenceServiceImpl implements PersistenceService {
         currentState.setData3(event.getData3());
         currentState.setData4(event.getData4());
         currentState.setData5(event.getData5());
+        currentState.setValue1(TypedValueColumns.value(event, 0));
+        currentState.setValue2(TypedValueColumns.value(event, 1));
+        currentState.setValue3(TypedValueColumns.value(event, 2));
+        currentState.setValue4(TypedValueColumns.value(event, 3));
+        currentState.setValue5(TypedValueColumns.value(event, 4));
+        currentState.setValidMask((short) event.validMask());
         currentState.setStatus(event.getStatus());
         currentState.setLastTime(event.getLastTime().toOffsetDateTime());
 
@@ -93,6 +104,12 @@ public class PersistenceServiceImpl implements PersistenceService {
                 .data3(event.getData3())
                 .data4(event.getData4())
                 .data5(event.getData5())
+                .value1(TypedValueColumns.value(event, 0))
+                .value2(TypedValueColumns.value(event, 1))
+                .value3(TypedValueColumns.value(event, 2))
+                .value4(TypedValueColumns.value(event, 3))
+                .value5(TypedValueColumns.value(event, 4))
+                .validMask((short) event.validMask())
                 .createdBy("engine_modbus")
                 .updatedBy("engine_modbus")
                 .build();
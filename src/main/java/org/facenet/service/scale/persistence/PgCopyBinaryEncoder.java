@@ -0,0 +1,158 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties.ValueStorageMode;
+import org.facenet.event.MeasurementEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+
+/**
+ * Encoder dòng weighing_logs sang định dạng PostgreSQL COPY BINARY vào 1 buffer tái sử dụng
+ *
+ * Định dạng (big endian):
+ * - Header: "PGCOPY\n\377\r\n\0" | flags (int32 = 0) | header extension length (int32 = 0)
+ * - Mỗi dòng: số cột (int16) rồi mỗi cột: độ dài (int32, -1 = NULL) + dữ liệu
+ *   bigint = 8 bytes, timestamptz = int64 microsecond kể từ 2000-01-01 UTC,
+ *   jsonb = version (1 byte = 1) + JSON text UTF-8, varchar = UTF-8,
+ *   double precision = 8 bytes IEEE 754, smallint = 2 bytes
+ * - Trailer: int16 = -1
+ * Không thread-safe: mỗi writer thread dùng 1 instance riêng.
+ */
+public class PgCopyBinaryEncoder {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+    private static final short COLUMN_COUNT = 17;
+    private static final byte JSONB_VERSION = 1;
+
+    private ByteBuffer buffer;
+
+    public PgCopyBinaryEncoder(int initialCapacity) {
+        this.buffer = ByteBuffer.allocate(initialCapacity);
+    }
+
+    /**
+     * Bắt đầu 1 lần COPY mới (ghi header, tái sử dụng buffer)
+     */
+    public void begin() {
+        buffer.clear();
+        ensureCapacity(SIGNATURE.length + 8);
+        buffer.put(SIGNATURE);
+        buffer.putInt(0);
+        buffer.putInt(0);
+    }
+
+    /**
+     * Ghi 1 dòng theo thứ tự cột của WeighingLogBatchWriter.INSERT_SQL
+     */
+    public void writeRow(MeasurementEvent event, OffsetDateTime createdAt, OffsetDateTime updatedAt, String user,
+                         ValueStorageMode mode) {
+        ensureCapacity(256);
+        buffer.putShort(COLUMN_COUNT);
+        putBigint(event.scaleIdAsLong());
+        putTimestamptz(createdAt.toEpochSecond() * 1_000_000L + createdAt.getNano() / 1_000);
+        putTimestamptz(event.epochNanos() / 1_000L);
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            putJsonb(TypedValueColumns.legacyData(event, slot, mode));
+        }
+        ensureCapacity(12);
+        putTimestamptz(updatedAt.toEpochSecond() * 1_000_000L + updatedAt.getNano() / 1_000);
+        putText(user);
+        putText(user);
+        ensureCapacity(MeasurementEvent.DATA_SLOTS * 12 + 6);
+        boolean typed = TypedValueColumns.writesTyped(mode);
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            if (typed && event.isValid(slot)) {
+                buffer.putInt(8);
+                buffer.putDouble(event.value(slot));
+            } else {
+                buffer.putInt(-1);
+            }
+        }
+        if (typed) {
+            buffer.putInt(2);
+            buffer.putShort((short) event.validMask());
+        } else {
+            buffer.putInt(-1);
+        }
+    }
+
+    /**
+     * Ghi trailer, sau đó array()/length() là toàn bộ dữ liệu COPY
+     */
+    public void end() {
+        ensureCapacity(2);
+        buffer.putShort((short) -1);
+    }
+
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    public int length() {
+        return buffer.position();
+    }
+
+    private void putBigint(long value) {
+        buffer.putInt(8);
+        buffer.putLong(value);
+    }
+
+    private void putTimestamptz(long epochMicros) {
+        buffer.putInt(8);
+        buffer.putLong(epochMicros - PG_EPOCH_MICROS);
+    }
+
+    private void putJsonb(String json) {
+        if (json == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        ensureCapacity(5 + json.length() * 3);
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        buffer.put(JSONB_VERSION);
+        int written = putUtf8(json);
+        buffer.putInt(lengthPosition, written + 1);
+    }
+
+    private void putText(String text) {
+        if (text == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        ensureCapacity(4 + text.length() * 3);
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        int written = putUtf8(text);
+        buffer.putInt(lengthPosition, written);
+    }
+
+    /**
+     * Ghi trực tiếp ký tự ASCII (trường hợp phổ biến: số), chỉ encode qua byte[] khi có ký tự ngoài ASCII
+     */
+    private int putUtf8(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) >= 0x80) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                buffer.put(bytes);
+                return bytes.length;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+        return length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buffer.remaining() < extra) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.facenet.service.scale.persistence;
+
+/**
+ * Các tầng rollup của weighing_logs, từ mịn đến thô
+ *
+ * Mỗi dòng: (scale_id, bucket) + sample_count, last_time và cho từng slot N (1-5):
+ * min_N, max_N, sum_N, count_N (số mẫu có giá trị số), last_N (giá trị số mới nhất trong bucket)
+ */
+public enum RollupTier {
+    MINUTE("weighing_logs_1m", "minute"),
+    HOUR("weighing_logs_1h", "hour");
+
+    private final String table;
+    private final String unit;
+
+    RollupTier(String table, String unit) {
+        this.table = table;
+        this.unit = unit;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    /**
+     * Đơn vị date_trunc của bucket
+     */
+    public String unit() {
+        return unit;
+    }
+}
@@ -0,0 +1,166 @@
+package org.facenet.service.scale.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties.ValueStorageMode;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bulk UPSERT cho bảng scale_current_states
+ *
+ * - Trạng thái mới nhất của mỗi cân trong batch được ghi bằng 1 JDBC batch
+ *   INSERT ... ON CONFLICT (scale_id) DO UPDATE trong 1 transaction
+ *   (reWriteBatchedInserts=true gộp thành 1 câu multi-row) thay cho findById + findById + save mỗi event
+ * - Kiểm tra cân tồn tại qua ActiveScaleCache (không query scales)
+ * - Điều kiện WHERE last_time <= EXCLUDED.last_time: trạng thái cũ đến muộn không ghi đè trạng thái mới hơn
+ * - Batch lỗi: reload cache và ghi lại từng dòng để cô lập dòng lỗi
+ *   (lỗi do DB không truy cập được được ném ra cho caller)
+ * - Database không phải PostgreSQL (H2 khi dev): dùng PersistenceService.updateCurrentState từng cân
+ * - Luôn ghi cả data_x (API trạng thái hiện tại đọc dạng String) và value_x/valid_mask (1 dòng/cân, không đáng kể)
+ */
+@Slf4j
+@Component
+public class ScaleCurrentStateUpsertWriter {
+
+    static final String UPSERT_SQL = "INSERT INTO scale_current_states "
+            + "(scale_id, data_1, data_2, data_3, data_4, data_5, status, last_time, "
+            + "created_at, updated_at, created_by, updated_by, " + TypedValueColumns.COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (scale_id) DO UPDATE SET "
+            + "data_1 = EXCLUDED.data_1, data_2 = EXCLUDED.data_2, data_3 = EXCLUDED.data_3, "
+            + "data_4 = EXCLUDED.data_4, data_5 = EXCLUDED.data_5, status = EXCLUDED.status, "
+            + "value_1 = EXCLUDED.value_1, value_2 = EXCLUDED.value_2, value_3 = EXCLUDED.value_3, "
+            + "value_4 = EXCLUDED.value_4, value_5 = EXCLUDED.value_5, valid_mask = EXCLUDED.valid_mask, "
+            + "last_time = EXCLUDED.last_time, updated_at = EXCLUDED.updated_at, updated_by = EXCLUDED.updated_by "
+            + "WHERE scale_current_states.last_time <= EXCLUDED.last_time";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WeighingLogBatchWriter weighingLogBatchWriter;
+    private final PersistenceService persistenceService;
+    private final ActiveScaleCache activeScaleCache;
+
+    public ScaleCurrentStateUpsertWriter(JdbcTemplate jdbcTemplate,
+                                         TransactionTemplate transactionTemplate,
+                                         WeighingLogBatchWriter weighingLogBatchWriter,
+                                         PersistenceService persistenceService,
+                                         ActiveScaleCache activeScaleCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.weighingLogBatchWriter = weighingLogBatchWriter;
+        this.persistenceService = persistenceService;
+        this.activeScaleCache = activeScaleCache;
+    }
+
+    /**
+     * Ghi trạng thái hiện tại cho các cân
+     *
+     * @param latestStates event mới nhất của mỗi cân (mỗi scaleId tối đa 1 event)
+     * @return số cân đã ghi
+     */
+    public int upsert(Collection<MeasurementEvent> latestStates) {
+        List<MeasurementEvent> rows = new ArrayList<>(latestStates.size());
+        for (MeasurementEvent event : latestStates) {
+            if (activeScaleCache.isActive(event.scaleIdAsLong())) {
+                rows.add(event);
+            } else {
+                log.warn("[BATCH] Skipping current state for unknown or inactive scale {}", event.getScaleId());
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        if (!weighingLogBatchWriter.isPostgres()) {
+            return updateOneByOne(rows);
+        }
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            bindRow(ps, rows.get(i), now);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return rows.size();
+                        }
+                    }));
+            return rows.size();
+        } catch (RuntimeException e) {
+            if (WeighingLogBatchWriter.isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            log.warn("[BATCH] Bulk upsert of {} current states failed ({}), retrying row by row",
+                    rows.size(), e.getMessage());
+            activeScaleCache.invalidate();
+            return upsertOneByOne(rows, now);
+        }
+    }
+
+    private int upsertOneByOne(List<MeasurementEvent> rows, OffsetDateTime now) {
+        int written = 0;
+        for (MeasurementEvent event : rows) {
+            try {
+                jdbcTemplate.update(UPSERT_SQL, ps -> bindRow(ps, event, now));
+                written++;
+            } catch (RuntimeException e) {
+                if (WeighingLogBatchWriter.isDatabaseUnavailable(e)) {
+                    throw e;
+                }
+                log.error("[BATCH] Failed to upsert current state for scale {}: {}", event.getScaleId(), e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private int updateOneByOne(List<MeasurementEvent> rows) {
+        int written = 0;
+        for (MeasurementEvent event : rows) {
+            try {
+                persistenceService.updateCurrentState(event);
+                written++;
+            } catch (RuntimeException e) {
+                if (WeighingLogBatchWriter.isDatabaseUnavailable(e)) {
+                    throw e;
+                }
+                log.error("[BATCH] Failed to update current state for scale {}: {}", event.getScaleId(), e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    static void bindRow(PreparedStatement ps, MeasurementEvent event, OffsetDateTime now) throws SQLException {
+        ps.setLong(1, event.scaleIdAsLong());
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            String value = event.getData(slot);
+            if (value == null) {
+                ps.setNull(2 + slot, Types.OTHER);
+            } else {
+                ps.setObject(2 + slot, value, Types.OTHER);
+            }
+        }
+        ps.setString(7, event.getStatus());
+        ps.setObject(8, event.getLastTime().toOffsetDateTime());
+        ps.setObject(9, now);
+        ps.setObject(10, now);
+        ps.setString(11, WeighingLogBatchWriter.SYSTEM_USER);
+        ps.setString(12, WeighingLogBatchWriter.SYSTEM_USER);
+        TypedValueColumns.bind(ps, 13, event, ValueStorageMode.DUAL);
+    }
+}
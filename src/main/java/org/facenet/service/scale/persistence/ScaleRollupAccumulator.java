@@ -0,0 +1,409 @@
+package org.facenet.service.scale.persistence;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Rollup theo ngày của từng cân, cập nhật ngay khi ghi weighing_logs (persistence.ingest-rollup.*)
+ *
+ * - BatchPersistenceService gọi add() sau mỗi batch đã ghi thành công: mỗi event được cộng vào
+ *   accumulator (scale, ngày UTC theo created_at của event) trong bộ nhớ - sample_count, first/last_time và cho từng
+ *   slot số: count, sum, min, max, first, last
+ * - flush() định kỳ (flush-interval-ms) tách các accumulator đã thay đổi thành 1 snapshot có flush_id và ghi bằng
+ *   1 batch UPSERT cộng dồn vào scale_daily_rollups, nên rollup luôn trễ tối đa 1 khoảng flush
+ * - Snapshot được ghi trọn vẹn hoặc không: flush_id được ghi vào scale_daily_rollup_flushes cùng transaction.
+ *   Flush lỗi giữ nguyên snapshot và lần sau thử lại đúng snapshot đó (event mới vào snapshot sau);
+ *   nếu lần trước thực ra đã commit (mất kết nối lúc commit) thì flush_id đã có và snapshot không bị cộng lần 2
+ * - flushLock (fair): flush định kỳ không chen vào giữa flushAndRecompute (dòng vừa tính lại không bị cộng thêm
+ *   snapshot cũ). Recompute giữ read lock cho đúng 1 ngày nên nhiều ngày được tính lại song song (backfill);
+ *   flush định kỳ giữ write lock, chờ các ngày đang chạy xong và chen vào trước các ngày tiếp theo
+ * Rollup theo giờ đọc từ weighing_logs_1h (WeighingLogRollupService).
+ * Accumulator chưa flush bị mất khi process crash;
+ * ReportService.aggregateDailyData / backfillDailyData tính lại rollup ngày từ weighing_logs (recomputeDay);
+ * dòng replay từ dead letter không đi qua accumulator nên DeadLetterReplayService cũng tính lại các ngày đã replay.
+ * Chỉ PostgreSQL.
+ */
+@Slf4j
+@Component
+public class ScaleRollupAccumulator {
+
+    static final String DAILY_TABLE = "scale_daily_rollups";
+    static final String FLUSH_TABLE = "scale_daily_rollup_flushes";
+
+    static final String INSERT_FLUSH_SQL = "INSERT INTO " + FLUSH_TABLE + " (flush_id) VALUES (?) ON CONFLICT DO NOTHING";
+    static final String DELETE_FLUSHES_SQL = "DELETE FROM " + FLUSH_TABLE + " WHERE flushed_at < ?";
+
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WeighingLogBatchWriter weighingLogBatchWriter;
+    private final PersistenceProperties persistenceProperties;
+
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock(true);
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private Map<Key, Accumulator> daily = new HashMap<>();
+    private Snapshot pending;
+    private volatile boolean ready;
+    private volatile boolean unsupported;
+
+    public ScaleRollupAccumulator(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  WeighingLogBatchWriter weighingLogBatchWriter,
+                                  PersistenceProperties persistenceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.weighingLogBatchWriter = weighingLogBatchWriter;
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    record Key(long scaleId, long bucketMicros) {
+    }
+
+    /**
+     * Các accumulator được tách ra để ghi trong 1 transaction; id cố định qua các lần thử lại
+     */
+    record Snapshot(String id, Map<Key, Accumulator> accumulators) {
+    }
+
+    /**
+     * Rollup ingest sẵn sàng để đọc (bật, PostgreSQL, bảng đã tạo)
+     */
+    public boolean isAvailable() {
+        return ready && persistenceProperties.getIngestRollup().isEnabled();
+    }
+
+    /**
+     * Cộng các event đã được ghi vào accumulator
+     *
+     * @param skipped event không được ghi (dead letter), không tính
+     */
+    public void add(List<MeasurementEvent> batch, Set<MeasurementEvent> skipped) {
+        if (!persistenceProperties.getIngestRollup().isEnabled() || unsupported) {
+            return;
+        }
+        long now = -1L;
+        synchronized (this) {
+            for (MeasurementEvent event : batch) {
+                if (skipped.contains(event)) {
+                    continue;
+                }
+                long micros = event.createdAtMicros();
+                if (micros < 0) {
+                    // Writer luôn gán created_at trước khi ghi, chỉ phòng trường hợp event chưa qua writer
+                    if (now < 0) {
+                        Instant instant = Instant.now();
+                        now = instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+                    }
+                    micros = now;
+                }
+                long day = micros - Math.floorMod(micros, MICROS_PER_DAY);
+                daily.computeIfAbsent(new Key(event.scaleIdAsLong(), day), key -> new Accumulator()).add(event, micros);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${persistence.ingest-rollup.flush-interval-ms:5000}")
+    public void flush() {
+        if (!persistenceProperties.getIngestRollup().isEnabled() || unsupported) {
+            return;
+        }
+        // Chờ tối đa 1 ngày đang được tính lại (không phải cả đợt backfill)
+        flushLock.writeLock().lock();
+        try {
+            if (!ensureTables()) {
+                return;
+            }
+            flushLocked();
+        } catch (DataAccessException e) {
+            log.warn("[ROLLUP] Ingest rollup tables not ready: {}", e.getMessage());
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ghi hết accumulator rồi chạy recompute, giữ read lock của flushLock suốt quá trình để flush định kỳ
+     * không cộng 1 snapshot cũ lên các dòng vừa được tính lại; recompute khác có thể chạy song song
+     *
+     * @return false nếu không chạy recompute (DB không phải PostgreSQL hoặc flush lỗi)
+     */
+    public boolean flushAndRecompute(Runnable recompute) {
+        flushLock.readLock().lock();
+        try {
+            if (!ensureTables()) {
+                return false;
+            }
+            if (persistenceProperties.getIngestRollup().isEnabled() && !flushLocked()) {
+                log.warn("[ROLLUP] Pending ingest rollups could not be flushed, skipping daily recompute");
+                return false;
+            }
+            recompute.run();
+            return true;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tính lại dòng scale_daily_rollups của 1 ngày UTC từ weighing_logs (flushAndRecompute chỉ cho ngày đó)
+     *
+     * @return số cân được ghi, -1 nếu không chạy (DB không phải PostgreSQL hoặc flush lỗi)
+     */
+    public int recomputeDay(LocalDate day) {
+        OffsetDateTime start = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+        AtomicInteger rows = new AtomicInteger(-1);
+        flushAndRecompute(() -> rows.set(jdbcTemplate.update(recomputeDailySql(), start, start, start.plusDays(1))));
+        return rows.get();
+    }
+
+    /**
+     * Ghi snapshot đang chờ (nếu có) rồi snapshot mới của các accumulator hiện tại; gọi khi đang giữ flushLock
+     * (applyLock: các recompute song song không cùng ghi 1 snapshot)
+     *
+     * @return true nếu mọi accumulator có trước lần gọi này đã được ghi
+     */
+    private boolean flushLocked() {
+        applyLock.lock();
+        try {
+            if (pending != null && !apply(pending)) {
+                return false;
+            }
+            synchronized (this) {
+                if (daily.isEmpty()) {
+                    return true;
+                }
+                pending = new Snapshot(UUID.randomUUID().toString(), daily);
+                daily = new HashMap<>();
+            }
+            return apply(pending);
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    private boolean apply(Snapshot snapshot) {
+        try {
+            Boolean applied = transactionTemplate.execute(status -> {
+                if (jdbcTemplate.update(INSERT_FLUSH_SQL, snapshot.id()) == 0) {
+                    return false;
+                }
+                jdbcTemplate.batchUpdate(upsertSql(DAILY_TABLE), rows(snapshot.accumulators()));
+                jdbcTemplate.update(DELETE_FLUSHES_SQL, OffsetDateTime.now(ZoneOffset.UTC).minusDays(1));
+                return true;
+            });
+            pending = null;
+            if (Boolean.TRUE.equals(applied)) {
+                log.debug("[ROLLUP] Flushed {} daily ingest rollups", snapshot.accumulators().size());
+            } else {
+                log.info("[ROLLUP] Ingest rollup snapshot {} was already committed, not adding it again", snapshot.id());
+            }
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("[ROLLUP] Ingest rollup flush failed, keeping snapshot {} of {} daily accumulators: {}",
+                    snapshot.id(), snapshot.accumulators().size(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Tạo scale_daily_rollups / scale_daily_rollup_flushes nếu chưa có
+     *
+     * @return false nếu DB không phải PostgreSQL
+     */
+    public boolean ensureTables() {
+        if (ready) {
+            return true;
+        }
+        if (unsupported || !weighingLogBatchWriter.isPostgres()) {
+            unsupported = true;
+            return false;
+        }
+        synchronized (this) {
+            if (!ready) {
+                jdbcTemplate.execute(createTableSql(DAILY_TABLE));
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + FLUSH_TABLE
+                        + " (flush_id VARCHAR(36) PRIMARY KEY, flushed_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+                ready = true;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static List<Object[]> rows(Map<Key, Accumulator> accumulators) {
+        List<Object[]> rows = new ArrayList<>(accumulators.size());
+        accumulators.forEach((key, accumulator) -> rows.add(accumulator.toRow(key)));
+        return rows;
+    }
+
+    static String createTableSql(String table) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(table).append(" (")
+                .append("scale_id BIGINT NOT NULL, bucket TIMESTAMPTZ NOT NULL, sample_count BIGINT NOT NULL, ")
+                .append("first_time TIMESTAMPTZ NOT NULL, last_time TIMESTAMPTZ NOT NULL, ");
+        for (int slot = 1; slot <= MeasurementEvent.DATA_SLOTS; slot++) {
+            sql.append("count_").append(slot).append(" BIGINT NOT NULL DEFAULT 0, ")
+                    .append("sum_").append(slot).append(" DOUBLE PRECISION NOT NULL DEFAULT 0, ")
+                    .append("min_").append(slot).append(" DOUBLE PRECISION, ")
+                    .append("max_").append(slot).append(" DOUBLE PRECISION, ")
+                    .append("first_").append(slot).append(" DOUBLE PRECISION, ")
+                    .append("last_").append(slot).append(" DOUBLE PRECISION, ");
+        }
+        return sql.append("PRIMARY KEY (scale_id, bucket))").toString();
+    }
+
+    /**
+     * UPSERT cộng dồn 1 accumulator vào dòng đã có (LEAST/GREATEST bỏ qua NULL)
+     */
+    static String upsertSql(String table) {
+        StringBuilder columns = new StringBuilder("scale_id, bucket, sample_count, first_time, last_time");
+        StringBuilder values = new StringBuilder("?, ?, ?, ?, ?");
+        StringBuilder update = new StringBuilder("sample_count = r.sample_count + EXCLUDED.sample_count, ")
+                .append("first_time = LEAST(r.first_time, EXCLUDED.first_time), ")
+                .append("last_time = GREATEST(r.last_time, EXCLUDED.last_time)");
+        for (int slot = 1; slot <= MeasurementEvent.DATA_SLOTS; slot++) {
+            String n = Integer.toString(slot);
+            columns.append(", count_").append(n).append(", sum_").append(n).append(", min_").append(n)
+                    .append(", max_").append(n).append(", first_").append(n).append(", last_").append(n);
+            values.append(", ?, ?, ?, ?, ?, ?");
+            update.append(", count_").append(n).append(" = r.count_").append(n).append(" + EXCLUDED.count_").append(n)
+                    .append(", sum_").append(n).append(" = r.sum_").append(n).append(" + EXCLUDED.sum_").append(n)
+                    .append(", min_").append(n).append(" = LEAST(r.min_").append(n).append(", EXCLUDED.min_").append(n).append(")")
+                    .append(", max_").append(n).append(" = GREATEST(r.max_").append(n).append(", EXCLUDED.max_").append(n).append(")")
+                    .append(", first_").append(n).append(" = CASE WHEN EXCLUDED.first_time < r.first_time")
+                    .append(" THEN COALESCE(EXCLUDED.first_").append(n).append(", r.first_").append(n).append(")")
+                    .append(" ELSE COALESCE(r.first_").append(n).append(", EXCLUDED.first_").append(n).append(") END")
+                    .append(", last_").append(n).append(" = CASE WHEN EXCLUDED.last_time >= r.last_time")
+                    .append(" THEN COALESCE(EXCLUDED.last_").append(n).append(", r.last_").append(n).append(")")
+                    .append(" ELSE COALESCE(r.last_").append(n).append(", EXCLUDED.last_").append(n).append(") END");
+        }
+        return "INSERT INTO " + table + " AS r (" + columns + ") VALUES (" + values + ") "
+                + "ON CONFLICT (scale_id, bucket) DO UPDATE SET " + update;
+    }
+
+    /**
+     * Tính lại dòng scale_daily_rollups của 1 ngày từ weighing_logs (ghi đè), 1 câu INSERT ... SELECT
+     * Tham số: bucket (đầu ngày UTC), created_at >= ?, created_at < ? (khoảng nửa mở trên cột partition)
+     */
+    public static String recomputeDailySql() {
+        StringBuilder columns = new StringBuilder("scale_id, bucket, sample_count, first_time, last_time");
+        StringBuilder select = new StringBuilder("SELECT scale_id, CAST(? AS timestamptz), count(*), min(created_at), max(created_at)");
+        StringBuilder source = new StringBuilder("SELECT scale_id, created_at");
+        StringBuilder update = new StringBuilder("sample_count = EXCLUDED.sample_count, ")
+                .append("first_time = EXCLUDED.first_time, last_time = EXCLUDED.last_time");
+        for (int slot = 1; slot <= MeasurementEvent.DATA_SLOTS; slot++) {
+            String v = "v" + slot;
+            columns.append(", count_").append(slot).append(", sum_").append(slot).append(", min_").append(slot)
+                    .append(", max_").append(slot).append(", first_").append(slot).append(", last_").append(slot);
+            select.append(", count(").append(v).append("), COALESCE(sum(").append(v).append("), 0), min(").append(v)
+                    .append("), max(").append(v).append("), (array_agg(").append(v)
+                    .append(" ORDER BY created_at) FILTER (WHERE ").append(v).append(" IS NOT NULL))[1], (array_agg(")
+                    .append(v).append(" ORDER BY created_at DESC) FILTER (WHERE ").append(v).append(" IS NOT NULL))[1]");
+            source.append(", ").append(WeighingLogRollupService.rawValueExpression(slot)).append(" AS ").append(v);
+            for (String prefix : new String[]{"count_", "sum_", "min_", "max_", "first_", "last_"}) {
+                update.append(", ").append(prefix).append(slot).append(" = EXCLUDED.").append(prefix).append(slot);
+            }
+        }
+        return "INSERT INTO " + DAILY_TABLE + " (" + columns + ") "
+                + select + " FROM (" + source + " FROM weighing_logs WHERE created_at >= ? AND created_at < ?) raw"
+                + " GROUP BY scale_id"
+                + " ON CONFLICT (scale_id, bucket) DO UPDATE SET " + update;
+    }
+
+    static OffsetDateTime toTime(long micros) {
+        return OffsetDateTime.ofInstant(
+                Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L),
+                ZoneOffset.UTC);
+    }
+
+    /**
+     * Thống kê của 1 (cân, bucket) kể từ lần flush trước
+     */
+    static final class Accumulator {
+        private long sampleCount;
+        private long firstMicros = Long.MAX_VALUE;
+        private long lastMicros = Long.MIN_VALUE;
+        private final long[] count = new long[MeasurementEvent.DATA_SLOTS];
+        private final double[] sum = new double[MeasurementEvent.DATA_SLOTS];
+        private final double[] min = new double[MeasurementEvent.DATA_SLOTS];
+        private final double[] max = new double[MeasurementEvent.DATA_SLOTS];
+        private final double[] first = new double[MeasurementEvent.DATA_SLOTS];
+        private final double[] last = new double[MeasurementEvent.DATA_SLOTS];
+
+        void add(MeasurementEvent event, long micros) {
+            sampleCount++;
+            firstMicros = Math.min(firstMicros, micros);
+            lastMicros = Math.max(lastMicros, micros);
+            for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+                if (!event.isValid(slot)) {
+                    continue;
+                }
+                double value = event.value(slot);
+                if (count[slot] == 0) {
+                    min[slot] = value;
+                    max[slot] = value;
+                    first[slot] = value;
+                } else {
+                    min[slot] = Math.min(min[slot], value);
+                    max[slot] = Math.max(max[slot], value);
+                }
+                last[slot] = value;
+                count[slot]++;
+                sum[slot] += value;
+            }
+        }
+
+        long count(int slot) {
+            return count[slot];
+        }
+
+        double sum(int slot) {
+            return sum[slot];
+        }
+
+        Object[] toRow(Key key) {
+            Object[] row = new Object[5 + MeasurementEvent.DATA_SLOTS * 6];
+            row[0] = key.scaleId();
+            row[1] = toTime(key.bucketMicros());
+            row[2] = sampleCount;
+            row[3] = toTime(firstMicros);
+            row[4] = toTime(lastMicros);
+            for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+                int base = 5 + slot * 6;
+                boolean any = count[slot] > 0;
+                row[base] = count[slot];
+                row[base + 1] = sum[slot];
+                row[base + 2] = any ? min[slot] : null;
+                row[base + 3] = any ? max[slot] : null;
+                row[base + 4] = any ? first[slot] : null;
+                row[base + 5] = any ? last[slot] : null;
+            }
+            return row;
+        }
+    }
+}
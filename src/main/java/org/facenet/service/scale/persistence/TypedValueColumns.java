@@ -0,0 +1,71 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties.ValueStorageMode;
+import org.facenet.event.MeasurementEvent;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Cột giá trị dạng số value_1..value_5 (double precision) + valid_mask (smallint)
+ * của weighing_logs và scale_current_states, ghi thẳng từ dạng compact của MeasurementEvent
+ *
+ * Theo persistence.values.mode:
+ * - LEGACY: chỉ ghi data_x (jsonb), cột số NULL
+ * - DUAL: ghi cả data_x và cột số (giai đoạn chuyển đổi)
+ * - TYPED: ghi cột số; data_x chỉ giữ giá trị không phải số (string, boolean, mảng thanh ghi)
+ */
+final class TypedValueColumns {
+
+    static final String COLUMNS = "value_1, value_2, value_3, value_4, value_5, valid_mask";
+
+    /**
+     * Số tham số JDBC của COLUMNS
+     */
+    static final int COUNT = MeasurementEvent.DATA_SLOTS + 1;
+
+    private TypedValueColumns() {
+    }
+
+    /**
+     * Giá trị ghi vào data_x theo mode (null = NULL)
+     */
+    static String legacyData(MeasurementEvent event, int slot, ValueStorageMode mode) {
+        if (mode == ValueStorageMode.TYPED && event.isValid(slot)) {
+            return null;
+        }
+        return event.getData(slot);
+    }
+
+    static boolean writesTyped(ValueStorageMode mode) {
+        return mode != ValueStorageMode.LEGACY;
+    }
+
+    /**
+     * Giá trị số của slot cho entity JPA, null nếu slot không phải số
+     */
+    static Double value(MeasurementEvent event, int slot) {
+        return event.isValid(slot) ? event.value(slot) : null;
+    }
+
+    /**
+     * Bind COLUMNS bắt đầu từ tham số firstIndex
+     */
+    static void bind(PreparedStatement ps, int firstIndex, MeasurementEvent event, ValueStorageMode mode)
+            throws SQLException {
+        boolean typed = writesTyped(mode);
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            if (typed && event.isValid(slot)) {
+                ps.setDouble(firstIndex + slot, event.value(slot));
+            } else {
+                ps.setNull(firstIndex + slot, Types.DOUBLE);
+            }
+        }
+        if (typed) {
+            ps.setShort(firstIndex + MeasurementEvent.DATA_SLOTS, (short) event.validMask());
+        } else {
+            ps.setNull(firstIndex + MeasurementEvent.DATA_SLOTS, Types.SMALLINT);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.facenet.service.scale.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.config.PersistenceProperties.ValueStorageMode;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * JDBC batch writer cho bảng weighing_logs
+ *
+ * - Cả batch được insert trong 1 transaction bằng addBatch/executeBatch (JdbcTemplate.batchUpdate);
+ *   với PostgreSQL, reWriteBatchedInserts=true trên JDBC URL gộp thành multi-row INSERT
+ * - Lỗi của batch được cô lập bằng cách chia đôi (bisect) và thử lại từng nửa trong transaction riêng,
+ *   đến khi chỉ còn các event lỗi đơn lẻ -> chuyển cho onFailure (dead letter)
+ * - Lỗi do DB không truy cập được (mất kết nối, timeout) không bisect mà ném ra cho caller quyết định
+ *   retry hay dead letter cả batch
+ * - created_at (thuộc khoá chính) tăng dần theo microsecond để event cùng cân trong 1 batch không trùng khoá;
+ *   được gán 1 lần cho mỗi event (khi append journal nếu có) và giữ nguyên qua các lần retry / dead letter / replay
+ * - Với PostgreSQL, dòng trùng khoá (replay journal sau crash) bị bỏ qua bằng ON CONFLICT DO NOTHING
+ * - data_x (jsonb) và value_x/valid_mask được ghi theo persistence.values.mode (TypedValueColumns)
+ */
+@Slf4j
+@Component
+public class WeighingLogBatchWriter {
+
+    static final String INSERT_SQL = "INSERT INTO weighing_logs "
+            + "(scale_id, created_at, last_time, data_1, data_2, data_3, data_4, data_5, updated_at, created_by, updated_by, "
+            + TypedValueColumns.COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String PG_INSERT_SQL = INSERT_SQL + " ON CONFLICT (scale_id, created_at) DO NOTHING";
+
+    static final String SYSTEM_USER = "engine_modbus";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PersistenceProperties persistenceProperties;
+
+    private volatile Boolean postgres;
+
+    public WeighingLogBatchWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                  PersistenceProperties persistenceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    /**
+     * Insert toàn bộ batch, cô lập event lỗi bằng bisect
+     *
+     * @param onFailure nhận từng event không thể insert cùng lỗi tương ứng
+     * @return số dòng đã insert thành công
+     */
+    public int write(List<MeasurementEvent> batch, BiConsumer<MeasurementEvent, Exception> onFailure) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        OffsetDateTime[] createdAt = assignCreatedAt(batch);
+        return writeRange(batch, createdAt, 0, batch.size(), onFailure);
+    }
+
+    private int writeRange(List<MeasurementEvent> batch, OffsetDateTime[] createdAt, int from, int to,
+                           BiConsumer<MeasurementEvent, Exception> onFailure) {
+        try {
+            insertInTransaction(batch, createdAt, from, to);
+            return to - from;
+        } catch (RuntimeException e) {
+            if (isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            if (to - from == 1) {
+                onFailure.accept(batch.get(from), e);
+                return 0;
+            }
+            int middle = (from + to) >>> 1;
+            log.warn("[BATCH] Batch insert of {} rows failed ({}), bisecting", to - from, e.getMessage());
+            return writeRange(batch, createdAt, from, middle, onFailure)
+                    + writeRange(batch, createdAt, middle, to, onFailure);
+        }
+    }
+
+    private void insertInTransaction(List<MeasurementEvent> batch, OffsetDateTime[] createdAt, int from, int to) {
+        boolean jsonbAsOther = isPostgres();
+        ValueStorageMode mode = valueMode();
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(jsonbAsOther ? PG_INSERT_SQL : INSERT_SQL, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        bindRow(ps, batch.get(from + i), createdAt[from + i], now, jsonbAsOther, mode);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return to - from;
+                    }
+                }));
+    }
+
+    static void bindRow(PreparedStatement ps, MeasurementEvent event, OffsetDateTime createdAt,
+                        OffsetDateTime now, boolean jsonbAsOther, ValueStorageMode mode) throws SQLException {
+        ps.setLong(1, event.scaleIdAsLong());
+        ps.setObject(2, createdAt);
+        ps.setObject(3, event.getLastTime().toOffsetDateTime());
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            String value = TypedValueColumns.legacyData(event, slot, mode);
+            if (value == null) {
+                ps.setNull(4 + slot, jsonbAsOther ? Types.OTHER : Types.VARCHAR);
+            } else if (jsonbAsOther) {
+                // Để PostgreSQL tự suy kiểu theo cột (jsonb) thay vì varchar
+                ps.setObject(4 + slot, value, Types.OTHER);
+            } else {
+                ps.setString(4 + slot, value);
+            }
+        }
+        ps.setObject(9, now);
+        ps.setString(10, SYSTEM_USER);
+        ps.setString(11, SYSTEM_USER);
+        TypedValueColumns.bind(ps, 12, event, mode);
+    }
+
+    /**
+     * created_at của từng event trong batch: event chưa có thì được gán giá trị tăng dần (CreatedAtClock);
+     * event đã gán trước đó (append journal, lần ghi trước khi retry) giữ nguyên giá trị cũ
+     */
+    OffsetDateTime[] assignCreatedAt(List<MeasurementEvent> batch) {
+        OffsetDateTime[] createdAt = new OffsetDateTime[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            MeasurementEvent event = batch.get(i);
+            if (event.createdAtMicros() < 0) {
+                event.setCreatedAtMicros(CreatedAtClock.nextMicros());
+            }
+            createdAt[i] = createdAtOf(event.createdAtMicros());
+        }
+        return createdAt;
+    }
+
+    static OffsetDateTime createdAtOf(long micros) {
+        return OffsetDateTime.ofInstant(
+                Instant.ofEpochSecond(micros / 1_000_000L, (micros % 1_000_000L) * 1_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * Lỗi do DB không truy cập được (không phải do dữ liệu) - thử lại cả batch sau sẽ thành công
+     */
+    static boolean isDatabaseUnavailable(Throwable e) {
+        return e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    ValueStorageMode valueMode() {
+        return persistenceProperties.getValues().getMode();
+    }
+
+    boolean isPostgres() {
+        Boolean value = postgres;
+        if (value == null) {
+            value = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres")));
+            postgres = value;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,91 @@
+package org.facenet.service.scale.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties.ValueStorageMode;
+import org.facenet.event.MeasurementEvent;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Ghi weighing_logs bằng PostgreSQL COPY ... FROM STDIN (FORMAT BINARY) qua CopyManager
+ * (persistence.batch.mode=COPY)
+ *
+ * - Dòng được encode thẳng vào buffer tái sử dụng của PgCopyBinaryEncoder (không dựng câu SQL/CSV)
+ * - COPY là nguyên tử: nếu lỗi (vd: dữ liệu không phải JSON hợp lệ), cả batch được ghi lại bằng
+ *   WeighingLogBatchWriter để bisect và cô lập dòng lỗi
+ * - Database không phải PostgreSQL (H2 khi dev): dùng luôn WeighingLogBatchWriter
+ */
+@Slf4j
+@Component
+public class WeighingLogCopyWriter {
+
+    static final String COPY_SQL = "COPY weighing_logs "
+            + "(scale_id, created_at, last_time, data_1, data_2, data_3, data_4, data_5, updated_at, created_by, updated_by, "
+            + TypedValueColumns.COLUMNS + ") "
+            + "FROM STDIN (FORMAT BINARY)";
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WeighingLogBatchWriter batchWriter;
+    private final ThreadLocal<PgCopyBinaryEncoder> encoders =
+            ThreadLocal.withInitial(() -> new PgCopyBinaryEncoder(INITIAL_BUFFER_SIZE));
+
+    public WeighingLogCopyWriter(JdbcTemplate jdbcTemplate, WeighingLogBatchWriter batchWriter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * @return số dòng đã ghi thành công
+     */
+    public int write(List<MeasurementEvent> batch, BiConsumer<MeasurementEvent, Exception> onFailure) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        if (!batchWriter.isPostgres()) {
+            return batchWriter.write(batch, onFailure);
+        }
+
+        try {
+            return copy(batch);
+        } catch (Exception e) {
+            log.warn("[BATCH] COPY of {} rows failed ({}), falling back to batched INSERT", batch.size(), e.getMessage());
+            return batchWriter.write(batch, onFailure);
+        }
+    }
+
+    private int copy(List<MeasurementEvent> batch) {
+        PgCopyBinaryEncoder encoder = encoders.get();
+        OffsetDateTime[] createdAt = batchWriter.assignCreatedAt(batch);
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        ValueStorageMode mode = batchWriter.valueMode();
+
+        encoder.begin();
+        for (int i = 0; i < batch.size(); i++) {
+            encoder.writeRow(batch.get(i), createdAt[i], now, WeighingLogBatchWriter.SYSTEM_USER, mode);
+        }
+        encoder.end();
+
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                copyIn.writeToCopy(encoder.array(), 0, encoder.length());
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+        return rows != null ? rows.intValue() : 0;
+    }
+}
@@ -0,0 +1,332 @@
+package org.facenet.service.scale.persistence;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.config.PersistenceProperties.PartitionInterval;
+import org.facenet.service.scale.persistence.archive.WeighingLogArchive;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Quản lý partition theo thời gian của weighing_logs (PostgreSQL declarative range partitioning)
+ *
+ * - Bảng thường do Hibernate tạo (ddl-auto) được chuyển 1 lần thành bảng partition theo created_at:
+ *   bảng cũ được đổi tên thành weighing_logs_legacy và gắn lại làm partition FROM (MINVALUE) TO (kỳ kế tiếp),
+ *   bảng rỗng thì bị xoá
+ * - Partition DAILY/MONTHLY (biên UTC) được tạo trước persistence.partition.premake kỳ;
+ *   PK (scale_id, created_at) khai báo trên bảng cha tự động được tạo trên từng partition và phục vụ luôn
+ *   truy vấn theo cân + khoảng thời gian, nên không có index idx_logs_scale_time riêng
+ * - Partition weighing_logs_default nhận các dòng nằm ngoài mọi khoảng (timestamp lỗi), không bao giờ mất dữ liệu
+ * - Retention: partition có toàn bộ khoảng cũ hơn retention-days bị DROP (hoặc DETACH) thay vì DELETE hàng loạt;
+ *   khi bật rollup, chỉ bỏ các partition đã được gộp hết vào weighing_logs_1m (WeighingLogRollupService);
+ *   khi bật archive, partition được ghi vào archive dạng cột (WeighingLogArchive) trước khi bị bỏ
+ *
+ * Truy vấn có điều kiện created_at dạng khoảng (>= / <) chỉ quét các partition liên quan (partition pruning).
+ * Chạy khi khởi động (sau khi Hibernate cập nhật schema) và định kỳ theo maintenance-interval-ms.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class WeighingLogPartitionManager {
+
+    static final String TABLE = "weighing_logs";
+    static final String LEGACY_TABLE = "weighing_logs_legacy";
+    static final String DEFAULT_PARTITION = "weighing_logs_default";
+    static final String LEGACY_BOUND_CHECK = "weighing_logs_legacy_bound";
+
+    private static final DateTimeFormatter DAILY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTHLY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT c.relname AS name,
+                   pg_get_expr(c.relpartbound, c.oid) = 'DEFAULT' AS is_default,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']*)''\\)'))[1]::timestamptz AS lower_bound,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']*)''\\)'))[1]::timestamptz AS upper_bound
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'weighing_logs'::regclass
+            ORDER BY c.relname
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WeighingLogBatchWriter weighingLogBatchWriter;
+    private final PersistenceProperties persistenceProperties;
+    private final WeighingLogRollupService rollupService;
+    private final WeighingLogArchive archive;
+
+    public WeighingLogPartitionManager(JdbcTemplate jdbcTemplate,
+                                       TransactionTemplate transactionTemplate,
+                                       WeighingLogBatchWriter weighingLogBatchWriter,
+                                       PersistenceProperties persistenceProperties,
+                                       WeighingLogRollupService rollupService,
+                                       WeighingLogArchive archive) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.weighingLogBatchWriter = weighingLogBatchWriter;
+        this.persistenceProperties = persistenceProperties;
+        this.rollupService = rollupService;
+        this.archive = archive;
+    }
+
+    /**
+     * Partition con của weighing_logs; lowerBound/upperBound null = MINVALUE/MAXVALUE (hoặc partition DEFAULT)
+     */
+    public record PartitionInfo(String name, boolean isDefault, OffsetDateTime lowerBound, OffsetDateTime upperBound) {
+
+        boolean overlaps(OffsetDateTime from, OffsetDateTime to) {
+            return !isDefault
+                    && (lowerBound == null || lowerBound.isBefore(to))
+                    && (upperBound == null || upperBound.isAfter(from));
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+
+    @Scheduled(initialDelayString = "${persistence.partition.maintenance-interval-ms:3600000}",
+            fixedDelayString = "${persistence.partition.maintenance-interval-ms:3600000}")
+    public synchronized void maintain() {
+        PersistenceProperties.Partition config = persistenceProperties.getPartition();
+        try {
+            if (!config.isEnabled() || !weighingLogBatchWriter.isPostgres()) {
+                return;
+            }
+            if (!ensurePartitionedTable()) {
+                return;
+            }
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            createPartitions(today, config);
+            if (config.getRetentionDays() > 0) {
+                LocalDate cutoffDate = retentionCutoff(today.minusDays(config.getRetentionDays()));
+                if (cutoffDate != null) {
+                    applyRetention(cutoffDate, config);
+                }
+            }
+        } catch (DataAccessException e) {
+            log.error("[PARTITION] Partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return false nếu weighing_logs chưa tồn tại (schema chưa được tạo)
+     */
+    boolean ensurePartitionedTable() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, TABLE);
+        if (kinds.isEmpty()) {
+            log.warn("[PARTITION] Table {} does not exist yet, skipping partition maintenance", TABLE);
+            return false;
+        }
+        if ("r".equals(kinds.get(0))) {
+            convertToPartitionedTable();
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+        return true;
+    }
+
+    /**
+     * Chuyển bảng thường thành bảng partition (1 transaction, khoá bảng trong lúc chuyển)
+     *
+     * ATTACH PARTITION phải chứng minh mọi dòng của bảng cũ nằm trong khoảng FROM (MINVALUE) TO (bound):
+     * CHECK (created_at < bound) được thêm NOT VALID và VALIDATE trước khi khoá (chỉ giữ SHARE UPDATE EXCLUSIVE,
+     * ghi vẫn chạy), nên lúc ATTACH PostgreSQL dùng CHECK đó thay vì quét toàn bảng dưới ACCESS EXCLUSIVE
+     */
+    private void convertToPartitionedTable() {
+        PartitionInterval interval = persistenceProperties.getPartition().getInterval();
+        LocalDate validatedBound = validateLegacyBound(interval);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_TABLE);
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS weighing_logs_pkey RENAME TO weighing_logs_legacy_pkey");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_logs_scale_time RENAME TO idx_logs_legacy_scale_time");
+
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_TABLE
+                    + " INCLUDING DEFAULTS INCLUDING STORAGE) PARTITION BY RANGE (created_at)");
+            // PK (scale_id, created_at) đã phục vụ cả truy vấn theo cân + thời gian (quét ngược) -> không tạo index riêng
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (scale_id, created_at)");
+            // Giữ nguyên tên foreign key của Hibernate để ddl-auto=update không tạo thêm
+            List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList(
+                    "SELECT conname, pg_get_constraintdef(oid) AS definition FROM pg_constraint "
+                            + "WHERE conrelid = ?::regclass AND contype = 'f'", LEGACY_TABLE);
+            for (Map<String, Object> foreignKey : foreignKeys) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT "
+                        + quoteIdentifier((String) foreignKey.get("conname")) + " " + foreignKey.get("definition"));
+            }
+
+            LocalDate bound = validatedBound;
+            if (bound == null) {
+                // Bảng rỗng lúc kiểm tra: chỉ còn các dòng vừa ghi sau đó, quét khi ATTACH không đáng kể
+                OffsetDateTime newest = jdbcTemplate.queryForObject(
+                        "SELECT max(created_at) FROM " + LEGACY_TABLE, OffsetDateTime.class);
+                if (newest == null) {
+                    jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+                    log.info("[PARTITION] Converted empty {} to a partitioned table", TABLE);
+                    return;
+                }
+                bound = boundAfter(newest, interval);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_TABLE
+                    + " FOR VALUES FROM (MINVALUE) TO (" + boundLiteral(bound) + ")");
+            if (validatedBound != null) {
+                jdbcTemplate.execute("ALTER TABLE " + LEGACY_TABLE + " DROP CONSTRAINT " + LEGACY_BOUND_CHECK);
+            }
+            log.info("[PARTITION] Converted {} to a partitioned table, existing rows kept in {} (up to {})",
+                    TABLE, LEGACY_TABLE, bound);
+        });
+    }
+
+    /**
+     * Thêm và VALIDATE CHECK (created_at < bound) trên bảng cũ trước khi khoá
+     *
+     * bound là đầu kỳ kế tiếp sau max(created_at) và thời điểm hiện tại, để dòng ghi mới trong lúc chuyển
+     * vẫn thoả CHECK (CHECK NOT VALID vẫn áp dụng cho dòng mới)
+     *
+     * @return bound đã được VALIDATE, null nếu bảng rỗng
+     */
+    LocalDate validateLegacyBound(PartitionInterval interval) {
+        OffsetDateTime newest = jdbcTemplate.queryForObject("SELECT max(created_at) FROM " + TABLE, OffsetDateTime.class);
+        if (newest == null) {
+            return null;
+        }
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        LocalDate bound = boundAfter(newest.isAfter(now) ? newest : now, interval);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP CONSTRAINT IF EXISTS " + LEGACY_BOUND_CHECK);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + LEGACY_BOUND_CHECK
+                + " CHECK (created_at < " + boundLiteral(bound) + ") NOT VALID");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " VALIDATE CONSTRAINT " + LEGACY_BOUND_CHECK);
+        log.info("[PARTITION] Validated {} rows are before {} ahead of the conversion", TABLE, bound);
+        return bound;
+    }
+
+    private static LocalDate boundAfter(OffsetDateTime newest, PartitionInterval interval) {
+        return nextPeriod(periodStart(newest.withOffsetSameInstant(ZoneOffset.UTC).toLocalDate(), interval), interval);
+    }
+
+    /**
+     * Tạo partition cho kỳ hiện tại và premake kỳ tiếp theo (bỏ qua kỳ đã được partition khác bao phủ)
+     */
+    void createPartitions(LocalDate today, PersistenceProperties.Partition config) {
+        PartitionInterval interval = config.getInterval();
+        List<PartitionInfo> existing = listPartitions();
+        LocalDate start = periodStart(today, interval);
+        for (int i = 0; i <= config.getPremake(); i++) {
+            LocalDate end = nextPeriod(start, interval);
+            OffsetDateTime from = start.atStartOfDay().atOffset(ZoneOffset.UTC);
+            OffsetDateTime to = end.atStartOfDay().atOffset(ZoneOffset.UTC);
+            if (existing.stream().noneMatch(partition -> partition.overlaps(from, to))) {
+                String name = partitionName(start, interval);
+                try {
+                    jdbcTemplate.execute(createPartitionSql(start, interval));
+                    log.info("[PARTITION] Created partition {} [{}, {})", name, start, end);
+                } catch (DataAccessException e) {
+                    // Thường do weighing_logs_default đang chứa dòng thuộc khoảng này
+                    log.error("[PARTITION] Cannot create partition {}: {}", name, e.getMessage());
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Cutoff retention của raw, không vượt quá phần đã rollup sang tầng 1 phút
+     * (null = rollup bật nhưng chưa sẵn sàng, bỏ qua retention lần này)
+     */
+    LocalDate retentionCutoff(LocalDate cutoffDate) {
+        if (!persistenceProperties.getRollup().isEnabled()) {
+            return cutoffDate;
+        }
+        OffsetDateTime rolledUntil = rollupService.isAvailable() ? rollupService.rolledUntil(RollupTier.MINUTE) : null;
+        if (rolledUntil == null) {
+            log.info("[PARTITION] Raw retention deferred: minute rollup has not caught up yet");
+            return null;
+        }
+        LocalDate rolledDate = rolledUntil.withOffsetSameInstant(ZoneOffset.UTC).toLocalDate();
+        return rolledDate.isBefore(cutoffDate) ? rolledDate : cutoffDate;
+    }
+
+    /**
+     * Xoá/tách partition có toàn bộ khoảng trước cutoff (không đụng partition DEFAULT)
+     */
+    void applyRetention(LocalDate cutoffDate, PersistenceProperties.Partition config) {
+        OffsetDateTime cutoff = cutoffDate.atStartOfDay().atOffset(ZoneOffset.UTC);
+        List<PartitionInfo> expired = listPartitions().stream()
+                .filter(partition -> !partition.isDefault() && partition.upperBound() != null
+                        && !partition.upperBound().isAfter(cutoff))
+                .sorted(Comparator.comparing(PartitionInfo::upperBound))
+                .toList();
+        for (PartitionInfo partition : expired) {
+            // Archive theo thứ tự thời gian, dừng ở partition lỗi để archivedUntil không vượt qua dữ liệu chưa archive
+            if (archive.isEnabled() && !archivePartition(partition)) {
+                return;
+            }
+            String name = quoteIdentifier(partition.name());
+            switch (config.getRetentionAction()) {
+                case DROP -> jdbcTemplate.execute("DROP TABLE " + name);
+                case DETACH -> jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            }
+            log.info("[PARTITION] Retention: {} partition {} (before {})",
+                    config.getRetentionAction() == PersistenceProperties.RetentionAction.DROP ? "dropped" : "detached",
+                    partition.name(), cutoffDate);
+        }
+    }
+
+    private boolean archivePartition(PartitionInfo partition) {
+        try {
+            archive.archivePartition(partition.name(), partition.upperBound());
+            return true;
+        } catch (IOException | DataAccessException e) {
+            log.error("[PARTITION] Failed to archive partition {}, keeping it: {}", partition.name(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    public List<PartitionInfo> listPartitions() {
+        return jdbcTemplate.query(LIST_PARTITIONS_SQL, (rs, rowNum) -> new PartitionInfo(
+                rs.getString("name"),
+                rs.getBoolean("is_default"),
+                rs.getObject("lower_bound", OffsetDateTime.class),
+                rs.getObject("upper_bound", OffsetDateTime.class)));
+    }
+
+    static LocalDate periodStart(LocalDate day, PartitionInterval interval) {
+        return interval == PartitionInterval.MONTHLY ? day.withDayOfMonth(1) : day;
+    }
+
+    static LocalDate nextPeriod(LocalDate start, PartitionInterval interval) {
+        return interval == PartitionInterval.MONTHLY ? start.plusMonths(1) : start.plusDays(1);
+    }
+
+    static String partitionName(LocalDate start, PartitionInterval interval) {
+        return TABLE + "_p" + start.format(interval == PartitionInterval.MONTHLY ? MONTHLY_SUFFIX : DAILY_SUFFIX);
+    }
+
+    static String createPartitionSql(LocalDate start, PartitionInterval interval) {
+        return "CREATE TABLE IF NOT EXISTS " + partitionName(start, interval) + " PARTITION OF " + TABLE
+                + " FOR VALUES FROM (" + boundLiteral(start) + ") TO (" + boundLiteral(nextPeriod(start, interval)) + ")";
+    }
+
+    private static String boundLiteral(LocalDate date) {
+        return "'" + date + " 00:00:00+00'";
+    }
+
+    private static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
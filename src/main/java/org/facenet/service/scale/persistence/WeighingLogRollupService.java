@@ -0,0 +1,260 @@
+package org.facenet.service.scale.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Downsampling weighing_logs thành các tầng rollup 1 phút (weighing_logs_1m) và 1 giờ (weighing_logs_1h)
+ *
+ * - Mỗi lần chạy: raw -> 1m cho các phút đã đóng (trễ lag-seconds để nhận dòng đến muộn),
+ *   1m -> 1h cho các giờ đã có đủ rollup phút; mỗi tầng tối đa max-range-minutes/lần (catch-up dần)
+ * - Tiến độ mỗi tầng (rolled_until) lưu trong weighing_log_rollup_watermarks, cập nhật cùng transaction với rollup;
+ *   INSERT ... ON CONFLICT DO UPDATE nên chạy lại 1 khoảng không tạo dòng trùng
+ * - Giá trị số của slot: value_N nếu có, ngược lại jsonb data_N kiểu number (dòng trước giai đoạn dual-write)
+ * - Retention: 1m bị xoá sau minute-retention-days (không xoá phần chưa được gộp lên 1h), 1h giữ mãi mặc định;
+ *   raw bị xoá bởi WeighingLogPartitionManager, không vượt quá rolledUntil(MINUTE)
+ * Dòng raw được ghi lại sau khi phút của nó đã rollup (vd: replay dead letter) không được tính lại.
+ * Chỉ PostgreSQL; ReportServiceImpl đọc tầng thô nhất đáp ứng được request.
+ */
+@Slf4j
+@Component
+public class WeighingLogRollupService {
+
+    static final String WATERMARK_TABLE = "weighing_log_rollup_watermarks";
+
+    private static final String UPSERT_WATERMARK_SQL = "INSERT INTO " + WATERMARK_TABLE + " (tier, rolled_until) "
+            + "VALUES (?, ?) ON CONFLICT (tier) DO UPDATE SET rolled_until = EXCLUDED.rolled_until";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WeighingLogBatchWriter weighingLogBatchWriter;
+    private final PersistenceProperties persistenceProperties;
+
+    private final Map<RollupTier, OffsetDateTime> watermarks = new ConcurrentHashMap<>();
+    private final Map<RollupTier, OffsetDateTime> coveredFrom = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public WeighingLogRollupService(JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    WeighingLogBatchWriter weighingLogBatchWriter,
+                                    PersistenceProperties persistenceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.weighingLogBatchWriter = weighingLogBatchWriter;
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    @Scheduled(fixedDelayString = "${persistence.rollup.interval-ms:60000}")
+    public synchronized void run() {
+        PersistenceProperties.Rollup config = persistenceProperties.getRollup();
+        try {
+            if (!config.isEnabled() || !weighingLogBatchWriter.isPostgres()) {
+                return;
+            }
+            if (!ready) {
+                createSchema();
+                loadWatermarks();
+                ready = true;
+            }
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+            rollUp(RollupTier.MINUTE, truncate(now.minusSeconds(config.getLagSeconds()), RollupTier.MINUTE), config);
+            OffsetDateTime minuteUntil = watermarks.get(RollupTier.MINUTE);
+            if (minuteUntil != null) {
+                rollUp(RollupTier.HOUR, truncate(minuteUntil, RollupTier.HOUR), config);
+            }
+            applyRetention(now, config);
+        } catch (DataAccessException e) {
+            log.error("[ROLLUP] Rollup run failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tầng rollup có sẵn để đọc (bật, PostgreSQL, schema đã tạo)
+     */
+    public boolean isAvailable() {
+        return ready && persistenceProperties.getRollup().isEnabled();
+    }
+
+    /**
+     * Mọi bucket của tầng trước thời điểm này đã được rollup (null nếu tầng chưa có dữ liệu)
+     */
+    public OffsetDateTime rolledUntil(RollupTier tier) {
+        return watermarks.get(tier);
+    }
+
+    /**
+     * Bucket sớm nhất còn giữ của tầng (null nếu tầng rỗng)
+     */
+    public OffsetDateTime coveredFrom(RollupTier tier) {
+        return coveredFrom.get(tier);
+    }
+
+    private void rollUp(RollupTier tier, OffsetDateTime target, PersistenceProperties.Rollup config) {
+        OffsetDateTime from = watermarks.get(tier);
+        if (from == null) {
+            from = initialWatermark(tier, target);
+        }
+        OffsetDateTime to = target;
+        // Cap nhỏ hơn 1 bucket vẫn tiến đủ 1 bucket, nếu không tầng giờ bị truncate về from và không bao giờ tiến
+        int minMinutes = tier == RollupTier.HOUR ? 60 : 1;
+        OffsetDateTime limit = from.plusMinutes(Math.max(minMinutes, config.getMaxRangeMinutes()));
+        if (to.isAfter(limit)) {
+            to = truncate(limit, tier);
+        }
+        if (!from.isBefore(to)) {
+            return;
+        }
+
+        OffsetDateTime start = from;
+        OffsetDateTime end = to;
+        int rows = transactionTemplate.execute(status -> {
+            int written = jdbcTemplate.update(rollupSql(tier), start, end);
+            jdbcTemplate.update(UPSERT_WATERMARK_SQL, tier.name(), end);
+            return written;
+        });
+        watermarks.put(tier, end);
+        coveredFrom.putIfAbsent(tier, start);
+        log.debug("[ROLLUP] {}: rolled [{}, {}) into {} rows", tier.table(), start, end, rows);
+    }
+
+    /**
+     * Điểm bắt đầu của tầng chưa có watermark: bucket sớm nhất của tầng nguồn (hoặc target nếu nguồn rỗng)
+     */
+    private OffsetDateTime initialWatermark(RollupTier tier, OffsetDateTime target) {
+        String sql = tier == RollupTier.MINUTE
+                ? "SELECT min(created_at) FROM weighing_logs"
+                : "SELECT min(bucket) FROM " + RollupTier.MINUTE.table();
+        OffsetDateTime earliest = jdbcTemplate.queryForObject(sql, OffsetDateTime.class);
+        OffsetDateTime start = earliest != null ? truncate(earliest, tier) : target;
+        log.info("[ROLLUP] Starting {} rollup from {}", tier.table(), start);
+        return start;
+    }
+
+    private void applyRetention(OffsetDateTime now, PersistenceProperties.Rollup config) {
+        if (config.getMinuteRetentionDays() > 0) {
+            OffsetDateTime cutoff = now.minusDays(config.getMinuteRetentionDays());
+            OffsetDateTime hourUntil = watermarks.get(RollupTier.HOUR);
+            if (hourUntil != null) {
+                deleteBefore(RollupTier.MINUTE, cutoff.isBefore(hourUntil) ? cutoff : hourUntil);
+            }
+        }
+        if (config.getHourRetentionDays() > 0) {
+            deleteBefore(RollupTier.HOUR, now.minusDays(config.getHourRetentionDays()));
+        }
+    }
+
+    private void deleteBefore(RollupTier tier, OffsetDateTime cutoff) {
+        int deleted = jdbcTemplate.update("DELETE FROM " + tier.table() + " WHERE bucket < ?", cutoff);
+        coveredFrom.computeIfPresent(tier, (key, current) -> current.isBefore(cutoff) ? cutoff : current);
+        if (deleted > 0) {
+            log.info("[ROLLUP] Retention: deleted {} rows older than {} from {}", deleted, cutoff, tier.table());
+        }
+    }
+
+    private void createSchema() {
+        for (RollupTier tier : RollupTier.values()) {
+            jdbcTemplate.execute(createTableSql(tier));
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + tier.table() + "_bucket ON " + tier.table() + " (bucket)");
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + WATERMARK_TABLE
+                + " (tier VARCHAR(16) PRIMARY KEY, rolled_until TIMESTAMPTZ NOT NULL)");
+    }
+
+    private void loadWatermarks() {
+        jdbcTemplate.query("SELECT tier, rolled_until FROM " + WATERMARK_TABLE, rs -> {
+            watermarks.put(RollupTier.valueOf(rs.getString("tier")), rs.getObject("rolled_until", OffsetDateTime.class));
+        });
+        for (RollupTier tier : RollupTier.values()) {
+            OffsetDateTime earliest = jdbcTemplate.queryForObject("SELECT min(bucket) FROM " + tier.table(), OffsetDateTime.class);
+            if (earliest != null) {
+                coveredFrom.put(tier, earliest);
+            }
+        }
+    }
+
+    static OffsetDateTime truncate(OffsetDateTime time, RollupTier tier) {
+        return time.withOffsetSameInstant(ZoneOffset.UTC)
+                .truncatedTo(tier == RollupTier.MINUTE ? ChronoUnit.MINUTES : ChronoUnit.HOURS);
+    }
+
+    /**
+     * Giá trị số của slot N (1-5) trên 1 dòng weighing_logs
+     */
+    public static String rawValueExpression(int slot) {
+        return "COALESCE(value_" + slot + ", CASE WHEN jsonb_typeof(data_" + slot + ") = 'number' THEN data_"
+                + slot + "::float8 END)";
+    }
+
+    static String createTableSql(RollupTier tier) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(tier.table()).append(" (")
+                .append("scale_id BIGINT NOT NULL, bucket TIMESTAMPTZ NOT NULL, ")
+                .append("sample_count INTEGER NOT NULL, last_time TIMESTAMPTZ, ");
+        for (int slot = 1; slot <= MeasurementEvent.DATA_SLOTS; slot++) {
+            sql.append("min_").append(slot).append(" DOUBLE PRECISION, ")
+                    .append("max_").append(slot).append(" DOUBLE PRECISION, ")
+                    .append("sum_").append(slot).append(" DOUBLE PRECISION, ")
+                    .append("count_").append(slot).append(" INTEGER NOT NULL DEFAULT 0, ")
+                    .append("last_").append(slot).append(" DOUBLE PRECISION, ");
+        }
+        return sql.append("PRIMARY KEY (scale_id, bucket))").toString();
+    }
+
+    /**
+     * INSERT ... SELECT gộp khoảng [?, ?) của tầng nguồn (raw cho MINUTE, 1m cho HOUR) vào tier
+     */
+    static String rollupSql(RollupTier tier) {
+        boolean fromRaw = tier == RollupTier.MINUTE;
+        String time = fromRaw ? "created_at" : "bucket";
+        StringBuilder columns = new StringBuilder("scale_id, bucket, sample_count, last_time");
+        StringBuilder select = new StringBuilder("SELECT scale_id, date_trunc('").append(tier.unit())
+                .append("', ").append(time).append(" AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' AS rollup_bucket, ")
+                .append(fromRaw ? "count(*)" : "sum(sample_count)").append(", max(last_time)");
+        StringBuilder update = new StringBuilder("sample_count = EXCLUDED.sample_count, last_time = EXCLUDED.last_time");
+        for (int slot = 1; slot <= MeasurementEvent.DATA_SLOTS; slot++) {
+            columns.append(", min_").append(slot).append(", max_").append(slot).append(", sum_").append(slot)
+                    .append(", count_").append(slot).append(", last_").append(slot);
+            if (fromRaw) {
+                String v = "v" + slot;
+                select.append(", min(").append(v).append("), max(").append(v).append("), sum(").append(v)
+                        .append("), count(").append(v).append("), (array_agg(").append(v)
+                        .append(" ORDER BY created_at DESC) FILTER (WHERE ").append(v).append(" IS NOT NULL))[1]");
+            } else {
+                select.append(", min(min_").append(slot).append("), max(max_").append(slot)
+                        .append("), sum(sum_").append(slot).append("), sum(count_").append(slot)
+                        .append("), (array_agg(last_").append(slot).append(" ORDER BY bucket DESC) FILTER (WHERE last_")
+                        .append(slot).append(" IS NOT NULL))[1]");
+            }
+            for (String prefix : new String[]{"min_", "max_", "sum_", "count_", "last_"}) {
+                update.append(", ").append(prefix).append(slot).append(" = EXCLUDED.").append(prefix).append(slot);
+            }
+        }
+
+        StringBuilder source = new StringBuilder();
+        if (fromRaw) {
+            source.append("(SELECT scale_id, created_at, last_time");
+            for (int slot = 1; slot <= MeasurementEvent.DATA_SLOTS; slot++) {
+                source.append(", ").append(rawValueExpression(slot)).append(" AS v").append(slot);
+            }
+            source.append(" FROM weighing_logs WHERE created_at >= ? AND created_at < ?) raw");
+        } else {
+            source.append(RollupTier.MINUTE.table()).append(" WHERE bucket >= ? AND bucket < ?");
+        }
+
+        return "INSERT INTO " + tier.table() + " (" + columns + ") "
+                + select + " FROM " + source
+                + " GROUP BY scale_id, rollup_bucket"
+                + " ON CONFLICT (scale_id, bucket) DO UPDATE SET " + update;
+    }
+}
@@ -0,0 +1,106 @@
+package org.facenet.service.scale.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Migration nền: điền value_1..value_5/valid_mask cho các dòng weighing_logs ghi trước giai đoạn dual-write
+ *
+ * - Chỉ chạy khi persistence.values.mode là DUAL hoặc TYPED (dòng mới đã có valid_mask, dòng cũ valid_mask IS NULL)
+ * - Quét theo created_at từ dòng cũ nhất chưa có valid_mask đến thời điểm bắt đầu backfill,
+ *   mỗi bước 1 khoảng backfill-window-minutes (1 câu UPDATE, chỉ chạm partition chứa khoảng đó)
+ * - Slot jsonb kiểu number -> value_x, bit tương ứng của valid_mask = 1; slot khác -> NULL
+ * - Khi xong: log thông báo có thể chuyển persistence.values.mode=TYPED (report đọc cột số)
+ * Chỉ PostgreSQL; tiến độ giữ trong bộ nhớ, restart sẽ bắt đầu lại từ dòng cũ nhất còn thiếu.
+ */
+@Slf4j
+@Component
+public class WeighingLogValueBackfill {
+
+    static final String BACKFILL_SQL = """
+            UPDATE weighing_logs SET
+                value_1 = CASE WHEN jsonb_typeof(data_1) = 'number' THEN data_1::float8 END,
+                value_2 = CASE WHEN jsonb_typeof(data_2) = 'number' THEN data_2::float8 END,
+                value_3 = CASE WHEN jsonb_typeof(data_3) = 'number' THEN data_3::float8 END,
+                value_4 = CASE WHEN jsonb_typeof(data_4) = 'number' THEN data_4::float8 END,
+                value_5 = CASE WHEN jsonb_typeof(data_5) = 'number' THEN data_5::float8 END,
+                valid_mask = ((CASE WHEN jsonb_typeof(data_1) = 'number' THEN 1 ELSE 0 END)
+                            | (CASE WHEN jsonb_typeof(data_2) = 'number' THEN 2 ELSE 0 END)
+                            | (CASE WHEN jsonb_typeof(data_3) = 'number' THEN 4 ELSE 0 END)
+                            | (CASE WHEN jsonb_typeof(data_4) = 'number' THEN 8 ELSE 0 END)
+                            | (CASE WHEN jsonb_typeof(data_5) = 'number' THEN 16 ELSE 0 END))::smallint
+            WHERE created_at >= ? AND created_at < ? AND valid_mask IS NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WeighingLogBatchWriter weighingLogBatchWriter;
+    private final PersistenceProperties persistenceProperties;
+
+    private OffsetDateTime cursor;
+    private OffsetDateTime end;
+    private volatile long updatedRows;
+    private volatile boolean completed;
+
+    public WeighingLogValueBackfill(JdbcTemplate jdbcTemplate,
+                                    WeighingLogBatchWriter weighingLogBatchWriter,
+                                    PersistenceProperties persistenceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.weighingLogBatchWriter = weighingLogBatchWriter;
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    @Scheduled(fixedDelayString = "${persistence.values.backfill-interval-ms:1000}")
+    public synchronized void step() {
+        PersistenceProperties.Values config = persistenceProperties.getValues();
+        if (completed || !config.isBackfillEnabled() || !TypedValueColumns.writesTyped(config.getMode())) {
+            return;
+        }
+        try {
+            if (!weighingLogBatchWriter.isPostgres()) {
+                completed = true;
+                return;
+            }
+            if (cursor == null) {
+                // Dòng ghi sau thời điểm này đã có cột số (dual-write)
+                end = OffsetDateTime.now(ZoneOffset.UTC);
+                cursor = jdbcTemplate.queryForObject(
+                        "SELECT min(created_at) FROM weighing_logs WHERE valid_mask IS NULL", OffsetDateTime.class);
+                if (cursor == null) {
+                    complete();
+                    return;
+                }
+                log.info("[PERSISTENCE] Backfilling typed value columns of weighing_logs from {} to {}", cursor, end);
+            }
+
+            OffsetDateTime windowEnd = cursor.plusMinutes(Math.max(1, config.getBackfillWindowMinutes()));
+            updatedRows += jdbcTemplate.update(BACKFILL_SQL, cursor, windowEnd);
+            cursor = windowEnd;
+            if (!cursor.isBefore(end)) {
+                complete();
+            }
+        } catch (DataAccessException e) {
+            log.warn("[PERSISTENCE] Typed value backfill step at {} failed, will retry: {}", cursor, e.getMessage());
+        }
+    }
+
+    private void complete() {
+        completed = true;
+        log.info("[PERSISTENCE] Typed value backfill completed ({} rows updated); "
+                + "persistence.values.mode=TYPED can now be enabled", updatedRows);
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public long getUpdatedRows() {
+        return updatedRows;
+    }
+}
@@ -0,0 +1,112 @@
+package org.facenet.service.scale.persistence.archive;
+
+import org.facenet.event.MeasurementEvent;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Các dòng weighing_logs của 1 cân trong 1 block archive, lưu theo cột
+ *
+ * Thời gian là microsecond từ epoch (độ phân giải timestamptz của PostgreSQL).
+ * Slot i có giá trị số khi bit i của validMask = 1 (values[i]), ngược lại text[i] giữ giá trị gốc (có thể null).
+ */
+final class ArchiveBlock {
+
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    private int size;
+    private long[] createdAt;
+    private long[] lastTime;
+    private int[] validMask;
+    private String[] createdBy;
+    private final double[][] values = new double[MeasurementEvent.DATA_SLOTS][];
+    private final String[][] text = new String[MeasurementEvent.DATA_SLOTS][];
+
+    ArchiveBlock(int capacity) {
+        int initial = Math.max(16, capacity);
+        createdAt = new long[initial];
+        lastTime = new long[initial];
+        validMask = new int[initial];
+        createdBy = new String[initial];
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            values[slot] = new double[initial];
+            text[slot] = new String[initial];
+        }
+    }
+
+    /**
+     * Thêm 1 dòng; rowValues/rowText theo slot, chỉ phần tương ứng với validMask được dùng
+     */
+    void add(long createdAtMicros, long lastTimeMicros, int mask, double[] rowValues, String rowCreatedBy, String[] rowText) {
+        if (size == createdAt.length) {
+            grow();
+        }
+        createdAt[size] = createdAtMicros;
+        lastTime[size] = lastTimeMicros;
+        validMask[size] = mask;
+        createdBy[size] = rowCreatedBy;
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            boolean valid = (mask & (1 << slot)) != 0;
+            values[slot][size] = valid ? rowValues[slot] : 0;
+            text[slot][size] = valid ? null : rowText[slot];
+        }
+        size++;
+    }
+
+    private void grow() {
+        int capacity = createdAt.length * 2;
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        lastTime = Arrays.copyOf(lastTime, capacity);
+        validMask = Arrays.copyOf(validMask, capacity);
+        createdBy = Arrays.copyOf(createdBy, capacity);
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            values[slot] = Arrays.copyOf(values[slot], capacity);
+            text[slot] = Arrays.copyOf(text[slot], capacity);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long createdAt(int row) {
+        return createdAt[row];
+    }
+
+    long lastTime(int row) {
+        return lastTime[row];
+    }
+
+    int validMask(int row) {
+        return validMask[row];
+    }
+
+    boolean isValid(int row, int slot) {
+        return (validMask[row] & (1 << slot)) != 0;
+    }
+
+    double value(int row, int slot) {
+        return values[slot][row];
+    }
+
+    String text(int row, int slot) {
+        return text[slot][row];
+    }
+
+    String createdBy(int row) {
+        return createdBy[row];
+    }
+
+    static long toMicros(OffsetDateTime time) {
+        Instant instant = time.toInstant();
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    static OffsetDateTime fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L)
+                .atOffset(ZoneOffset.UTC);
+    }
+}
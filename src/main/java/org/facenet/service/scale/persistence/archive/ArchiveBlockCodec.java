@@ -0,0 +1,323 @@
+package org.facenet.service.scale.persistence.archive;
+
+import org.facenet.event.MeasurementEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Mã hoá cột của ArchiveBlock (kiểu Gorilla)
+ *
+ * Thân block (nén deflate): rowCount (4) | số byte bit (4) | các cột bit | từ điển chuỗi (count + [len, UTF-8])
+ * Các cột bit, lần lượt:
+ * - created_at: dòng đầu 64 bit, dòng 2 là delta, sau đó delta-of-delta (thường = 0 với chu kỳ đọc đều)
+ * - last_time: 1 bit có/không + thay đổi của (last_time - created_at) so với dòng trước
+ * - valid_mask: dòng đầu đủ bit, sau đó '0' = giống dòng trước, '1' + mask
+ * - value của từng slot (chỉ các dòng có bit valid): XOR với giá trị trước đó như Gorilla;
+ *   '0' = giống hệt, '10' = bit có nghĩa nằm trong cửa sổ leading/trailing trước đó,
+ *   '11' + leading (5 bit) + độ dài (6 bit, 0 = 64) + bit có nghĩa
+ * - created_by và text của slot không phải số: chỉ số trong từ điển, '0' = giống dòng trước của cùng cột
+ * Số nguyên có dấu dùng mã độ dài thay đổi: '0' = 0, '10' + 12 bit, '110' + 20 bit, '1110' + 32 bit, '1111' + 64 bit.
+ */
+final class ArchiveBlockCodec {
+
+    private static final int STRING_COLUMNS = MeasurementEvent.DATA_SLOTS + 1;
+    private static final int NULL_STRING = -1;
+
+    private ArchiveBlockCodec() {
+    }
+
+    static byte[] encode(ArchiveBlock block) throws IOException {
+        int rows = block.size();
+        BitWriter bits = new BitWriter(rows * 4);
+
+        // created_at: delta-of-delta
+        long previousTime = 0;
+        long previousDelta = 0;
+        for (int row = 0; row < rows; row++) {
+            long time = block.createdAt(row);
+            if (row == 0) {
+                bits.writeBits(time, 64);
+            } else {
+                long delta = time - previousTime;
+                writeSigned(bits, row == 1 ? delta : delta - previousDelta);
+                previousDelta = delta;
+            }
+            previousTime = time;
+        }
+
+        // last_time: độ lệch so với created_at, ghi thay đổi so với dòng trước
+        long previousOffset = 0;
+        for (int row = 0; row < rows; row++) {
+            long lastTime = block.lastTime(row);
+            bits.writeBit(lastTime != ArchiveBlock.NO_TIME);
+            if (lastTime != ArchiveBlock.NO_TIME) {
+                long offset = lastTime - block.createdAt(row);
+                writeSigned(bits, offset - previousOffset);
+                previousOffset = offset;
+            }
+        }
+
+        // valid_mask
+        int previousMask = -1;
+        for (int row = 0; row < rows; row++) {
+            int mask = block.validMask(row);
+            if (row > 0) {
+                bits.writeBit(mask != previousMask);
+            }
+            if (row == 0 || mask != previousMask) {
+                bits.writeBits(mask, MeasurementEvent.DATA_SLOTS);
+            }
+            previousMask = mask;
+        }
+
+        // value: XOR
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            GorillaState state = new GorillaState();
+            for (int row = 0; row < rows; row++) {
+                if (block.isValid(row, slot)) {
+                    state.write(bits, Double.doubleToRawLongBits(block.value(row, slot)));
+                }
+            }
+        }
+
+        // created_by + text: từ điển
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] previousIndex = new int[STRING_COLUMNS];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < STRING_COLUMNS; column++) {
+                if (column > 0 && block.isValid(row, column - 1)) {
+                    continue;
+                }
+                String value = column == 0 ? block.createdBy(row) : block.text(row, column - 1);
+                int index = NULL_STRING;
+                if (value != null) {
+                    index = dictionary.computeIfAbsent(value, key -> {
+                        entries.add(key);
+                        return entries.size() - 1;
+                    });
+                }
+                boolean changed = row == 0 || index != previousIndex[column];
+                bits.writeBit(changed);
+                if (changed) {
+                    writeSigned(bits, index);
+                }
+                previousIndex[column] = index;
+            }
+        }
+
+        byte[] bitBytes = bits.toByteArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitBytes.length / 2 + 64);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(rows);
+            out.writeInt(bitBytes.length);
+            out.write(bitBytes);
+            out.writeInt(entries.size());
+            for (String entry : entries) {
+                byte[] utf8 = entry.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static ArchiveBlock decode(byte[] body) throws IOException {
+        int rows;
+        byte[] bitBytes;
+        String[] entries;
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(body)))) {
+            rows = in.readInt();
+            bitBytes = in.readNBytes(in.readInt());
+            entries = new String[in.readInt()];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+            }
+        }
+        BitReader bits = new BitReader(bitBytes);
+
+        long[] createdAt = new long[rows];
+        long previousDelta = 0;
+        for (int row = 0; row < rows; row++) {
+            if (row == 0) {
+                createdAt[row] = bits.readBits(64);
+            } else {
+                long value = readSigned(bits);
+                long delta = row == 1 ? value : previousDelta + value;
+                createdAt[row] = createdAt[row - 1] + delta;
+                previousDelta = delta;
+            }
+        }
+
+        long[] lastTime = new long[rows];
+        long previousOffset = 0;
+        for (int row = 0; row < rows; row++) {
+            if (bits.readBit()) {
+                previousOffset += readSigned(bits);
+                lastTime[row] = createdAt[row] + previousOffset;
+            } else {
+                lastTime[row] = ArchiveBlock.NO_TIME;
+            }
+        }
+
+        int[] masks = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            masks[row] = row == 0 || bits.readBit()
+                    ? (int) bits.readBits(MeasurementEvent.DATA_SLOTS)
+                    : masks[row - 1];
+        }
+
+        double[][] values = new double[MeasurementEvent.DATA_SLOTS][rows];
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            GorillaState state = new GorillaState();
+            for (int row = 0; row < rows; row++) {
+                if ((masks[row] & (1 << slot)) != 0) {
+                    values[slot][row] = Double.longBitsToDouble(state.read(bits));
+                }
+            }
+        }
+
+        ArchiveBlock block = new ArchiveBlock(rows);
+        int[] previousIndex = new int[STRING_COLUMNS];
+        double[] rowValues = new double[MeasurementEvent.DATA_SLOTS];
+        String[] rowText = new String[MeasurementEvent.DATA_SLOTS];
+        for (int row = 0; row < rows; row++) {
+            String createdBy = null;
+            for (int column = 0; column < STRING_COLUMNS; column++) {
+                if (column > 0 && (masks[row] & (1 << (column - 1))) != 0) {
+                    rowText[column - 1] = null;
+                    continue;
+                }
+                if (bits.readBit()) {
+                    previousIndex[column] = (int) readSigned(bits);
+                }
+                int index = previousIndex[column];
+                if (index < NULL_STRING || index >= entries.length) {
+                    throw new IOException("Archive block references unknown dictionary entry " + index);
+                }
+                String value = index == NULL_STRING ? null : entries[index];
+                if (column == 0) {
+                    createdBy = value;
+                } else {
+                    rowText[column - 1] = value;
+                }
+            }
+            for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+                rowValues[slot] = values[slot][row];
+            }
+            block.add(createdAt[row], lastTime[row], masks[row], rowValues, createdBy, rowText);
+        }
+        return block;
+    }
+
+    static void writeSigned(BitWriter bits, long value) {
+        if (value == 0) {
+            bits.writeBit(false);
+        } else if (fits(value, 12)) {
+            bits.writeBits(0b10, 2);
+            bits.writeBits(value, 12);
+        } else if (fits(value, 20)) {
+            bits.writeBits(0b110, 3);
+            bits.writeBits(value, 20);
+        } else if (fits(value, 32)) {
+            bits.writeBits(0b1110, 4);
+            bits.writeBits(value, 32);
+        } else {
+            bits.writeBits(0b1111, 4);
+            bits.writeBits(value, 64);
+        }
+    }
+
+    static long readSigned(BitReader bits) throws IOException {
+        if (!bits.readBit()) {
+            return 0;
+        }
+        int width;
+        if (!bits.readBit()) {
+            width = 12;
+        } else if (!bits.readBit()) {
+            width = 20;
+        } else if (!bits.readBit()) {
+            width = 32;
+        } else {
+            width = 64;
+        }
+        long raw = bits.readBits(width);
+        return width == 64 ? raw : (raw << (64 - width)) >> (64 - width);
+    }
+
+    private static boolean fits(long value, int width) {
+        long bound = 1L << (width - 1);
+        return value >= -bound && value < bound;
+    }
+
+    /**
+     * Trạng thái XOR của 1 cột giá trị
+     */
+    private static final class GorillaState {
+        private boolean first = true;
+        private long previous;
+        private int leading = -1;
+        private int trailing;
+
+        void write(BitWriter bits, long value) {
+            if (first) {
+                bits.writeBits(value, 64);
+                first = false;
+                previous = value;
+                return;
+            }
+            long xor = value ^ previous;
+            previous = value;
+            if (xor == 0) {
+                bits.writeBit(false);
+                return;
+            }
+            bits.writeBit(true);
+            int newLeading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                bits.writeBit(false);
+                bits.writeBits(xor >>> trailing, 64 - leading - trailing);
+                return;
+            }
+            leading = newLeading;
+            trailing = newTrailing;
+            int length = 64 - leading - trailing;
+            bits.writeBit(true);
+            bits.writeBits(leading, 5);
+            bits.writeBits(length == 64 ? 0 : length, 6);
+            bits.writeBits(xor >>> trailing, length);
+        }
+
+        long read(BitReader bits) throws IOException {
+            if (first) {
+                first = false;
+                previous = bits.readBits(64);
+                return previous;
+            }
+            if (!bits.readBit()) {
+                return previous;
+            }
+            if (bits.readBit()) {
+                leading = (int) bits.readBits(5);
+                int length = (int) bits.readBits(6);
+                trailing = 64 - leading - (length == 0 ? 64 : length);
+            }
+            long meaningful = bits.readBits(64 - leading - trailing);
+            previous ^= meaningful << trailing;
+            return previous;
+        }
+    }
+}
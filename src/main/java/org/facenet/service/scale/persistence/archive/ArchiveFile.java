@@ -0,0 +1,142 @@
+package org.facenet.service.scale.persistence.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * File archive của 1 cân trong 1 tháng: chuỗi block chỉ ghi nối
+ *
+ * Block: magic (4) | partition nguồn (UTF) | chunk (4) | created_at nhỏ nhất/lớn nhất (8 + 8, microsecond)
+ *        | rowCount (4) | độ dài thân (4) | crc32 của thân (4) | thân (ArchiveBlockCodec)
+ * (partition, chunk) xác định block: archive lại 1 partition sau khi bị ngắt giữa chừng bỏ qua các block đã có.
+ * Block cuối bị ghi dở (crash) bị cắt bỏ ở lần ghi kế tiếp và bị bỏ qua khi đọc.
+ */
+final class ArchiveFile {
+
+    static final int MAGIC = 0x574C4131; // "WLA1"
+    static final String SUFFIX = ".wla";
+
+    /**
+     * Metadata của 1 block; bodyPosition là vị trí thân block trong file
+     */
+    record BlockHeader(String partition, int chunk, long minMicros, long maxMicros, int rowCount,
+                       long bodyPosition, int bodyLength, int crc) {
+
+        boolean overlaps(long fromMicros, long toMicros) {
+            return minMicros < toMicros && maxMicros >= fromMicros;
+        }
+    }
+
+    private ArchiveFile() {
+    }
+
+    /**
+     * Các block đầy đủ của file (rỗng nếu file chưa tồn tại)
+     */
+    static List<BlockHeader> scan(Path path) throws IOException {
+        List<BlockHeader> headers = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return headers;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            scan(file, headers);
+        }
+        return headers;
+    }
+
+    /**
+     * Ghi nối block, trừ khi file đã có block (partition, chunk)
+     *
+     * @return false nếu block đã tồn tại
+     */
+    static boolean append(Path path, String partition, int chunk, ArchiveBlock block) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            List<BlockHeader> headers = new ArrayList<>();
+            long validEnd = scan(file, headers);
+            for (BlockHeader header : headers) {
+                if (header.partition().equals(partition) && header.chunk() == chunk) {
+                    return false;
+                }
+            }
+
+            byte[] body = ArchiveBlockCodec.encode(block);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 64);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeUTF(partition);
+                out.writeInt(chunk);
+                out.writeLong(block.createdAt(0));
+                out.writeLong(block.createdAt(block.size() - 1));
+                out.writeInt(block.size());
+                out.writeInt(body.length);
+                out.writeInt((int) crc.getValue());
+                out.write(body);
+            }
+
+            file.setLength(validEnd);
+            file.seek(validEnd);
+            file.write(bytes.toByteArray());
+            file.getFD().sync();
+            return true;
+        }
+    }
+
+    static ArchiveBlock read(Path path, BlockHeader header) throws IOException {
+        byte[] body = new byte[header.bodyLength()];
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            file.seek(header.bodyPosition());
+            file.readFully(body);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != header.crc()) {
+            throw new IOException("Archive block " + header.partition() + "#" + header.chunk() + " in " + path
+                    + " failed CRC check");
+        }
+        return ArchiveBlockCodec.decode(body);
+    }
+
+    /**
+     * @return vị trí kết thúc của block đầy đủ cuối cùng
+     */
+    private static long scan(RandomAccessFile file, List<BlockHeader> headers) throws IOException {
+        long length = file.length();
+        long position = 0;
+        file.seek(0);
+        while (position < length) {
+            try {
+                if (file.readInt() != MAGIC) {
+                    break;
+                }
+                String partition = file.readUTF();
+                int chunk = file.readInt();
+                long minMicros = file.readLong();
+                long maxMicros = file.readLong();
+                int rowCount = file.readInt();
+                int bodyLength = file.readInt();
+                int crc = file.readInt();
+                long bodyPosition = file.getFilePointer();
+                if (bodyLength < 0 || bodyPosition + bodyLength > length) {
+                    break;
+                }
+                headers.add(new BlockHeader(partition, chunk, minMicros, maxMicros, rowCount, bodyPosition, bodyLength, crc));
+                position = bodyPosition + bodyLength;
+                file.seek(position);
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,34 @@
+package org.facenet.service.scale.persistence.archive;
+
+import java.io.IOException;
+
+/**
+ * Đọc chuỗi bit do BitWriter ghi
+ */
+final class BitReader {
+
+    private final byte[] data;
+    private long bitPosition;
+
+    BitReader(byte[] data) {
+        this.data = data;
+    }
+
+    boolean readBit() throws IOException {
+        int index = (int) (bitPosition >>> 3);
+        if (index >= data.length) {
+            throw new IOException("Archive block truncated at bit " + bitPosition);
+        }
+        boolean bit = (data[index] & (0x80 >>> (int) (bitPosition & 7))) != 0;
+        bitPosition++;
+        return bit;
+    }
+
+    long readBits(int count) throws IOException {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 1) | (readBit() ? 1 : 0);
+        }
+        return value;
+    }
+}
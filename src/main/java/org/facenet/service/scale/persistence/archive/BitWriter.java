@@ -0,0 +1,40 @@
+package org.facenet.service.scale.persistence.archive;
+
+import java.util.Arrays;
+
+/**
+ * Ghi chuỗi bit (MSB trước) vào mảng byte tự mở rộng
+ */
+final class BitWriter {
+
+    private byte[] buffer;
+    private long bitLength;
+
+    BitWriter(int initialBytes) {
+        this.buffer = new byte[Math.max(16, initialBytes)];
+    }
+
+    void writeBit(boolean bit) {
+        int index = (int) (bitLength >>> 3);
+        if (index == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        if (bit) {
+            buffer[index] |= (byte) (0x80 >>> (int) (bitLength & 7));
+        }
+        bitLength++;
+    }
+
+    /**
+     * Ghi count bit thấp của value (1-64)
+     */
+    void writeBits(long value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            writeBit(((value >>> i) & 1) != 0);
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, (int) ((bitLength + 7) >>> 3));
+    }
+}
@@ -0,0 +1,243 @@
+package org.facenet.service.scale.persistence.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.persistence.WeighingLogRollupService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Archive dạng cột trên đĩa cho các partition weighing_logs hết hạn (persistence.archive.*)
+ *
+ * - WeighingLogPartitionManager gọi archivePartition() trước khi DROP/DETACH partition hết hạn;
+ *   dữ liệu được đọc theo cursor (ORDER BY scale_id, created_at) và ghi thành block vào
+ *   {directory}/{scaleId}/{yyyy-MM}.wla (ArchiveFile, mã hoá ArchiveBlockCodec)
+ * - archivedUntil (file "archived-until") = mọi dòng trước thời điểm này đã nằm trong archive;
+ *   ReportServiceImpl đọc khoảng đó từ archive thay vì DB
+ * - Chạy lại cho cùng partition (vd: DROP thất bại) không ghi trùng block
+ */
+@Slf4j
+@Component
+public class WeighingLogArchive {
+
+    private static final String ARCHIVED_UNTIL_FILE = "archived-until";
+    private static final DateTimeFormatter MONTH_FILE = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    /**
+     * Nhận giá trị số của 1 slot khi đọc archive
+     */
+    @FunctionalInterface
+    public interface ValueHandler {
+        void accept(long epochMicros, double value);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PersistenceProperties persistenceProperties;
+
+    private volatile OffsetDateTime archivedUntil;
+    private volatile boolean archivedUntilLoaded;
+
+    public WeighingLogArchive(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              PersistenceProperties persistenceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    public boolean isEnabled() {
+        return persistenceProperties.getArchive().isEnabled();
+    }
+
+    /**
+     * Ghi toàn bộ dòng của partition vào archive
+     *
+     * @param upperBound biên trên của partition, trở thành archivedUntil khi xong
+     * @return số dòng đã đọc
+     */
+    public synchronized long archivePartition(String partition, OffsetDateTime upperBound) throws IOException {
+        PersistenceProperties.Archive config = persistenceProperties.getArchive();
+        Path root = directory();
+        PartitionExport export = new PartitionExport(root, partition, Math.max(1, config.getMaxRowsPerBlock()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(exportSql(partition));
+                ps.setFetchSize(config.getFetchSize());
+                return ps;
+            }, export::onRow));
+            export.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        OffsetDateTime current = archivedUntil();
+        if (upperBound != null && (current == null || upperBound.isAfter(current))) {
+            writeArchivedUntil(root, upperBound);
+        }
+        log.info("[ARCHIVE] Archived partition {}: {} rows in {} blocks ({} already present)",
+                partition, export.rows, export.written, export.skipped);
+        return export.rows;
+    }
+
+    /**
+     * Mọi dòng trước thời điểm này đã được archive (null nếu archive rỗng)
+     */
+    public OffsetDateTime archivedUntil() {
+        if (!archivedUntilLoaded) {
+            try {
+                Path file = directory().resolve(ARCHIVED_UNTIL_FILE);
+                archivedUntil = Files.exists(file)
+                        ? OffsetDateTime.parse(Files.readString(file, StandardCharsets.UTF_8).trim())
+                        : null;
+            } catch (IOException e) {
+                log.error("[ARCHIVE] Failed to read {}: {}", ARCHIVED_UNTIL_FILE, e.getMessage());
+                return null;
+            }
+            archivedUntilLoaded = true;
+        }
+        return archivedUntil;
+    }
+
+    /**
+     * Duyệt giá trị số của slot (0-based) trong [from, to) của 1 cân
+     */
+    public void scan(long scaleId, int slot, OffsetDateTime from, OffsetDateTime to, ValueHandler handler)
+            throws IOException {
+        long fromMicros = ArchiveBlock.toMicros(from);
+        long toMicros = ArchiveBlock.toMicros(to);
+        YearMonth last = YearMonth.from(to.withOffsetSameInstant(ZoneOffset.UTC).minusNanos(1000));
+        for (YearMonth month = YearMonth.from(from.withOffsetSameInstant(ZoneOffset.UTC));
+             !month.isAfter(last); month = month.plusMonths(1)) {
+            Path path = filePath(directory(), scaleId, month);
+            for (ArchiveFile.BlockHeader header : ArchiveFile.scan(path)) {
+                if (!header.overlaps(fromMicros, toMicros)) {
+                    continue;
+                }
+                ArchiveBlock block = ArchiveFile.read(path, header);
+                for (int row = 0; row < block.size(); row++) {
+                    long time = block.createdAt(row);
+                    if (time >= fromMicros && time < toMicros && block.isValid(row, slot)) {
+                        handler.accept(time, block.value(row, slot));
+                    }
+                }
+            }
+        }
+    }
+
+    private Path directory() {
+        return Paths.get(persistenceProperties.getArchive().getDirectory());
+    }
+
+    private void writeArchivedUntil(Path root, OffsetDateTime value) throws IOException {
+        Files.createDirectories(root);
+        Path tmp = root.resolve(ARCHIVED_UNTIL_FILE + ".tmp");
+        Files.writeString(tmp, value.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, root.resolve(ARCHIVED_UNTIL_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        archivedUntil = value;
+        archivedUntilLoaded = true;
+    }
+
+    static Path filePath(Path root, long scaleId, YearMonth month) {
+        return root.resolve(Long.toString(scaleId)).resolve(MONTH_FILE.format(month) + ArchiveFile.SUFFIX);
+    }
+
+    static String exportSql(String partition) {
+        StringBuilder sql = new StringBuilder("SELECT scale_id, created_at, last_time, created_by");
+        for (int slot = 1; slot <= MeasurementEvent.DATA_SLOTS; slot++) {
+            sql.append(", ").append(WeighingLogRollupService.rawValueExpression(slot)).append(" AS v").append(slot)
+                    .append(", data_").append(slot).append(" #>> '{}' AS t").append(slot);
+        }
+        return sql.append(" FROM \"").append(partition).append("\" ORDER BY scale_id, created_at").toString();
+    }
+
+    /**
+     * Gom dòng theo (cân, tháng), tối đa maxRows dòng/block
+     */
+    private static final class PartitionExport {
+        private final Path root;
+        private final String partition;
+        private final int maxRows;
+        private final double[] values = new double[MeasurementEvent.DATA_SLOTS];
+        private final String[] text = new String[MeasurementEvent.DATA_SLOTS];
+
+        private ArchiveBlock block;
+        private long scaleId;
+        private YearMonth month;
+        private int chunk;
+        private long rows;
+        private int written;
+        private int skipped;
+
+        PartitionExport(Path root, String partition, int maxRows) {
+            this.root = root;
+            this.partition = partition;
+            this.maxRows = maxRows;
+        }
+
+        void onRow(ResultSet rs) throws SQLException {
+            long rowScaleId = rs.getLong("scale_id");
+            OffsetDateTime createdAt = rs.getObject("created_at", OffsetDateTime.class);
+            OffsetDateTime lastTime = rs.getObject("last_time", OffsetDateTime.class);
+            YearMonth rowMonth = YearMonth.from(createdAt.withOffsetSameInstant(ZoneOffset.UTC));
+
+            boolean sameKey = block != null && rowScaleId == scaleId && rowMonth.equals(month);
+            if (!sameKey || block.size() >= maxRows) {
+                flush();
+                chunk = sameKey ? chunk + 1 : 0;
+                scaleId = rowScaleId;
+                month = rowMonth;
+                block = new ArchiveBlock(Math.min(maxRows, 4096));
+            }
+
+            int mask = 0;
+            for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+                double value = rs.getDouble("v" + (slot + 1));
+                if (rs.wasNull()) {
+                    text[slot] = rs.getString("t" + (slot + 1));
+                } else {
+                    mask |= 1 << slot;
+                    values[slot] = value;
+                }
+            }
+            block.add(ArchiveBlock.toMicros(createdAt),
+                    lastTime != null ? ArchiveBlock.toMicros(lastTime) : ArchiveBlock.NO_TIME,
+                    mask, values, rs.getString("created_by"), text);
+            rows++;
+        }
+
+        void flush() {
+            if (block == null || block.size() == 0) {
+                return;
+            }
+            try {
+                if (ArchiveFile.append(filePath(root, scaleId, month), partition, chunk, block)) {
+                    written++;
+                } else {
+                    skipped++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            block = null;
+        }
+    }
+}
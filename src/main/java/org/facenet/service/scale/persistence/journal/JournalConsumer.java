@@ -0,0 +1,140 @@
+package org.facenet.service.scale.persistence.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementEventPool;
+import org.facenet.service.scale.persistence.BatchPersistenceService;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đọc MeasurementJournal từ checkpoint và đưa event vào BatchPersistenceService
+ *
+ * - 1 thread đọc tuần tự theo offset -> queue của mỗi writer nhận offset tăng dần
+ * - Ngừng đọc khi các writer còn quá max-in-flight event chờ (DB chậm/mất kết nối):
+ *   backlog nằm trên đĩa thay vì trong bộ nhớ
+ * - Mỗi checkpoint-interval-ms lưu checkpoint = offset mà mọi record phía trước đã được ghi DB
+ */
+@Slf4j
+@Component
+public class JournalConsumer {
+
+    private final MeasurementJournal journal;
+    private final BatchPersistenceService batchPersistenceService;
+    private final MeasurementEventPool eventPool;
+    private final PersistenceProperties persistenceProperties;
+
+    private ExecutorService executor;
+    private volatile boolean running;
+    private volatile long position;
+
+    public JournalConsumer(MeasurementJournal journal,
+                           BatchPersistenceService batchPersistenceService,
+                           MeasurementEventPool eventPool,
+                           PersistenceProperties persistenceProperties) {
+        this.journal = journal;
+        this.batchPersistenceService = batchPersistenceService;
+        this.eventPool = eventPool;
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    public synchronized void start() {
+        if (running || !journal.isOpen()) {
+            return;
+        }
+        running = true;
+        position = journal.getCheckpoint();
+        batchPersistenceService.resetJournalWatermarks(position);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "journal-consumer");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.submit(this::consume);
+        log.info("[JOURNAL] Consumer started at offset {} ({} bytes to replay)",
+                position, journal.getWriteOffset() - position);
+    }
+
+    private void consume() {
+        PersistenceProperties.Journal config = persistenceProperties.getJournal();
+        long lastCheckpointNanos = System.nanoTime();
+
+        while (running) {
+            try {
+                long next = position;
+                if (batchPersistenceService.getPendingCount() < config.getMaxInFlight()) {
+                    next = journal.read(position, config.getReadBatchSize(), this::dispatch);
+                    // Mọi record trước next đã vào queue của writer
+                    batchPersistenceService.markJournalDispatched(next);
+                }
+
+                if (System.nanoTime() - lastCheckpointNanos >= config.getCheckpointIntervalMs() * 1_000_000L) {
+                    checkpoint();
+                    lastCheckpointNanos = System.nanoTime();
+                }
+
+                if (next == position) {
+                    TimeUnit.MILLISECONDS.sleep(config.getIdlePollMs());
+                }
+                position = next;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("[JOURNAL] Consumer error at offset {}: {}", position, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void dispatch(long offset, ByteBuffer payload) {
+        MeasurementEvent event = eventPool.acquire();
+        try {
+            JournalRecordCodec.decode(payload, event);
+            event.setJournalOffset(offset);
+            batchPersistenceService.addToBatch(event);
+        } catch (RuntimeException e) {
+            log.error("[JOURNAL] Skipping undecodable record at offset {}: {}", offset, e.getMessage());
+        } finally {
+            // addToBatch đã retain() - trả tham chiếu của consumer
+            event.release();
+        }
+    }
+
+    private void checkpoint() {
+        try {
+            journal.checkpoint(batchPersistenceService.getCommittedJournalOffset());
+        } catch (Exception e) {
+            log.error("[JOURNAL] Failed to write checkpoint: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Dừng đọc và lưu checkpoint cuối (record chưa ghi DB sẽ được đọc lại ở lần khởi động sau)
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+        log.info("[JOURNAL] Consumer stopped at offset {}, checkpoint {}", position, journal.getCheckpoint());
+    }
+
+    public long getPosition() {
+        return position;
+    }
+}
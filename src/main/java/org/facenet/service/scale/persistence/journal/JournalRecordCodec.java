@@ -0,0 +1,112 @@
+package org.facenet.service.scale.persistence.journal;
+
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encode/decode MeasurementEvent thành payload nhị phân của 1 record journal
+ *
+ * Layout payload (big endian):
+ * - scaleId (8) | epochNanos (8) | createdAtMicros (8) | status code (1) | flags (1) [| statusText (2 + n) nếu flags & 1]
+ * - 5 slot, mỗi slot: tag (1) + dữ liệu
+ *   TAG_EMPTY: không có dữ liệu | TAG_NUMBER / TAG_INTEGRAL: double (8) | TAG_TEXT: độ dài (2) + UTF-8
+ * Slot đã có String (String gốc từ Engine hoặc view đã format) được ghi dạng text để replay trả về
+ * đúng String cũ; slot chỉ có giá trị số được ghi dạng double (không tạo String).
+ * createdAtMicros là created_at đã gán khi append (-1 nếu chưa gán), replay dùng lại để không tạo dòng trùng.
+ */
+public final class JournalRecordCodec {
+
+    static final byte TAG_EMPTY = 0;
+    static final byte TAG_NUMBER = 1;
+    static final byte TAG_INTEGRAL = 2;
+    static final byte TAG_TEXT = 3;
+
+    private static final int FLAG_STATUS_TEXT = 1;
+    private static final int MAX_TEXT_BYTES = 0xFFFF;
+
+    private JournalRecordCodec() {
+    }
+
+    /**
+     * Ghi payload của event vào buffer tại position hiện tại
+     *
+     * @throws java.nio.BufferOverflowException nếu buffer không đủ chỗ (caller mở rộng buffer và thử lại)
+     */
+    public static void encode(MeasurementEvent event, ByteBuffer out) {
+        out.putLong(event.scaleIdAsLong());
+        out.putLong(event.epochNanos());
+        out.putLong(event.createdAtMicros());
+        MeasurementStatus status = event.measurementStatus();
+        out.put(status.code());
+        String statusText = event.getStatus();
+        if (statusText.equals(status.name())) {
+            out.put((byte) 0);
+        } else {
+            out.put((byte) FLAG_STATUS_TEXT);
+            putText(out, statusText);
+        }
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            String text = event.cachedData(slot);
+            if (text != null) {
+                out.put(TAG_TEXT);
+                putText(out, text);
+            } else if (event.isValid(slot)) {
+                out.put(event.isIntegral(slot) ? TAG_INTEGRAL : TAG_NUMBER);
+                out.putDouble(event.value(slot));
+            } else {
+                out.put(TAG_EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Đọc payload từ buffer (position hiện tại) vào event rỗng
+     */
+    public static void decode(ByteBuffer in, MeasurementEvent event) {
+        event.setScaleId(in.getLong());
+        event.setEpochNanos(in.getLong());
+        event.setCreatedAtMicros(in.getLong());
+        MeasurementStatus status = MeasurementStatus.fromCode(in.get());
+        int flags = in.get();
+        if ((flags & FLAG_STATUS_TEXT) != 0) {
+            event.setStatus(getText(in));
+        } else {
+            event.setMeasurementStatus(status);
+        }
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            byte tag = in.get();
+            switch (tag) {
+                case TAG_NUMBER -> event.setValue(slot, in.getDouble(), false);
+                case TAG_INTEGRAL -> event.setValue(slot, in.getDouble(), true);
+                case TAG_TEXT -> event.setData(slot, getText(in));
+                case TAG_EMPTY -> {
+                }
+                default -> throw new IllegalStateException("Unknown journal slot tag " + tag);
+            }
+        }
+    }
+
+    private static void putText(ByteBuffer out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_TEXT_BYTES);
+        out.putShort((short) length);
+        out.put(bytes, 0, length);
+    }
+
+    private static String getText(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        String text;
+        if (in.hasArray()) {
+            text = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,162 @@
+package org.facenet.service.scale.persistence.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 1 file segment của journal, được map toàn bộ vào bộ nhớ
+ *
+ * Record: length (4) | crc32 của payload (4) | payload (length bytes)
+ * File được cấp phát sẵn đủ kích thước (toàn số 0), length = 0 đánh dấu hết dữ liệu.
+ * Tên file = offset toàn cục của byte đầu tiên (20 chữ số) + ".log".
+ */
+final class JournalSegment {
+
+    static final int HEADER_SIZE = 8;
+    static final String SUFFIX = ".log";
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * Vị trí ghi tiếp theo trong segment - chỉ thread đang giữ lock của journal ghi
+     */
+    private volatile int end;
+
+    private JournalSegment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    static JournalSegment create(Path directory, long baseOffset, int size) throws IOException {
+        Path path = directory.resolve(fileName(baseOffset));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new JournalSegment(baseOffset, path, channel, buffer);
+    }
+
+    /**
+     * Mở segment có sẵn và quét tìm cuối dữ liệu hợp lệ (dừng ở record đầu tiên bị rách/sai CRC)
+     */
+    static JournalSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        JournalSegment segment = new JournalSegment(baseOffset, path, channel, buffer);
+        segment.end = segment.scanValidEnd();
+        return segment;
+    }
+
+    static String fileName(long baseOffset) {
+        return String.format("%020d%s", baseOffset, SUFFIX);
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.length() == 20 + SUFFIX.length() && name.endsWith(SUFFIX);
+    }
+
+    private int scanValidEnd() {
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > capacity) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Xoá phần đuôi sau dữ liệu hợp lệ (record rách do crash) để lần quét sau không đọc nhầm
+     */
+    void clearTail() {
+        for (int i = end; i < capacity; i++) {
+            if (buffer.get(i) != 0) {
+                for (int j = i; j < capacity; j++) {
+                    buffer.put(j, (byte) 0);
+                }
+                return;
+            }
+        }
+    }
+
+    boolean hasRoom(int payloadLength) {
+        return end + HEADER_SIZE + payloadLength <= capacity;
+    }
+
+    /**
+     * Ghi 1 record; length được ghi sau cùng để record chưa ghi xong luôn có length = 0
+     *
+     * @return offset toàn cục của record
+     */
+    long append(byte[] payload, int length, int crc) {
+        int position = end;
+        buffer.putInt(position + 4, crc);
+        buffer.put(position + HEADER_SIZE, payload, 0, length);
+        buffer.putInt(position, length);
+        end = position + HEADER_SIZE + length;
+        return baseOffset + position;
+    }
+
+    /**
+     * Payload của record tại vị trí (tương đối) trong segment, null nếu vượt quá dữ liệu đã ghi
+     */
+    ByteBuffer payloadAt(int position) {
+        if (position + HEADER_SIZE > end) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        return buffer.slice(position + HEADER_SIZE, length);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getEndOffset() {
+        return baseOffset + end;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,319 @@
+package org.facenet.service.scale.persistence.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.persistence.CreatedAtClock;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal cục bộ cho measurement event (persistence.journal.*)
+ *
+ * - Log chỉ ghi nối (append-only), chia thành các segment cố định kích thước được memory-map:
+ *   ghi tuần tự vào page cache, không có syscall cho mỗi event
+ * - fsync theo lô: thread nền force() segment đang ghi mỗi fsync-interval-ms (group commit);
+ *   process crash không mất gì (page cache vẫn còn), mất điện/OS crash mất tối đa 1 khoảng fsync
+ * - Offset toàn cục = baseOffset của segment + vị trí trong segment; persistence đọc theo offset
+ *   và lưu checkpoint (offset đầu tiên chưa được ghi DB) vào file "checkpoint"
+ * - Segment nằm hoàn toàn dưới checkpoint được xoá
+ * - Khởi động: quét lại các segment, cắt bỏ record rách/sai CRC ở cuối, đọc lại từ checkpoint
+ *   -> at-least-once qua crash và DB outage
+ */
+@Slf4j
+@Component
+public class MeasurementJournal {
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String CHECKPOINT_TMP_FILE = "checkpoint.tmp";
+    private static final int INITIAL_SCRATCH_SIZE = 512;
+
+    /**
+     * Nhận từng record khi đọc journal
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void onRecord(long offset, ByteBuffer payload);
+    }
+
+    private final PersistenceProperties persistenceProperties;
+    private final List<JournalSegment> segments = new CopyOnWriteArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    private Path directory;
+    private int segmentSize;
+    private ByteBuffer scratch = ByteBuffer.allocate(INITIAL_SCRATCH_SIZE);
+    private JournalSegment active;
+    private ScheduledExecutorService flusher;
+
+    private volatile long writeOffset;
+    private volatile long durableOffset;
+    private volatile long checkpoint;
+    private volatile boolean open;
+
+    public MeasurementJournal(PersistenceProperties persistenceProperties) {
+        this.persistenceProperties = persistenceProperties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        PersistenceProperties.Journal config = persistenceProperties.getJournal();
+        if (!config.isEnabled()) {
+            return;
+        }
+        open(Paths.get(config.getDirectory()), config.getSegmentSizeBytes());
+
+        if (config.getFsyncIntervalMs() > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly,
+                    config.getFsyncIntervalMs(), config.getFsyncIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Mở (hoặc tạo) journal trong thư mục và khôi phục trạng thái từ các segment có sẵn
+     */
+    synchronized void open(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(JournalSegment::isSegmentFile).sorted().toList();
+        }
+        List<JournalSegment> recovered = new ArrayList<>(files.size());
+        for (Path file : files) {
+            recovered.add(JournalSegment.open(file));
+        }
+
+        long storedCheckpoint = readCheckpoint();
+        if (recovered.isEmpty()) {
+            recovered.add(JournalSegment.create(directory, Math.max(0L, storedCheckpoint), segmentSize));
+        }
+        segments.addAll(recovered);
+        active = recovered.get(recovered.size() - 1);
+        active.clearTail();
+
+        writeOffset = active.getEndOffset();
+        durableOffset = writeOffset;
+        checkpoint = Math.min(Math.max(storedCheckpoint, segments.get(0).getBaseOffset()), writeOffset);
+        open = true;
+
+        log.info("[JOURNAL] Opened {} with {} segments, checkpoint={}, end={} ({} bytes pending)",
+                directory, segments.size(), checkpoint, writeOffset, writeOffset - checkpoint);
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Ghi 1 event vào cuối journal
+     *
+     * @return offset của record
+     */
+    public synchronized long append(MeasurementEvent event) throws IOException {
+        if (!open) {
+            throw new IOException("Journal is not open");
+        }
+        if (event.createdAtMicros() < 0) {
+            // Gán created_at ngay khi ghi journal để replay sau crash ghi lại đúng khoá (scale_id, created_at)
+            event.setCreatedAtMicros(CreatedAtClock.nextMicros());
+        }
+        int length = encode(event);
+        if (!active.hasRoom(length)) {
+            roll(length);
+        }
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        long offset = active.append(scratch.array(), length, (int) crc.getValue());
+        writeOffset = active.getEndOffset();
+        if (persistenceProperties.getJournal().getFsyncIntervalMs() <= 0) {
+            active.force();
+            durableOffset = writeOffset;
+        }
+        return offset;
+    }
+
+    private int encode(MeasurementEvent event) {
+        while (true) {
+            scratch.clear();
+            try {
+                JournalRecordCodec.encode(event, scratch);
+                return scratch.position();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private void roll(int length) throws IOException {
+        if (length + JournalSegment.HEADER_SIZE > segmentSize) {
+            throw new IOException("Journal record of " + length + " bytes exceeds segment size " + segmentSize);
+        }
+        JournalSegment sealed = active;
+        sealed.force();
+        active = JournalSegment.create(directory, sealed.getEndOffset(), segmentSize);
+        segments.add(active);
+        log.debug("[JOURNAL] Rolled to segment {}", active.getBaseOffset());
+    }
+
+    /**
+     * Đọc tối đa maxRecords record bắt đầu từ offset
+     *
+     * @return offset tiếp theo cần đọc (bằng fromOffset nếu chưa có record mới)
+     */
+    public long read(long fromOffset, int maxRecords, RecordHandler handler) {
+        long position = fromOffset;
+        int count = 0;
+        while (count < maxRecords) {
+            JournalSegment segment = segmentFor(position);
+            if (segment == null) {
+                break;
+            }
+            int relative = (int) (position - segment.getBaseOffset());
+            ByteBuffer payload = segment.payloadAt(relative);
+            if (payload == null) {
+                // Đã đọc hết dữ liệu hiện có (segment kế tiếp, nếu đã roll, có baseOffset = position)
+                break;
+            }
+            handler.onRecord(position, payload);
+            position += JournalSegment.HEADER_SIZE + payload.capacity();
+            count++;
+        }
+        return position;
+    }
+
+    private JournalSegment segmentFor(long offset) {
+        JournalSegment result = null;
+        for (JournalSegment segment : segments) {
+            if (segment.getBaseOffset() <= offset) {
+                result = segment;
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lưu checkpoint (offset đầu tiên chưa được persist) và xoá các segment đã tiêu thụ hết
+     * Checkpoint chỉ tiến lên, giá trị nhỏ hơn checkpoint hiện tại bị bỏ qua
+     */
+    public synchronized void checkpoint(long offset) throws IOException {
+        if (!open || offset <= checkpoint) {
+            return;
+        }
+        long value = Math.min(offset, writeOffset);
+        Path tmp = directory.resolve(CHECKPOINT_TMP_FILE);
+        ByteBuffer content = ByteBuffer.allocate(Long.BYTES).putLong(0, value);
+        Files.write(tmp, content.array());
+        Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = value;
+
+        while (segments.size() > 1 && segments.get(0).getEndOffset() <= value) {
+            JournalSegment consumed = segments.remove(0);
+            consumed.delete();
+            log.debug("[JOURNAL] Deleted consumed segment {}", consumed.getBaseOffset());
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return -1L;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        return bytes.length == Long.BYTES ? ByteBuffer.wrap(bytes).getLong() : -1L;
+    }
+
+    /**
+     * fsync dữ liệu đã ghi (gọi định kỳ bởi flusher, hoặc trực tiếp khi shutdown)
+     */
+    public void flush() {
+        JournalSegment segment;
+        long written;
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            segment = active;
+            written = writeOffset;
+        }
+        if (written > durableOffset) {
+            // Segment cũ đã được force khi roll, chỉ cần force segment đang ghi (ngoài lock để không chặn append)
+            segment.force();
+            durableOffset = written;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("[JOURNAL] fsync failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            flush();
+            open = false;
+            for (JournalSegment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    log.warn("[JOURNAL] Failed to close segment {}: {}", segment.getBaseOffset(), e.getMessage());
+                }
+            }
+            segments.clear();
+            log.info("[JOURNAL] Closed at offset {}, checkpoint {}", writeOffset, checkpoint);
+        }
+    }
+
+    public long getWriteOffset() {
+        return writeOffset;
+    }
+
+    public long getDurableOffset() {
+        return durableOffset;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Component;
 /**
  * Scheduled job to aggregate daily data
  * Runs every night at 00:01 to aggregate previous day's data
+ * Recomputes the day in scale_daily_rollups, correcting the ingest-time accumulators (ScaleRollupAccumulator)
  */
 @Slf4j
 @Component
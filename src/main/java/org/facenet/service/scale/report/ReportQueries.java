@@ -0,0 +1,119 @@
+package org.facenet.service.scale.report;
+
+import org.facenet.dto.scale.ReportRequestDto;
+import org.facenet.service.scale.persistence.WeighingLogRollupService;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query báo cáo trên weighing_logs và scale_daily_rollups
+ *
+ * Không ghép giá trị nào từ request vào SQL: cột lấy từ whitelist DATA_FIELDS, đơn vị date_trunc và hàm gộp
+ * lấy từ enum, danh sách cân (scale_id = ANY(?)) và ngày là tham số bind.
+ * Câu SQL chỉ thay đổi theo (method, interval, field) nên driver giữ được server-side prepared statement
+ * (plan đã cache) cho các query dashboard lặp lại.
+ */
+final class ReportQueries {
+
+    /**
+     * Trường dữ liệu báo cáo -> slot (từ 1) của các cột data_N / value_N / *_N
+     */
+    private static final Map<String, Integer> DATA_FIELDS = Map.of(
+            "data_1", 1,
+            "data_2", 2,
+            "data_3", 3,
+            "data_4", 4,
+            "data_5", 5);
+
+    private ReportQueries() {
+    }
+
+    /**
+     * @throws IllegalArgumentException nếu trường không phải trường dữ liệu báo cáo
+     */
+    static int slot(String dataField) {
+        Integer slot = DATA_FIELDS.get(dataField);
+        if (slot == null) {
+            throw new IllegalArgumentException("Unsupported data field: " + dataField);
+        }
+        return slot;
+    }
+
+    static String unit(ReportRequestDto.TimeInterval interval) {
+        return switch (interval) {
+            case HOUR -> "hour";
+            case DAY -> "day";
+            case WEEK -> "week";
+            case MONTH -> "month";
+            case YEAR -> "year";
+        };
+    }
+
+    /**
+     * Định dạng time_bucket: HOUR/DAY giữ giờ phút, bucket lớn hơn chỉ có ngày (giống dailyRollup)
+     */
+    static String bucketFormat(ReportRequestDto.TimeInterval interval) {
+        return switch (interval) {
+            case HOUR, DAY -> "YYYY-MM-DD HH24:MI";
+            case WEEK, MONTH, YEAR -> "YYYY-MM-DD";
+        };
+    }
+
+    static ReportQuery.BigintArray scaleIds(ReportRequestDto request) {
+        return new ReportQuery.BigintArray(List.copyOf(request.getScaleIds()));
+    }
+
+    /**
+     * Query trên weighing_logs thô trong [from, to): HOUR/DAY, và WEEK/MONTH/YEAR khi DB không có rollup ngày
+     * Khoảng created_at nửa mở trên cột partition nên chỉ quét các partition liên quan
+     * Giá trị dùng cùng biểu thức với các tầng rollup (value_N, nếu không thì data_N dạng số): mẫu rỗng hoặc
+     * không phải số là NULL và bị mọi hàm gộp bỏ qua thay vì tính là 0
+     */
+    static ReportQuery adHoc(ReportRequestDto request, OffsetDateTime from, OffsetDateTime to) {
+        int slot = slot(request.getDataField());
+        String unit = unit(request.getInterval());
+        String value = WeighingLogRollupService.rawValueExpression(slot);
+        String sql = "SELECT TO_CHAR(DATE_TRUNC('" + unit + "', created_at), '" + bucketFormat(request.getInterval())
+                + "') AS time_bucket, "
+                + aggregation(request.getMethod(), value) + " AS aggregated_value "
+                + "FROM weighing_logs "
+                + "WHERE scale_id = ANY(?) AND created_at >= ? AND created_at < ? "
+                + "GROUP BY DATE_TRUNC('" + unit + "', created_at) "
+                + "ORDER BY time_bucket";
+        return new ReportQuery(sql, List.of(scaleIds(request), from, to));
+    }
+
+    /**
+     * Query WEEK/MONTH/YEAR trên scale_daily_rollups (1 dòng cho mỗi cân và ngày UTC)
+     * AVG được tính theo trọng số số mẫu của từng ngày
+     */
+    static ReportQuery dailyRollup(ReportRequestDto request) {
+        int slot = slot(request.getDataField());
+        String unit = unit(request.getInterval());
+        String aggregation = switch (request.getMethod()) {
+            case SUM -> "SUM(sum_" + slot + ")";
+            case AVG -> "SUM(sum_" + slot + ") / NULLIF(SUM(count_" + slot + "), 0)";
+            case MAX -> "MAX(max_" + slot + ")";
+        };
+        String sql = "SELECT TO_CHAR(DATE_TRUNC('" + unit + "', bucket), 'YYYY-MM-DD') AS time_bucket, "
+                + aggregation + " AS aggregated_value "
+                + "FROM scale_daily_rollups "
+                + "WHERE scale_id = ANY(?) AND bucket >= ? AND bucket < ? "
+                + "GROUP BY DATE_TRUNC('" + unit + "', bucket) "
+                + "ORDER BY time_bucket";
+        return new ReportQuery(sql, List.of(scaleIds(request),
+                request.getFromDate().atStartOfDay().atOffset(ZoneOffset.UTC),
+                request.getToDate().plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC)));
+    }
+
+    private static String aggregation(ReportRequestDto.AggregationMethod method, String value) {
+        return switch (method) {
+            case SUM -> "SUM(" + value + ")";
+            case AVG -> "AVG(" + value + ")";
+            case MAX -> "MAX(" + value + ")";
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package org.facenet.service.scale.report;
+
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import java.util.List;
+
+/**
+ * Câu query báo cáo đã chuẩn bị: SQL cố định và tham số bind theo thứ tự placeholder
+ */
+record ReportQuery(String sql, List<Object> params) {
+
+    /**
+     * Tham số bind thành 1 mảng bigint[] (scale_id = ANY(?)) để câu SQL không phụ thuộc số lượng ID
+     */
+    record BigintArray(List<Long> values) {
+    }
+
+    PreparedStatementSetter setter() {
+        return ps -> {
+            for (int i = 0; i < params.size(); i++) {
+                Object value = params.get(i);
+                if (value instanceof BigintArray array) {
+                    ps.setArray(i + 1, ps.getConnection().createArrayOf("bigint", array.values().toArray()));
+                } else {
+                    StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, value);
+                }
+            }
+        };
+    }
+}
@@ -3,6 +3,10 @@ package org.facenet.service.scale.report;
 import org.facenet.dto.scale.ReportRequestDto;
 import org.facenet.dto.scale.ReportResponseDto;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
 /**
  * Service for generating reports and statistics
  */
@@ -17,8 +21,23 @@ public interface ReportService {
     ReportResponseDto generateReport(ReportRequestDto request);
 
     /**
-     * Aggregate daily data into scale_daily_reports table
+     * Write the report data points to the output as they are read from the database (JDBC cursor),
+     * so memory use does not depend on the size of the range
+     *
+     * @param format one line per data point: NDJSON object or CSV row (with header)
+     */
+    void streamReport(ReportRequestDto request, ReportStreamFormat format, OutputStream out) throws IOException;
+
+    /**
+     * Recompute yesterday's scale_daily_rollups rows from weighing_logs
      * This should be run by scheduled job every night
      */
     void aggregateDailyData();
+
+    /**
+     * Recompute scale_daily_rollups for every closed day in [from, to], one day per parallel chunk
+     *
+     * @return number of (scale, day) rows written
+     */
+    int backfillDailyData(LocalDate from, LocalDate to);
 }
@@ -1,21 +1,36 @@
 package org.facenet.service.scale.report;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.config.ReportProperties;
 import org.facenet.dto.scale.ReportRequestDto;
 import org.facenet.dto.scale.ReportResponseDto;
-import org.facenet.entity.scale.ScaleDailyReport;
-import org.facenet.repository.scale.ScaleDailyReportRepository;
+import org.facenet.service.scale.persistence.RollupTier;
+import org.facenet.service.scale.persistence.ScaleRollupAccumulator;
+import org.facenet.service.scale.persistence.WeighingLogRollupService;
+import org.facenet.service.scale.persistence.archive.WeighingLogArchive;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of ReportService
@@ -23,16 +38,46 @@ import java.util.Map;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ReportServiceImpl implements ReportService {
 
+    /**
+     * Same label as TO_CHAR(..., 'YYYY-MM-DD HH24:MI') of the ad-hoc queries
+     */
+    private static final DateTimeFormatter BUCKET_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneOffset.UTC);
+
     private final JdbcTemplate jdbcTemplate;
-    private final ScaleDailyReportRepository dailyReportRepository;
+    private final PersistenceProperties persistenceProperties;
+    private final WeighingLogRollupService rollupService;
+    private final WeighingLogArchive archive;
+    private final ScaleRollupAccumulator rollupAccumulator;
+    private final ReportProperties reportProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService dailyBackfillExecutor;
+
+    public ReportServiceImpl(JdbcTemplate jdbcTemplate,
+                             PersistenceProperties persistenceProperties,
+                             WeighingLogRollupService rollupService,
+                             WeighingLogArchive archive,
+                             ScaleRollupAccumulator rollupAccumulator,
+                             ReportProperties reportProperties,
+                             TransactionTemplate transactionTemplate,
+                             @Qualifier("dailyBackfillExecutor") ExecutorService dailyBackfillExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.persistenceProperties = persistenceProperties;
+        this.rollupService = rollupService;
+        this.archive = archive;
+        this.rollupAccumulator = rollupAccumulator;
+        this.reportProperties = reportProperties;
+        this.transactionTemplate = transactionTemplate;
+        this.dailyBackfillExecutor = dailyBackfillExecutor;
+    }
 
     @Override
     public ReportResponseDto generateReport(ReportRequestDto request) {
         log.info("[REPORT] Generating report: method={}, interval={}, field={}, scaleIds={}",
                 request.getMethod(), request.getInterval(), request.getDataField(), request.getScaleIds());
+        ReportQueries.slot(request.getDataField());
 
         // Choose report flow based on interval
         List<ReportResponseDto.DataPoint> dataPoints = switch (request.getInterval()) {
@@ -49,123 +94,182 @@ public class ReportServiceImpl implements ReportService {
                 .build();
     }
 
+    @Override
+    public void streamReport(ReportRequestDto request, ReportStreamFormat format, OutputStream out) throws IOException {
+        log.info("[REPORT] Streaming {} report: method={}, interval={}, field={}, scaleIds={}", format,
+                request.getMethod(), request.getInterval(), request.getDataField(), request.getScaleIds());
+        ReportQueries.slot(request.getDataField());
+
+        ReportStreamWriter writer = new ReportStreamWriter(format, out);
+        writer.start();
+        try {
+            switch (request.getInterval()) {
+                case HOUR, DAY -> {
+                    OffsetDateTime from = request.getFromDate().atStartOfDay().atOffset(ZoneOffset.UTC);
+                    OffsetDateTime to = request.getToDate().plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+                    OffsetDateTime hotFrom = archiveBoundary(request, from, to);
+                    if (hotFrom.isAfter(from)) {
+                        // Archive buckets are already merged in memory (one entry per bucket, not per row)
+                        readArchive(request, from, hotFrom)
+                                .forEach(point -> writer.write(point.getTime(), point.getValue()));
+                    }
+                    if (hotFrom.isBefore(to)) {
+                        stream(adHocQuery(request, hotFrom, to), writer);
+                    }
+                }
+                case WEEK, MONTH, YEAR -> stream(preAggregatedQuery(request), writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        log.info("[REPORT] Streamed {} data points", writer.rows());
+    }
+
     /**
      * Generate ad-hoc report by querying weighing_logs directly
      * Used for HOUR and DAY intervals
+     * Trường số đọc từ các tầng rollup (weighing_logs_1h / weighing_logs_1m) khi có sẵn,
+     * và từ archive dạng cột cho khoảng có partition đã archive mà các tầng không còn phủ
      */
     private List<ReportResponseDto.DataPoint> generateAdHocReport(ReportRequestDto request) {
-        String sql = buildAdHocQuery(request);
-        log.debug("[REPORT] Ad-hoc query: {}", sql);
+        OffsetDateTime from = request.getFromDate().atStartOfDay().atOffset(ZoneOffset.UTC);
+        OffsetDateTime to = request.getToDate().plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+        OffsetDateTime hotFrom = archiveBoundary(request, from, to);
 
-        return jdbcTemplate.query(sql, (rs, rowNum) ->
-                ReportResponseDto.DataPoint.builder()
-                        .time(rs.getString("time_bucket"))
-                        .value(rs.getDouble("aggregated_value"))
-                        .build()
-        );
+        List<ReportResponseDto.DataPoint> dataPoints = new ArrayList<>();
+        if (hotFrom.isAfter(from)) {
+            dataPoints.addAll(readArchive(request, from, hotFrom));
+        }
+        if (hotFrom.isBefore(to)) {
+            dataPoints.addAll(query(adHocQuery(request, hotFrom, to)));
+        }
+        return dataPoints;
     }
 
     /**
-     * Generate pre-aggregated report by querying scale_daily_reports
-     * Used for WEEK, MONTH, and YEAR intervals
+     * Query ad-hoc trên tầng rollup thô nhất phủ từng đoạn của khoảng (phần còn lại đọc weighing_logs thô),
+     * hoặc chỉ đọc weighing_logs thô khi các tầng rollup chưa sẵn sàng
      */
-    private List<ReportResponseDto.DataPoint> generatePreAggregatedReport(ReportRequestDto request) {
-        String sql = buildPreAggregatedQuery(request);
-        log.debug("[REPORT] Pre-aggregated query: {}", sql);
-
-        return jdbcTemplate.query(sql, (rs, rowNum) ->
-                ReportResponseDto.DataPoint.builder()
-                        .time(rs.getString("time_bucket"))
-                        .value(rs.getDouble("aggregated_value"))
-                        .build()
-        );
+    private ReportQuery adHocQuery(ReportRequestDto request, OffsetDateTime from, OffsetDateTime to) {
+        if (!rollupService.isAvailable()) {
+            ReportQuery query = ReportQueries.adHoc(request, from, to);
+            log.debug("[REPORT] Ad-hoc query: {}", query.sql());
+            return query;
+        }
+        ReportQuery query = RollupReportQuery.build(
+                request.getMethod(),
+                ReportQueries.unit(request.getInterval()),
+                ReportQueries.scaleIds(request),
+                ReportQueries.slot(request.getDataField()),
+                from,
+                to,
+                rollupService.rolledUntil(RollupTier.HOUR),
+                rollupService.rolledUntil(RollupTier.MINUTE));
+        log.debug("[REPORT] Rollup query: {} {}", query.sql(), query.params());
+        return query;
     }
 
     /**
-     * Build SQL query for ad-hoc reports
-     * Query weighing_logs directly and cast string data to numeric
+     * Start of the range served by the database: everything before it is read from the archive
+     * Archived ranges still covered by the hourly rollup tier are read from the tier instead.
+     * archivedUntil is a partition boundary (UTC midnight), so no HOUR/DAY bucket spans both sources
      */
-    private String buildAdHocQuery(ReportRequestDto request) {
-        String scaleIdsStr = request.getScaleIds().toString().replaceAll("[\\[\\]]", "");
-        String dateTruncParam = getDateTruncParameter(request.getInterval());
-        String aggregationExpression = buildAggregationExpression(request.getMethod(), request.getDataField());
-
-        return String.format("""
-                SELECT
-                    TO_CHAR(DATE_TRUNC('%s', created_at), 'YYYY-MM-DD HH24:MI') as time_bucket,
-                    %s as aggregated_value
-                FROM weighing_logs
-                WHERE scale_id IN (%s)
-                    AND created_at BETWEEN '%s 00:00:00+00' AND '%s 23:59:59+00'
-                GROUP BY DATE_TRUNC('%s', created_at)
-                ORDER BY time_bucket
-                """,
-                dateTruncParam,
-                aggregationExpression,
-                scaleIdsStr,
-                request.getFromDate(),
-                request.getToDate(),
-                dateTruncParam
-        );
+    private OffsetDateTime archiveBoundary(ReportRequestDto request, OffsetDateTime from, OffsetDateTime to) {
+        if (!archive.isEnabled()) {
+            return from;
+        }
+        OffsetDateTime archivedUntil = archive.archivedUntil();
+        if (archivedUntil == null || !archivedUntil.isAfter(from)) {
+            return from;
+        }
+        if (rollupService.isAvailable()) {
+            OffsetDateTime covered = rollupService.coveredFrom(RollupTier.HOUR);
+            if (covered != null && !covered.isAfter(from)) {
+                return from;
+            }
+        }
+        return archivedUntil.isBefore(to) ? archivedUntil : to;
     }
 
     /**
-     * Build pre-aggregated report query
-     * Query scale_daily_reports which has already aggregated data
+     * Aggregate archived samples of [from, to) per report bucket (UTC)
      */
-    private String buildPreAggregatedQuery(ReportRequestDto request) {
-        String scaleIdsStr = request.getScaleIds().toString().replaceAll("[\\[\\]]", "");
-        String dateTruncParam = getDateTruncParameter(request.getInterval());
-        String aggregationExpression = buildAggregationExpression(request.getMethod(), request.getDataField());
-
-        return String.format("""
-                SELECT
-                    TO_CHAR(DATE_TRUNC('%s', date), 'YYYY-MM-DD') as time_bucket,
-                    %s as aggregated_value
-                FROM scale_daily_reports
-                WHERE scale_id IN (%s)
-                    AND date BETWEEN '%s' AND '%s'
-                GROUP BY DATE_TRUNC('%s', date)
-                ORDER BY time_bucket
-                """,
-                dateTruncParam,
-                aggregationExpression,
-                scaleIdsStr,
-                request.getFromDate(),
-                request.getToDate(),
-                dateTruncParam
-        );
+    private List<ReportResponseDto.DataPoint> readArchive(ReportRequestDto request,
+                                                          OffsetDateTime from, OffsetDateTime to) {
+        int slot = ReportQueries.slot(request.getDataField()) - 1;
+        long bucketMicros = request.getInterval() == ReportRequestDto.TimeInterval.HOUR
+                ? ChronoUnit.HOURS.getDuration().toNanos() / 1000
+                : ChronoUnit.DAYS.getDuration().toNanos() / 1000;
+        // bucket start (micros) -> [sum, count, max]
+        Map<Long, double[]> buckets = new TreeMap<>();
+        try {
+            for (Long scaleId : request.getScaleIds()) {
+                archive.scan(scaleId, slot, from, to, (epochMicros, value) -> {
+                    double[] bucket = buckets.computeIfAbsent(Math.floorDiv(epochMicros, bucketMicros) * bucketMicros,
+                            key -> new double[]{0, 0, Double.NEGATIVE_INFINITY});
+                    bucket[0] += value;
+                    bucket[1]++;
+                    bucket[2] = Math.max(bucket[2], value);
+                });
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read weighing log archive: " + e.getMessage(), e);
+        }
+        log.debug("[REPORT] Archive range [{}, {}): {} buckets", from, to, buckets.size());
+
+        List<ReportResponseDto.DataPoint> dataPoints = new ArrayList<>(buckets.size());
+        buckets.forEach((bucketStart, bucket) -> dataPoints.add(ReportResponseDto.DataPoint.builder()
+                .time(BUCKET_FORMAT.format(Instant.ofEpochSecond(bucketStart / 1_000_000)))
+                .value(switch (request.getMethod()) {
+                    case SUM -> bucket[0];
+                    case AVG -> bucket[0] / bucket[1];
+                    case MAX -> bucket[2];
+                })
+                .build()));
+        return dataPoints;
     }
 
     /**
-     * Build aggregation expression - cast string to numeric
-     * Data in weighing_logs is stored as string, need to cast to NUMERIC for aggregation
+     * Generate pre-aggregated report by querying scale_daily_rollups
+     * Used for WEEK, MONTH, and YEAR intervals
+     * Databases without daily rollups (non-PostgreSQL) aggregate raw weighing_logs instead
      */
-    private String buildAggregationExpression(ReportRequestDto.AggregationMethod method, String dataField) {
-        // Cast string data to NUMERIC, handle invalid values as 0
-        String castExpression = String.format(
-                "COALESCE(NULLIF(%s, '')::NUMERIC, 0)",
-                dataField
-        );
+    private List<ReportResponseDto.DataPoint> generatePreAggregatedReport(ReportRequestDto request) {
+        return query(preAggregatedQuery(request));
+    }
 
-        return switch (method) {
-            case SUM -> String.format("SUM(%s)", castExpression);
-            case AVG -> String.format("AVG(%s)", castExpression);
-            case MAX -> String.format("MAX(%s)", castExpression);
-        };
+    private ReportQuery preAggregatedQuery(ReportRequestDto request) {
+        ReportQuery query = rollupAccumulator.ensureTables()
+                ? ReportQueries.dailyRollup(request)
+                : ReportQueries.adHoc(request,
+                        request.getFromDate().atStartOfDay().atOffset(ZoneOffset.UTC),
+                        request.getToDate().plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC));
+        log.debug("[REPORT] Pre-aggregated query: {}", query.sql());
+        return query;
+    }
+
+    private List<ReportResponseDto.DataPoint> query(ReportQuery query) {
+        return jdbcTemplate.query(query.sql(), query.setter(), (rs, rowNum) ->
+                ReportResponseDto.DataPoint.builder()
+                        .time(rs.getString("time_bucket"))
+                        .value(rs.getDouble("aggregated_value"))
+                        .build()
+        );
     }
 
     /**
-     * Get date_trunc parameter based on interval
+     * Run the query through a cursor (fetchSize rows per round trip) and write each row as it arrives
+     * PostgreSQL only uses a cursor outside auto-commit, hence the transaction
      */
-    private String getDateTruncParameter(ReportRequestDto.TimeInterval interval) {
-        return switch (interval) {
-            case HOUR -> "hour";
-            case DAY -> "day";
-            case WEEK -> "week";
-            case MONTH -> "month";
-            case YEAR -> "year";
-        };
+    private void stream(ReportQuery query, ReportStreamWriter writer) {
+        int fetchSize = reportProperties.getStreamFetchSize();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query.sql());
+            ps.setFetchSize(fetchSize);
+            query.setter().setValues(ps);
+            return ps;
+        }, writer::writeRow));
     }
 
     /**
@@ -189,55 +293,82 @@ public class ReportServiceImpl implements ReportService {
         return String.format("%s %s %s", methodName, request.getDataField(), intervalName);
     }
 
+    /**
+     * Recompute scale_daily_rollups for yesterday (UTC) from weighing_logs
+     * Overwrites the rows built by the ingest accumulators, so events lost before a flush are recovered
+     */
     @Override
-    @Transactional
     public void aggregateDailyData() {
-        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate yesterday = LocalDate.now(ZoneOffset.UTC).minusDays(1);
         log.info("[REPORT] Starting daily aggregation for date: {}", yesterday);
+        int rows = rollupAccumulator.recomputeDay(yesterday);
+        if (rows < 0) {
+            log.warn("[REPORT] Daily rollups unavailable (PostgreSQL only, pending accumulators flushed first), "
+                    + "skipping aggregation");
+            return;
+        }
+        log.info("[REPORT] Daily aggregation completed: {} scale rows upserted", rows);
+    }
 
+    @Override
+    public int backfillDailyData(LocalDate from, LocalDate to) {
+        // Chỉ tính lại ngày đã đóng: ngày hiện tại vẫn đang được accumulator cộng dồn
+        LocalDate lastClosed = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        LocalDate end = to.isAfter(lastClosed) ? lastClosed : to;
+        if (end.isBefore(from)) {
+            log.info("[REPORT] Nothing to backfill in [{}, {}]", from, to);
+            return 0;
+        }
+
+        if (!rollupAccumulator.ensureTables()) {
+            log.warn("[REPORT] Daily rollups unavailable (PostgreSQL only), skipping backfill");
+            return 0;
+        }
+
+        List<LocalDate> days = from.datesUntil(end.plusDays(1)).toList();
+        log.info("[REPORT] Backfilling daily rollups {} -> {} ({} days, parallelism={})", from, end, days.size(),
+                Math.max(1, persistenceProperties.getIngestRollup().getBackfillParallelism()));
+        int rows = recomputeDays(days);
+        log.info("[REPORT] Backfill completed: {} scale rows upserted", rows);
+        return rows;
+    }
+
+    /**
+     * Mỗi ngày là 1 task trên dailyBackfillExecutor, khoá flush của accumulator chỉ giữ trong lúc tính ngày đó
+     */
+    private int recomputeDays(List<LocalDate> days) {
+        List<Future<Integer>> results = new ArrayList<>(days.size());
         try {
-            // Query to aggregate data from weighing_logs
-            String sql = """
-                    SELECT
-                        scale_id,
-                        MAX(last_time) as last_time,
-                        data_1,
-                        data_2,
-                        data_3,
-                        data_4,
-                        data_5
-                    FROM weighing_logs
-                    WHERE DATE(created_at) = ?
-                    GROUP BY scale_id, data_1, data_2, data_3, data_4, data_5
-                    """;
-
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, yesterday);
-
-            int savedCount = 0;
-            for (Map<String, Object> row : results) {
-                ScaleDailyReport report = ScaleDailyReport.builder()
-                        .date(yesterday)
-                        .scaleId((Long) row.get("scale_id"))
-                        .lastTime(((OffsetDateTime) row.get("last_time")))
-                        .data1((String) row.get("data_1"))
-                        .data2((String) row.get("data_2"))
-                        .data3((String) row.get("data_3"))
-                        .data4((String) row.get("data_4"))
-                        .data5((String) row.get("data_5"))
-                        .build();
-
-                // Set audit fields manually since builder doesn't include them
-                report.setCreatedBy("system");
-                report.setUpdatedBy("system");
-
-                dailyReportRepository.save(report);
-                savedCount++;
+            for (LocalDate day : days) {
+                results.add(dailyBackfillExecutor.submit(() -> recomputeDay(day)));
+            }
+            int rows = 0;
+            for (Future<Integer> result : results) {
+                rows += result.get();
             }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Daily backfill interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime
+                    ? runtime
+                    : new IllegalStateException("Daily backfill failed", e.getCause());
+        } finally {
+            results.forEach(result -> result.cancel(true));
+        }
+    }
 
-            log.info("[REPORT] Daily aggregation completed: {} records saved", savedCount);
-        } catch (Exception e) {
-            log.error("[REPORT] Error during daily aggregation: {}", e.getMessage(), e);
-            throw e;
+    /**
+     * One INSERT ... SELECT ... ON CONFLICT per day: [00:00, 00:00 next day) on the partition key,
+     * so only that day's partition is scanned
+     */
+    private int recomputeDay(LocalDate day) {
+        int rows = rollupAccumulator.recomputeDay(day);
+        if (rows < 0) {
+            throw new IllegalStateException("Pending ingest rollups could not be flushed before recomputing " + day);
         }
+        log.debug("[REPORT] Recomputed daily rollups for {}: {} scales", day, rows);
+        return rows;
     }
 }
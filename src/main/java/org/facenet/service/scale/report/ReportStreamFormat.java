@@ -0,0 +1,25 @@
+package org.facenet.service.scale.report;
+
+/**
+ * Định dạng đầu ra của báo cáo dạng stream, mỗi điểm dữ liệu 1 dòng
+ */
+public enum ReportStreamFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ReportStreamFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
@@ -0,0 +1,72 @@
+package org.facenet.service.scale.report;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Ghi từng điểm dữ liệu báo cáo ra response ngay khi đọc được
+ * Chỉ giữ buffer ghi trong bộ nhớ; giá trị gộp NULL (không có mẫu số) được ghi là null / rỗng
+ */
+final class ReportStreamWriter {
+
+    private final ReportStreamFormat format;
+    private final Writer writer;
+    private long rows;
+
+    ReportStreamWriter(ReportStreamFormat format, OutputStream out) {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    void start() throws IOException {
+        if (format == ReportStreamFormat.CSV) {
+            writer.write("time,value\n");
+        }
+    }
+
+    /**
+     * 1 dòng của query báo cáo (time_bucket, aggregated_value)
+     */
+    void writeRow(ResultSet rs) throws SQLException {
+        String time = rs.getString("time_bucket");
+        double value = rs.getDouble("aggregated_value");
+        write(time, rs.wasNull() ? null : value);
+    }
+
+    void write(String time, Double value) {
+        try {
+            if (format == ReportStreamFormat.CSV) {
+                writer.write(time);
+                writer.write(',');
+                if (value != null) {
+                    writer.write(Double.toString(value));
+                }
+                writer.write('\n');
+            } else {
+                writer.write("{\"time\":\"");
+                writer.write(time);
+                writer.write("\",\"value\":");
+                writer.write(value != null ? Double.toString(value) : "null");
+                writer.write("}\n");
+            }
+            rows++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void finish() throws IOException {
+        writer.flush();
+    }
+
+    long rows() {
+        return rows;
+    }
+}
@@ -0,0 +1,79 @@
+package org.facenet.service.scale.report;
+
+import org.facenet.dto.scale.ReportRequestDto;
+import org.facenet.service.scale.persistence.RollupTier;
+import org.facenet.service.scale.persistence.WeighingLogRollupService;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query báo cáo ad-hoc trên các tầng rollup của weighing_logs
+ *
+ * [from, to) được cắt tại watermark của từng tầng, mỗi đoạn đọc từ tầng thô nhất phủ được nó:
+ * weighing_logs_1h đến rolledUntil(HOUR), weighing_logs_1m đến rolledUntil(MINUTE), phần còn lại đọc weighing_logs thô.
+ * Mỗi đoạn trả về sum/count/max từng phần theo bucket báo cáo, query ngoài gộp lại
+ * (AVG = sum / count nên giá trị trung bình vẫn chính xác khi trải qua nhiều tầng).
+ */
+final class RollupReportQuery {
+
+    private RollupReportQuery() {
+    }
+
+    static ReportQuery build(ReportRequestDto.AggregationMethod method, String unit, ReportQuery.BigintArray scaleIds,
+                             int slot, OffsetDateTime from, OffsetDateTime to,
+                             OffsetDateTime hourUntil, OffsetDateTime minuteUntil) {
+        OffsetDateTime hourEnd = clamp(hourUntil, from, to);
+        OffsetDateTime minuteEnd = clamp(minuteUntil, hourEnd, to);
+
+        List<String> parts = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (hourEnd.isAfter(from)) {
+            parts.add(tierPart(RollupTier.HOUR, unit, slot));
+            params.add(scaleIds);
+            params.add(from);
+            params.add(hourEnd);
+        }
+        if (minuteEnd.isAfter(hourEnd)) {
+            parts.add(tierPart(RollupTier.MINUTE, unit, slot));
+            params.add(scaleIds);
+            params.add(hourEnd);
+            params.add(minuteEnd);
+        }
+        if (to.isAfter(minuteEnd)) {
+            parts.add("SELECT DATE_TRUNC('" + unit + "', created_at) AS b, SUM(v) AS s, COUNT(v) AS c, MAX(v) AS m "
+                    + "FROM (SELECT created_at, " + WeighingLogRollupService.rawValueExpression(slot) + " AS v "
+                    + "FROM weighing_logs WHERE scale_id = ANY(?) AND created_at >= ? AND created_at < ?) raw "
+                    + "GROUP BY 1");
+            params.add(scaleIds);
+            params.add(minuteEnd);
+            params.add(to);
+        }
+
+        String aggregation = switch (method) {
+            case SUM -> "SUM(s)";
+            case AVG -> "SUM(s) / NULLIF(SUM(c), 0)";
+            case MAX -> "MAX(m)";
+        };
+        String sql = "SELECT TO_CHAR(b, 'YYYY-MM-DD HH24:MI') AS time_bucket, " + aggregation + " AS aggregated_value "
+                + "FROM (" + String.join(" UNION ALL ", parts) + ") parts "
+                + "GROUP BY b ORDER BY time_bucket";
+        return new ReportQuery(sql, params);
+    }
+
+    private static String tierPart(RollupTier tier, String unit, int slot) {
+        return "SELECT DATE_TRUNC('" + unit + "', bucket) AS b, SUM(sum_" + slot + ") AS s, SUM(count_" + slot
+                + ") AS c, MAX(max_" + slot + ") AS m "
+                + "FROM " + tier.table() + " "
+                + "WHERE scale_id = ANY(?) AND bucket >= ? AND bucket < ? "
+                + "GROUP BY 1";
+    }
+
+    private static OffsetDateTime clamp(OffsetDateTime value, OffsetDateTime min, OffsetDateTime max) {
+        if (value == null || value.isBefore(min)) {
+            return min;
+        }
+        return value.isAfter(max) ? max : value;
+    }
+}
@@ -0,0 +1,82 @@
+package org.facenet.controller.scale;
+
+import org.facenet.service.scale.broadcast.location.LocationScaleIndex;
+import org.facenet.service.scale.broadcast.sse.SseMeasurementBroadcaster;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ScaleStreamController
+ */
+@ExtendWith(MockitoExtension.class)
+class ScaleStreamControllerTest {
+
+    @Mock
+    private SseMeasurementBroadcaster sseMeasurementBroadcaster;
+
+    @Mock
+    private LocationScaleIndex locationScaleIndex;
+
+    private ScaleStreamController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new ScaleStreamController(sseMeasurementBroadcaster, locationScaleIndex);
+    }
+
+    @Test
+    void testStream_PassesLastEventIdAndScaleFilter() {
+        // Arrange
+        ArgumentCaptor<LongPredicate> filter = ArgumentCaptor.forClass(LongPredicate.class);
+
+        // Act
+        controller.stream(List.of(1L, 2L), null, 42L);
+
+        // Assert
+        verify(sseMeasurementBroadcaster).connect(filter.capture(), eq(42L));
+        assertTrue(filter.getValue().test(2L));
+        assertFalse(filter.getValue().test(3L));
+        verifyNoInteractions(locationScaleIndex);
+    }
+
+    @Test
+    void testStream_NoFilterWhenNoParameters() {
+        // Act
+        controller.stream(null, null, null);
+
+        // Assert
+        verify(sseMeasurementBroadcaster).connect(isNull(), isNull());
+    }
+
+    @Test
+    void testStream_LocationFilterReResolvedOnEveryCheck() {
+        // Arrange
+        ArgumentCaptor<LongPredicate> filter = ArgumentCaptor.forClass(LongPredicate.class);
+        when(locationScaleIndex.scaleIdsUnder(7L))
+                .thenReturn(new long[]{5L, 9L})
+                .thenReturn(new long[]{6L, 9L});
+
+        // Act
+        controller.stream(List.of(1L), 7L, null);
+        verify(sseMeasurementBroadcaster).connect(filter.capture(), isNull());
+        boolean beforeMove = filter.getValue().test(5L);
+        boolean afterMove = filter.getValue().test(6L);
+
+        // Assert
+        assertTrue(beforeMove);
+        assertTrue(afterMove);
+        assertTrue(filter.getValue().test(1L));
+    }
+}
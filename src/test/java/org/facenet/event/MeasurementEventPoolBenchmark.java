@@ -0,0 +1,155 @@
+package org.facenet.event;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Benchmark so sánh tần suất young-gen GC giữa đường tạo event cũ của engine và event lấy từ pool
+ *
+ * Không phải unit test (không chạy trong mvn test). Chạy thủ công sau khi compile test classes:
+ *
+ *   java -Xmx256m -Xlog:gc:file=gc-alloc.log  -cp target/classes:target/test-classes \
+ *        org.facenet.event.MeasurementEventPoolBenchmark legacy
+ *   java -Xmx256m -Xlog:gc:file=gc-pooled.log -cp target/classes:target/test-classes \
+ *        org.facenet.event.MeasurementEventPoolBenchmark pooled
+ *
+ * Mỗi lần chạy in ra số lần/thời gian young GC lấy từ GarbageCollectorMXBean,
+ * file -Xlog:gc chứa chi tiết từng lần "Pause Young" để so sánh hai chế độ.
+ *
+ * Pipeline mô phỏng: 1 producer (Engine) -> ArrayBlockingQueue -> 1 consumer (Core),
+ * consumer giữ thêm 1 tham chiếu như persistence rồi release cả hai.
+ * - legacy: như engine trước khi có pool - builder + ZonedDateTime.now() + status String
+ *   + 5 String từ ModbusDataConverter.registersToString (Float.toString)
+ * - pooled: như engine hiện tại - pool.acquire() + epochNanos + setValue (không String/ZonedDateTime)
+ *
+ * Kết quả tham khảo (JDK 17.0.9, -Xmx256m, G1, 1 vCPU, 20M event, 2 lần chạy mỗi chế độ):
+ *   legacy: elapsedMs=39751-46627 youngGcCount=357 youngGcTimeMs=145-152 youngGcPerSec=7.7-9.0
+ *   pooled: elapsedMs=7338-7352   youngGcCount=20  youngGcTimeMs=18-19   youngGcPerSec=2.7
+ *   (pool created=1026 reused=21998974)
+ */
+public class MeasurementEventPoolBenchmark {
+
+    private static final int EVENTS = 20_000_000;
+    private static final int SCALES = 300;
+
+    public static void main(String[] args) throws Exception {
+        boolean pooled = args.length > 0 && args[0].equalsIgnoreCase("pooled");
+        MeasurementEventPool pool = new MeasurementEventPool(4096);
+        BlockingQueue<MeasurementEvent> queue = new ArrayBlockingQueue<>(1024);
+
+        // Warm-up cùng chế độ để JIT ổn định
+        run(pooled, pool, queue, EVENTS / 10);
+
+        long gcCountBefore = youngGcCount();
+        long gcTimeBefore = youngGcTimeMs();
+        long start = System.nanoTime();
+
+        run(pooled, pool, queue, EVENTS);
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        long gcCount = youngGcCount() - gcCountBefore;
+        long gcTime = youngGcTimeMs() - gcTimeBefore;
+
+        System.out.printf("mode=%s events=%d elapsedMs=%d youngGcCount=%d youngGcTimeMs=%d youngGcPerSec=%.2f%n",
+                pooled ? "pooled" : "legacy", EVENTS, elapsedMs, gcCount, gcTime,
+                elapsedMs > 0 ? gcCount * 1000.0 / elapsedMs : 0.0);
+        if (pooled) {
+            System.out.printf("pool created=%d reused=%d recycled=%d%n",
+                    pool.getCreatedCount(), pool.getReusedCount(), pool.getRecycledCount());
+        }
+    }
+
+    private static void run(boolean pooled, MeasurementEventPool pool,
+                            BlockingQueue<MeasurementEvent> queue, int events) throws InterruptedException {
+        Thread consumer = new Thread(() -> {
+            double checksum = 0;
+            try {
+                for (int i = 0; i < events; i++) {
+                    MeasurementEvent event = queue.take();
+                    event.retain();         // persistence giữ event
+                    checksum += event.value(0);
+                    event.release();        // core xong
+                    event.release();        // persistence xong
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (checksum == 42) {
+                System.out.println("unlikely");
+            }
+        });
+        consumer.start();
+
+        // Engine giữ scaleId dạng Long từ ScaleConfig - không boxing mỗi poll
+        Long[] scaleIds = new Long[SCALES];
+        for (int i = 0; i < SCALES; i++) {
+            scaleIds[i] = (long) i;
+        }
+
+        for (int i = 0; i < events; i++) {
+            Long scaleId = scaleIds[i % SCALES];
+            MeasurementEvent event = pooled ? pooledEvent(pool, scaleId, i) : legacyEvent(scaleId, i);
+            queue.put(event);
+        }
+        consumer.join();
+    }
+
+    /**
+     * Đường engine hiện tại: event compact lấy từ pool
+     */
+    private static MeasurementEvent pooledEvent(MeasurementEventPool pool, Long scaleId, int i) {
+        MeasurementEvent event = pool.acquire();
+        event.setScaleId(scaleId);
+        event.setEpochNanos(MeasurementEvent.currentEpochNanos());
+        event.setMeasurementStatus(MeasurementStatus.ONLINE);
+        for (int slot = 0; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            event.setValue(slot, (float) (i * 0.5 + slot), false);
+        }
+        return event;
+    }
+
+    /**
+     * Đường engine cũ: builder + ZonedDateTime + String cho status và từng thanh ghi
+     */
+    private static MeasurementEvent legacyEvent(Long scaleId, int i) {
+        MeasurementEvent event = MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .status("ONLINE")
+                .build();
+        event.setData1(Float.toString((float) (i * 0.5)));
+        event.setData2(Float.toString((float) (i * 0.5 + 1)));
+        event.setData3(Float.toString((float) (i * 0.5 + 2)));
+        event.setData4(Float.toString((float) (i * 0.5 + 3)));
+        event.setData5(Float.toString((float) (i * 0.5 + 4)));
+        return event;
+    }
+
+    private static long youngGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (isYoung(gc)) {
+                count += gc.getCollectionCount();
+            }
+        }
+        return count;
+    }
+
+    private static long youngGcTimeMs() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (isYoung(gc)) {
+                time += gc.getCollectionTime();
+            }
+        }
+        return time;
+    }
+
+    private static boolean isYoung(GarbageCollectorMXBean gc) {
+        String name = gc.getName();
+        return name.contains("Young") || name.contains("Scavenge") || name.equals("Copy") || name.contains("ParNew");
+    }
+}
@@ -0,0 +1,49 @@
+package org.facenet.event;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MeasurementEventPool reference counting
+ */
+class MeasurementEventPoolTest {
+
+    @Test
+    void testRelease_LastReferenceReturnsEventToPool() {
+        // Arrange
+        MeasurementEventPool pool = new MeasurementEventPool(4);
+        MeasurementEvent event = pool.acquire();
+        event.setScaleId(1L);
+        event.setData1("150.5");
+
+        // Act
+        event.retain();
+        boolean firstRelease = event.release();
+        boolean lastRelease = event.release();
+
+        // Assert
+        assertFalse(firstRelease);
+        assertTrue(lastRelease);
+        assertEquals(1, pool.getAvailable());
+
+        MeasurementEvent reused = pool.acquire();
+        assertSame(event, reused);
+        assertEquals(1, reused.refCount());
+        assertNull(reused.getData1());
+        assertEquals(0, reused.validMask());
+    }
+
+    @Test
+    void testRelease_TwiceThrows() {
+        // Arrange
+        MeasurementEvent event = MeasurementEvent.builder().scaleId(1L).build();
+
+        // Act
+        event.release();
+
+        // Assert
+        assertThrows(IllegalStateException.class, event::release);
+        assertThrows(IllegalStateException.class, event::retain);
+    }
+}
@@ -0,0 +1,70 @@
+package org.facenet.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for compact MeasurementEvent and its legacy String views
+ */
+class MeasurementEventTest {
+
+    @Test
+    void testCompactValues_FormattedLazily() {
+        // Arrange
+        MeasurementEvent event = MeasurementEvent.builder()
+                .scaleId(1L)
+                .epochNanos(MeasurementEvent.currentEpochNanos())
+                .value(0, 150.5f, false)
+                .value(1, 42, true)
+                .status(MeasurementStatus.ONLINE)
+                .build();
+
+        // Assert
+        assertEquals("150.50", event.getData1());
+        assertEquals("42", event.getData2());
+        assertNull(event.getData3());
+        assertEquals(0b11, event.validMask());
+        assertEquals("ONLINE", event.getStatus());
+        assertNotNull(event.getLastTime());
+    }
+
+    @Test
+    void testLegacyStrings_KeepOriginalFormat() {
+        // Arrange
+        ZonedDateTime now = ZonedDateTime.now();
+        MeasurementEvent event = MeasurementEvent.builder()
+                .scaleId(2L)
+                .lastTime(now)
+                .data1("0001")
+                .data2("abc")
+                .status("online")
+                .build();
+
+        // Assert
+        assertEquals("0001", event.getData1());
+        assertEquals(1.0, event.value(0));
+        assertEquals("abc", event.getData2());
+        assertFalse(event.isValid(1));
+        assertEquals("online", event.getStatus());
+        assertEquals(MeasurementStatus.ONLINE, event.measurementStatus());
+        assertEquals(now, event.getLastTime());
+    }
+
+    @Test
+    void testSetValue_NonFiniteIsInvalid() {
+        // Arrange
+        MeasurementEvent event = new MeasurementEvent();
+
+        // Act
+        event.setValue(0, Float.NaN, false);
+        event.setValue(1, Double.POSITIVE_INFINITY, false);
+
+        // Assert
+        assertEquals(0, event.validMask());
+        assertNull(event.getData1());
+        assertNull(event.getData2());
+    }
+}
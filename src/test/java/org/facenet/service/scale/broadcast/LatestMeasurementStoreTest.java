@@ -0,0 +1,77 @@
+package org.facenet.service.scale.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LatestMeasurementStore
+ */
+class LatestMeasurementStoreTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final LatestMeasurementStore store = new LatestMeasurementStore(new MeasurementFrameEncoder(objectMapper));
+
+    @Test
+    void testGetAllEncoded_OneEntryPerScaleWithLatestValue() throws Exception {
+        // Arrange
+        store.onMeasurement(createTestEvent(1L, "10.5"));
+        store.onMeasurement(createTestEvent(2L, "20.0"));
+        store.onMeasurement(createTestEvent(1L, "11.0"));
+
+        // Act
+        List<byte[]> encoded = store.getAllEncoded();
+
+        // Assert
+        List<String> values = new ArrayList<>();
+        for (byte[] entry : encoded) {
+            JsonNode node = objectMapper.readTree(entry);
+            values.add(node.get("scaleId").asLong() + "=" + node.get("data1").asText());
+        }
+        assertEquals(2, encoded.size());
+        assertTrue(values.containsAll(List.of("1=11.0", "2=20.0")));
+    }
+
+    @Test
+    void testGetAllEncoded_EmptyStore() {
+        assertTrue(store.getAllEncoded().isEmpty());
+    }
+
+    @Test
+    void testGetEncoded_CachedUntilNextUpdate() {
+        // Arrange
+        store.onMeasurement(createTestEvent(1L, "10.5"));
+
+        // Act
+        byte[] first = store.getEncoded(1L);
+        byte[] cached = store.getEncoded(1L);
+        store.onMeasurement(createTestEvent(1L, "12.0"));
+        byte[] updated = store.getEncoded(1L);
+
+        // Assert
+        assertSame(first, cached);
+        assertNotSame(first, updated);
+        assertNull(store.getEncoded(99L));
+    }
+
+    private MeasurementEvent createTestEvent(Long scaleId, String data1) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .data1(data1)
+                .status("ONLINE")
+                .build();
+    }
+}
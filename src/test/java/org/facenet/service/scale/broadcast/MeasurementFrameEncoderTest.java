@@ -0,0 +1,95 @@
+package org.facenet.service.scale.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MeasurementFrameEncoder
+ */
+class MeasurementFrameEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final MeasurementFrameEncoder encoder = new MeasurementFrameEncoder(objectMapper);
+
+    @Test
+    void testComposeArray_MatchesListSerialization() throws Exception {
+        // Arrange
+        MeasurementEvent first = createTestEvent(1L, "150.5");
+        MeasurementEvent second = createTestEvent(2L, "abc");
+
+        // Act
+        byte[] frame = encoder.composeArray(List.of(encoder.encode(first), encoder.encode(second)));
+
+        // Assert
+        JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsBytes(List.of(first, second)));
+        assertEquals(expected, objectMapper.readTree(frame));
+    }
+
+    @Test
+    void testComposeArray_EmptyList() {
+        // Act
+        byte[] frame = encoder.composeArray(List.of());
+
+        // Assert
+        assertEquals("[]", new String(frame, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testComposeArrays_SplitsByCountAndBytes() throws Exception {
+        // Arrange
+        List<byte[]> encoded = List.of("{\"a\":1}".getBytes(StandardCharsets.UTF_8),
+                "{\"a\":2}".getBytes(StandardCharsets.UTF_8),
+                "{\"a\":3}".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        List<byte[]> byCount = encoder.composeArrays(encoded, 2, Integer.MAX_VALUE);
+        List<byte[]> byBytes = encoder.composeArrays(encoded, 10, 15);
+        List<byte[]> oversized = encoder.composeArrays(encoded, 10, 4);
+
+        // Assert
+        assertEquals(List.of("[{\"a\":1},{\"a\":2}]", "[{\"a\":3}]"), asStrings(byCount));
+        assertEquals(List.of("[{\"a\":1}]", "[{\"a\":2}]", "[{\"a\":3}]"), asStrings(byBytes));
+        assertEquals(3, oversized.size());
+        assertTrue(encoder.composeArrays(List.of(), 10, 100).isEmpty());
+    }
+
+    @Test
+    void testToMessage_SharesPayload() {
+        // Arrange
+        byte[] payload = encoder.encode(createTestEvent(1L, "150.5"));
+
+        // Act
+        var message = encoder.toMessage(payload);
+
+        // Assert
+        assertSame(payload, message.getPayload());
+        assertEquals("application/json", String.valueOf(message.getHeaders().get("contentType")));
+    }
+
+    private static List<String> asStrings(List<byte[]> frames) {
+        return frames.stream().map(frame -> new String(frame, StandardCharsets.UTF_8)).toList();
+    }
+
+    private MeasurementEvent createTestEvent(Long scaleId, String data1) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .data1(data1)
+                .data2("25.3")
+                .status("ONLINE")
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package org.facenet.service.scale.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.broadcast.location.LocationTopicPublisher;
+import org.facenet.service.scale.broadcast.subscription.SubscriptionOptions;
+import org.facenet.service.scale.broadcast.subscription.TunedSubscription;
+import org.facenet.service.scale.broadcast.subscription.TunedSubscriptionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SnapshotOnSubscribeListener
+ */
+@ExtendWith(MockitoExtension.class)
+class SnapshotOnSubscribeListenerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Mock
+    private LocationTopicPublisher locationTopicPublisher;
+
+    @Mock
+    private TunedSubscriptionRegistry tunedSubscriptionRegistry;
+
+    @Mock
+    private MessageChannel clientOutboundChannel;
+
+    private LatestMeasurementStore latestMeasurementStore;
+    private SnapshotOnSubscribeListener listener;
+
+    @BeforeEach
+    void setUp() {
+        MeasurementFrameEncoder frameEncoder = new MeasurementFrameEncoder(objectMapper);
+        latestMeasurementStore = new LatestMeasurementStore(frameEncoder);
+        listener = new SnapshotOnSubscribeListener(latestMeasurementStore, locationTopicPublisher,
+                tunedSubscriptionRegistry, frameEncoder, clientOutboundChannel);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnSubscribe_AllScalesSendsArrayToSubscription() throws Exception {
+        // Arrange
+        latestMeasurementStore.onMeasurement(createTestEvent(1L, "10.5"));
+        latestMeasurementStore.onMeasurement(createTestEvent(2L, "20.0"));
+        ArgumentCaptor<Message<byte[]>> captor = ArgumentCaptor.forClass(Message.class);
+
+        // Act
+        listener.onSubscribe(subscribeEvent("/topic/scales"));
+
+        // Assert
+        verify(clientOutboundChannel).send(captor.capture());
+        Message<byte[]> message = captor.getValue();
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(message);
+        assertEquals(SimpMessageType.MESSAGE, headers.getMessageType());
+        assertEquals("session-1", headers.getSessionId());
+        assertEquals("sub-0", headers.getSubscriptionId());
+        assertEquals("/topic/scales", headers.getDestination());
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, headers.getContentType());
+        JsonNode payload = objectMapper.readTree(message.getPayload());
+        assertTrue(payload.isArray());
+        assertEquals(2, payload.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnSubscribe_SingleScaleSendsOneElementArray() throws Exception {
+        // Arrange
+        latestMeasurementStore.onMeasurement(createTestEvent(1L, "10.5"));
+        latestMeasurementStore.onMeasurement(createTestEvent(2L, "20.0"));
+        ArgumentCaptor<Message<byte[]>> captor = ArgumentCaptor.forClass(Message.class);
+
+        // Act
+        listener.onSubscribe(subscribeEvent("/topic/scale/2"));
+
+        // Assert
+        verify(clientOutboundChannel).send(captor.capture());
+        assertEquals("/topic/scale/2", SimpMessageHeaderAccessor.wrap(captor.getValue()).getDestination());
+        JsonNode payload = objectMapper.readTree(captor.getValue().getPayload());
+        assertEquals(1, payload.size());
+        assertEquals(2L, payload.get(0).get("scaleId").asLong());
+        assertEquals("20.0", payload.get(0).get("data1").asText());
+    }
+
+    @Test
+    void testOnSubscribe_NoDataSendsNothing() {
+        // Act
+        listener.onSubscribe(subscribeEvent("/topic/scale/1"));
+        listener.onSubscribe(subscribeEvent("/topic/scales"));
+
+        // Assert
+        verify(clientOutboundChannel, never()).send(any());
+    }
+
+    @Test
+    void testOnSubscribe_TunedSubscriptionPrimedInsteadOfSent() {
+        // Arrange
+        latestMeasurementStore.onMeasurement(createTestEvent(1L, "10.5"));
+        TunedSubscription tuned = new TunedSubscription("session-1", "sub-0", 1L, "/topic/tuned/session-1/sub-0",
+                new SubscriptionOptions(0L, SubscriptionOptions.ALL_FIELDS, false));
+        when(tunedSubscriptionRegistry.get("session-1", "sub-0")).thenReturn(tuned);
+
+        // Act
+        listener.onSubscribe(subscribeEvent("/topic/scale/1"));
+
+        // Assert
+        verify(clientOutboundChannel, never()).send(any());
+        Map<String, Object> first = tuned.poll(1_000_000_000L);
+        assertEquals("10.5", first.get("data1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnSubscribe_LocationUsesPublisherSnapshot() {
+        // Arrange
+        byte[] snapshot = "[{\"scaleId\":1}]".getBytes(StandardCharsets.UTF_8);
+        when(locationTopicPublisher.buildSnapshot(5L)).thenReturn(snapshot);
+        ArgumentCaptor<Message<byte[]>> captor = ArgumentCaptor.forClass(Message.class);
+
+        // Act
+        listener.onSubscribe(subscribeEvent("/topic/location/5"));
+
+        // Assert
+        verify(clientOutboundChannel).send(captor.capture());
+        assertArrayEquals(snapshot, captor.getValue().getPayload());
+        assertEquals("/topic/location/5", SimpMessageHeaderAccessor.wrap(captor.getValue()).getDestination());
+    }
+
+    private SessionSubscribeEvent subscribeEvent(String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("session-1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        return new SessionSubscribeEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private MeasurementEvent createTestEvent(Long scaleId, String data1) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .data1(data1)
+                .status("ONLINE")
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package org.facenet.service.scale.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.facenet.config.BroadcastProperties;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WebSocketBroadcastAggregator
+ */
+@ExtendWith(MockitoExtension.class)
+class WebSocketBroadcastAggregatorTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private BroadcastProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new BroadcastProperties();
+        properties.setMaxPendingEvents(10);
+    }
+
+    @Test
+    void testFlush_SendsOneArrayFramePerTopicPerWindow() throws Exception {
+        // Arrange
+        WebSocketBroadcastAggregator aggregator = aggregator();
+        aggregator.onMeasurement(event(1L, "10"));
+        aggregator.onMeasurement(event(2L, "20"));
+        aggregator.onMeasurement(event(1L, "11"));
+
+        // Act
+        aggregator.flush();
+
+        // Assert
+        List<Sent> sent = captureSent(3);
+        assertEquals("/topic/scales", sent.get(0).destination());
+        assertEquals(3, sent.get(0).frame().size());
+        assertEquals("/topic/scale/1", sent.get(1).destination());
+        assertEquals("10", sent.get(1).frame().get(0).get("data1").asText());
+        assertEquals("11", sent.get(1).frame().get(1).get("data1").asText());
+        assertEquals("/topic/scale/2", sent.get(2).destination());
+        assertEquals(1, sent.get(2).frame().size());
+        assertEquals(0, aggregator.getPendingCount());
+    }
+
+    @Test
+    void testFlush_EmptyWindowSendsNothing() {
+        // Arrange
+        WebSocketBroadcastAggregator aggregator = aggregator();
+        aggregator.onMeasurement(event(1L, "10"));
+        aggregator.flush();
+        clearInvocations(messagingTemplate);
+
+        // Act
+        aggregator.flush();
+
+        // Assert
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    void testOnMeasurement_DropsWhenWindowFull() {
+        // Arrange
+        WebSocketBroadcastAggregator aggregator = aggregator();
+
+        // Act
+        for (int i = 0; i < 12; i++) {
+            aggregator.onMeasurement(event(1L, String.valueOf(i)));
+        }
+
+        // Assert
+        assertEquals(10, aggregator.getPendingCount());
+        assertEquals(2, aggregator.getDroppedCount());
+    }
+
+    @Test
+    void testFlush_SplitsWindowAtFrameEventLimit() throws Exception {
+        // Arrange
+        properties.setMaxFrameEvents(4);
+        WebSocketBroadcastAggregator aggregator = aggregator();
+        for (int i = 0; i < 10; i++) {
+            aggregator.onMeasurement(event((long) i, String.valueOf(i)));
+        }
+
+        // Act
+        aggregator.flush();
+
+        // Assert: /topic/scales in 4 + 4 + 2, then 1 frame for each of the 10 scales
+        List<Sent> sent = captureSent(13);
+        assertEquals(List.of(4, 4, 2), sent.subList(0, 3).stream().map(s -> s.frame().size()).toList());
+        assertTrue(sent.subList(0, 3).stream().allMatch(s -> s.destination().equals("/topic/scales")));
+        assertEquals("9", sent.get(2).frame().get(1).get("data1").asText());
+    }
+
+    @Test
+    void testFlush_SplitsWindowAtFrameByteLimit() throws Exception {
+        // Arrange
+        MeasurementFrameEncoder encoder = new MeasurementFrameEncoder(objectMapper);
+        int eventBytes = encoder.encode(event(1L, "0")).length;
+        // 2 events fit in one frame ("[a,b]"), the third does not
+        properties.setMaxFrameBytes(2 * eventBytes + 3);
+        WebSocketBroadcastAggregator aggregator = aggregator();
+        for (int i = 0; i < 5; i++) {
+            aggregator.onMeasurement(event(1L, String.valueOf(i)));
+        }
+
+        // Act
+        aggregator.flush();
+
+        // Assert: same split on /topic/scales and /topic/scale/1
+        List<Sent> sent = captureSent(6);
+        assertEquals(List.of(2, 2, 1, 2, 2, 1), sent.stream().map(s -> s.frame().size()).toList());
+        assertTrue(sent.stream().allMatch(s -> s.bytes() <= properties.getMaxFrameBytes()));
+    }
+
+    private WebSocketBroadcastAggregator aggregator() {
+        return new WebSocketBroadcastAggregator(messagingTemplate, new MeasurementFrameEncoder(objectMapper), properties);
+    }
+
+    private record Sent(String destination, JsonNode frame, int bytes) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Sent> captureSent(int frames) throws Exception {
+        ArgumentCaptor<String> destinations = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Message<?>> messages = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, times(frames)).send(destinations.capture(), messages.capture());
+        List<Sent> sent = new ArrayList<>();
+        for (int i = 0; i < frames; i++) {
+            byte[] payload = (byte[]) messages.getAllValues().get(i).getPayload();
+            sent.add(new Sent(destinations.getAllValues().get(i), objectMapper.readTree(payload), payload.length));
+        }
+        return sent;
+    }
+
+    private MeasurementEvent event(Long scaleId, String data1) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.parse("2025-12-01T10:00:00Z"))
+                .data1(data1)
+                .status("ONLINE")
+                .build();
+    }
+}
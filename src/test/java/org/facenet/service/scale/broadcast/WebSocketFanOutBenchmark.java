@@ -0,0 +1,140 @@
+package org.facenet.service.scale.broadcast;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark số client kết nối vs độ trễ end-to-end của /topic/scales
+ *
+ * Không phải unit test (không chạy trong mvn test). Chạy với server đang hoạt động, lần lượt cho
+ * từng chế độ broker (websocket.broker.mode=SIMPLE rồi RELAY), cùng tập cân và poll interval:
+ *
+ *   java -cp target/classes:target/test-classes:<dependency classpath> \
+ *        org.facenet.service.scale.broadcast.WebSocketFanOutBenchmark \
+ *        http://localhost:8080/api/v1/ws-scalehub 10,100,500,1000 30
+ *
+ * Tham số: URL endpoint SockJS, danh sách số client, thời gian đo mỗi mức (giây).
+ * Độ trễ = thời điểm client nhận frame - lastTime của từng phần tử (client và server cùng máy
+ * để tránh lệch đồng hồ); đã bao gồm cửa sổ gom broadcast (websocket.broadcast.window-ms).
+ */
+public class WebSocketFanOutBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/api/v1/ws-scalehub";
+        int[] clientCounts = Arrays.stream((args.length > 1 ? args[1] : "10,100,500").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new ByteArrayMessageConverter());
+        stompClient.setTaskScheduler(scheduler);
+
+        System.out.println("clients,frames,samples,p50Ms,p95Ms,p99Ms,maxMs");
+        for (int clients : clientCounts) {
+            System.out.println(runLevel(stompClient, url, clients, seconds));
+        }
+        scheduler.shutdown();
+    }
+
+    private static String runLevel(WebSocketStompClient stompClient, String url, int clients, int seconds)
+            throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        List<StompSession> sessions = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            StompSession session = stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+            }).get(10, TimeUnit.SECONDS);
+            session.subscribe("/topic/scales", recorder);
+            sessions.add(session);
+        }
+
+        // Bỏ qua giai đoạn kết nối, chỉ đo khi tất cả client đã subscribe
+        TimeUnit.SECONDS.sleep(2);
+        recorder.reset();
+        TimeUnit.SECONDS.sleep(seconds);
+        String row = clients + "," + recorder.summary();
+
+        sessions.forEach(StompSession::disconnect);
+        TimeUnit.SECONDS.sleep(2);
+        return row;
+    }
+
+    /**
+     * Ghi độ trễ (ms) của từng phần tử trong frame JSON array
+     */
+    private static final class LatencyRecorder implements StompFrameHandler {
+        private final AtomicLong frames = new AtomicLong();
+        private long[] samples = new long[1 << 16];
+        private int count;
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long receivedMs = System.currentTimeMillis();
+            frames.incrementAndGet();
+            try {
+                JsonNode frame = MAPPER.readTree((byte[]) payload);
+                for (JsonNode element : frame.isArray() ? frame : MAPPER.createArrayNode().add(frame)) {
+                    JsonNode lastTime = element.get("lastTime");
+                    if (lastTime != null && lastTime.isTextual()) {
+                        record(receivedMs - ZonedDateTime.parse(lastTime.asText()).toInstant().toEpochMilli());
+                    }
+                }
+            } catch (Exception ignored) {
+                // frame không phải JSON đo lường
+            }
+        }
+
+        private synchronized void record(long latencyMs) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[count++] = latencyMs;
+        }
+
+        synchronized void reset() {
+            frames.set(0);
+            count = 0;
+        }
+
+        synchronized String summary() {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return frames.get() + "," + count + ","
+                    + percentile(sorted, 0.50) + "," + percentile(sorted, 0.95) + ","
+                    + percentile(sorted, 0.99) + "," + (count > 0 ? sorted[count - 1] : 0);
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+        }
+    }
+}
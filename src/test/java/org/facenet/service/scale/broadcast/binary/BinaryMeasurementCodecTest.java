@@ -0,0 +1,87 @@
+package org.facenet.service.scale.broadcast.binary;
+
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BinaryMeasurementCodec
+ */
+class BinaryMeasurementCodecTest {
+
+    @Test
+    void testRoundTrip_KeepsValuesAndMasks() {
+        // Arrange
+        MeasurementEvent event = MeasurementEvent.builder()
+                .scaleId(7L)
+                .epochNanos(1_700_000_000_123_000_000L)
+                .value(0, 150.25, false)
+                .value(1, 3, true)
+                .data3("abc")
+                .status(MeasurementStatus.ONLINE)
+                .build();
+        byte[] records = encode(event);
+
+        // Act
+        List<byte[]> frames = BinaryMeasurementCodec.toFrames(records, 1, null);
+        MeasurementEvent decoded = BinaryMeasurementCodec.decode(frames.get(0)).get(0);
+
+        // Assert
+        assertEquals(BinaryMeasurementCodec.HEADER_SIZE + BinaryMeasurementCodec.RECORD_SIZE, frames.get(0).length);
+        assertEquals(7L, decoded.scaleIdAsLong());
+        assertEquals(1_700_000_000_123_000_000L, decoded.epochNanos());
+        assertEquals("150.25", decoded.getData1());
+        assertEquals("3", decoded.getData2());
+        assertNull(decoded.getData3());
+        assertEquals(MeasurementStatus.ONLINE, decoded.measurementStatus());
+    }
+
+    @Test
+    void testToFrames_FiltersByScaleId() {
+        // Arrange
+        byte[] records = encode(createEvent(1L), createEvent(2L), createEvent(3L));
+
+        // Act
+        List<byte[]> frames = BinaryMeasurementCodec.toFrames(records, 3, scaleId -> scaleId != 2L);
+
+        // Assert
+        List<MeasurementEvent> decoded = BinaryMeasurementCodec.decode(frames.get(0));
+        assertEquals(2, decoded.size());
+        assertEquals(1L, decoded.get(0).scaleIdAsLong());
+        assertEquals(3L, decoded.get(1).scaleIdAsLong());
+    }
+
+    @Test
+    void testToFrames_NoMatchProducesNoFrame() {
+        // Arrange
+        byte[] records = encode(createEvent(1L));
+
+        // Act
+        List<byte[]> frames = BinaryMeasurementCodec.toFrames(records, 1, scaleId -> false);
+
+        // Assert
+        assertTrue(frames.isEmpty());
+    }
+
+    private byte[] encode(MeasurementEvent... events) {
+        ByteBuffer buffer = ByteBuffer.allocate(events.length * BinaryMeasurementCodec.RECORD_SIZE);
+        for (MeasurementEvent event : events) {
+            BinaryMeasurementCodec.writeRecord(buffer, event);
+        }
+        return buffer.array();
+    }
+
+    private MeasurementEvent createEvent(long scaleId) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .epochNanos(MeasurementEvent.currentEpochNanos())
+                .data1("150.5")
+                .status("ONLINE")
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package org.facenet.service.scale.broadcast.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * So sánh kích thước và CPU encode mỗi message: /ws-binary (scalehub.bin.v1) vs STOMP/JSON qua SockJS
+ *
+ * Không phải unit test (không chạy trong mvn test). Chạy thủ công sau khi compile test classes:
+ *
+ *   java -cp target/classes:target/test-classes:<dependency classpath> \
+ *        org.facenet.service.scale.broadcast.binary.BinaryVsStompBenchmark 1,10,100
+ *
+ * Tham số: danh sách số event trong 1 message (cửa sổ broadcast). Mỗi mức in ra:
+ * - bytes/message của STOMP MESSAGE frame (JSON array), của frame đó khi bọc SockJS ("a[...]"),
+ *   và của binary frame
+ * - CPU ns/message (ThreadMXBean) cho phần encode phía server của từng định dạng
+ */
+public class BinaryVsStompBenchmark {
+
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        String levels = args.length > 0 ? args[0] : "1,10,100";
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        StompEncoder stompEncoder = new StompEncoder();
+
+        System.out.println("events,stompBytes,sockJsBytes,binaryBytes,stompCpuNs,binaryCpuNs");
+        for (String level : levels.split(",")) {
+            int events = Integer.parseInt(level.trim());
+            List<MeasurementEvent> window = createWindow(events);
+
+            byte[] stompFrame = encodeStomp(objectMapper, stompEncoder, window);
+            byte[] sockJsFrame = encodeSockJs(objectMapper, stompFrame);
+            byte[] binaryFrame = encodeBinary(window);
+
+            int iterations = Math.max(1000, ITERATIONS / events);
+            // Warm-up
+            for (int i = 0; i < iterations; i++) {
+                encodeStomp(objectMapper, stompEncoder, window);
+                encodeBinary(window);
+            }
+            long stompCpu = cpuNanos(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    encodeSockJs(objectMapper, encodeStomp(objectMapper, stompEncoder, window));
+                }
+            });
+            long binaryCpu = cpuNanos(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    encodeBinary(window);
+                }
+            });
+
+            System.out.printf("%d,%d,%d,%d,%d,%d%n", events, stompFrame.length, sockJsFrame.length,
+                    binaryFrame.length, stompCpu / iterations, binaryCpu / iterations);
+        }
+    }
+
+    private static byte[] encodeStomp(ObjectMapper objectMapper, StompEncoder encoder,
+                                      List<MeasurementEvent> window) {
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(window);
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            accessor.setDestination("/topic/scales");
+            accessor.setSubscriptionId("sub-0");
+            accessor.setMessageId("3c1b9f8e-0");
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            Message<byte[]> message = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+            return encoder.encode(message);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] encodeSockJs(ObjectMapper objectMapper, byte[] stompFrame) {
+        try {
+            // SockJS message frame: "a" + JSON array chứa STOMP frame dạng chuỗi
+            byte[] quoted = objectMapper.writeValueAsBytes(new String[]{new String(stompFrame)});
+            byte[] frame = new byte[quoted.length + 1];
+            frame[0] = 'a';
+            System.arraycopy(quoted, 0, frame, 1, quoted.length);
+            return frame;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] encodeBinary(List<MeasurementEvent> window) {
+        ByteBuffer records = ByteBuffer.allocate(window.size() * BinaryMeasurementCodec.RECORD_SIZE);
+        for (MeasurementEvent event : window) {
+            BinaryMeasurementCodec.writeRecord(records, event);
+        }
+        return BinaryMeasurementCodec.toFrames(records.array(), window.size(), null).get(0);
+    }
+
+    private static long cpuNanos(Runnable task) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long start = threads.getCurrentThreadCpuTime();
+        task.run();
+        return threads.getCurrentThreadCpuTime() - start;
+    }
+
+    private static List<MeasurementEvent> createWindow(int events) {
+        List<MeasurementEvent> window = new ArrayList<>(events);
+        long now = MeasurementEvent.currentEpochNanos();
+        for (int i = 0; i < events; i++) {
+            window.add(MeasurementEvent.builder()
+                    .scaleId((long) (i % 300) + 1)
+                    .epochNanos(now + i * 1_000_000L)
+                    .value(0, 1500.25 + i, false)
+                    .value(1, 25.3, false)
+                    .value(2, 98.2, false)
+                    .value(3, 0, true)
+                    .value(4, 1, true)
+                    .status(MeasurementStatus.ONLINE)
+                    .build());
+        }
+        return window;
+    }
+}
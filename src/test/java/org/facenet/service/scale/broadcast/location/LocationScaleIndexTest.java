@@ -0,0 +1,80 @@
+package org.facenet.service.scale.broadcast.location;
+
+import org.facenet.repository.location.LocationRepository;
+import org.facenet.repository.scale.ScaleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LocationScaleIndex
+ */
+@ExtendWith(MockitoExtension.class)
+class LocationScaleIndexTest {
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private ScaleRepository scaleRepository;
+
+    @InjectMocks
+    private LocationScaleIndex locationScaleIndex;
+
+    @BeforeEach
+    void setUp() {
+        // Site 1 -> Area 2 -> Line 3, Site 4 riêng
+        when(locationRepository.findAllIdAndParentId()).thenReturn(List.of(
+                new Object[]{1L, null},
+                new Object[]{2L, 1L},
+                new Object[]{3L, 2L},
+                new Object[]{4L, null}));
+        when(scaleRepository.findActiveIdAndLocationId()).thenReturn(List.of(
+                new Object[]{10L, 1L},
+                new Object[]{20L, 2L},
+                new Object[]{30L, 3L},
+                new Object[]{40L, 4L}));
+    }
+
+    @Test
+    void testScaleIdsUnder_IncludesWholeSubtree() {
+        // Act
+        long[] site = locationScaleIndex.scaleIdsUnder(1L);
+        long[] area = locationScaleIndex.scaleIdsUnder(2L);
+
+        // Assert
+        Arrays.sort(site);
+        Arrays.sort(area);
+        assertArrayEquals(new long[]{10L, 20L, 30L}, site);
+        assertArrayEquals(new long[]{20L, 30L}, area);
+    }
+
+    @Test
+    void testScaleIdsUnder_UnknownLocationIsEmpty() {
+        // Act
+        long[] scaleIds = locationScaleIndex.scaleIdsUnder(99L);
+
+        // Assert
+        assertEquals(0, scaleIds.length);
+    }
+
+    @Test
+    void testScaleIdsUnder_CachedUntilRefresh() {
+        // Act
+        locationScaleIndex.scaleIdsUnder(1L);
+        locationScaleIndex.scaleIdsUnder(1L);
+
+        // Assert
+        verify(locationRepository, times(1)).findAllIdAndParentId();
+        verify(scaleRepository, times(1)).findActiveIdAndLocationId();
+    }
+}
@@ -0,0 +1,214 @@
+package org.facenet.service.scale.broadcast.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.facenet.config.BroadcastProperties;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.service.scale.broadcast.MeasurementFrameEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SseMeasurementBroadcaster
+ */
+class SseMeasurementBroadcasterTest {
+
+    private final MeasurementFrameEncoder frameEncoder = new MeasurementFrameEncoder(new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+
+    private BroadcastProperties properties;
+    private ExecutorService senderPool;
+
+    @BeforeEach
+    void setUp() {
+        properties = new BroadcastProperties();
+        properties.setSseReplayCapacity(16);
+        senderPool = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        senderPool.shutdownNow();
+    }
+
+    @Test
+    void testConnect_ReplaysFromLastEventId() {
+        // Arrange
+        SseMeasurementBroadcaster broadcaster = new SseMeasurementBroadcaster(frameEncoder, properties, Runnable::run);
+        publish(broadcaster, 1L, 2L, 3L);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        // Act
+        broadcaster.connect(emitter, null, 1L);
+        broadcaster.flush();
+
+        // Assert
+        assertEquals(1, emitter.events.size());
+        String event = emitter.events.get(0);
+        assertTrue(event.contains("id:3\n"));
+        assertTrue(event.contains("event:measurements\n"));
+        assertFalse(event.contains("\"scaleId\":1,"));
+        assertTrue(event.contains("\"scaleId\":2,"));
+        assertTrue(event.contains("\"scaleId\":3,"));
+    }
+
+    @Test
+    void testConnect_SendsResetWhenLastEventIdOverwritten() {
+        // Arrange
+        properties.setSseReplayCapacity(2);
+        SseMeasurementBroadcaster broadcaster = new SseMeasurementBroadcaster(frameEncoder, properties, Runnable::run);
+        publish(broadcaster, 1L, 2L, 3L, 4L);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        // Act
+        broadcaster.connect(emitter, null, 0L);
+        broadcaster.flush();
+
+        // Assert
+        assertEquals(2, emitter.events.size());
+        assertTrue(emitter.events.get(0).contains("event:reset\ndata:3"));
+        assertTrue(emitter.events.get(1).contains("id:4\n"));
+    }
+
+    @Test
+    void testFlush_AppliesFilterPerConnection() {
+        // Arrange
+        SseMeasurementBroadcaster broadcaster = new SseMeasurementBroadcaster(frameEncoder, properties, Runnable::run);
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.connect(emitter, scaleId -> scaleId == 2L, null);
+
+        // Act
+        publish(broadcaster, 1L);
+        publish(broadcaster, 1L, 2L);
+
+        // Assert
+        assertEquals(1, emitter.events.size());
+        assertTrue(emitter.events.get(0).contains("id:3\n"));
+        assertFalse(emitter.events.get(0).contains("\"scaleId\":1,"));
+        assertTrue(emitter.events.get(0).contains("\"scaleId\":2,"));
+    }
+
+    @Test
+    void testFlush_ClosesConnectionWhenSendQueueOverflows() throws Exception {
+        // Arrange
+        properties.setSseSendQueueCapacity(1);
+        SseMeasurementBroadcaster broadcaster = new SseMeasurementBroadcaster(frameEncoder, properties, senderPool);
+        BlockingEmitter slow = new BlockingEmitter();
+        RecordingEmitter fast = new RecordingEmitter();
+        broadcaster.connect(slow, null, null);
+        broadcaster.connect(fast, null, null);
+
+        // Act
+        publish(broadcaster, 1L);
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+        awaitEvents(fast, 1);
+        publish(broadcaster, 2L);
+        awaitEvents(fast, 2);
+        publish(broadcaster, 3L);
+
+        // Assert
+        awaitEvents(fast, 3);
+        assertEquals(1, broadcaster.getConnectionCount());
+        assertEquals(1, broadcaster.getClosedSlowConnectionCount());
+        slow.release.countDown();
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFlush_ClosesConnectionWhenSendTimesOut() throws Exception {
+        // Arrange
+        properties.setSseSendTimeoutMs(50);
+        SseMeasurementBroadcaster broadcaster = new SseMeasurementBroadcaster(frameEncoder, properties, senderPool);
+        BlockingEmitter slow = new BlockingEmitter();
+        broadcaster.connect(slow, null, null);
+
+        // Act
+        publish(broadcaster, 1L);
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        broadcaster.flush();
+
+        // Assert
+        assertEquals(0, broadcaster.getConnectionCount());
+        assertEquals(1, broadcaster.getClosedSlowConnectionCount());
+        slow.release.countDown();
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    private void publish(SseMeasurementBroadcaster broadcaster, long... scaleIds) {
+        for (long scaleId : scaleIds) {
+            broadcaster.onMeasurement(MeasurementEvent.builder()
+                    .scaleId(scaleId)
+                    .lastTime(ZonedDateTime.now())
+                    .data1("1.5")
+                    .status("ONLINE")
+                    .build());
+        }
+        broadcaster.flush();
+    }
+
+    private static void awaitEvents(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitter.events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, emitter.events.size());
+    }
+
+    /**
+     * Emitter ghi lại nội dung SSE đã gửi thay vì ghi ra response
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                Object data = part.getData();
+                text.append(data instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : data);
+            }
+            events.add(text.toString());
+        }
+    }
+
+    /**
+     * Emitter mô phỏng client không đọc: send() bị chặn đến khi release
+     */
+    private static class BlockingEmitter extends SseEmitter {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.facenet.service.scale.broadcast.sse;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SseReplayBuffer
+ */
+class SseReplayBufferTest {
+
+    @Test
+    void testSince_ReturnsEntriesAfterLastEventId() {
+        // Arrange
+        SseReplayBuffer buffer = new SseReplayBuffer(8);
+        for (long scaleId = 1; scaleId <= 5; scaleId++) {
+            buffer.append(scaleId, new byte[0]);
+        }
+
+        // Act
+        List<SseReplayBuffer.Entry> entries = buffer.since(3L);
+
+        // Assert
+        assertEquals(2, entries.size());
+        assertEquals(4L, entries.get(0).getId());
+        assertEquals(5L, entries.get(1).getScaleId());
+    }
+
+    @Test
+    void testSince_SkipsOverwrittenEntries() {
+        // Arrange
+        SseReplayBuffer buffer = new SseReplayBuffer(3);
+        for (long scaleId = 1; scaleId <= 10; scaleId++) {
+            buffer.append(scaleId, new byte[0]);
+        }
+
+        // Act
+        List<SseReplayBuffer.Entry> entries = buffer.since(2L);
+
+        // Assert
+        assertEquals(8L, buffer.getOldestId());
+        assertEquals(3, entries.size());
+        assertEquals(8L, entries.get(0).getId());
+        assertEquals(10L, entries.get(2).getId());
+    }
+
+    @Test
+    void testSince_NothingNew() {
+        // Arrange
+        SseReplayBuffer buffer = new SseReplayBuffer(3);
+        buffer.append(1L, new byte[0]);
+
+        // Act & Assert
+        assertTrue(buffer.since(1L).isEmpty());
+        assertEquals(1L, buffer.getLastId());
+    }
+}
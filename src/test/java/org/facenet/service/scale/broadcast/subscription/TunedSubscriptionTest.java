@@ -0,0 +1,132 @@
+package org.facenet.service.scale.broadcast.subscription;
+
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TunedSubscription (conflation, field selection, delta, rate limit)
+ */
+class TunedSubscriptionTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testPoll_ConflatesToLatestValue() {
+        // Arrange
+        TunedSubscription subscription = createSubscription(new SubscriptionOptions(0L, SubscriptionOptions.ALL_FIELDS, false));
+
+        // Act
+        subscription.update(createTestEvent("1.00", "ONLINE"));
+        subscription.update(createTestEvent("2.00", "ONLINE"));
+        subscription.update(createTestEvent("3.00", "ONLINE"));
+        Map<String, Object> payload = subscription.poll(SECOND);
+
+        // Assert
+        assertNotNull(payload);
+        assertEquals("3.00", payload.get("data1"));
+        assertEquals(2L, subscription.getConflatedCount());
+        assertNull(subscription.poll(2 * SECOND));
+    }
+
+    @Test
+    void testPoll_SelectedFieldsOnly() {
+        // Arrange
+        int data1Only = SubscriptionOptions.parseFieldMask("data1");
+        TunedSubscription subscription = createSubscription(new SubscriptionOptions(0L, data1Only, false));
+
+        // Act
+        subscription.update(createTestEvent("150.50", "ONLINE"));
+        Map<String, Object> payload = subscription.poll(SECOND);
+
+        // Assert
+        assertEquals("150.50", payload.get("data1"));
+        assertFalse(payload.containsKey("data2"));
+        assertFalse(payload.containsKey("status"));
+        assertEquals(1L, payload.get("scaleId"));
+    }
+
+    @Test
+    void testPoll_DeltaSendsOnlyChangedFields() {
+        // Arrange
+        TunedSubscription subscription = createSubscription(new SubscriptionOptions(0L, SubscriptionOptions.ALL_FIELDS, true));
+        subscription.update(createTestEvent("1.00", "ONLINE"));
+        subscription.poll(SECOND);
+
+        // Act
+        subscription.update(createTestEvent("1.00", "ONLINE"));
+        Map<String, Object> unchanged = subscription.poll(2 * SECOND);
+        subscription.update(createTestEvent("2.00", "ONLINE"));
+        Map<String, Object> changed = subscription.poll(3 * SECOND);
+
+        // Assert
+        assertNull(unchanged);
+        assertEquals("2.00", changed.get("data1"));
+        assertFalse(changed.containsKey("data2"));
+        assertFalse(changed.containsKey("status"));
+    }
+
+    @Test
+    void testPoll_RespectsMaxRate() {
+        // Arrange
+        long minInterval = SubscriptionOptions.parseMinInterval("2");
+        TunedSubscription subscription = createSubscription(new SubscriptionOptions(minInterval, SubscriptionOptions.ALL_FIELDS, false));
+        subscription.update(createTestEvent("1.00", "ONLINE"));
+        subscription.poll(SECOND);
+
+        // Act
+        subscription.update(createTestEvent("2.00", "ONLINE"));
+        Map<String, Object> tooEarly = subscription.poll(SECOND + minInterval / 2);
+        Map<String, Object> onTime = subscription.poll(SECOND + minInterval);
+
+        // Assert
+        assertNull(tooEarly);
+        assertEquals("2.00", onTime.get("data1"));
+    }
+
+    @Test
+    void testPoll_MinChangeSuppressesSmallNumericChanges() {
+        // Arrange
+        TunedSubscription subscription = createSubscription(
+                new SubscriptionOptions(0L, SubscriptionOptions.parseFieldMask("data1"), false, 0.5));
+        subscription.update(createTestEvent("1.00", "ONLINE"));
+        subscription.poll(SECOND);
+
+        // Act
+        subscription.update(createTestEvent("1.20", "ONLINE"));
+        Map<String, Object> small = subscription.poll(2 * SECOND);
+        subscription.update(createTestEvent("1.60", "ONLINE"));
+        Map<String, Object> large = subscription.poll(3 * SECOND);
+
+        // Assert
+        assertNull(small);
+        assertEquals("1.60", large.get("data1"));
+    }
+
+    @Test
+    void testParseOptions_RejectsInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.parseMinInterval("0"));
+        assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.parseMinInterval("fast"));
+        assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.parseFieldMask("data9"));
+        assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.parseMinChange("-1"));
+        assertThrows(IllegalArgumentException.class, () -> SubscriptionOptions.parseMinChange("NaN"));
+    }
+
+    private TunedSubscription createSubscription(SubscriptionOptions options) {
+        return new TunedSubscription("session-1", "sub-0", 1L, "/topic/tuned/session-1/sub-0", options);
+    }
+
+    private MeasurementEvent createTestEvent(String data1, String status) {
+        return MeasurementEvent.builder()
+                .scaleId(1L)
+                .lastTime(ZonedDateTime.now())
+                .data1(data1)
+                .data2("25.3")
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package org.facenet.service.scale.core.trace;
+
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EventTraceRing
+ */
+class EventTraceRingTest {
+
+    @Test
+    void testSnapshot_KeepsOnlyLatestRecordsInOrder() {
+        // Arrange
+        EventTraceRing ring = new EventTraceRing(3);
+
+        // Act
+        for (long scaleId = 1; scaleId <= 5; scaleId++) {
+            ring.record(1, createTestEvent(scaleId, "150.5"));
+        }
+        List<Map<String, Object>> records = EventTraceRing.decode(ring.snapshot());
+
+        // Assert
+        assertEquals(5L, ring.getRecordedCount());
+        assertEquals(3, records.size());
+        assertEquals(3L, records.get(0).get("scaleId"));
+        assertEquals(5L, records.get(2).get("scaleId"));
+        assertEquals(5L, records.get(2).get("seq"));
+    }
+
+    @Test
+    void testDecode_NonNumericValueIsNull() {
+        // Arrange
+        EventTraceRing ring = new EventTraceRing(4);
+
+        // Act
+        ring.record(2, createTestEvent(1L, "abc"));
+        Map<String, Object> record = EventTraceRing.decode(ring.snapshot()).get(0);
+
+        // Assert
+        assertNull(record.get("data1"));
+        assertEquals(25.3, record.get("data2"));
+        assertNull(record.get("data3"));
+        assertEquals("ONLINE", record.get("status"));
+        assertEquals(2, record.get("workerId"));
+    }
+
+    private MeasurementEvent createTestEvent(Long scaleId, String data1) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .data1(data1)
+                .data2("25.3")
+                .status("ONLINE")
+                .build();
+    }
+}
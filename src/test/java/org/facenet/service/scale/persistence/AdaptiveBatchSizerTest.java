@@ -0,0 +1,69 @@
+package org.facenet.service.scale.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AdaptiveBatchSizer
+ */
+class AdaptiveBatchSizerTest {
+
+    @Test
+    void testRecord_FullFastBatchesGrowSize() {
+        // Arrange
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(64, 10, 100, 200, true);
+
+        // Act
+        sizer.record(64, 20);
+        int afterFirst = sizer.currentSize();
+        for (int i = 0; i < 20; i++) {
+            sizer.record(sizer.currentSize(), 20);
+        }
+
+        // Assert
+        assertEquals(72, afterFirst);
+        assertEquals(100, sizer.currentSize());
+    }
+
+    @Test
+    void testRecord_PartialBatchKeepsSize() {
+        // Arrange
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(64, 10, 100, 200, true);
+
+        // Act
+        sizer.record(5, 20);
+
+        // Assert
+        assertEquals(64, sizer.currentSize());
+    }
+
+    @Test
+    void testRecord_SlowCommitHalvesSizeDownToMinimum() {
+        // Arrange
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(64, 10, 100, 200, true);
+
+        // Act
+        sizer.record(64, 900);
+        int afterFirst = sizer.currentSize();
+        sizer.record(32, 900);
+        sizer.record(16, 900);
+
+        // Assert
+        assertEquals(32, afterFirst);
+        assertEquals(10, sizer.currentSize());
+    }
+
+    @Test
+    void testRecord_DisabledKeepsConfiguredSize() {
+        // Arrange
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(50, 10, 100, 200, false);
+
+        // Act
+        sizer.record(50, 5000);
+        sizer.record(50, 1);
+
+        // Assert
+        assertEquals(50, sizer.currentSize());
+    }
+}
@@ -1,97 +1,250 @@
-// package org.facenet.service.scale.persistence;
-
-// import org.facenet.event.MeasurementEvent;
-// import org.junit.jupiter.api.AfterEach;
-// import org.junit.jupiter.api.BeforeEach;
-// import org.junit.jupiter.api.Test;
-// import org.junit.jupiter.api.extension.ExtendWith;
-// import org.mockito.Mock;
-// import org.mockito.junit.jupiter.MockitoExtension;
-
-// import java.time.ZonedDateTime;
-// import java.util.concurrent.ExecutorService;
-// import java.util.concurrent.TimeUnit;
-
-// import static org.mockito.ArgumentMatchers.any;
-// import static org.mockito.Mockito.*;
-
-// /**
-//  * Unit tests for BatchPersistenceService
-//  */
-// @ExtendWith(MockitoExtension.class)
-// class BatchPersistenceServiceTest {
-
-//     @Mock
-//     private PersistenceService persistenceService;
-
-//     @Mock
-//     private ExecutorService batchPersistenceExecutor;
-
-//     private BatchPersistenceService batchPersistenceService;
-
-//     @BeforeEach
-//     void setUp() {
-//         batchPersistenceService = new BatchPersistenceService(persistenceService, batchPersistenceExecutor);
-//     }
-
-//     @AfterEach
-//     void tearDown() {
-//         batchPersistenceService.stopBatchProcessing();
-//     }
-
-//     @Test
-//     void testAddToBatch_Success() {
-//         // Arrange
-//         MeasurementEvent event = createTestEvent(1L);
-
-//         // Act
-//         batchPersistenceService.addToBatch(event);
-
-//         // Assert - no exception thrown
-//     }
-
-//     @Test
-//     void testStartBatchProcessing_SubmitsTask() {
-//         // Act
-//         batchPersistenceService.startBatchProcessing();
-
-//         // Assert
-//         verify(batchPersistenceExecutor, times(1)).submit(any(Runnable.class));
-//     }
-
-//     @Test
-//     void testStopBatchProcessing() {
-//         // Act
-//         batchPersistenceService.stopBatchProcessing();
-
-//         // Assert - no exception thrown
-//     }
-
-//     @Test
-//     void testAddMultipleEventsToBatch() throws InterruptedException {
-//         // Arrange
-//         MeasurementEvent event1 = createTestEvent(1L);
-//         MeasurementEvent event2 = createTestEvent(2L);
-//         MeasurementEvent event3 = createTestEvent(3L);
-
-//         // Act
-//         batchPersistenceService.addToBatch(event1);
-//         batchPersistenceService.addToBatch(event2);
-//         batchPersistenceService.addToBatch(event3);
-
-//         // Wait a bit for queue operations
-//         TimeUnit.MILLISECONDS.sleep(100);
-
-//         // Assert - no exception thrown
-//     }
-
-//     private MeasurementEvent createTestEvent(Long scaleId) {
-//         return MeasurementEvent.builder()
-//                 .scaleId(scaleId)
-//                 .lastTime(ZonedDateTime.now())
-//                 .data1("150.5")
-//                 .data2("25.3")
-//                 .status("online")
-//                 .build();
-//     }
-// }
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for BatchPersistenceService
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchPersistenceServiceTest {
+
+    @Mock
+    private WeighingLogBatchWriter weighingLogBatchWriter;
+
+    @Mock
+    private WeighingLogCopyWriter weighingLogCopyWriter;
+
+    @Mock
+    private ScaleCurrentStateUpsertWriter currentStateUpsertWriter;
+
+    @Mock
+    private DeadLetterService deadLetterService;
+
+    @Mock
+    private ScaleRollupAccumulator rollupAccumulator;
+
+    @Mock
+    private ExecutorService batchPersistenceExecutor;
+
+    @Test
+    void testPersistBatch_CommitLatencyExcludesRetryBackoff() {
+        // Arrange
+        BatchPersistenceService service = createService(true);
+        List<MeasurementEvent> batch = retainedBatch(1L, 2L);
+        when(weighingLogBatchWriter.write(anyList(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenReturn(2);
+
+        // Act
+        long startNanos = System.nanoTime();
+        long commitMs = service.persistBatch(batch);
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000L;
+
+        // Assert
+        verify(weighingLogBatchWriter, times(2)).write(anyList(), any());
+        assertTrue(elapsedMs >= 500, "first retry waits for the initial backoff");
+        assertTrue(commitMs >= 0 && commitMs < 500, "sizer input must not include the backoff: " + commitMs);
+        assertReleased(batch);
+    }
+
+    @Test
+    void testPersistBatch_DeadLettersWhenDatabaseUnavailableWithoutJournal() {
+        // Arrange
+        BatchPersistenceService service = createService(false);
+        List<MeasurementEvent> batch = retainedBatch(1L, 2L);
+        when(weighingLogBatchWriter.write(anyList(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        // Act
+        long commitMs = service.persistBatch(batch);
+
+        // Assert
+        assertNotEquals(BatchPersistenceService.ABORTED, commitMs);
+        verify(weighingLogBatchWriter, times(1)).write(anyList(), any());
+        verify(deadLetterService, times(2)).writeDeadLetter(any(), any(DataAccessResourceFailureException.class));
+        verify(rollupAccumulator, never()).add(any(), any());
+        assertReleased(batch);
+    }
+
+    @Test
+    void testPersistBatch_AbortsWhenStoppedWhileRetrying() {
+        // Arrange
+        BatchPersistenceService service = createService(true);
+        List<MeasurementEvent> batch = retainedBatch(1L);
+        when(weighingLogBatchWriter.write(anyList(), any())).thenAnswer(invocation -> {
+            service.stopBatchProcessing();
+            throw new DataAccessResourceFailureException("connection refused");
+        });
+
+        // Act
+        long commitMs = service.persistBatch(batch);
+
+        // Assert
+        assertEquals(BatchPersistenceService.ABORTED, commitMs);
+        verify(deadLetterService, never()).writeDeadLetter(any(), any());
+        verifyNoInteractions(currentStateUpsertWriter);
+        assertReleased(batch);
+    }
+
+    @Test
+    void testPersistBatch_DeadLettersBatchOnUnexpectedError() {
+        // Arrange
+        BatchPersistenceService service = createService(true);
+        List<MeasurementEvent> batch = retainedBatch(1L, 2L);
+        when(weighingLogBatchWriter.write(anyList(), any())).thenThrow(new IllegalStateException("bad row"));
+
+        // Act
+        long commitMs = service.persistBatch(batch);
+
+        // Assert
+        assertNotEquals(BatchPersistenceService.ABORTED, commitMs);
+        verify(weighingLogBatchWriter, times(1)).write(anyList(), any());
+        verify(deadLetterService, times(2)).writeDeadLetter(any(), any(IllegalStateException.class));
+        verify(rollupAccumulator, never()).add(any(), any());
+        assertReleased(batch);
+    }
+
+    @Test
+    void testCommittedJournalOffset_HeldWhenBatchCanNeitherBeWrittenNorDeadLettered() throws Exception {
+        // Arrange
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getBatch().setWriters(1);
+        properties.getBatch().setTimeoutMs(20);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        BatchPersistenceService service = new BatchPersistenceService(weighingLogBatchWriter, weighingLogCopyWriter,
+                currentStateUpsertWriter, deadLetterService, rollupAccumulator, executor, properties);
+        when(weighingLogBatchWriter.write(anyList(), any())).thenThrow(new IllegalStateException("bad row"));
+        doThrow(new IllegalStateException("disk full")).when(deadLetterService).writeDeadLetter(any(), any());
+        service.resetJournalWatermarks(0L);
+        service.startBatchProcessing();
+
+        try {
+            // Act
+            service.addToBatch(createTestEvent(1L, 100L));
+            service.markJournalDispatched(200L);
+            verify(weighingLogBatchWriter, timeout(5000)).write(anyList(), any());
+            Thread.sleep(200);
+
+            // Assert: các lượt poll rảnh sau đó không được đẩy checkpoint qua batch lỗi
+            long committed = service.getCommittedJournalOffset();
+            assertTrue(committed <= 100L, "checkpoint must not pass the failed batch: " + committed);
+        } finally {
+            service.stopBatchProcessing();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCommittedJournalOffset_WaitsForSlowestWriterWhenBatchesCompleteOutOfOrder() throws Exception {
+        // Arrange
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getBatch().setWriters(2);
+        properties.getBatch().setTimeoutMs(20);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        BatchPersistenceService service = new BatchPersistenceService(weighingLogBatchWriter, weighingLogCopyWriter,
+                currentStateUpsertWriter, deadLetterService, rollupAccumulator, executor, properties);
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch releaseSlow = new CountDownLatch(1);
+        AtomicInteger fastPersisted = new AtomicInteger();
+        when(weighingLogBatchWriter.write(anyList(), any())).thenAnswer(invocation -> {
+            List<MeasurementEvent> batch = invocation.getArgument(0);
+            if (batch.get(0).scaleIdAsLong() == 1L) {
+                slowStarted.countDown();
+                releaseSlow.await();
+            } else {
+                fastPersisted.addAndGet(batch.size());
+            }
+            return batch.size();
+        });
+        service.resetJournalWatermarks(0L);
+        service.startBatchProcessing();
+
+        try {
+            // Act: scale 1 (offset 100) thuộc writer khác với scale 2, 4 (offset 200, 300)
+            service.addToBatch(createTestEvent(1L, 100L));
+            service.addToBatch(createTestEvent(2L, 200L));
+            service.addToBatch(createTestEvent(4L, 300L));
+            service.markJournalDispatched(400L);
+            assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+            awaitTrue(() -> fastPersisted.get() == 2);
+            Thread.sleep(100);
+            long whileSlowPending = service.getCommittedJournalOffset();
+            releaseSlow.countDown();
+
+            // Assert
+            assertTrue(whileSlowPending <= 100L,
+                    "checkpoint must not pass an unfinished batch: " + whileSlowPending);
+            awaitTrue(() -> service.getCommittedJournalOffset() == 400L);
+        } finally {
+            releaseSlow.countDown();
+            service.stopBatchProcessing();
+            executor.shutdownNow();
+        }
+    }
+
+    private BatchPersistenceService createService(boolean journalEnabled) {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.getJournal().setEnabled(journalEnabled);
+        return new BatchPersistenceService(weighingLogBatchWriter, weighingLogCopyWriter, currentStateUpsertWriter,
+                deadLetterService, rollupAccumulator, batchPersistenceExecutor, properties);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within 5s");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Event đã được retain như khi đi qua addToBatch
+     */
+    private static List<MeasurementEvent> retainedBatch(long... scaleIds) {
+        List<MeasurementEvent> batch = new ArrayList<>();
+        for (long scaleId : scaleIds) {
+            batch.add(createTestEvent(scaleId, -1L).retain());
+        }
+        return batch;
+    }
+
+    private static void assertReleased(List<MeasurementEvent> batch) {
+        batch.forEach(event -> assertEquals(1, event.refCount()));
+    }
+
+    private static MeasurementEvent createTestEvent(long scaleId, long journalOffset) {
+        MeasurementEvent event = MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .data1("150.5")
+                .status("ONLINE")
+                .build();
+        event.setJournalOffset(journalOffset);
+        return event;
+    }
+}
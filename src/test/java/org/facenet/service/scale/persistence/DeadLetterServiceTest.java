@@ -0,0 +1,200 @@
+package org.facenet.service.scale.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DeadLetterService
+ */
+class DeadLetterServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PersistenceProperties properties;
+    private DeadLetterService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PersistenceProperties();
+        properties.getDeadLetter().setDirectory(directory.toString());
+        service = new DeadLetterService(properties, objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void testWriteDeadLetter_AppendsNdjsonRecords() throws Exception {
+        // Arrange
+        properties.getDeadLetter().setCompress(false);
+
+        // Act
+        service.writeDeadLetter(event(1L), new RuntimeException("db down"));
+        service.writeDeadLetter(event(2L), new RuntimeException("db down"));
+        List<Path> segments = service.sealAndListSegments();
+
+        // Assert
+        assertEquals(1, segments.size());
+        List<DeadLetterRecord> records = read(segments.get(0));
+        assertEquals(2, records.size());
+        assertEquals(1L, records.get(0).scaleId());
+        assertEquals("12.50", records.get(0).data1());
+        assertEquals("db down", records.get(0).error());
+        assertTrue(OffsetDateTime.parse(records.get(1).createdAt())
+                .isAfter(OffsetDateTime.parse(records.get(0).createdAt())));
+    }
+
+    @Test
+    void testAppend_RollsAndCompressesSegments() throws Exception {
+        // Arrange
+        properties.getDeadLetter().setMaxSegmentBytes(512);
+
+        // Act
+        for (long i = 0; i < 20; i++) {
+            service.writeDeadLetter(event(i), new RuntimeException("db down"));
+        }
+        List<Path> segments = service.sealAndListSegments();
+
+        // Assert
+        assertTrue(segments.size() > 1);
+        Set<Long> scaleIds = new HashSet<>();
+        for (Path segment : segments) {
+            assertTrue(segment.getFileName().toString().endsWith(DeadLetterService.COMPRESSED_SUFFIX));
+            read(segment).forEach(record -> scaleIds.add(record.scaleId()));
+        }
+        assertEquals(20, scaleIds.size());
+    }
+
+    @Test
+    void testSeal_DropsOldestSegmentsOverTotalCap() throws Exception {
+        // Arrange
+        properties.getDeadLetter().setCompress(false);
+        properties.getDeadLetter().setMaxSegmentBytes(256);
+        properties.getDeadLetter().setMaxTotalBytes(1024);
+
+        // Act
+        for (long i = 0; i < 50; i++) {
+            service.writeDeadLetter(event(i), new RuntimeException("db down"));
+        }
+        List<Path> segments = service.sealAndListSegments();
+
+        // Assert
+        long total = 0;
+        for (Path segment : segments) {
+            total += Files.size(segment);
+        }
+        assertTrue(total <= 1024);
+        assertEquals(49L, read(segments.get(segments.size() - 1)).stream()
+                .mapToLong(DeadLetterRecord::scaleId).max().orElseThrow());
+    }
+
+    @Test
+    void testWriteDeadLetter_KeepsCreatedAtAssignedOnFirstWrite() throws Exception {
+        // Arrange
+        properties.getDeadLetter().setCompress(false);
+        MeasurementEvent written = event(1L);
+        written.setCreatedAtMicros(1_767_225_600_123_456L);
+
+        // Act
+        service.writeDeadLetter(written, new RuntimeException("constraint violation"));
+        service.writeDeadLetter(event(2L), new RuntimeException("db down"));
+        List<DeadLetterRecord> records = read(service.sealAndListSegments().get(0));
+
+        // Assert
+        assertEquals(WeighingLogBatchWriter.createdAtOf(1_767_225_600_123_456L),
+                OffsetDateTime.parse(records.get(0).createdAt()));
+        assertNotNull(records.get(1).createdAt());
+    }
+
+    @Test
+    void testAppend_ReturnsSegmentHoldingRecordAfterSeal() throws Exception {
+        // Arrange
+        properties.getDeadLetter().setMaxSegmentBytes(1);
+        DeadLetterRecord record = new DeadLetterRecord(1L, OffsetDateTime.now().toString(), null,
+                "12.50", null, null, null, null, "ONLINE", "db down", OffsetDateTime.now().toString());
+
+        // Act
+        Path written = service.append(record);
+
+        // Assert
+        assertNotNull(written);
+        assertTrue(written.getFileName().toString().endsWith(DeadLetterService.COMPRESSED_SUFFIX));
+        assertTrue(Files.exists(written));
+        assertEquals(1L, read(written).get(0).scaleId());
+    }
+
+    @Test
+    void testSeal_KeepsSegmentBeingReplayedOverTotalCap() throws Exception {
+        // Arrange
+        properties.getDeadLetter().setCompress(false);
+        properties.getDeadLetter().setMaxSegmentBytes(256);
+        service.writeDeadLetter(event(0L), new RuntimeException("db down"));
+        Path replaying = service.sealAndListSegments().get(0);
+        service.setReplayingSegment(replaying);
+        properties.getDeadLetter().setMaxTotalBytes(1024);
+
+        // Act
+        for (long i = 1; i < 50; i++) {
+            service.writeDeadLetter(event(i), new RuntimeException("db down"));
+        }
+        List<Path> segments = service.sealAndListSegments();
+
+        // Assert
+        assertTrue(Files.exists(replaying));
+        assertEquals(replaying, segments.get(0));
+        long others = 0;
+        for (Path segment : segments.subList(1, segments.size())) {
+            others += Files.size(segment);
+        }
+        assertTrue(others <= 1024);
+    }
+
+    private MeasurementEvent event(long scaleId) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .data1("12.50")
+                .status("ONLINE")
+                .build();
+    }
+
+    private List<DeadLetterRecord> read(Path segment) throws Exception {
+        InputStream in = Files.newInputStream(segment);
+        if (segment.getFileName().toString().endsWith(DeadLetterService.COMPRESSED_SUFFIX)) {
+            in = new GZIPInputStream(in);
+        }
+        List<DeadLetterRecord> records = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                records.add(objectMapper.readValue(line, DeadLetterRecord.class));
+            }
+        }
+        return records;
+    }
+}
@@ -1,10 +1,11 @@
 package org.facenet.service.scale.persistence;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.facenet.entity.scale.ScaleCurrentState;
 import org.facenet.entity.scale.WeighingLog;
 import org.facenet.event.MeasurementEvent;
+import org.facenet.entity.scale.Scale;
 import org.facenet.repository.scale.ScaleCurrentStateRepository;
+import org.facenet.repository.scale.ScaleRepository;
 import org.facenet.repository.scale.WeighingLogRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -33,11 +34,14 @@ class PersistenceServiceImplTest {
     @Mock
     private WeighingLogRepository weighingLogRepository;
 
+    @Mock
+    private ScaleRepository scaleRepository;
+
     @Mock
     private DeadLetterService deadLetterService;
 
     @Mock
-    private ObjectMapper objectMapper;
+    private ActiveScaleCache activeScaleCache;
 
     @InjectMocks
     private PersistenceServiceImpl persistenceService;
@@ -56,13 +60,14 @@ class PersistenceServiceImplTest {
                 .data5("1")
                 .status("online")
                 .build();
+        lenient().when(activeScaleCache.isActive(1L)).thenReturn(true);
+        lenient().when(scaleRepository.getReferenceById(1L)).thenReturn(new Scale());
     }
 
     @Test
-    void testPersistMeasurement_Success() throws Exception {
+    void testPersistMeasurement_Success() {
         // Arrange
         when(currentStateRepository.findById(1L)).thenReturn(Optional.empty());
-        when(objectMapper.writeValueAsString(any())).thenReturn("{\"val\":\"150.5\"}");
         when(currentStateRepository.save(any(ScaleCurrentState.class))).thenAnswer(i -> i.getArgument(0));
         when(weighingLogRepository.save(any(WeighingLog.class))).thenAnswer(i -> i.getArgument(0));
 
@@ -76,14 +81,13 @@ class PersistenceServiceImplTest {
     }
 
     @Test
-    void testPersistMeasurement_UpdateExistingState() throws Exception {
+    void testPersistMeasurement_UpdateExistingState() {
         // Arrange
         ScaleCurrentState existingState = ScaleCurrentState.builder()
                 .scaleId(1L)
                 .status("offline")
                 .build();
         when(currentStateRepository.findById(1L)).thenReturn(Optional.of(existingState));
-        when(objectMapper.writeValueAsString(any())).thenReturn("{\"val\":\"150.5\"}");
         when(currentStateRepository.save(any(ScaleCurrentState.class))).thenAnswer(i -> i.getArgument(0));
         when(weighingLogRepository.save(any(WeighingLog.class))).thenAnswer(i -> i.getArgument(0));
 
@@ -111,10 +115,21 @@ class PersistenceServiceImplTest {
     }
 
     @Test
-    void testPersistMeasurement_InsertsWeighingLog() throws Exception {
+    void testPersistMeasurement_UnknownScaleSkipsStateLookup() {
+        // Arrange
+        when(activeScaleCache.isActive(1L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> persistenceService.persistMeasurement(testEvent));
+        verify(currentStateRepository, never()).findById(any());
+        verify(scaleRepository, never()).findById(any());
+        verify(deadLetterService, times(1)).writeDeadLetter(eq(testEvent), any(IllegalArgumentException.class));
+    }
+
+    @Test
+    void testPersistMeasurement_InsertsWeighingLog() {
         // Arrange
         when(currentStateRepository.findById(1L)).thenReturn(Optional.empty());
-        when(objectMapper.writeValueAsString(any())).thenReturn("{\"val\":\"150.5\"}");
         when(currentStateRepository.save(any(ScaleCurrentState.class))).thenAnswer(i -> i.getArgument(0));
         when(weighingLogRepository.save(any(WeighingLog.class))).thenAnswer(i -> i.getArgument(0));
 
@@ -0,0 +1,114 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties.ValueStorageMode;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PgCopyBinaryEncoder
+ */
+class PgCopyBinaryEncoderTest {
+
+    private static final OffsetDateTime PG_EPOCH = OffsetDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    void testEncode_HeaderRowAndTrailer() {
+        // Arrange
+        PgCopyBinaryEncoder encoder = new PgCopyBinaryEncoder(16);
+        MeasurementEvent event = MeasurementEvent.builder()
+                .scaleId(7L)
+                .lastTime(PG_EPOCH.plusSeconds(1).atZoneSameInstant(ZoneOffset.UTC))
+                .data1("150.5")
+                .status("ONLINE")
+                .build();
+
+        // Act
+        encoder.begin();
+        encoder.writeRow(event, PG_EPOCH.plusNanos(2_000), PG_EPOCH, "engine_modbus", ValueStorageMode.DUAL);
+        encoder.end();
+        ByteBuffer in = ByteBuffer.wrap(encoder.array(), 0, encoder.length());
+
+        // Assert
+        byte[] signature = new byte[11];
+        in.get(signature);
+        assertEquals("PGCOPY\n", new String(signature, 0, 7, StandardCharsets.US_ASCII));
+        assertEquals(0, in.getInt());
+        assertEquals(0, in.getInt());
+
+        assertEquals(17, in.getShort());
+        assertEquals(8, in.getInt());
+        assertEquals(7L, in.getLong());
+        assertEquals(8, in.getInt());
+        assertEquals(2L, in.getLong());              // created_at: 2 micro sau 2000-01-01
+        assertEquals(8, in.getInt());
+        assertEquals(1_000_000L, in.getLong());      // last_time: 1 giây sau 2000-01-01
+
+        assertEquals(6, in.getInt());                // jsonb: version + "150.5"
+        assertEquals(1, in.get());
+        byte[] json = new byte[5];
+        in.get(json);
+        assertEquals("150.5", new String(json, StandardCharsets.UTF_8));
+        for (int slot = 1; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            assertEquals(-1, in.getInt());           // NULL
+        }
+
+        assertEquals(8, in.getInt());
+        assertEquals(0L, in.getLong());              // updated_at
+        assertEquals(13, in.getInt());
+        in.position(in.position() + 13);
+        assertEquals(13, in.getInt());
+        in.position(in.position() + 13);
+
+        assertEquals(8, in.getInt());                // value_1 = 150.5
+        assertEquals(150.5, in.getDouble());
+        for (int slot = 1; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            assertEquals(-1, in.getInt());           // NULL
+        }
+        assertEquals(2, in.getInt());                // valid_mask
+        assertEquals(1, in.getShort());
+
+        assertEquals(-1, in.getShort());
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void testEncode_TypedModeWritesOnlyNonNumericJsonb() {
+        // Arrange
+        PgCopyBinaryEncoder encoder = new PgCopyBinaryEncoder(16);
+        MeasurementEvent event = MeasurementEvent.builder()
+                .scaleId(7L)
+                .lastTime(PG_EPOCH.atZoneSameInstant(ZoneOffset.UTC))
+                .data1("150.5")
+                .data2("\"OK\"")
+                .status("ONLINE")
+                .build();
+
+        // Act
+        encoder.begin();
+        encoder.writeRow(event, PG_EPOCH, PG_EPOCH, "u", ValueStorageMode.TYPED);
+        encoder.end();
+        ByteBuffer in = ByteBuffer.wrap(encoder.array(), 0, encoder.length());
+        in.position(11 + 8 + 2 + 12 * 3);
+
+        // Assert
+        assertEquals(-1, in.getInt());               // data_1 là số -> chỉ ghi value_1
+        assertEquals(5, in.getInt());                // data_2: version + "OK" (có dấu nháy)
+        in.position(in.position() + 5);
+        for (int slot = 2; slot < MeasurementEvent.DATA_SLOTS; slot++) {
+            assertEquals(-1, in.getInt());
+        }
+        in.position(in.position() + 12 + 5 + 5);     // updated_at, created_by, updated_by
+        assertEquals(8, in.getInt());
+        assertEquals(150.5, in.getDouble());
+        in.position(in.position() + 4 * 4);
+        assertEquals(2, in.getInt());
+        assertEquals(1, in.getShort());
+    }
+}
@@ -0,0 +1,141 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ScaleCurrentStateUpsertWriter
+ */
+@ExtendWith(MockitoExtension.class)
+class ScaleCurrentStateUpsertWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private WeighingLogBatchWriter weighingLogBatchWriter;
+
+    @Mock
+    private PersistenceService persistenceService;
+
+    @Mock
+    private ActiveScaleCache activeScaleCache;
+
+    private ScaleCurrentStateUpsertWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        writer = new ScaleCurrentStateUpsertWriter(
+                jdbcTemplate, transactionTemplate, weighingLogBatchWriter, persistenceService, activeScaleCache);
+
+        lenient().doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(activeScaleCache.isActive(anyLong())).thenAnswer(invocation -> (long) invocation.getArgument(0) < 100L);
+        lenient().when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+    }
+
+    @Test
+    void testUpsert_AllScalesInOneStatementBatch() {
+        // Arrange
+        List<Integer> batchSizes = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(eq(ScaleCurrentStateUpsertWriter.UPSERT_SQL), any(BatchPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    int size = ((BatchPreparedStatementSetter) invocation.getArgument(1)).getBatchSize();
+                    batchSizes.add(size);
+                    return new int[size];
+                });
+
+        // Act
+        int written = writer.upsert(createStates(1L, 2L, 3L));
+
+        // Assert
+        assertEquals(3, written);
+        assertEquals(List.of(3), batchSizes);
+        verifyNoInteractions(persistenceService);
+    }
+
+    @Test
+    void testUpsert_UnknownScaleIsSkipped() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(eq(ScaleCurrentStateUpsertWriter.UPSERT_SQL), any(BatchPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> new int[((BatchPreparedStatementSetter) invocation.getArgument(1)).getBatchSize()]);
+
+        // Act
+        int written = writer.upsert(createStates(1L, 500L));
+
+        // Assert
+        assertEquals(1, written);
+    }
+
+    @Test
+    void testUpsert_FailedBatchRetriesRowByRow() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(eq(ScaleCurrentStateUpsertWriter.UPSERT_SQL), any(BatchPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("fk violation"));
+        when(jdbcTemplate.update(eq(ScaleCurrentStateUpsertWriter.UPSERT_SQL), any(PreparedStatementSetter.class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("fk violation"))
+                .thenReturn(1);
+
+        // Act
+        int written = writer.upsert(createStates(1L, 2L, 3L));
+
+        // Assert
+        assertEquals(2, written);
+        verify(activeScaleCache).invalidate();
+    }
+
+    @Test
+    void testUpsert_NonPostgresFallsBackToEntityUpdate() {
+        // Arrange
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(false);
+
+        // Act
+        int written = writer.upsert(createStates(1L, 2L));
+
+        // Assert
+        assertEquals(2, written);
+        verify(persistenceService, times(2)).updateCurrentState(any(MeasurementEvent.class));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private List<MeasurementEvent> createStates(Long... scaleIds) {
+        List<MeasurementEvent> states = new ArrayList<>();
+        for (Long scaleId : scaleIds) {
+            states.add(MeasurementEvent.builder()
+                    .scaleId(scaleId)
+                    .lastTime(ZonedDateTime.now())
+                    .data1("150.5")
+                    .status("ONLINE")
+                    .build());
+        }
+        return states;
+    }
+}
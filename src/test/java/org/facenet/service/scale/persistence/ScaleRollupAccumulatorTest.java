@@ -0,0 +1,365 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ScaleRollupAccumulator
+ */
+@ExtendWith(MockitoExtension.class)
+class ScaleRollupAccumulatorTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private WeighingLogBatchWriter weighingLogBatchWriter;
+
+    private ScaleRollupAccumulator accumulator;
+
+    @BeforeEach
+    void setUp() {
+        accumulator = new ScaleRollupAccumulator(jdbcTemplate, transactionTemplate, weighingLogBatchWriter,
+                new PersistenceProperties());
+    }
+
+    @Test
+    void testAccumulator_TracksCountSumMinMaxFirstLast() {
+        // Arrange
+        ScaleRollupAccumulator.Accumulator stats = new ScaleRollupAccumulator.Accumulator();
+        stats.add(event(7L, "10", "OK"), 1_000L);
+        stats.add(event(7L, "4", "OK"), 2_000L);
+        stats.add(event(7L, "6", "OK"), 3_000L);
+
+        // Act
+        Object[] row = stats.toRow(new ScaleRollupAccumulator.Key(7L, 0L));
+
+        // Assert
+        assertEquals(7L, row[0]);
+        assertEquals(3L, row[2]);                    // sample_count
+        assertEquals(3L, row[5]);                    // count_1
+        assertEquals(20.0, row[6]);                  // sum_1
+        assertEquals(4.0, row[7]);                   // min_1
+        assertEquals(10.0, row[8]);                  // max_1
+        assertEquals(10.0, row[9]);                  // first_1
+        assertEquals(6.0, row[10]);                  // last_1
+        assertEquals(0L, row[11]);                   // count_2: non-numeric slot
+        assertNull(row[13]);                         // min_2
+    }
+
+    @Test
+    void testUpsertSql_BindsEveryColumn() {
+        // Act
+        String sql = ScaleRollupAccumulator.upsertSql(ScaleRollupAccumulator.DAILY_TABLE);
+
+        // Assert
+        assertEquals(5 + MeasurementEvent.DATA_SLOTS * 6, sql.chars().filter(c -> c == '?').count());
+        assertTrue(sql.contains("sum_3 = r.sum_3 + EXCLUDED.sum_3"));
+        assertTrue(sql.contains("min_5 = LEAST(r.min_5, EXCLUDED.min_5)"));
+    }
+
+    @Test
+    void testRecomputeDailySql_OverwritesFromHalfOpenRange() {
+        // Act
+        String sql = ScaleRollupAccumulator.recomputeDailySql();
+
+        // Assert
+        assertEquals(3, sql.chars().filter(c -> c == '?').count());
+        assertTrue(sql.contains("WHERE created_at >= ? AND created_at < ?"));
+        assertTrue(sql.contains("GROUP BY scale_id"));
+        assertTrue(sql.contains("sum_2 = EXCLUDED.sum_2"));
+        assertFalse(sql.contains("r.sum_2"));
+        assertFalse(sql.contains("data_1,"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_KeepsAccumulatorsWhenDatabaseUnavailable() {
+        // Arrange
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        MeasurementEvent skipped = event(8L, "1", "OK");
+        accumulator.add(List.of(event(7L, "10", "OK"), skipped), Set.of(skipped));
+        when(transactionTemplate.execute(any()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenAnswer(invocation -> ((TransactionCallback<Boolean>) invocation.getArgument(0)).doInTransaction(null));
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+
+        // Act
+        accumulator.flush();
+        accumulator.flush();
+        accumulator.flush();
+
+        // Assert
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(jdbcTemplate).batchUpdate(eq(ScaleRollupAccumulator.upsertSql(ScaleRollupAccumulator.DAILY_TABLE)),
+                rows.capture());
+        assertEquals(1, rows.getValue().size());
+        assertEquals(7L, rows.getValue().get(0)[0]);
+        assertEquals(10.0, rows.getValue().get(0)[6]);
+    }
+
+    @Test
+    void testAdd_BucketsByEventCreatedAt() {
+        // Arrange: 2 event cùng cân, created_at ở 2 ngày UTC khác nhau
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        stubTransactions();
+        List<Object[]> written = captureWrittenRows();
+        OffsetDateTime lateEvening = OffsetDateTime.of(2025, 11, 1, 23, 59, 59, 0, ZoneOffset.UTC);
+        MeasurementEvent first = event(7L, "1", "OK");
+        first.setCreatedAtMicros(micros(lateEvening));
+        MeasurementEvent second = event(7L, "2", "OK");
+        second.setCreatedAtMicros(micros(lateEvening.plusSeconds(2)));
+
+        // Act
+        accumulator.add(List.of(first, second), Set.of());
+        accumulator.flush();
+
+        // Assert
+        assertEquals(Set.of(lateEvening.toLocalDate().atStartOfDay().atOffset(ZoneOffset.UTC),
+                        lateEvening.toLocalDate().plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC)),
+                written.stream().map(row -> row[1]).collect(Collectors.toSet()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_RetrySkipsSnapshotThatAlreadyCommitted() {
+        // Arrange: lần 1 ghi xong nhưng client nhận lỗi lúc commit, lần 2 thấy flush_id đã có
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        accumulator.add(List.of(event(7L, "10", "OK")), Set.of());
+        List<String> flushIds = new ArrayList<>();
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            if (ScaleRollupAccumulator.INSERT_FLUSH_SQL.equals(invocation.getArgument(0))) {
+                String flushId = invocation.getArgument(1);
+                boolean seen = flushIds.contains(flushId);
+                flushIds.add(flushId);
+                return seen ? 0 : 1;
+            }
+            return 0;
+        });
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> {
+                    ((TransactionCallback<Boolean>) invocation.getArgument(0)).doInTransaction(null);
+                    throw new DataAccessResourceFailureException("connection reset during commit");
+                })
+                .thenAnswer(invocation -> ((TransactionCallback<Boolean>) invocation.getArgument(0)).doInTransaction(null));
+
+        // Act
+        accumulator.flush();
+        accumulator.add(List.of(event(7L, "5", "OK")), Set.of());
+        accumulator.flush();
+
+        // Assert: snapshot cũ không bị cộng lần 2, event mới nằm trong snapshot sau
+        assertEquals(3, flushIds.size());
+        assertEquals(flushIds.get(0), flushIds.get(1));
+        assertNotEquals(flushIds.get(1), flushIds.get(2));
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void testFlush_ConcurrentAddsAreCountedExactlyOnce() throws Exception {
+        // Arrange
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        stubTransactions();
+        List<Object[]> written = captureWrittenRows();
+        int threads = 4;
+        int batches = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean adding = new AtomicBoolean(true);
+
+        try {
+            // Act: 4 thread add() song song trong khi 1 thread flush() liên tục
+            List<Future<?>> adders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long scaleId = t % 2;
+                adders.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < batches; i++) {
+                        accumulator.add(List.of(event(scaleId, "1", "OK"), event(scaleId + 10, "2", "OK")), Set.of());
+                    }
+                    return null;
+                }));
+            }
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (adding.get()) {
+                    accumulator.flush();
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> adder : adders) {
+                adder.get(10, TimeUnit.SECONDS);
+            }
+            adding.set(false);
+            flusher.get(10, TimeUnit.SECONDS);
+            accumulator.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        long samples = written.stream().mapToLong(row -> (Long) row[2]).sum();
+        double sum1 = written.stream().mapToDouble(row -> (Double) row[6]).sum();
+        assertEquals(threads * batches * 2L, samples);
+        assertEquals(threads * batches * 3.0, sum1);
+    }
+
+    @Test
+    void testFlushAndRecompute_BlocksScheduledFlushUntilRecomputeEnds() throws Exception {
+        // Arrange
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        stubTransactions();
+        List<Object[]> written = captureWrittenRows();
+        accumulator.add(List.of(event(7L, "10", "OK")), Set.of());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Act: event đến trong lúc recompute, flush định kỳ từ thread khác phải chờ recompute xong
+            AtomicReference<Future<?>> scheduledFlush = new AtomicReference<>();
+            boolean completed = accumulator.flushAndRecompute(() -> {
+                accumulator.add(List.of(event(7L, "4", "OK")), Set.of());
+                scheduledFlush.set(executor.submit(accumulator::flush));
+                assertThrows(TimeoutException.class, () -> scheduledFlush.get().get(200, TimeUnit.MILLISECONDS));
+                assertEquals(1, written.size(), "no flush may run while the recompute holds the lock");
+            });
+            scheduledFlush.get().get(5, TimeUnit.SECONDS);
+
+            // Assert
+            assertTrue(completed);
+            assertEquals(2, written.size());
+            assertEquals(4.0, written.get(1)[6]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFlushAndRecompute_RecomputesOfDifferentDaysRunConcurrently() throws Exception {
+        // Arrange
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicBoolean innerRan = new AtomicBoolean();
+
+        try {
+            // Act: recompute thứ 2 (thread khác) bắt đầu và kết thúc trong khi recompute thứ nhất còn chạy
+            boolean completed = accumulator.flushAndRecompute(() -> {
+                try {
+                    assertTrue(executor.submit(() -> accumulator.flushAndRecompute(() -> innerRan.set(true)))
+                            .get(5, TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            // Assert
+            assertTrue(completed);
+            assertTrue(innerRan.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFlushAndRecompute_SkipsRecomputeWhenFlushFails() {
+        // Arrange
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        accumulator.add(List.of(event(7L, "10", "OK")), Set.of());
+        when(transactionTemplate.execute(any())).thenThrow(new DataAccessResourceFailureException("down"));
+        AtomicBoolean recomputed = new AtomicBoolean();
+
+        // Act
+        boolean completed = accumulator.flushAndRecompute(() -> recomputed.set(true));
+
+        // Assert
+        assertFalse(completed);
+        assertFalse(recomputed.get());
+    }
+
+    @Test
+    void testRecomputeDay_OverwritesOneUtcDay() {
+        // Arrange
+        when(weighingLogBatchWriter.isPostgres()).thenReturn(true);
+        OffsetDateTime start = OffsetDateTime.of(2025, 11, 3, 0, 0, 0, 0, ZoneOffset.UTC);
+        when(jdbcTemplate.update(eq(ScaleRollupAccumulator.recomputeDailySql()), eq(start), eq(start), eq(start.plusDays(1))))
+                .thenReturn(3);
+
+        // Act
+        int rows = accumulator.recomputeDay(LocalDate.of(2025, 11, 3));
+
+        // Assert
+        assertEquals(3, rows);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubTransactions() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Boolean>) invocation.getArgument(0)).doInTransaction(null));
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+    }
+
+    /**
+     * Các dòng upsert vào scale_daily_rollups, theo thứ tự flush
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captureWrittenRows() {
+        List<Object[]> written = new CopyOnWriteArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            written.addAll((List<Object[]>) invocation.getArgument(1));
+            return new int[0];
+        });
+        return written;
+    }
+
+    private static long micros(OffsetDateTime time) {
+        return time.toEpochSecond() * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    private static MeasurementEvent event(long scaleId, String data1, String data2) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .lastTime(ZonedDateTime.now())
+                .data1(data1)
+                .data2(data2)
+                .build();
+    }
+}
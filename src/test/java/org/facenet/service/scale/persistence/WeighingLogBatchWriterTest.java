@@ -0,0 +1,139 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WeighingLogBatchWriter
+ */
+@ExtendWith(MockitoExtension.class)
+class WeighingLogBatchWriterTest {
+
+    private static final long BAD_SCALE_ID = 99L;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private WeighingLogBatchWriter writer;
+
+    private final List<Integer> executedBatchSizes = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        writer = new WeighingLogBatchWriter(jdbcTemplate, transactionTemplate, new PersistenceProperties());
+
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        // Giả lập DB: batch chứa scale BAD_SCALE_ID bị lỗi ràng buộc
+        when(jdbcTemplate.batchUpdate(eq(WeighingLogBatchWriter.INSERT_SQL), any(BatchPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                    List<Long> scaleIds = new ArrayList<>();
+                    PreparedStatement ps = mock(PreparedStatement.class, call -> {
+                        if (call.getMethod().getName().equals("setLong")) {
+                            scaleIds.add(call.getArgument(1));
+                        }
+                        return null;
+                    });
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        setter.setValues(ps, i);
+                    }
+                    executedBatchSizes.add(setter.getBatchSize());
+                    if (scaleIds.contains(BAD_SCALE_ID)) {
+                        throw new DataIntegrityViolationException("constraint violation");
+                    }
+                    return new int[setter.getBatchSize()];
+                });
+    }
+
+    @Test
+    void testWrite_WholeBatchInOneStatementBatch() {
+        // Arrange
+        List<MeasurementEvent> batch = createBatch(1L, 2L, 3L, 4L);
+        List<MeasurementEvent> failed = new ArrayList<>();
+
+        // Act
+        int inserted = writer.write(batch, (event, e) -> failed.add(event));
+
+        // Assert
+        assertEquals(4, inserted);
+        assertTrue(failed.isEmpty());
+        assertEquals(List.of(4), executedBatchSizes);
+    }
+
+    @Test
+    void testWrite_BisectsAndIsolatesFailedRow() {
+        // Arrange
+        List<MeasurementEvent> batch = createBatch(1L, 2L, 3L, BAD_SCALE_ID, 5L, 6L, 7L, 8L);
+        List<MeasurementEvent> failed = new ArrayList<>();
+
+        // Act
+        int inserted = writer.write(batch, (event, e) -> failed.add(event));
+
+        // Assert
+        assertEquals(7, inserted);
+        assertEquals(1, failed.size());
+        assertEquals(BAD_SCALE_ID, failed.get(0).scaleIdAsLong());
+        // 8 -> (4 lỗi -> 2 ok + (2 lỗi -> 1 lỗi + 1 ok)) + 4 ok
+        assertEquals(List.of(8, 4, 2, 2, 1, 1, 4), executedBatchSizes);
+    }
+
+    @Test
+    void testWrite_RetryKeepsCreatedAtAssignedOnFirstAttempt() {
+        // Arrange
+        List<MeasurementEvent> batch = createBatch(1L, 2L, 3L);
+        writer.write(batch, (event, e) -> fail("unexpected failure"));
+        long[] firstAttempt = batch.stream().mapToLong(MeasurementEvent::createdAtMicros).toArray();
+        List<MeasurementEvent> retried = new ArrayList<>(batch);
+        retried.addAll(createBatch(4L));
+
+        // Act
+        writer.write(retried, (event, e) -> fail("unexpected failure"));
+
+        // Assert
+        assertArrayEquals(firstAttempt, batch.stream().mapToLong(MeasurementEvent::createdAtMicros).toArray());
+        assertTrue(firstAttempt[0] > 0 && firstAttempt[0] < firstAttempt[1] && firstAttempt[1] < firstAttempt[2]);
+        assertTrue(retried.get(3).createdAtMicros() > firstAttempt[2]);
+    }
+
+    private List<MeasurementEvent> createBatch(Long... scaleIds) {
+        List<MeasurementEvent> batch = new ArrayList<>();
+        for (Long scaleId : scaleIds) {
+            batch.add(MeasurementEvent.builder()
+                    .scaleId(scaleId)
+                    .lastTime(ZonedDateTime.now())
+                    .data1("150.5")
+                    .status("ONLINE")
+                    .build());
+        }
+        return batch;
+    }
+}
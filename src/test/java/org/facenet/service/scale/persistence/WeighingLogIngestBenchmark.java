@@ -0,0 +1,97 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark throughput ghi weighing_logs: JDBC batch INSERT vs COPY BINARY
+ *
+ * Không phải unit test (không chạy trong mvn test). Chạy với PostgreSQL local đã có schema
+ * (bảng scales có ít nhất 1 cân, bảng weighing_logs):
+ *
+ *   java -cp target/classes:target/test-classes:<dependency classpath> \
+ *        org.facenet.service.scale.persistence.WeighingLogIngestBenchmark \
+ *        "jdbc:postgresql://localhost:3007/scalehub_db?reWriteBatchedInserts=true&options=-c%20TimeZone=UTC" postgres 12345678 200000 1000
+ *
+ * Tham số: JDBC URL, user, password, tổng số dòng, kích thước batch.
+ * In ra rows/s của từng chế độ. Các dòng do benchmark ghi (created_by = engine_modbus, created_at >= lúc bắt đầu)
+ * được xoá sau khi chạy - chỉ chạy trên DB dev, không chạy khi Engine đang ghi dữ liệu thật.
+ */
+public class WeighingLogIngestBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:3007/scalehub_db?reWriteBatchedInserts=true&options=-c%20TimeZone=UTC";
+        String user = args.length > 1 ? args[1] : "postgres";
+        String password = args.length > 2 ? args[2] : "12345678";
+        int totalRows = args.length > 3 ? Integer.parseInt(args[3]) : 200_000;
+        int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url, user, password, true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        WeighingLogBatchWriter insertWriter = new WeighingLogBatchWriter(jdbcTemplate, transactionTemplate,
+                new PersistenceProperties());
+        WeighingLogCopyWriter copyWriter = new WeighingLogCopyWriter(jdbcTemplate, insertWriter);
+
+        List<Long> scaleIds = jdbcTemplate.queryForList("SELECT id FROM scales ORDER BY id LIMIT 300", Long.class);
+        if (scaleIds.isEmpty()) {
+            throw new IllegalStateException("Benchmark needs at least one row in scales");
+        }
+        List<MeasurementEvent> batch = createBatch(scaleIds, batchSize);
+
+        Timestamp startedAt = new Timestamp(System.currentTimeMillis() - 1000);
+        System.out.println("mode,rows,batchSize,elapsedMs,rowsPerSecond");
+        try {
+            // Warm-up mỗi chế độ
+            run("insert", batch, Math.min(totalRows, batchSize * 10), insertWriter, null);
+            run("copy", batch, Math.min(totalRows, batchSize * 10), null, copyWriter);
+
+            System.out.println(run("insert", batch, totalRows, insertWriter, null));
+            System.out.println(run("copy", batch, totalRows, null, copyWriter));
+        } finally {
+            int deleted = jdbcTemplate.update("DELETE FROM weighing_logs WHERE created_by = ? AND created_at >= ?",
+                    WeighingLogBatchWriter.SYSTEM_USER, startedAt);
+            System.out.println("cleanup: deleted " + deleted + " benchmark rows");
+            dataSource.destroy();
+        }
+    }
+
+    private static String run(String mode, List<MeasurementEvent> batch, int totalRows,
+                              WeighingLogBatchWriter insertWriter, WeighingLogCopyWriter copyWriter) {
+        long start = System.nanoTime();
+        int written = 0;
+        while (written < totalRows) {
+            written += insertWriter != null
+                    ? insertWriter.write(batch, (event, e) -> { throw new IllegalStateException(e); })
+                    : copyWriter.write(batch, (event, e) -> { throw new IllegalStateException(e); });
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        return mode + "," + written + "," + batch.size() + "," + elapsedMs + "," + (written * 1000L / elapsedMs);
+    }
+
+    private static List<MeasurementEvent> createBatch(List<Long> scaleIds, int size) {
+        List<MeasurementEvent> batch = new ArrayList<>(size);
+        long now = MeasurementEvent.currentEpochNanos();
+        for (int i = 0; i < size; i++) {
+            batch.add(MeasurementEvent.builder()
+                    .scaleId(scaleIds.get(i % scaleIds.size()))
+                    .epochNanos(now + i * 1_000_000L)
+                    .value(0, 1500.25 + i, false)
+                    .value(1, 25.3, false)
+                    .value(2, 98.2, false)
+                    .value(3, 0, true)
+                    .value(4, 1, true)
+                    .status("ONLINE")
+                    .build());
+        }
+        return batch;
+    }
+}
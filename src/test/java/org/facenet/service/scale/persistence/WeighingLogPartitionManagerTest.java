@@ -0,0 +1,201 @@
+package org.facenet.service.scale.persistence;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.config.PersistenceProperties.PartitionInterval;
+import org.facenet.service.scale.persistence.WeighingLogPartitionManager.PartitionInfo;
+import org.facenet.service.scale.persistence.archive.WeighingLogArchive;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WeighingLogPartitionManager
+ */
+@ExtendWith(MockitoExtension.class)
+class WeighingLogPartitionManagerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 12, 25);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private WeighingLogBatchWriter weighingLogBatchWriter;
+
+    @Mock
+    private WeighingLogRollupService rollupService;
+
+    @Mock
+    private WeighingLogArchive archive;
+
+    private PersistenceProperties properties;
+    private WeighingLogPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PersistenceProperties();
+        manager = new WeighingLogPartitionManager(jdbcTemplate, transactionTemplate, weighingLogBatchWriter, properties,
+                rollupService, archive);
+    }
+
+    @Test
+    void testCreatePartitionSql_DailyAndMonthly() {
+        // Act
+        String daily = WeighingLogPartitionManager.createPartitionSql(TODAY, PartitionInterval.DAILY);
+        String monthly = WeighingLogPartitionManager.createPartitionSql(
+                WeighingLogPartitionManager.periodStart(TODAY, PartitionInterval.MONTHLY), PartitionInterval.MONTHLY);
+
+        // Assert
+        assertEquals("CREATE TABLE IF NOT EXISTS weighing_logs_p20251225 PARTITION OF weighing_logs "
+                + "FOR VALUES FROM ('2025-12-25 00:00:00+00') TO ('2025-12-26 00:00:00+00')", daily);
+        assertEquals("CREATE TABLE IF NOT EXISTS weighing_logs_p202512 PARTITION OF weighing_logs "
+                + "FOR VALUES FROM ('2025-12-01 00:00:00+00') TO ('2026-01-01 00:00:00+00')", monthly);
+    }
+
+    @Test
+    void testValidateLegacyBound_ValidatesCheckOutsideTheConversionLock() {
+        // Arrange: dòng mới nhất nằm sau hôm nay -> bound tính theo dòng đó
+        OffsetDateTime newest = OffsetDateTime.of(2099, 3, 10, 15, 30, 0, 0, ZoneOffset.UTC);
+        when(jdbcTemplate.queryForObject("SELECT max(created_at) FROM weighing_logs", OffsetDateTime.class))
+                .thenReturn(newest);
+
+        // Act
+        LocalDate bound = manager.validateLegacyBound(PartitionInterval.DAILY);
+
+        // Assert
+        assertEquals(LocalDate.of(2099, 3, 11), bound);
+        verify(jdbcTemplate).execute("ALTER TABLE weighing_logs ADD CONSTRAINT weighing_logs_legacy_bound "
+                + "CHECK (created_at < '2099-03-11 00:00:00+00') NOT VALID");
+        verify(jdbcTemplate).execute("ALTER TABLE weighing_logs VALIDATE CONSTRAINT weighing_logs_legacy_bound");
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreatePartitions_SkipsRangesAlreadyCovered() {
+        // Arrange
+        properties.getPartition().setPremake(2);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(
+                new PartitionInfo("weighing_logs_legacy", false, null, utc(TODAY.plusDays(1))),
+                new PartitionInfo("weighing_logs_default", true, null, null)));
+
+        // Act
+        manager.createPartitions(TODAY, properties.getPartition());
+
+        // Assert
+        verify(jdbcTemplate, never()).execute(
+                WeighingLogPartitionManager.createPartitionSql(TODAY, PartitionInterval.DAILY));
+        verify(jdbcTemplate).execute(
+                WeighingLogPartitionManager.createPartitionSql(TODAY.plusDays(1), PartitionInterval.DAILY));
+        verify(jdbcTemplate).execute(
+                WeighingLogPartitionManager.createPartitionSql(TODAY.plusDays(2), PartitionInterval.DAILY));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testApplyRetention_DropsOnlyExpiredPartitions() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(
+                new PartitionInfo("weighing_logs_legacy", false, null, utc(TODAY.minusDays(40))),
+                new PartitionInfo("weighing_logs_p20251124", false, utc(TODAY.minusDays(31)), utc(TODAY.minusDays(30))),
+                new PartitionInfo("weighing_logs_p20251125", false, utc(TODAY.minusDays(30)), utc(TODAY.minusDays(29))),
+                new PartitionInfo("weighing_logs_default", true, null, null)));
+
+        // Act
+        manager.applyRetention(TODAY.minusDays(30), properties.getPartition());
+
+        // Assert
+        verify(jdbcTemplate).execute("DROP TABLE \"weighing_logs_legacy\"");
+        verify(jdbcTemplate).execute("DROP TABLE \"weighing_logs_p20251124\"");
+        verify(jdbcTemplate, never()).execute("DROP TABLE \"weighing_logs_p20251125\"");
+        verify(jdbcTemplate, never()).execute("DROP TABLE \"weighing_logs_default\"");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testApplyRetention_DetachKeepsTable() {
+        // Arrange
+        properties.getPartition().setRetentionAction(PersistenceProperties.RetentionAction.DETACH);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(
+                new PartitionInfo("weighing_logs_p20251101", false, utc(TODAY.minusDays(54)), utc(TODAY.minusDays(53)))));
+
+        // Act
+        manager.applyRetention(TODAY.minusDays(30), properties.getPartition());
+
+        // Assert
+        verify(jdbcTemplate).execute("ALTER TABLE weighing_logs DETACH PARTITION \"weighing_logs_p20251101\"");
+        verify(jdbcTemplate, never()).execute(startsWith("DROP"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testApplyRetention_ArchivesInOrderAndKeepsPartitionOnFailure() throws Exception {
+        // Arrange
+        OffsetDateTime firstEnd = utc(TODAY.minusDays(40));
+        OffsetDateTime secondEnd = utc(TODAY.minusDays(39));
+        when(archive.isEnabled()).thenReturn(true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(
+                new PartitionInfo("weighing_logs_p20251116", false, firstEnd, secondEnd),
+                new PartitionInfo("weighing_logs_p20251115", false, firstEnd.minusDays(1), firstEnd)));
+        when(archive.archivePartition(eq("weighing_logs_p20251115"), any())).thenReturn(10L);
+        doThrow(new IOException("disk full")).when(archive).archivePartition(eq("weighing_logs_p20251116"), any());
+
+        // Act
+        manager.applyRetention(TODAY.minusDays(30), properties.getPartition());
+
+        // Assert
+        verify(archive).archivePartition("weighing_logs_p20251115", firstEnd);
+        verify(jdbcTemplate).execute("DROP TABLE \"weighing_logs_p20251115\"");
+        verify(jdbcTemplate, never()).execute("DROP TABLE \"weighing_logs_p20251116\"");
+    }
+
+    @Test
+    void testRetentionCutoff_ClampedToMinuteRollup() {
+        // Arrange
+        when(rollupService.isAvailable()).thenReturn(true);
+        when(rollupService.rolledUntil(RollupTier.MINUTE)).thenReturn(utc(TODAY.minusDays(40)).plusHours(5));
+
+        // Act
+        LocalDate clamped = manager.retentionCutoff(TODAY.minusDays(30));
+        LocalDate notClamped = manager.retentionCutoff(TODAY.minusDays(60));
+
+        // Assert
+        assertEquals(TODAY.minusDays(40), clamped);
+        assertEquals(TODAY.minusDays(60), notClamped);
+    }
+
+    @Test
+    void testRetentionCutoff_DeferredUntilRollupAvailable() {
+        // Arrange
+        when(rollupService.isAvailable()).thenReturn(false);
+
+        // Act & Assert
+        assertNull(manager.retentionCutoff(TODAY.minusDays(30)));
+
+        properties.getRollup().setEnabled(false);
+        assertEquals(TODAY.minusDays(30), manager.retentionCutoff(TODAY.minusDays(30)));
+    }
+
+    private static OffsetDateTime utc(LocalDate date) {
+        return date.atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,51 @@
+package org.facenet.service.scale.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WeighingLogRollupService SQL generation
+ */
+class WeighingLogRollupServiceTest {
+
+    @Test
+    void testRollupSql_MinuteReadsRawValues() {
+        // Act
+        String sql = WeighingLogRollupService.rollupSql(RollupTier.MINUTE);
+
+        // Assert
+        assertTrue(sql.startsWith("INSERT INTO weighing_logs_1m (scale_id, bucket, sample_count, last_time, min_1,"));
+        assertTrue(sql.contains("date_trunc('minute', created_at AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'"));
+        assertTrue(sql.contains("COALESCE(value_5, CASE WHEN jsonb_typeof(data_5) = 'number' THEN data_5::float8 END) AS v5"));
+        assertTrue(sql.contains("FROM weighing_logs WHERE created_at >= ? AND created_at < ?"));
+        assertTrue(sql.endsWith("last_5 = EXCLUDED.last_5"));
+    }
+
+    @Test
+    void testRollupSql_HourMergesMinuteTier() {
+        // Act
+        String sql = WeighingLogRollupService.rollupSql(RollupTier.HOUR);
+
+        // Assert
+        assertTrue(sql.startsWith("INSERT INTO weighing_logs_1h "));
+        assertTrue(sql.contains("sum(sample_count)"));
+        assertTrue(sql.contains("min(min_2), max(max_2), sum(sum_2), sum(count_2)"));
+        assertTrue(sql.contains("FROM weighing_logs_1m WHERE bucket >= ? AND bucket < ?"));
+    }
+
+    @Test
+    void testTruncate_UsesUtcBoundaries() {
+        // Arrange
+        OffsetDateTime time = OffsetDateTime.of(2025, 12, 25, 8, 37, 12, 0, ZoneOffset.ofHours(7));
+
+        // Act & Assert
+        assertEquals(OffsetDateTime.of(2025, 12, 25, 1, 37, 0, 0, ZoneOffset.UTC),
+                WeighingLogRollupService.truncate(time, RollupTier.MINUTE));
+        assertEquals(OffsetDateTime.of(2025, 12, 25, 1, 0, 0, 0, ZoneOffset.UTC),
+                WeighingLogRollupService.truncate(time, RollupTier.HOUR));
+    }
+}
@@ -0,0 +1,60 @@
+package org.facenet.service.scale.persistence.archive;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ArchiveBlockCodec
+ */
+class ArchiveBlockCodecTest {
+
+    private static final long START = 1_766_620_800_000_000L; // 2025-12-25T00:00:00Z
+
+    @Test
+    void testEncodeDecode_RoundTripsAllColumns() throws Exception {
+        // Arrange
+        ArchiveBlock block = new ArchiveBlock(4);
+        block.add(START, START - 1_500, 0b00011, new double[]{150.5, 2, 0, 0, 0}, "1", new String[]{null, null, "OK", null, null});
+        block.add(START + 100_000, START + 98_700, 0b00011, new double[]{150.5, 3, 0, 0, 0}, "1", new String[]{null, null, "OK", null, null});
+        block.add(START + 200_013, ArchiveBlock.NO_TIME, 0b10001, new double[]{-0.25, 0, 0, 0, Double.NaN}, null, new String[]{null, "[1,2]", "ERR", "", null});
+        block.add(START + 86_400_000_000L, START, 0b00001, new double[]{1e12, 0, 0, 0, 0}, "0", new String[]{null, "x", null, null, null});
+
+        // Act
+        ArchiveBlock decoded = ArchiveBlockCodec.decode(ArchiveBlockCodec.encode(block));
+
+        // Assert
+        assertEquals(block.size(), decoded.size());
+        for (int row = 0; row < block.size(); row++) {
+            assertEquals(block.createdAt(row), decoded.createdAt(row));
+            assertEquals(block.lastTime(row), decoded.lastTime(row));
+            assertEquals(block.validMask(row), decoded.validMask(row));
+            assertEquals(block.createdBy(row), decoded.createdBy(row));
+            for (int slot = 0; slot < 5; slot++) {
+                if (block.isValid(row, slot)) {
+                    assertEquals(Double.doubleToRawLongBits(block.value(row, slot)),
+                            Double.doubleToRawLongBits(decoded.value(row, slot)));
+                } else {
+                    assertEquals(block.text(row, slot), decoded.text(row, slot));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEncode_RegularSeriesCompressesWell() throws Exception {
+        // Arrange - 10 Hz, slowly changing weight
+        ArchiveBlock block = new ArchiveBlock(10_000);
+        String[] noText = new String[5];
+        for (int i = 0; i < 10_000; i++) {
+            long time = START + i * 100_000L;
+            block.add(time, time - 2_000, 0b00001, new double[]{1000 + (i / 50) * 0.5, 0, 0, 0, 0}, "1", noText);
+        }
+
+        // Act
+        byte[] encoded = ArchiveBlockCodec.encode(block);
+
+        // Assert - raw row would be at least 8 (time) + 8 (last_time) + 8 (value) bytes
+        assertTrue(encoded.length < 10_000 * 24 / 20, "encoded size " + encoded.length);
+    }
+}
@@ -0,0 +1,71 @@
+package org.facenet.service.scale.persistence.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ArchiveFile
+ */
+class ArchiveFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAppend_SkipsExistingChunkAndReadsBack() throws Exception {
+        // Arrange
+        Path path = tempDir.resolve("7").resolve("2025-12.wla");
+
+        // Act
+        boolean first = ArchiveFile.append(path, "weighing_logs_p20251201", 0, block(1_000_000L, 3));
+        boolean again = ArchiveFile.append(path, "weighing_logs_p20251201", 0, block(1_000_000L, 3));
+        boolean next = ArchiveFile.append(path, "weighing_logs_p20251202", 0, block(90_000_000_000L, 2));
+        List<ArchiveFile.BlockHeader> headers = ArchiveFile.scan(path);
+
+        // Assert
+        assertTrue(first);
+        assertFalse(again);
+        assertTrue(next);
+        assertEquals(2, headers.size());
+        assertEquals(1_000_000L, headers.get(0).minMicros());
+        assertEquals(1_000_000L + 2 * 100_000L, headers.get(0).maxMicros());
+        ArchiveBlock read = ArchiveFile.read(path, headers.get(1));
+        assertEquals(2, read.size());
+        assertEquals(90_000_000_000L + 100_000L, read.createdAt(1));
+    }
+
+    @Test
+    void testAppend_TruncatesTornTrailingBlock() throws Exception {
+        // Arrange
+        Path path = tempDir.resolve("2025-12.wla");
+        ArchiveFile.append(path, "p1", 0, block(1_000_000L, 3));
+        ArchiveFile.append(path, "p2", 0, block(2_000_000L, 3));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        // Act
+        List<ArchiveFile.BlockHeader> torn = ArchiveFile.scan(path);
+        boolean rewritten = ArchiveFile.append(path, "p2", 0, block(2_000_000L, 3));
+
+        // Assert
+        assertEquals(1, torn.size());
+        assertTrue(rewritten);
+        assertEquals(2, ArchiveFile.scan(path).size());
+    }
+
+    private static ArchiveBlock block(long start, int rows) {
+        ArchiveBlock block = new ArchiveBlock(rows);
+        for (int i = 0; i < rows; i++) {
+            block.add(start + i * 100_000L, ArchiveBlock.NO_TIME, 0b00001,
+                    new double[]{i, 0, 0, 0, 0}, "1", new String[5]);
+        }
+        return block;
+    }
+}
@@ -0,0 +1,202 @@
+package org.facenet.service.scale.persistence.journal;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementEventPool;
+import org.facenet.service.scale.persistence.BatchPersistenceService;
+import org.facenet.service.scale.persistence.DeadLetterService;
+import org.facenet.service.scale.persistence.ScaleCurrentStateUpsertWriter;
+import org.facenet.service.scale.persistence.ScaleRollupAccumulator;
+import org.facenet.service.scale.persistence.WeighingLogBatchWriter;
+import org.facenet.service.scale.persistence.WeighingLogCopyWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for JournalConsumer (journal thật trên thư mục tạm, các writer DB được mock)
+ */
+@ExtendWith(MockitoExtension.class)
+class JournalConsumerTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private WeighingLogBatchWriter weighingLogBatchWriter;
+
+    @Mock
+    private WeighingLogCopyWriter weighingLogCopyWriter;
+
+    @Mock
+    private ScaleCurrentStateUpsertWriter currentStateUpsertWriter;
+
+    @Mock
+    private DeadLetterService deadLetterService;
+
+    @Mock
+    private ScaleRollupAccumulator rollupAccumulator;
+
+    private final MeasurementEventPool eventPool = new MeasurementEventPool(64);
+    private final List<ExecutorService> executors = new ArrayList<>();
+    private final List<BatchPersistenceService> services = new ArrayList<>();
+    private PersistenceProperties properties;
+    private MeasurementJournal journal;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        properties = new PersistenceProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setFsyncIntervalMs(0);
+        properties.getJournal().setCheckpointIntervalMs(20);
+        properties.getJournal().setIdlePollMs(5);
+        properties.getBatch().setWriters(2);
+        properties.getBatch().setTimeoutMs(20);
+        journal = openJournal();
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(BatchPersistenceService::stopBatchProcessing);
+        executors.forEach(ExecutorService::shutdownNow);
+        journal.close();
+    }
+
+    @Test
+    void testConsume_StopsReadingAtMaxInFlight() throws Exception {
+        // Arrange
+        properties.getJournal().setMaxInFlight(5);
+        properties.getJournal().setReadBatchSize(1);
+        List<Long> offsets = appendEvents(1, 20);
+        BatchPersistenceService service = createService();
+        JournalConsumer consumer = new JournalConsumer(journal, service, eventPool, properties);
+        when(weighingLogBatchWriter.write(anyList(), any())).thenAnswer(invocation ->
+                ((List<?>) invocation.getArgument(0)).size());
+
+        // Act: writer chưa chạy -> queue không được drain
+        consumer.start();
+        awaitTrue(() -> service.getPendingCount() == 5);
+        Thread.sleep(100);
+        int pendingAtLimit = service.getPendingCount();
+        long positionAtLimit = consumer.getPosition();
+        service.startBatchProcessing();
+
+        // Assert
+        assertEquals(5, pendingAtLimit);
+        assertEquals(offsets.get(5), positionAtLimit);
+        awaitTrue(() -> consumer.getPosition() == journal.getWriteOffset() && service.getPendingCount() == 0);
+        consumer.stop();
+        verify(weighingLogBatchWriter, atLeastOnce()).write(anyList(), any());
+    }
+
+    @Test
+    void testRestart_ReplaysFromCommittedWatermark() throws Exception {
+        // Arrange: lần chạy 1 ghi xong scale 1-4, sau đó writer của các cân chẵn bị treo từ scale 6
+        Set<Long> persisted = ConcurrentHashMap.newKeySet();
+        CountDownLatch stuck = new CountDownLatch(1);
+        when(weighingLogBatchWriter.write(anyList(), any())).thenAnswer(invocation -> {
+            List<MeasurementEvent> batch = invocation.getArgument(0);
+            for (MeasurementEvent event : batch) {
+                if (event.scaleIdAsLong() >= 6 && event.scaleIdAsLong() % 2 == 0) {
+                    stuck.await();
+                }
+            }
+            batch.forEach(event -> persisted.add(event.scaleIdAsLong()));
+            return batch.size();
+        });
+        BatchPersistenceService first = createService();
+        JournalConsumer firstConsumer = new JournalConsumer(journal, first, eventPool, properties);
+        first.startBatchProcessing();
+        firstConsumer.start();
+        appendEvents(1, 4);
+        awaitTrue(() -> first.getCommittedJournalOffset() == journal.getWriteOffset());
+        long phaseOneEnd = journal.getWriteOffset();
+        appendEvents(5, 10);
+        awaitTrue(() -> persisted.containsAll(List.of(5L, 7L, 9L)));
+
+        // Act: dừng khi batch của scale 6 chưa xong (giả lập crash), rồi khởi động lại
+        firstConsumer.stop();
+        long checkpoint = journal.getCheckpoint();
+        first.stopBatchProcessing();
+        executors.get(0).shutdownNow();
+        assertTrue(executors.get(0).awaitTermination(5, TimeUnit.SECONDS));
+        journal.close();
+        persisted.clear();
+        stuck.countDown();
+
+        journal = openJournal();
+        BatchPersistenceService second = createService();
+        JournalConsumer secondConsumer = new JournalConsumer(journal, second, eventPool, properties);
+        second.startBatchProcessing();
+        secondConsumer.start();
+        awaitTrue(() -> persisted.containsAll(List.of(6L, 8L, 10L)));
+        secondConsumer.stop();
+
+        // Assert
+        assertEquals(phaseOneEnd, checkpoint);
+        assertTrue(persisted.containsAll(List.of(5L, 6L, 7L, 8L, 9L, 10L)), "at-least-once: " + persisted);
+        for (long scaleId = 1; scaleId <= 4; scaleId++) {
+            assertFalse(persisted.contains(scaleId), "scale " + scaleId + " was committed before the restart");
+        }
+    }
+
+    private BatchPersistenceService createService() {
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getBatch().getWriters());
+        executors.add(executor);
+        BatchPersistenceService service = new BatchPersistenceService(weighingLogBatchWriter, weighingLogCopyWriter,
+                currentStateUpsertWriter, deadLetterService, rollupAccumulator, executor, properties);
+        services.add(service);
+        return service;
+    }
+
+    private MeasurementJournal openJournal() throws Exception {
+        MeasurementJournal opened = new MeasurementJournal(properties);
+        opened.start();
+        return opened;
+    }
+
+    private List<Long> appendEvents(long fromScaleId, long toScaleId) throws Exception {
+        List<Long> offsets = new ArrayList<>();
+        for (long scaleId = fromScaleId; scaleId <= toScaleId; scaleId++) {
+            offsets.add(journal.append(MeasurementEvent.builder()
+                    .scaleId(scaleId)
+                    .lastTime(ZonedDateTime.now())
+                    .data1("150.5")
+                    .status("ONLINE")
+                    .build()));
+        }
+        return offsets;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within 5s");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
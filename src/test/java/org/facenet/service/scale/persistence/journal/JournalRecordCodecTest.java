@@ -0,0 +1,51 @@
+package org.facenet.service.scale.persistence.journal;
+
+import org.facenet.event.MeasurementEvent;
+import org.facenet.event.MeasurementStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JournalRecordCodec
+ */
+class JournalRecordCodecTest {
+
+    @Test
+    void testRoundTrip_PreservesValuesTextStatusAndCreatedAt() {
+        // Arrange
+        MeasurementEvent original = MeasurementEvent.builder()
+                .scaleId(7L)
+                .epochNanos(1_700_000_000_123_000_000L)
+                .value(0, 150.5, false)
+                .value(1, 12, true)
+                .data3("0150.50")
+                .data4("OK")
+                .status("online")
+                .build();
+        original.setCreatedAtMicros(1_700_000_000_123_456L);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        // Act
+        JournalRecordCodec.encode(original, buffer);
+        buffer.flip();
+        MeasurementEvent decoded = new MeasurementEvent();
+        JournalRecordCodec.decode(buffer, decoded);
+
+        // Assert
+        assertFalse(buffer.hasRemaining());
+        assertEquals(7L, decoded.scaleIdAsLong());
+        assertEquals(original.epochNanos(), decoded.epochNanos());
+        assertEquals(1_700_000_000_123_456L, decoded.createdAtMicros());
+        assertEquals("150.50", decoded.getData1());
+        assertEquals("12", decoded.getData2());
+        assertEquals("0150.50", decoded.getData3());
+        assertEquals(150.5, decoded.value(2));
+        assertEquals("OK", decoded.getData4());
+        assertNull(decoded.getData5());
+        assertEquals("online", decoded.getStatus());
+        assertEquals(MeasurementStatus.ONLINE, decoded.measurementStatus());
+    }
+}
@@ -0,0 +1,143 @@
+package org.facenet.service.scale.persistence.journal;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.event.MeasurementEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MeasurementJournal
+ */
+class MeasurementJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private PersistenceProperties properties;
+    private MeasurementJournal journal;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        properties = new PersistenceProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setSegmentSizeBytes(256);
+        properties.getJournal().setFsyncIntervalMs(0);
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void testAppendAndRead_AcrossSegments() throws Exception {
+        // Arrange
+        List<Long> offsets = appendEvents(20);
+
+        // Act
+        List<Long> scaleIds = new ArrayList<>();
+        List<Long> readOffsets = new ArrayList<>();
+        long next = journal.read(0L, 100, (offset, payload) -> {
+            readOffsets.add(offset);
+            scaleIds.add(decode(payload).scaleIdAsLong());
+        });
+
+        // Assert
+        assertTrue(journal.getSegmentCount() > 1);
+        assertEquals(offsets, readOffsets);
+        assertEquals(19L, scaleIds.get(19));
+        assertEquals(journal.getWriteOffset(), next);
+        assertEquals(next, journal.read(next, 100, (offset, payload) -> fail("no more records expected")));
+    }
+
+    @Test
+    void testCheckpoint_DeletesConsumedSegmentsAndResumesAfterReopen() throws Exception {
+        // Arrange
+        List<Long> offsets = appendEvents(20);
+        int segmentsBefore = journal.getSegmentCount();
+
+        // Act
+        journal.checkpoint(offsets.get(10));
+        journal.close();
+        journal = open();
+        List<Long> replayed = new ArrayList<>();
+        journal.read(journal.getCheckpoint(), 100, (offset, payload) -> replayed.add(decode(payload).scaleIdAsLong()));
+
+        // Assert
+        assertTrue(journal.getSegmentCount() < segmentsBefore);
+        assertEquals(offsets.get(10), journal.getCheckpoint());
+        assertEquals(10, replayed.size());
+        assertEquals(10L, replayed.get(0));
+    }
+
+    @Test
+    void testOpen_TruncatesTornRecordAtTail() throws Exception {
+        // Arrange
+        appendEvents(3);
+        long end = journal.getWriteOffset();
+        journal.close();
+        try (FileChannel channel = FileChannel.open(lastSegment(), StandardOpenOption.WRITE)) {
+            // Header của record chưa ghi xong: length != 0 nhưng payload/CRC không khớp
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 20, 1, 2, 3, 4, 9, 9}), end);
+        }
+
+        // Act
+        journal = open();
+        journal.append(createEvent(42L));
+        List<Long> scaleIds = new ArrayList<>();
+        journal.read(0L, 100, (offset, payload) -> scaleIds.add(decode(payload).scaleIdAsLong()));
+
+        // Assert
+        assertEquals(List.of(0L, 1L, 2L, 42L), scaleIds);
+    }
+
+    private MeasurementJournal open() throws Exception {
+        MeasurementJournal opened = new MeasurementJournal(properties);
+        opened.start();
+        return opened;
+    }
+
+    private List<Long> appendEvents(int count) throws Exception {
+        List<Long> offsets = new ArrayList<>();
+        for (long scaleId = 0; scaleId < count; scaleId++) {
+            offsets.add(journal.append(createEvent(scaleId)));
+        }
+        return offsets;
+    }
+
+    private Path lastSegment() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).sorted().reduce((first, second) -> second).orElseThrow();
+        }
+    }
+
+    private MeasurementEvent decode(ByteBuffer payload) {
+        MeasurementEvent event = new MeasurementEvent();
+        JournalRecordCodec.decode(payload, event);
+        return event;
+    }
+
+    private MeasurementEvent createEvent(long scaleId) {
+        return MeasurementEvent.builder()
+                .scaleId(scaleId)
+                .epochNanos(1_700_000_000_000_000_000L + scaleId)
+                .value(0, 150.5, false)
+                .status("ONLINE")
+                .build();
+    }
+}
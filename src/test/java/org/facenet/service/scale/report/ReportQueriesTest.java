@@ -0,0 +1,105 @@
+package org.facenet.service.scale.report;
+
+import org.facenet.dto.scale.ReportRequestDto;
+import org.facenet.service.scale.persistence.WeighingLogRollupService;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ReportQueries
+ */
+class ReportQueriesTest {
+
+    private static final LocalDate FROM_DATE = LocalDate.of(2025, 12, 1);
+    private static final LocalDate TO_DATE = LocalDate.of(2025, 12, 31);
+    private static final OffsetDateTime FROM = FROM_DATE.atStartOfDay().atOffset(ZoneOffset.UTC);
+    private static final OffsetDateTime TO = TO_DATE.plusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+
+    @Test
+    void testSlot_RejectsFieldsOutsideWhitelist() {
+        // Act & Assert
+        assertEquals(4, ReportQueries.slot("data_4"));
+        assertThrows(IllegalArgumentException.class, () -> ReportQueries.slot("data_1) FROM users --"));
+        assertThrows(IllegalArgumentException.class, () -> ReportQueries.slot("created_by"));
+    }
+
+    @Test
+    void testAdHoc_SqlDoesNotDependOnScaleIds() {
+        // Act
+        ReportQuery one = ReportQueries.adHoc(request(List.of(7L), ReportRequestDto.TimeInterval.HOUR), FROM, TO);
+        ReportQuery many = ReportQueries.adHoc(request(List.of(1L, 2L, 3L), ReportRequestDto.TimeInterval.HOUR),
+                FROM, TO);
+
+        // Assert
+        assertEquals(one.sql(), many.sql());
+        assertTrue(one.sql().contains("scale_id = ANY(?) AND created_at >= ? AND created_at < ?"));
+        assertTrue(one.sql().contains("AVG(" + WeighingLogRollupService.rawValueExpression(2) + ")"));
+        assertEquals(List.of(new ReportQuery.BigintArray(List.of(1L, 2L, 3L)), FROM, TO), many.params());
+    }
+
+    @Test
+    void testAdHoc_CoarseIntervalsUseDateOnlyBuckets() {
+        // Act
+        ReportQuery query = ReportQueries.adHoc(request(List.of(7L), ReportRequestDto.TimeInterval.MONTH), FROM, TO);
+
+        // Assert
+        assertTrue(query.sql().contains("TO_CHAR(DATE_TRUNC('month', created_at), 'YYYY-MM-DD')"));
+        assertTrue(query.sql().contains("created_at >= ? AND created_at < ?"));
+        assertEquals(List.of(new ReportQuery.BigintArray(List.of(7L)), FROM, TO), query.params());
+    }
+
+    @Test
+    void testDailyRollup_WeightsAverageByCount() {
+        // Act
+        ReportQuery query = ReportQueries.dailyRollup(request(List.of(7L), ReportRequestDto.TimeInterval.WEEK));
+
+        // Assert
+        assertTrue(query.sql().contains("SUM(sum_2) / NULLIF(SUM(count_2), 0)"));
+        assertTrue(query.sql().contains("scale_id = ANY(?) AND bucket >= ? AND bucket < ?"));
+        assertEquals(List.of(new ReportQuery.BigintArray(List.of(7L)), FROM, TO), query.params());
+    }
+
+    @Test
+    void testSetter_BindsScaleIdsAsBigintArray() throws Exception {
+        // Arrange
+        PreparedStatement ps = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        Array array = mock(Array.class);
+        when(ps.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf(eq("bigint"), any(Object[].class))).thenReturn(array);
+        ReportQuery query = ReportQueries.adHoc(request(List.of(1L, 2L), ReportRequestDto.TimeInterval.DAY),
+                FROM, TO);
+
+        // Act
+        query.setter().setValues(ps);
+
+        // Assert
+        verify(connection).createArrayOf("bigint", new Object[]{1L, 2L});
+        verify(ps).setArray(1, array);
+        verify(ps).setObject(2, FROM);
+        verify(ps).setObject(3, TO);
+    }
+
+    private static ReportRequestDto request(List<Long> scaleIds, ReportRequestDto.TimeInterval interval) {
+        return ReportRequestDto.builder()
+                .scaleIds(scaleIds)
+                .dataField("data_2")
+                .method(ReportRequestDto.AggregationMethod.AVG)
+                .fromDate(FROM_DATE)
+                .toDate(TO_DATE)
+                .interval(interval)
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package org.facenet.service.scale.report;
+
+import org.facenet.config.PersistenceProperties;
+import org.facenet.config.ReportProperties;
+import org.facenet.dto.scale.ReportRequestDto;
+import org.facenet.dto.scale.ReportResponseDto;
+import org.facenet.service.scale.persistence.ScaleRollupAccumulator;
+import org.facenet.service.scale.persistence.WeighingLogRollupService;
+import org.facenet.service.scale.persistence.archive.WeighingLogArchive;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ReportServiceImpl
+ */
+@ExtendWith(MockitoExtension.class)
+class ReportServiceImplTest {
+
+    private static final OffsetDateTime FROM = OffsetDateTime.of(2025, 11, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime ARCHIVED_UNTIL = FROM.plusDays(2);
+    private static final OffsetDateTime TO = FROM.plusDays(4);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private WeighingLogRollupService rollupService;
+
+    @Mock
+    private WeighingLogArchive archive;
+
+    @Mock
+    private ScaleRollupAccumulator rollupAccumulator;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ReportServiceImpl reportService;
+
+    @BeforeEach
+    void setUp() {
+        reportService = new ReportServiceImpl(jdbcTemplate, new PersistenceProperties(), rollupService, archive,
+                rollupAccumulator, new ReportProperties(), transactionTemplate, mock(ExecutorService.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGenerateReport_SplitsRangeAtArchivedUntil() throws Exception {
+        // Arrange: 01-02/11 đã archive, 03-04/11 còn trong database
+        when(archive.isEnabled()).thenReturn(true);
+        when(archive.archivedUntil()).thenReturn(ARCHIVED_UNTIL);
+        when(rollupService.isAvailable()).thenReturn(false);
+        doAnswer(invocation -> {
+            WeighingLogArchive.ValueHandler handler = invocation.getArgument(4);
+            long dayMicros = 86_400_000_000L;
+            long fromMicros = FROM.toEpochSecond() * 1_000_000L;
+            handler.accept(fromMicros + 1_000_000L, 2.0);
+            handler.accept(fromMicros + 2_000_000L, 4.0);
+            handler.accept(fromMicros + dayMicros + 5_000_000L, 10.0);
+            return null;
+        }).when(archive).scan(eq(7L), eq(0), eq(FROM), eq(ARCHIVED_UNTIL), any());
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+                .thenReturn(List.of(ReportResponseDto.DataPoint.builder().time("2025-11-03 00:00").value(5.0).build()));
+        ReportRequestDto request = ReportRequestDto.builder()
+                .scaleIds(List.of(7L))
+                .dataField("data_1")
+                .method(ReportRequestDto.AggregationMethod.AVG)
+                .fromDate(LocalDate.of(2025, 11, 1))
+                .toDate(LocalDate.of(2025, 11, 4))
+                .interval(ReportRequestDto.TimeInterval.DAY)
+                .build();
+
+        // Act
+        ReportResponseDto response = reportService.generateReport(request);
+
+        // Assert: mỗi ngày chỉ đến từ 1 nguồn, phần database bắt đầu đúng tại archivedUntil
+        List<ReportResponseDto.DataPoint> points = response.getDataPoints();
+        assertEquals(List.of("2025-11-01 00:00", "2025-11-02 00:00", "2025-11-03 00:00"),
+                points.stream().map(ReportResponseDto.DataPoint::getTime).toList());
+        assertEquals(3.0, points.get(0).getValue());
+        assertEquals(10.0, points.get(1).getValue());
+        assertEquals(5.0, points.get(2).getValue());
+
+        ArgumentCaptor<PreparedStatementSetter> setter = ArgumentCaptor.forClass(PreparedStatementSetter.class);
+        verify(jdbcTemplate).query(anyString(), setter.capture(), any(RowMapper.class));
+        PreparedStatement ps = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        when(ps.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf(eq("bigint"), any())).thenReturn(mock(Array.class));
+        setter.getValue().setValues(ps);
+        verify(ps).setObject(2, ARCHIVED_UNTIL);
+        verify(ps).setObject(3, TO);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGenerateReport_ReadsHourTierWhenItCoversArchivedRange() throws Exception {
+        // Arrange
+        when(archive.isEnabled()).thenReturn(true);
+        when(archive.archivedUntil()).thenReturn(ARCHIVED_UNTIL);
+        when(rollupService.isAvailable()).thenReturn(true);
+        when(rollupService.coveredFrom(any())).thenReturn(FROM.minusDays(30));
+        when(rollupService.rolledUntil(any())).thenReturn(TO);
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+                .thenReturn(List.of());
+        ReportRequestDto request = ReportRequestDto.builder()
+                .scaleIds(List.of(7L))
+                .dataField("data_1")
+                .method(ReportRequestDto.AggregationMethod.SUM)
+                .fromDate(LocalDate.of(2025, 11, 1))
+                .toDate(LocalDate.of(2025, 11, 4))
+                .interval(ReportRequestDto.TimeInterval.HOUR)
+                .build();
+
+        // Act
+        reportService.generateReport(request);
+
+        // Assert
+        verify(archive, never()).scan(anyLong(), anyInt(), any(), any(), any());
+        verify(jdbcTemplate).query(contains("weighing_logs_1h"), any(PreparedStatementSetter.class), any(RowMapper.class));
+    }
+}
@@ -0,0 +1,64 @@
+package org.facenet.service.scale.report;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReportStreamWriter
+ */
+class ReportStreamWriterTest {
+
+    @Test
+    void testNdjson_OneObjectPerLine() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportStreamWriter writer = new ReportStreamWriter(ReportStreamFormat.NDJSON, out);
+
+        // Act
+        writer.start();
+        writer.write("2025-12-01 00:00", 12.5);
+        writer.write("2025-12-01 01:00", null);
+        writer.finish();
+
+        // Assert
+        assertEquals("{\"time\":\"2025-12-01 00:00\",\"value\":12.5}\n"
+                        + "{\"time\":\"2025-12-01 01:00\",\"value\":null}\n",
+                out.toString(StandardCharsets.UTF_8));
+        assertEquals(2, writer.rows());
+    }
+
+    @Test
+    void testCsv_WritesHeaderAndEmptyNullValues() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportStreamWriter writer = new ReportStreamWriter(ReportStreamFormat.CSV, out);
+
+        // Act
+        writer.start();
+        writer.write("2025-12-01", 3.0);
+        writer.write("2025-12-02", null);
+        writer.finish();
+
+        // Assert
+        assertEquals("time,value\n2025-12-01,3.0\n2025-12-02,\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWrite_BuffersUntilFinish() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportStreamWriter writer = new ReportStreamWriter(ReportStreamFormat.NDJSON, out);
+
+        // Act
+        writer.write("2025-12-01 00:00", 1.0);
+
+        // Assert
+        assertEquals(0, out.size());
+        writer.finish();
+        assertTrue(out.size() > 0);
+    }
+}
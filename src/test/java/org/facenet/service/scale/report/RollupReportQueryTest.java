@@ -0,0 +1,64 @@
+package org.facenet.service.scale.report;
+
+import org.facenet.dto.scale.ReportRequestDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RollupReportQuery
+ */
+class RollupReportQueryTest {
+
+    private static final OffsetDateTime FROM = OffsetDateTime.of(2025, 12, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime TO = FROM.plusDays(3);
+    private static final ReportQuery.BigintArray IDS = new ReportQuery.BigintArray(List.of(1L, 2L));
+
+    @Test
+    void testBuild_SplitsRangeAcrossTiers() {
+        // Arrange
+        OffsetDateTime hourUntil = FROM.plusDays(2).plusHours(5);
+        OffsetDateTime minuteUntil = hourUntil.plusMinutes(42);
+
+        // Act
+        ReportQuery query = RollupReportQuery.build(ReportRequestDto.AggregationMethod.AVG, "hour", IDS, 3,
+                FROM, TO, hourUntil, minuteUntil);
+
+        // Assert
+        assertTrue(query.sql().contains("FROM weighing_logs_1h"));
+        assertTrue(query.sql().contains("FROM weighing_logs_1m"));
+        assertTrue(query.sql().contains("scale_id = ANY(?) AND created_at >= ? AND created_at < ?"));
+        assertTrue(query.sql().contains("SUM(sum_3)"));
+        assertTrue(query.sql().contains("SUM(s) / NULLIF(SUM(c), 0) AS aggregated_value"));
+        assertEquals(List.of(IDS, FROM, hourUntil, IDS, hourUntil, minuteUntil, IDS, minuteUntil, TO), query.params());
+    }
+
+    @Test
+    void testBuild_RangeBeforeWatermarksUsesHourTierOnly() {
+        // Act
+        ReportQuery query = RollupReportQuery.build(ReportRequestDto.AggregationMethod.MAX, "day", IDS, 1,
+                FROM, TO, TO.plusDays(10), TO.plusDays(10));
+
+        // Assert
+        assertTrue(query.sql().contains("FROM weighing_logs_1h"));
+        assertFalse(query.sql().contains("weighing_logs_1m"));
+        assertFalse(query.sql().contains("created_at"));
+        assertEquals(List.of(IDS, FROM, TO), query.params());
+    }
+
+    @Test
+    void testBuild_NoRollupYetReadsRaw() {
+        // Act
+        ReportQuery query = RollupReportQuery.build(ReportRequestDto.AggregationMethod.SUM, "hour", IDS, 5,
+                FROM, TO, null, null);
+
+        // Assert
+        assertFalse(query.sql().contains("weighing_logs_1"));
+        assertTrue(query.sql().contains("COALESCE(value_5,"));
+        assertEquals(List.of(IDS, FROM, TO), query.params());
+    }
+}